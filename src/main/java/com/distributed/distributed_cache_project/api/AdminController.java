@@ -2,15 +2,24 @@ package com.distributed.distributed_cache_project.api;
 
 
 import com.distributed.distributed_cache_project.api.model.AdminMetricsResponse;
+import com.distributed.distributed_cache_project.api.model.SnapshotStatusResponse;
 import com.distributed.distributed_cache_project.config.NodeConfigProperties;
 import com.distributed.distributed_cache_project.core.cache.LocalCache;
+import com.distributed.distributed_cache_project.core.cache.NearCache;
+import com.distributed.distributed_cache_project.core.cache.ValueCompressor;
 import com.distributed.distributed_cache_project.core.consistenthashing.Node;
+import com.distributed.distributed_cache_project.core.persistence.OperationLog;
+import com.distributed.distributed_cache_project.core.persistence.SnapshotManager;
+import com.distributed.distributed_cache_project.core.store.BackingStore;
 import com.distributed.distributed_cache_project.network.discovery.NodeDiscoveryService;
+import com.distributed.distributed_cache_project.network.server.PipelineServer;
+import com.distributed.distributed_cache_project.service.CacheService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -23,14 +32,35 @@ public class AdminController {
     private static final Logger log = LoggerFactory.getLogger(AdminController.class);
 
     private final LocalCache localCache;
+    private final ValueCompressor valueCompressor;
+    private final NearCache nearCache;
+    private final CacheService cacheService;
+    private final BackingStore backingStore;
+    private final OperationLog operationLog;
+    private final SnapshotManager snapshotManager;
     private final NodeDiscoveryService nodeDiscoveryService;
+    private final PipelineServer pipelineServer;
     private final Node currentNode; // To provide this node's own info
 
     public AdminController(LocalCache localCache,
+                           ValueCompressor valueCompressor,
+                           NearCache nearCache,
+                           CacheService cacheService,
+                           BackingStore backingStore,
+                           OperationLog operationLog,
+                           SnapshotManager snapshotManager,
                            NodeDiscoveryService nodeDiscoveryService,
+                           PipelineServer pipelineServer,
                            NodeConfigProperties nodeConfigProperties) { // Inject config to get current node
         this.localCache = localCache;
+        this.valueCompressor = valueCompressor;
+        this.nearCache = nearCache;
+        this.cacheService = cacheService;
+        this.backingStore = backingStore;
+        this.operationLog = operationLog;
+        this.snapshotManager = snapshotManager;
         this.nodeDiscoveryService = nodeDiscoveryService;
+        this.pipelineServer = pipelineServer;
         NodeConfigProperties.NodeProperties currentProps = nodeConfigProperties.getNode();
         this.currentNode = new Node(currentProps.getHost() + ":" + currentProps.getPort(), currentProps.getHost(), currentProps.getPort());
         log.info("AdminController initialized for node: {}", currentNode.getId());
@@ -53,6 +83,59 @@ public class AdminController {
         response.setLocalKeyCount(localCache.size());
         response.setLocalMemoryUsageBytes(localCache.getUsedMemoryBytes());
         response.setTotalJVMMemoryBytes(localCache.getTotalMemoryBytes());
+        response.setWeightedSizeBytes(localCache.getWeightedSizeBytes());
+        response.setMaxWeightBytes(localCache.getMaxBytes());
+        response.setOffHeapUsedBytes(localCache.getOffHeapUsedBytes());
+
+        // Compression (node-wide: local storage and replication traffic)
+        response.setCompressedValueCount(valueCompressor.getCompressedCount());
+        response.setCompressionRatio(valueCompressor.getCompressionRatio());
+        response.setCompressionBytesSaved(valueCompressor.getBytesSaved());
+        response.setCompressionCpuNanos(valueCompressor.getCompressCpuNanos());
+        response.setDecompressionCpuNanos(valueCompressor.getDecompressCpuNanos());
+
+        // Operation log
+        response.setOperationLogBytes(operationLog.getLogBytes());
+        response.setOperationLogPendingRecords(operationLog.getPendingRecords());
+        response.setOperationLogDroppedRecords(operationLog.getDroppedCount());
+        response.setOperationLogRewrites(operationLog.getRewriteCount());
+
+        // Overflow tier
+        response.setOverflowEntryCount(localCache.getOverflowEntryCount());
+        response.setOverflowDiskBytes(localCache.getOverflowDiskBytes());
+        response.setOverflowSpillCount(localCache.getOverflowSpillCount());
+        response.setOverflowHitCount(localCache.getOverflowHitCount());
+        response.setOverflowDroppedCount(localCache.getOverflowDroppedCount());
+
+        // Reads of keys owned elsewhere
+        response.setForwardedGetCount(cacheService.getForwardedGetCount());
+        response.setCoalescedGetCount(cacheService.getCoalescedGetCount());
+        response.setAtomicOperationCount(cacheService.getAtomicCount());
+        response.setAtomicConflictCount(cacheService.getAtomicConflictCount());
+        response.setCoalescedReplicationCount(cacheService.getCoalescedReplicationCount());
+
+        // Backing store
+        response.setStoreLoadCount(backingStore.getLoadCount());
+        response.setStoreLoadMissCount(backingStore.getLoadMissCount());
+        response.setStoreLoadFailureCount(backingStore.getLoadFailureCount());
+        response.setCoalescedLoadCount(cacheService.getCoalescedLoadCount());
+        response.setRefreshAheadCount(cacheService.getRefreshCount());
+        response.setStaleServedCount(cacheService.getStaleServedCount());
+        response.setStorePendingWrites(backingStore.getPendingWrites());
+        response.setStoreWrittenCount(backingStore.getWrittenCount());
+        response.setStoreFailedBatchCount(backingStore.getFailedBatchCount());
+        response.setStoreRejectedWriteCount(backingStore.getRejectedCount());
+
+        // Near cache
+        response.setNearCacheKeyCount(nearCache.size());
+        response.setNearCacheHitCount(nearCache.getHitCount());
+        response.setNearCacheMissCount(nearCache.getMissCount());
+        response.setNearCacheInvalidationCount(nearCache.getInvalidationCount());
+        response.setNearCacheTrackedKeyCount(nearCache.getTrackedKeyCount());
+
+        // Pipelined protocol
+        response.setPipelineConnections(pipelineServer.getOpenConnections());
+        response.setPipelineRequestCount(pipelineServer.getRequestCount());
 
         // Cache Hit/Miss/Put/Delete Counts
         response.setCacheHitCount(localCache.getHitCount());
@@ -60,6 +143,8 @@ public class AdminController {
         response.setCacheHitRatio(localCache.getHitRatio());
         response.setPutCount(localCache.getPutCount());
         response.setDeleteCount(localCache.getDeleteCount());
+        response.setEvictionCount(localCache.getEvictionCount());
+        response.setExpiredCount(localCache.getExpiredCount());
 
         // Node Discovery / Cluster View Metrics
         // For simplicity, NodeDiscoveryService could expose a method like getActivePeersMap()
@@ -78,4 +163,35 @@ public class AdminController {
 
         return new ResponseEntity<>(response, HttpStatus.OK);
     }
+
+    /**
+     * Starts a point-in-time snapshot of this node's cache in the background.
+     * @return 202 with the snapshot's status, or 409 if a snapshot is already running.
+     */
+    @PostMapping("/snapshot")
+    public ResponseEntity<SnapshotStatusResponse> triggerSnapshot() {
+        boolean started = snapshotManager.requestSnapshot();
+        log.info("AdminController: Snapshot requested for node {}; started: {}", currentNode.getId(), started);
+        return new ResponseEntity<>(snapshotStatus(), started ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT);
+    }
+
+    /**
+     * Reports the progress of the running snapshot, or the outcome of the last one.
+     */
+    @GetMapping("/snapshot")
+    public ResponseEntity<SnapshotStatusResponse> getSnapshotStatus() {
+        return new ResponseEntity<>(snapshotStatus(), HttpStatus.OK);
+    }
+
+    private SnapshotStatusResponse snapshotStatus() {
+        SnapshotManager.State state = snapshotManager.getState();
+        long expected = snapshotManager.getExpectedEntries();
+        long written = snapshotManager.getEntriesWritten();
+        double progress = state == SnapshotManager.State.COMPLETED ? 100.0
+                : expected > 0 ? Math.min(100.0, written * 100.0 / expected) : 0.0;
+        return new SnapshotStatusResponse(state.name(), snapshotManager.getPath().toString(),
+                snapshotManager.getStartedAtMillis(), snapshotManager.getFinishedAtMillis(),
+                snapshotManager.getSnapshotMillis(), expected, written, snapshotManager.getBytesWritten(),
+                progress, snapshotManager.getError());
+    }
 }
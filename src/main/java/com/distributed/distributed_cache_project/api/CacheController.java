@@ -1,68 +1,450 @@
 package com.distributed.distributed_cache_project.api;
 
 
+import com.distributed.distributed_cache_project.api.model.BatchEntry;
+import com.distributed.distributed_cache_project.api.model.BatchKeysRequest;
+import com.distributed.distributed_cache_project.api.model.BatchResponse;
+import com.distributed.distributed_cache_project.api.model.ScanEntry;
+import com.distributed.distributed_cache_project.api.model.ScanPage;
+import com.distributed.distributed_cache_project.core.cache.AtomicOp;
+import com.distributed.distributed_cache_project.core.cache.CacheValue;
+import com.distributed.distributed_cache_project.core.manager.CacheManager;
+import com.distributed.distributed_cache_project.core.store.BackingStore;
 import com.distributed.distributed_cache_project.service.CacheService;
-import lombok.Data;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.util.Map;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 @RestController
 @RequestMapping("/cache")
 public class CacheController {
+    private static final String DEFAULT_SCAN_COUNT = "100";
+    private static final int MAX_BATCH_KEYS = 1000;
     private final CacheService cacheService;
+    private final JsonFactory jsonFactory;
+    private final ObjectWriter lineWriter; // Unindented, for NDJSON
     private static final Logger log = LoggerFactory.getLogger(CacheController.class);
 
-    public CacheController(CacheService cacheService){
+    public CacheController(CacheService cacheService, ObjectMapper objectMapper){
         this.cacheService = cacheService;
+        this.jsonFactory = objectMapper.getFactory();
+        this.lineWriter = objectMapper.writer().without(SerializationFeature.INDENT_OUTPUT);
     }
 
+    // Keys of the default cache are addressed as /cache/{key}, those of a named cache as /cache/{cache}/{key}
+
+    /**
+     * One page of this node's entries. Start with cursor 0 and pass back the returned cursor until it is 0 again.
+     * @param count Page size hint; a page may hold fewer entries, or none, before the scan is complete.
+     * @param match Glob pattern the keys must match, e.g. {@code user:*}.
+     */
     @GetMapping("/")
-    public ResponseEntity<Map<String, Object>> getAll() {
-        Map<String, Object> allEntries = cacheService.getAllCacheEntries();
-        return new ResponseEntity<>(allEntries, HttpStatus.OK);
+    public ResponseEntity<ScanPage> scan(@RequestParam(defaultValue = CacheService.SCAN_START) String cursor,
+                                         @RequestParam(defaultValue = DEFAULT_SCAN_COUNT) int count,
+                                         @RequestParam(required = false) String match) {
+        return scan(CacheManager.DEFAULT_CACHE, cursor, count, match);
+    }
+
+    @GetMapping("/{cache}/")
+    public ResponseEntity<ScanPage> scan(@PathVariable String cache,
+                                         @RequestParam(defaultValue = CacheService.SCAN_START) String cursor,
+                                         @RequestParam(defaultValue = DEFAULT_SCAN_COUNT) int count,
+                                         @RequestParam(required = false) String match) {
+        requireCache(cache);
+        try {
+            return new ResponseEntity<>(cacheService.scan(cache, cursor, count, match), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Every entry in the cluster as newline-delimited JSON, one entry per line, streamed node by node as the client
+     * reads it.
+     */
+    @GetMapping(value = "/", params = "scope=cluster", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<String> scanCluster(@RequestParam(defaultValue = DEFAULT_SCAN_COUNT) int count,
+                                    @RequestParam(required = false) String match) {
+        return scanCluster(CacheManager.DEFAULT_CACHE, count, match);
+    }
+
+    @GetMapping(value = "/{cache}/", params = "scope=cluster", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<String> scanCluster(@PathVariable String cache,
+                                    @RequestParam(defaultValue = DEFAULT_SCAN_COUNT) int count,
+                                    @RequestParam(required = false) String match) {
+        requireCache(cache);
+        Flux<ScanEntry> entries;
+        try {
+            entries = cacheService.scanCluster(cache, match, count);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+        return entries.map(entry -> {
+            try {
+                return lineWriter.writeValueAsString(entry) + "\n"; // Strings are streamed as they are
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Cannot write scanned entry '" + entry.getKey() + "': " + e.getMessage(), e);
+            }
+        }).doOnError(e -> log.error("CacheController: Cluster scan failed: {}", e.getMessage()));
+    }
+
+    // Batches are POSTs to the cache's root with op=mget, mset or mdel, so no key name is taken by a batch route
+
+    @PostMapping(value = "/", params = "op=mget")
+    public Mono<ResponseEntity<BatchResponse>> mget(@RequestBody BatchKeysRequest request) {
+        return mget(CacheManager.DEFAULT_CACHE, request);
+    }
+
+    /**
+     * Reads up to 1000 keys, {@code {"keys": [...]}}, with one request per owning node, sent in parallel. Each result is
+     * FOUND with its value shaped as in a scan, MISSING, or ERROR with the reason; a failed key does not fail the rest.
+     */
+    @PostMapping(value = "/{cache}/", params = "op=mget")
+    public Mono<ResponseEntity<BatchResponse>> mget(@PathVariable String cache, @RequestBody BatchKeysRequest request) {
+        requireCache(cache);
+        List<String> keys = requireBatchKeys(request.getKeys());
+        return cacheService.getAll(cache, keys)
+                .map(results -> new ResponseEntity<>(new BatchResponse(results), HttpStatus.OK));
+    }
+
+    @PostMapping(value = "/", params = "op=mset")
+    public Mono<ResponseEntity<BatchResponse>> mset(@RequestBody byte[] body) {
+        return mset(CacheManager.DEFAULT_CACHE, body);
+    }
+
+    /**
+     * Stores up to 1000 entries, {@code {"entries": [{"key": ..., "value": ..., "ttlMillis": ...}, ...]}}, each read like
+     * the single-key envelope. Results are STORED or ERROR per key.
+     */
+    @PostMapping(value = "/{cache}/", params = "op=mset")
+    public Mono<ResponseEntity<BatchResponse>> mset(@PathVariable String cache, @RequestBody byte[] body) {
+        requireCache(cache);
+        List<BatchEntry> entries;
+        try {
+            entries = readEntries(body);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid mset body: " + e.getMessage(), e);
+        }
+        requireBatchKeys(entries.stream().map(BatchEntry::getKey).toList());
+        return cacheService.putAll(cache, entries)
+                .map(results -> new ResponseEntity<>(new BatchResponse(results), HttpStatus.OK));
+    }
+
+    @PostMapping(value = "/", params = "op=mdel")
+    public Mono<ResponseEntity<BatchResponse>> mdel(@RequestBody BatchKeysRequest request) {
+        return mdel(CacheManager.DEFAULT_CACHE, request);
+    }
+
+    /**
+     * Deletes up to 1000 keys, {@code {"keys": [...]}}. Results are DELETED or ERROR per key.
+     */
+    @PostMapping(value = "/{cache}/", params = "op=mdel")
+    public Mono<ResponseEntity<BatchResponse>> mdel(@PathVariable String cache, @RequestBody BatchKeysRequest request) {
+        requireCache(cache);
+        List<String> keys = requireBatchKeys(request.getKeys());
+        return cacheService.deleteAll(cache, keys)
+                .map(results -> new ResponseEntity<>(new BatchResponse(results), HttpStatus.OK));
     }
 
     @GetMapping("/{key}")
-    public Mono<ResponseEntity<String>> get(@PathVariable String key) {
-        return cacheService.get(key) // CacheService now returns Mono<Object>
+    public Mono<ResponseEntity<byte[]>> get(@PathVariable String key) {
+        return get(CacheManager.DEFAULT_CACHE, key);
+    }
+
+    @GetMapping("/{cache}/{key}")
+    public Mono<ResponseEntity<byte[]>> get(@PathVariable String cache, @PathVariable String key) {
+        requireCache(cache);
+        return cacheService.get(cache, key) // CacheService returns the stored bytes and their content type
                 .map(value -> {
-                    log.info("CacheController: Successfully mapped value to ResponseEntity for key: {}. Value type: {}", key, value != null ? value.getClass().getName() : "null"); // <-- SET BREAKPOINT HERE
-                    return new ResponseEntity<>(value, HttpStatus.OK);
+                    log.info("CacheController: Successfully mapped value to ResponseEntity for key: {}. Value: {}", key, value);
+                    return ResponseEntity.ok()
+                            .contentType(MediaType.parseMediaType(value.contentType()))
+                            .body(value.bytes());
                 }) // If value emitted, return OK
                 .defaultIfEmpty(new ResponseEntity<>(HttpStatus.NOT_FOUND)); // If Mono is empty (404/not found), return NOT_FOUND
     }
 
     @PostMapping("/{key}")
     public Mono<ResponseEntity<String>> put(@PathVariable String key,
-                                            @RequestBody CachePutRequest request) {
-        return cacheService.put(key, request.getValue(), request.getTtlMillis()) // CacheService now returns Mono<Void>
+                                            @RequestBody(required = false) byte[] body,
+                                            @RequestHeader(value = HttpHeaders.CONTENT_TYPE, required = false) String contentType,
+                                            @RequestParam(defaultValue = "0") long ttlMillis) {
+        return put(CacheManager.DEFAULT_CACHE, key, body, contentType, ttlMillis);
+    }
+
+    /**
+     * Stores a value. Without a TTL, the cache's default TTL applies.
+     */
+    @PostMapping("/{cache}/{key}")
+    public Mono<ResponseEntity<String>> put(@PathVariable String cache,
+                                            @PathVariable String key,
+                                            @RequestBody(required = false) byte[] body,
+                                            @RequestHeader(value = HttpHeaders.CONTENT_TYPE, required = false) String contentType,
+                                            @RequestParam(defaultValue = "0") long ttlMillis) {
+        requireCache(cache);
+        CachePutRequest request;
+        try {
+            request = readRequest(body, contentType, ttlMillis);
+        } catch (IOException | IllegalArgumentException e) {
+            return Mono.just(new ResponseEntity<>("Invalid request body for key '" + key + "': " + e.getMessage(), HttpStatus.BAD_REQUEST));
+        }
+        return cacheService.put(cache, key, request.value(), request.ttlMillis()) // CacheService now returns Mono<Void>
                 .then(Mono.just(new ResponseEntity<>("Key '" + key + "' stored successfully.", HttpStatus.CREATED)))
+                .onErrorResume(BackingStore.QueueFullException.class, e ->
+                        Mono.just(new ResponseEntity<>("Failed to store key '" + key + "': " + e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE)))
                 .onErrorResume(e -> {
                     // Basic error handling: if something goes wrong during put/forward, return 500
                     return Mono.just(new ResponseEntity<>("Failed to store key '" + key + "': " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR));
                 });
     }
 
+    @GetMapping(value = "/{key}", params = "op=gets")
+    public Mono<ResponseEntity<byte[]>> gets(@PathVariable String key) {
+        return gets(CacheManager.DEFAULT_CACHE, key);
+    }
+
+    /**
+     * Reads a value from the key's primary owner with its version stamp, in the X-Cache-Version header, for a later
+     * {@code op=cas}. Never served from the near cache.
+     */
+    @GetMapping(value = "/{cache}/{key}", params = "op=gets")
+    public Mono<ResponseEntity<byte[]>> gets(@PathVariable String cache, @PathVariable String key) {
+        requireCache(cache);
+        return cacheService.atomic(cache, key, AtomicOp.GETS, 0, null, 0)
+                .map(result -> result.applied()
+                        ? valueResponse(HttpStatus.OK, result.value(), result.version())
+                        : new ResponseEntity<>(HttpStatus.NOT_FOUND));
+    }
+
+    @PostMapping(value = "/{key}", params = "op")
+    public Mono<ResponseEntity<byte[]>> atomic(@PathVariable String key,
+                                               @RequestParam String op,
+                                               @RequestParam(defaultValue = "1") long delta,
+                                               @RequestParam(defaultValue = "0") long version,
+                                               @RequestBody(required = false) byte[] body,
+                                               @RequestHeader(value = HttpHeaders.CONTENT_TYPE, required = false) String contentType,
+                                               @RequestParam(defaultValue = "0") long ttlMillis) {
+        return atomic(CacheManager.DEFAULT_CACHE, key, op, delta, version, body, contentType, ttlMillis);
+    }
+
+    /**
+     * Atomic operations, run on the key's primary owner in one hop from any node:
+     * {@code incr} and {@code decr} by {@code delta}, {@code cas} (stores the body if the key's version stamp is still
+     * {@code version}; 0 for an absent key), {@code put-if-absent} and {@code get-and-set}. The body is read as for a
+     * plain POST. Every reply carries the key's version stamp in X-Cache-Version.
+     */
+    @PostMapping(value = "/{cache}/{key}", params = "op")
+    public Mono<ResponseEntity<byte[]>> atomic(@PathVariable String cache,
+                                               @PathVariable String key,
+                                               @RequestParam String op,
+                                               @RequestParam(defaultValue = "1") long delta,
+                                               @RequestParam(defaultValue = "0") long version,
+                                               @RequestBody(required = false) byte[] body,
+                                               @RequestHeader(value = HttpHeaders.CONTENT_TYPE, required = false) String contentType,
+                                               @RequestParam(defaultValue = "0") long ttlMillis) {
+        requireCache(cache);
+        AtomicOp atomicOp;
+        long operand;
+        CachePutRequest request = null;
+        try {
+            if ("decr".equalsIgnoreCase(op)) {
+                atomicOp = AtomicOp.INCR;
+                operand = Math.negateExact(delta);
+            } else {
+                atomicOp = AtomicOp.fromParam(op);
+                operand = atomicOp == AtomicOp.INCR ? delta : version;
+            }
+            if (atomicOp.storesValue()) {
+                request = readRequest(body, contentType, ttlMillis);
+            }
+        } catch (IOException | IllegalArgumentException | ArithmeticException e) {
+            return Mono.just(textResponse(HttpStatus.BAD_REQUEST, "Invalid " + op + " request for key '" + key + "': " + e.getMessage()));
+        }
+        return cacheService.atomic(cache, key, atomicOp, operand,
+                        request != null ? request.value() : null, request != null ? request.ttlMillis() : ttlMillis)
+                .map(result -> atomicResponse(atomicOp, key, result))
+                .onErrorResume(IllegalArgumentException.class, e ->
+                        Mono.just(textResponse(HttpStatus.BAD_REQUEST, "Failed to " + op + " key '" + key + "': " + e.getMessage())))
+                .onErrorResume(BackingStore.QueueFullException.class, e ->
+                        Mono.just(textResponse(HttpStatus.SERVICE_UNAVAILABLE, "Failed to " + op + " key '" + key + "': " + e.getMessage())))
+                .onErrorResume(e ->
+                        Mono.just(textResponse(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to " + op + " key '" + key + "': " + e.getMessage())));
+    }
+
+    private static ResponseEntity<byte[]> atomicResponse(AtomicOp op, String key, AtomicOp.Result result) {
+        return switch (op) {
+            case GETS, INCR -> valueResponse(HttpStatus.OK, result.value(), result.version());
+            case CAS -> result.applied()
+                    ? versionedText(HttpStatus.OK, "Key '" + key + "' stored successfully.", result.version())
+                    : versionedText(HttpStatus.PRECONDITION_FAILED, "Key '" + key + "' has changed since version was read.", result.version());
+            case PUT_IF_ABSENT -> result.applied()
+                    ? versionedText(HttpStatus.CREATED, "Key '" + key + "' stored successfully.", result.version())
+                    : valueResponse(HttpStatus.CONFLICT, result.value(), result.version()); // The value already there
+            case GET_AND_SET -> result.value() != null
+                    ? valueResponse(HttpStatus.OK, result.value(), result.version()) // The value replaced
+                    : ResponseEntity.noContent().header(InternalCacheController.VERSION_HEADER, Long.toString(result.version())).build();
+        };
+    }
+
+    private static ResponseEntity<byte[]> valueResponse(HttpStatus status, CacheValue value, long version) {
+        return ResponseEntity.status(status)
+                .header(InternalCacheController.VERSION_HEADER, Long.toString(version))
+                .contentType(MediaType.parseMediaType(value.contentType()))
+                .body(value.bytes());
+    }
+
+    private static ResponseEntity<byte[]> versionedText(HttpStatus status, String message, long version) {
+        return ResponseEntity.status(status)
+                .header(InternalCacheController.VERSION_HEADER, Long.toString(version))
+                .contentType(MediaType.TEXT_PLAIN)
+                .body(message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ResponseEntity<byte[]> textResponse(HttpStatus status, String message) {
+        return ResponseEntity.status(status).contentType(MediaType.TEXT_PLAIN).body(message.getBytes(StandardCharsets.UTF_8));
+    }
+
     @DeleteMapping("/{key}")
     public Mono<ResponseEntity<String>> delete(@PathVariable String key) {
-        return cacheService.delete(key) // CacheService now returns Mono<Void>
+        return delete(CacheManager.DEFAULT_CACHE, key);
+    }
+
+    @DeleteMapping("/{cache}/{key}")
+    public Mono<ResponseEntity<String>> delete(@PathVariable String cache, @PathVariable String key) {
+        requireCache(cache);
+        return cacheService.delete(cache, key) // CacheService now returns Mono<Void>
                 .then(Mono.just(new ResponseEntity<>("Key '" + key + "' deleted.", HttpStatus.NO_CONTENT)))
+                .onErrorResume(BackingStore.QueueFullException.class, e ->
+                        Mono.just(new ResponseEntity<>("Failed to delete key '" + key + "': " + e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE)))
                 .onErrorResume(e -> {
                     return Mono.just(new ResponseEntity<>("Failed to delete key '" + key + "': " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR));
                 });
     }
 
-    @Data
-    public static class CachePutRequest {
-        private Object value;
-        private long ttlMillis;
+    private void requireCache(String cache) {
+        if (!cacheService.hasCache(cache)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown cache '" + cache + "'.");
+        }
+    }
+
+    private static List<String> requireBatchKeys(List<String> keys) {
+        if (keys == null || keys.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "A batch needs at least one key.");
+        }
+        if (keys.size() > MAX_BATCH_KEYS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "A batch takes at most " + MAX_BATCH_KEYS + " keys.");
+        }
+        if (keys.stream().anyMatch(key -> key == null || key.isEmpty())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Batch keys must not be empty.");
+        }
+        return keys;
+    }
+
+    private static boolean isJson(String contentType) {
+        return contentType != null && MediaType.APPLICATION_JSON.isCompatibleWith(MediaType.parseMediaType(contentType));
+    }
+
+    // A JSON body is the {"value": ..., "ttlMillis": ...} envelope; any other body is the value itself
+    private CachePutRequest readRequest(byte[] body, String contentType, long ttlMillis) throws IOException {
+        byte[] bytes = body != null ? body : new byte[0];
+        return isJson(contentType) ? readEnvelope(bytes, ttlMillis) : new CachePutRequest(null, new CacheValue(bytes, contentType), ttlMillis);
     }
-}
 
+    /**
+     * Reads the JSON envelope with a streaming parser, without building an object tree. A string value is stored as
+     * UTF-8 text; any other value keeps the exact bytes it had in the request body and is stored as JSON.
+     */
+    private CachePutRequest readEnvelope(byte[] body, long defaultTtlMillis) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("expected a JSON object with a 'value' field");
+            }
+            return readEnvelope(parser, body, defaultTtlMillis);
+        }
+    }
+
+    /**
+     * Reads an MSET body, {"entries": [...]}, each entry an envelope with a "key" field.
+     */
+    private List<BatchEntry> readEntries(byte[] body) throws IOException {
+        List<BatchEntry> entries = new ArrayList<>();
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("expected a JSON object with an 'entries' array");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken token = parser.nextToken();
+                if (!"entries".equals(field)) {
+                    parser.skipChildren();
+                    continue;
+                }
+                if (token != JsonToken.START_ARRAY) {
+                    throw new IllegalArgumentException("'entries' must be an array");
+                }
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    CachePutRequest entry = readEnvelope(parser, body, 0);
+                    if (entry.key() == null) {
+                        throw new IllegalArgumentException("entry " + entries.size() + " has no 'key' field");
+                    }
+                    entries.add(new BatchEntry(entry.key(), entry.value().bytes(), entry.value().contentType(), entry.ttlMillis()));
+                }
+            }
+        }
+        return entries;
+    }
 
+    // Reads the fields of the envelope whose opening bracket the parser is on, up to its closing bracket
+    private static CachePutRequest readEnvelope(JsonParser parser, byte[] body, long defaultTtlMillis) throws IOException {
+        String key = null;
+        CacheValue value = null;
+        long ttlMillis = defaultTtlMillis;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            if ("value".equals(field)) {
+                if (token == JsonToken.VALUE_STRING) {
+                    value = CacheValue.ofText(parser.getText());
+                } else {
+                    int start = (int) parser.currentTokenLocation().getByteOffset();
+                    parser.skipChildren(); // Moves to the closing bracket of an object or array; no-op for scalars
+                    int end = (int) parser.currentLocation().getByteOffset();
+                    value = new CacheValue(Arrays.copyOfRange(body, start, end), CacheValue.JSON);
+                }
+            } else if ("ttlMillis".equals(field)) {
+                ttlMillis = parser.getValueAsLong();
+            } else if ("key".equals(field) && token == JsonToken.VALUE_STRING) {
+                key = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (value == null) {
+            throw new IllegalArgumentException("missing 'value' field" + (key != null ? " for key '" + key + "'" : ""));
+        }
+        return new CachePutRequest(key, value, ttlMillis);
+    }
+
+    private record CachePutRequest(String key, CacheValue value, long ttlMillis) {
+    }
+}
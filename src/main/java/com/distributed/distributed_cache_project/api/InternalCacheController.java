@@ -1,63 +1,124 @@
 package com.distributed.distributed_cache_project.api;
 
-import com.distributed.distributed_cache_project.config.NodeConfigProperties;
-import com.distributed.distributed_cache_project.core.cache.LocalCache;
-import com.distributed.distributed_cache_project.core.consistenthashing.HashRing;
-import com.distributed.distributed_cache_project.core.consistenthashing.Node;
+import com.distributed.distributed_cache_project.api.model.BatchKeysRequest;
+import com.distributed.distributed_cache_project.api.model.BatchResponse;
+import com.distributed.distributed_cache_project.api.model.BatchWriteRequest;
+import com.distributed.distributed_cache_project.api.model.ScanPage;
+import com.distributed.distributed_cache_project.core.cache.AtomicOp;
+import com.distributed.distributed_cache_project.core.cache.CacheValue;
+import com.distributed.distributed_cache_project.core.cache.ValueCompressor;
+import com.distributed.distributed_cache_project.core.manager.CacheManager;
+import com.distributed.distributed_cache_project.core.store.BackingStore;
 import com.distributed.distributed_cache_project.network.discovery.NodeDiscoveryService;
 import com.distributed.distributed_cache_project.network.model.HeartbeatRequest;
 import com.distributed.distributed_cache_project.service.CacheService;
-import lombok.Data;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
+
 @RestController
 @RequestMapping("/internal/cache")
 public class InternalCacheController {
+    // Set on PUTs whose body is deflated; holds the length the body inflates to
+    public static final String UNCOMPRESSED_LENGTH_HEADER = "X-Cache-Uncompressed-Length";
+    // Set on forwarded GETs by a node asking for a near-cache lease; holds its node id
+    public static final String NEAR_CACHE_READER_HEADER = "X-Cache-Near-Reader";
+    // Set on the reply when a lease is granted; holds how long the reader may keep its copy
+    public static final String NEAR_CACHE_LEASE_HEADER = "X-Cache-Near-Lease-Millis";
+    // Set on atomic operation replies: the key's version stamp afterwards, and whether the operation wrote the key
+    public static final String VERSION_HEADER = "X-Cache-Version";
+    public static final String APPLIED_HEADER = "X-Cache-Applied";
+
     private static final Logger log = LoggerFactory.getLogger(InternalCacheController.class);
     private final CacheService cacheService;
     private  final NodeDiscoveryService nodeDiscoveryService;
-    private final HashRing hashRing;
-    private final Node currentNode;
+    private final ValueCompressor valueCompressor;
 
-    public InternalCacheController(CacheService cacheService, NodeDiscoveryService nodeDiscoveryService, HashRing hashRing, NodeConfigProperties nodeConfigProperties){
+    public InternalCacheController(CacheService cacheService, NodeDiscoveryService nodeDiscoveryService,
+                                   ValueCompressor valueCompressor){
         this.cacheService = cacheService;
         this.nodeDiscoveryService = nodeDiscoveryService;
-        this.hashRing = hashRing;
-        NodeConfigProperties.NodeProperties currentProps = nodeConfigProperties.getNode();
-        this.currentNode = new Node(currentProps.getHost() + ":" + currentProps.getPort(), currentProps.getHost(), currentProps.getPort());
+        this.valueCompressor = valueCompressor;
+    }
+
+    /**
+     * One page of the entries this node is the primary owner of, for a cluster-wide scan run by another node. Values
+     * are raw bytes, Base64-encoded in the JSON.
+     */
+    @GetMapping("/")
+    public ResponseEntity<ScanPage> internalScan(@RequestParam(defaultValue = CacheManager.DEFAULT_CACHE) String cache,
+                                                 @RequestParam(defaultValue = CacheService.SCAN_START) String cursor,
+                                                 @RequestParam int count,
+                                                 @RequestParam(required = false) String match) {
+        try {
+            return new ResponseEntity<>(cacheService.scanOwned(cache, cursor, count, match), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
     }
 
     @GetMapping("/{key}")
-    public Mono<ResponseEntity<String>> internalGet(@PathVariable String key) { // <--- Return Mono<ResponseEntity<String>>
+    public Mono<ResponseEntity<byte[]>> internalGet(@PathVariable String key,
+                                                    @RequestParam(defaultValue = CacheManager.DEFAULT_CACHE) String cache,
+                                                    @RequestHeader(value = NEAR_CACHE_READER_HEADER, required = false) String nearCacheReader) {
         log.debug("Received internal GET request for key: {}", key);
-        return cacheService.get(key) // This now returns Mono<String>
+        if (!cacheService.hasCache(cache)) {
+            // Not a 404, which would read as a miss
+            return Mono.just(new ResponseEntity<>(unknownCache(cache).getBytes(StandardCharsets.UTF_8), HttpStatus.BAD_REQUEST));
+        }
+        // Granted before the read, so a write landing after it invalidates the reader's copy
+        long leaseMillis = nearCacheReader != null ? cacheService.grantNearCacheLease(cache, key, nearCacheReader) : 0;
+        return cacheService.get(cache, key) // The value's bytes go back as they are, with their content type
                 .map(value -> {
                     log.debug("InternalCacheController: Successfully mapped internal value for key: {}. Value: {}", key, value);
-                    return new ResponseEntity<>(value, HttpStatus.OK);
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                            .contentType(MediaType.parseMediaType(value.contentType()));
+                    if (leaseMillis > 0) {
+                        response.header(NEAR_CACHE_LEASE_HEADER, Long.toString(leaseMillis));
+                    }
+                    return response.body(value.bytes());
                 })
                 .defaultIfEmpty(new ResponseEntity<>(HttpStatus.NOT_FOUND)); // If Mono is empty, return 404
     }
 
     @PostMapping("/{key}")
     public Mono<ResponseEntity<String>> internalPut(@PathVariable String key,
-                                                    @RequestBody InternalCachePutRequest request) {
+                                                    @RequestBody(required = false) byte[] body,
+                                                    @RequestHeader(value = HttpHeaders.CONTENT_TYPE, required = false) String contentType,
+                                                    @RequestHeader(value = UNCOMPRESSED_LENGTH_HEADER, required = false) Integer uncompressedBytes,
+                                                    @RequestParam(defaultValue = "0") long ttlMillis,
+                                                    @RequestParam(defaultValue = CacheManager.DEFAULT_CACHE) String cache) {
         log.debug("InternalCacheController: Received internal PUT request for key: {}. Determining role...", key);
+        if (!cacheService.hasCache(cache)) {
+            return Mono.just(new ResponseEntity<>(unknownCache(cache), HttpStatus.BAD_REQUEST));
+        }
 
-        Node primaryOwner = hashRing.getOwnerNode(key); // Get the primary owner for this key
+        CacheValue value;
+        try {
+            value = new CacheValue(inflate(body != null ? body : new byte[0], uncompressedBytes), contentType);
+        } catch (RuntimeException e) {
+            log.error("Internal PUT for key '{}' carried a value that could not be decompressed: {}", key, e.getMessage());
+            return Mono.just(new ResponseEntity<>("Invalid compressed value for key '" + key + "': " + e.getMessage(), HttpStatus.BAD_REQUEST));
+        }
 
-        if (currentNode.equals(primaryOwner)) {
+        if (cacheService.isPrimary(cache, key)) {
             // This node is the PRIMARY owner for this key.
             // It means this is either an initial client request that was forwarded to me,
             // or a local client request I am processing.
             // So, perform primary write logic (local store + replication).
             log.debug("InternalCacheController: This node is primary for key '{}'. Calling processPrimaryWrite.", key);
-            return cacheService.processPrimaryWrite(key, request.getValue(), request.getTtlMillis())
+            return cacheService.processPrimaryWrite(cache, key, value, ttlMillis)
                     .then(Mono.just(new ResponseEntity<>("Key '" + key + "' stored internally (primary).", HttpStatus.OK)))
+                    .onErrorResume(BackingStore.QueueFullException.class, e ->
+                            Mono.just(new ResponseEntity<>("Internal PUT failed for primary: " + e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE)))
                     .onErrorResume(e -> {
                         log.error("Internal PUT failed for primary key '{}': {}", key, e.getMessage());
                         return Mono.just(new ResponseEntity<>("Internal PUT failed for primary: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR));
@@ -66,7 +127,7 @@ public class InternalCacheController {
             // This node is NOT the primary owner for this key.
             // It MUST be a replica receiving a replication write from the primary.
             log.debug("InternalCacheController: This node is a replica for key '{}'. Calling processReplicaWrite.", key);
-            return cacheService.processReplicaWrite(key, request.getValue(), request.getTtlMillis())
+            return cacheService.processReplicaWrite(cache, key, value, ttlMillis)
                     .then(Mono.just(new ResponseEntity<>("Key '" + key + "' stored internally (replica).", HttpStatus.OK)))
                     .onErrorResume(e -> {
                         log.error("Internal PUT failed for replica key '{}': {}", key, e.getMessage());
@@ -75,23 +136,72 @@ public class InternalCacheController {
         }
     }
 
+    /**
+     * Runs an atomic operation for the node a client sent it to; this node must be the key's primary owner. The result
+     * goes back in the version and applied headers, with its value, if any, as the body.
+     */
+    @PostMapping(value = "/{key}", params = "op")
+    public Mono<ResponseEntity<byte[]>> internalAtomic(@PathVariable String key,
+                                                       @RequestParam String op,
+                                                       @RequestParam(defaultValue = "0") long operand,
+                                                       @RequestParam(defaultValue = "0") long ttlMillis,
+                                                       @RequestParam(defaultValue = CacheManager.DEFAULT_CACHE) String cache,
+                                                       @RequestBody(required = false) byte[] body,
+                                                       @RequestHeader(value = HttpHeaders.CONTENT_TYPE, required = false) String contentType) {
+        log.debug("InternalCacheController: Received internal {} request for key: {}", op, key);
+        if (!cacheService.hasCache(cache)) {
+            return Mono.just(textResponse(HttpStatus.BAD_REQUEST, unknownCache(cache)));
+        }
+        AtomicOp atomicOp;
+        try {
+            atomicOp = AtomicOp.fromParam(op);
+        } catch (IllegalArgumentException e) {
+            return Mono.just(textResponse(HttpStatus.BAD_REQUEST, e.getMessage()));
+        }
+        if (!cacheService.isPrimary(cache, key)) {
+            // Routed by a node whose view of the ring differs from ours; running it here could break its atomicity
+            return Mono.just(textResponse(HttpStatus.SERVICE_UNAVAILABLE, "This node is not the primary owner of key '" + key + "'."));
+        }
+        CacheValue value = atomicOp.storesValue() ? new CacheValue(body != null ? body : new byte[0], contentType) : null;
+        return cacheService.processPrimaryAtomic(cache, key, atomicOp, operand, value, ttlMillis)
+                .map(result -> {
+                    ResponseEntity.BodyBuilder response = ResponseEntity.status(result.value() != null ? HttpStatus.OK : HttpStatus.NO_CONTENT)
+                            .header(APPLIED_HEADER, Boolean.toString(result.applied()))
+                            .header(VERSION_HEADER, Long.toString(result.version()));
+                    if (result.value() == null) {
+                        return response.<byte[]>build();
+                    }
+                    return response.contentType(MediaType.parseMediaType(result.value().contentType())).body(result.value().bytes());
+                })
+                .onErrorResume(IllegalArgumentException.class, e -> Mono.just(textResponse(HttpStatus.BAD_REQUEST, e.getMessage())))
+                .onErrorResume(BackingStore.QueueFullException.class, e -> Mono.just(textResponse(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage())))
+                .onErrorResume(e -> {
+                    log.error("Internal {} failed for primary key '{}': {}", op, key, e.getMessage());
+                    return Mono.just(textResponse(HttpStatus.INTERNAL_SERVER_ERROR, "Internal " + op + " failed for primary: " + e.getMessage()));
+                });
+    }
+
     @DeleteMapping("/{key}")
-    public Mono<ResponseEntity<String>> internalDelete(@PathVariable String key) {
+    public Mono<ResponseEntity<String>> internalDelete(@PathVariable String key,
+                                                       @RequestParam(defaultValue = CacheManager.DEFAULT_CACHE) String cache) {
         log.debug("InternalCacheController: Received internal DELETE request for key: {}. Determining role...", key);
+        if (!cacheService.hasCache(cache)) {
+            return Mono.just(new ResponseEntity<>(unknownCache(cache), HttpStatus.BAD_REQUEST));
+        }
 
-        Node primaryOwner = hashRing.getOwnerNode(key);
-
-        if (currentNode.equals(primaryOwner)) {
+        if (cacheService.isPrimary(cache, key)) {
             log.debug("InternalCacheController: This node is primary for key '{}'. Calling processPrimaryDelete.", key);
-            return cacheService.processPrimaryDelete(key)
+            return cacheService.processPrimaryDelete(cache, key)
                     .then(Mono.just(new ResponseEntity<>("Key '" + key + "' deleted internally (primary).", HttpStatus.NO_CONTENT)))
+                    .onErrorResume(BackingStore.QueueFullException.class, e ->
+                            Mono.just(new ResponseEntity<>("Internal DELETE failed for primary: " + e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE)))
                     .onErrorResume(e -> {
                         log.error("Internal DELETE failed for primary key '{}': {}", key, e.getMessage());
                         return Mono.just(new ResponseEntity<>("Internal DELETE failed for primary: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR));
                     });
         } else {
             log.debug("InternalCacheController: This node is a replica for key '{}'. Calling processReplicaDelete.", key);
-            return cacheService.processReplicaDelete(key)
+            return cacheService.processReplicaDelete(cache, key)
                     .then(Mono.just(new ResponseEntity<>("Key '" + key + "' deleted internally (replica).", HttpStatus.NO_CONTENT)))
                     .onErrorResume(e -> {
                         log.error("Internal DELETE failed for replica key '{}': {}", key, e.getMessage());
@@ -100,6 +210,47 @@ public class InternalCacheController {
         }
     }
 
+    /**
+     * Reads a batch of keys this node owns, for another node's MGET. Values are raw bytes, Base64-encoded in the JSON.
+     */
+    @PostMapping("/batch/get")
+    public Mono<ResponseEntity<BatchResponse>> internalBatchGet(@RequestBody BatchKeysRequest request,
+                                                                @RequestParam(defaultValue = CacheManager.DEFAULT_CACHE) String cache) {
+        log.debug("InternalCacheController: Received internal batch GET for {} keys.", request.getKeys().size());
+        requireCache(cache);
+        return cacheService.getAllOwned(cache, request.getKeys())
+                .map(results -> new ResponseEntity<>(new BatchResponse(results), HttpStatus.OK));
+    }
+
+    @PostMapping("/batch/put")
+    public Mono<ResponseEntity<BatchResponse>> internalBatchPut(@RequestBody BatchWriteRequest request,
+                                                                @RequestParam(defaultValue = CacheManager.DEFAULT_CACHE) String cache) {
+        log.debug("InternalCacheController: Received internal batch PUT for {} keys.", request.getEntries().size());
+        requireCache(cache);
+        return cacheService.putAllOwned(cache, request.getEntries())
+                .map(results -> new ResponseEntity<>(new BatchResponse(results), HttpStatus.OK));
+    }
+
+    @PostMapping("/batch/delete")
+    public Mono<ResponseEntity<BatchResponse>> internalBatchDelete(@RequestBody BatchKeysRequest request,
+                                                                   @RequestParam(defaultValue = CacheManager.DEFAULT_CACHE) String cache) {
+        log.debug("InternalCacheController: Received internal batch DELETE for {} keys.", request.getKeys().size());
+        requireCache(cache);
+        return cacheService.deleteAllOwned(cache, request.getKeys())
+                .map(results -> new ResponseEntity<>(new BatchResponse(results), HttpStatus.OK));
+    }
+
+    /**
+     * Drops this node's near-cache copy of a key; sent by the key's owner after a write or delete.
+     */
+    @DeleteMapping("/near/{key}")
+    public ResponseEntity<Void> internalInvalidateNearCache(@PathVariable String key,
+                                                            @RequestParam(defaultValue = CacheManager.DEFAULT_CACHE) String cache) {
+        log.debug("InternalCacheController: Received near-cache invalidation for key: {}", key);
+        cacheService.invalidateNearCache(cache, key);
+        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    }
+
     @PostMapping("/heartbeat") // NEW ENDPOINT
     public ResponseEntity<Void> internalHeartbeat(@RequestBody HeartbeatRequest request) {
 //        log.info("Received heartbeat from node: {} at {}", request.getNodeId(), request.getTimestamp()); // Add this log
@@ -107,10 +258,28 @@ public class InternalCacheController {
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
-    @Data
-    public static class InternalCachePutRequest {
-        private Object value;
-        private long ttlMillis;
+    private void requireCache(String cache) {
+        if (!cacheService.hasCache(cache)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, unknownCache(cache));
+        }
+    }
+
+    private static ResponseEntity<byte[]> textResponse(HttpStatus status, String message) {
+        return ResponseEntity.status(status).contentType(MediaType.TEXT_PLAIN).body(message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String unknownCache(String cache) {
+        return "Unknown cache '" + cache + "' on this node.";
     }
 
+    private byte[] inflate(byte[] body, Integer uncompressedBytes) {
+        if (uncompressedBytes == null) {
+            return body;
+        }
+        // Deflate cannot expand data more than about 1032:1, so anything beyond that is a corrupt length
+        if (uncompressedBytes < 0 || uncompressedBytes > body.length * 1032L) {
+            throw new IllegalArgumentException("Implausible uncompressed length " + uncompressedBytes + ".");
+        }
+        return valueCompressor.decompress(body, uncompressedBytes);
+    }
 }
@@ -17,6 +17,52 @@ public class AdminMetricsResponse {
     private int localKeyCount;
     private long localMemoryUsageBytes;
     private long totalJVMMemoryBytes;
+    private long weightedSizeBytes; // Estimated bytes of all entries, when cache.capacity.max-bytes is set
+    private long maxWeightBytes;    // The configured cache.capacity.max-bytes (0 = entry-count limit)
+    private long offHeapUsedBytes; // Direct memory holding entries when cache.storage.mode=off-heap
+
+    private long compressedValueCount;   // Values deflated, in the local cache and for replication
+    private double compressionRatio;     // Original bytes / compressed bytes over those values
+    private long compressionBytesSaved;
+    private long compressionCpuNanos;    // CPU time spent deflating
+    private long decompressionCpuNanos;  // CPU time spent inflating on reads and replica writes
+
+    private long operationLogBytes;          // Size of the append-only log, when cache.oplog.enabled is set
+    private int operationLogPendingRecords;  // Records queued for the log writer
+    private long operationLogDroppedRecords; // Records dropped because the queue was full; recovered by the next rewrite
+    private long operationLogRewrites;
+
+    private int overflowEntryCount;      // Entries held in the disk tier, when cache.overflow.enabled is set
+    private long overflowDiskBytes;      // Bytes of overflow files, including records no longer live
+    private long overflowSpillCount;     // Evicted entries written to the tier
+    private long overflowHitCount;       // Misses in memory served from the tier and moved back
+    private long overflowDroppedCount;   // Entries lost when the oldest file was dropped to stay under max-bytes
+
+    private long forwardedGetCount;        // GETs sent to the key's owner
+    private long coalescedGetCount;        // GETs that joined one already on its way to the owner
+    private long atomicOperationCount;     // INCR, CAS and other atomic operations run on keys this node owns
+    private long atomicConflictCount;      // CAS and put-if-absent operations that found the key changed or present
+    private long coalescedReplicationCount; // Changes replaced by a newer one before they were sent to a replica
+
+    private long storeLoadCount;           // Misses read from the backing store, when cache.store.enabled is set
+    private long storeLoadMissCount;       // Loads the store had no value for
+    private long storeLoadFailureCount;
+    private long coalescedLoadCount;       // Misses that joined a load already running for the key
+    private long refreshAheadCount;        // Keys reloaded in the background before, or just after, they expired
+    private long staleServedCount;         // Expired values served while their reload ran
+    private int storePendingWrites;        // Keys waiting to be written behind
+    private long storeWrittenCount;        // Changes written to the store
+    private long storeFailedBatchCount;    // Write batches that failed and were requeued
+    private long storeRejectedWriteCount;  // Writes refused because max-pending-writes keys were waiting
+
+    private int nearCacheKeyCount;         // Copies of other nodes' values held, when cache.near-cache.enabled is set
+    private long nearCacheHitCount;        // GETs for keys owned elsewhere served without a hop
+    private long nearCacheMissCount;
+    private long nearCacheInvalidationCount; // Copies dropped because the key was written or deleted
+    private int nearCacheTrackedKeyCount;  // Keys this node owns that other nodes hold a lease on
+
+    private int pipelineConnections;       // Open connections on the binary protocol port, when cache.protocol.enabled is set
+    private long pipelineRequestCount;     // Requests received over those connections
 
     private long cacheHitCount;
     private long cacheMissCount;
@@ -24,6 +70,8 @@ public class AdminMetricsResponse {
 
     private long putCount;
     private long deleteCount;
+    private long evictionCount; // Entries dropped to stay within capacity
+    private long expiredCount;  // Entries dropped because their TTL passed
 
     private long lastHeartbeatReceivedMillis; // Timestamp from NodeDiscoveryService
 
@@ -0,0 +1,15 @@
+package com.distributed.distributed_cache_project.api.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchEntry {
+    private String key;
+    private byte[] value;              // Raw bytes, Base64 in JSON between nodes
+    private String contentType;
+    private long ttlMillis;            // 0 for the cache's default TTL
+}
@@ -0,0 +1,14 @@
+package com.distributed.distributed_cache_project.api.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchResponse {
+    private List<BatchResult> results; // One per distinct key, in the order the keys were first given
+}
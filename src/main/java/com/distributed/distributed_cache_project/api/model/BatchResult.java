@@ -0,0 +1,30 @@
+package com.distributed.distributed_cache_project.api.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchResult {
+    public static final String FOUND = "FOUND";
+    public static final String MISSING = "MISSING";
+    public static final String STORED = "STORED";
+    public static final String DELETED = "DELETED";
+    public static final String ERROR = "ERROR";
+
+    private String key;
+    private String status;             // FOUND or MISSING for reads, STORED or DELETED for writes, or ERROR
+    private Object value;              // Found values: JSON as is, text as a string, anything else Base64; raw bytes between nodes
+    private String contentType;
+    private String error;              // Why the key failed, when status is ERROR
+
+    public static BatchResult of(String key, String status) {
+        return new BatchResult(key, status, null, null, null);
+    }
+
+    public static BatchResult failed(String key, String error) {
+        return new BatchResult(key, ERROR, null, null, error);
+    }
+}
@@ -0,0 +1,14 @@
+package com.distributed.distributed_cache_project.api.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchWriteRequest {
+    private List<BatchEntry> entries;  // Entries to store on the node they are sent to, which owns their keys
+}
@@ -0,0 +1,15 @@
+package com.distributed.distributed_cache_project.api.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ScanEntry {
+    private String key;
+    private Object value;              // JSON as is, text as a string, anything else Base64; raw bytes between nodes
+    private String contentType;
+    private long ttlMillis;            // Time left to live, 0 for none
+}
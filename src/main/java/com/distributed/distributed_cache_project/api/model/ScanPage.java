@@ -0,0 +1,15 @@
+package com.distributed.distributed_cache_project.api.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ScanPage {
+    private String cursor;             // Pass back to get the next page; "0" once the scan is complete
+    private List<ScanEntry> entries;
+}
@@ -0,0 +1,21 @@
+package com.distributed.distributed_cache_project.api.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SnapshotStatusResponse {
+    private String state;              // IDLE, RUNNING, COMPLETED or FAILED
+    private String path;               // Where the snapshot file is written
+    private long startedAtMillis;
+    private long finishedAtMillis;     // 0 while running
+    private long snapshotMillis;       // The instant the last completed snapshot shows
+    private long expectedEntries;      // Entries in the cache when the snapshot started
+    private long entriesWritten;
+    private long bytesWritten;
+    private double progressPercent;    // entriesWritten / expectedEntries, capped at 100
+    private String error;              // Why the last snapshot failed, if it did
+}
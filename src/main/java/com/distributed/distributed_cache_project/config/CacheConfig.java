@@ -1,6 +1,12 @@
 package com.distributed.distributed_cache_project.config;
 
 import com.distributed.distributed_cache_project.core.cache.LocalCache;
+import com.distributed.distributed_cache_project.core.cache.NearCache;
+import com.distributed.distributed_cache_project.core.cache.ValueCompressor;
+import com.distributed.distributed_cache_project.core.manager.CacheManager;
+import com.distributed.distributed_cache_project.core.persistence.OperationLog;
+import com.distributed.distributed_cache_project.core.persistence.SnapshotManager;
+import com.distributed.distributed_cache_project.core.store.BackingStore;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -8,7 +14,37 @@ import org.springframework.context.annotation.Configuration;
 public class CacheConfig {
 
     @Bean
-    public LocalCache localCache(NodeConfigProperties nodeConfigProperties) { // <--- UPDATED METHOD SIGNATURE
-        return new LocalCache(nodeConfigProperties); // <--- PASSING CONFIG
+    public ValueCompressor valueCompressor(NodeConfigProperties nodeConfigProperties) {
+        return new ValueCompressor(nodeConfigProperties.getCompression());
+    }
+
+    @Bean
+    public LocalCache localCache(NodeConfigProperties nodeConfigProperties, ValueCompressor valueCompressor) {
+        return new LocalCache(nodeConfigProperties, valueCompressor); // Shares the compressor, and its stats, with replication
+    }
+
+    @Bean
+    public CacheManager cacheManager(NodeConfigProperties nodeConfigProperties, LocalCache localCache, ValueCompressor valueCompressor) {
+        return new CacheManager(nodeConfigProperties, localCache, valueCompressor); // The LocalCache bean is the default cache
+    }
+
+    @Bean
+    public NearCache nearCache(NodeConfigProperties nodeConfigProperties) {
+        return new NearCache(nodeConfigProperties.getNearCache());
+    }
+
+    @Bean
+    public BackingStore backingStore(NodeConfigProperties nodeConfigProperties) {
+        return new BackingStore(nodeConfigProperties.getStore()); // Flushes queued writes on shutdown
+    }
+
+    @Bean
+    public OperationLog operationLog(NodeConfigProperties nodeConfigProperties, LocalCache localCache) {
+        return new OperationLog(nodeConfigProperties.getOplog(), localCache); // Replays the log into the cache before any request is served
+    }
+
+    @Bean
+    public SnapshotManager snapshotManager(NodeConfigProperties nodeConfigProperties, LocalCache localCache, OperationLog operationLog) {
+        return new SnapshotManager(nodeConfigProperties.getSnapshot(), localCache, operationLog); // Loads after the log has had its turn
     }
 }
@@ -5,7 +5,9 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Data
 @Configuration
@@ -18,6 +20,17 @@ public class NodeConfigProperties {
     private List<String> peers;
     private ReplicationProperties replication;
     private CacheCapacityProperties capacity;
+    private StorageProperties storage;
+    private ExpiryProperties expiry;
+    private CompressionProperties compression;
+    private OperationLogProperties oplog;
+    private SnapshotProperties snapshot;
+    private OverflowProperties overflow;
+    private NearCacheProperties nearCache;
+    private StoreProperties store;
+    private ProtocolProperties protocol;
+    // Named caches beside the default one, addressed as /cache/{name}/{key}
+    private Map<String, NamedCacheProperties> caches = new LinkedHashMap<>();
 
     @Data
     public static class NodeProperties {
@@ -34,6 +47,93 @@ public class NodeConfigProperties {
     @Data
     public static class CacheCapacityProperties {
         private int maxEntries; // Maximum number of entries
+        private long maxBytes; // Byte budget for all entries; when > 0 it replaces the max-entries limit
+        private int segments; // Number of independently locked segments (power of two, 0 = based on CPU cores)
+        private String policy; // Eviction policy: "lru" (default), "lfu", "fifo", "clock", "sieve", "arc", "tiny-lfu" or a class name
     }
 
+    @Data
+    public static class StorageProperties {
+        private String mode; // Where values live: "heap" (default), "off-heap" or "mapped" (persistent files)
+        private long offHeapMaxBytes; // Upper bound on memory used for off-heap or mapped slabs
+        private int slabSizeBytes; // Size of each slab; also the largest entry that can be stored
+        private String path; // Directory holding the mapped files; must be distinct per node
+    }
+
+    @Data
+    public static class ExpiryProperties {
+        private long tickMillis; // How often the active expiry cycle runs
+        private long cycleBudgetMillis; // Wall-clock time one cycle may spend removing expired entries
+    }
+
+    @Data
+    public static class CompressionProperties {
+        private boolean enabled; // Deflate large values in the local cache and on the replication wire
+        private int thresholdBytes; // Values smaller than this are never compressed
+        private int level; // Deflate level, 1 (fastest) to 9 (smallest)
+    }
+
+    @Data
+    public static class OperationLogProperties {
+        private boolean enabled; // Log every write to an append-only file and replay it on startup
+        private String path; // Directory holding the log; must be distinct per node
+        private String fsync; // "always" (every batch), "interval" (default) or "never"
+        private long fsyncIntervalMillis; // Time between fsyncs with fsync=interval
+        private int maxPendingRecords; // Records queued for the writer before new ones are dropped
+        private long rewriteMinBytes; // The log is never compacted below this size
+        private int rewriteGrowthPercent; // Compact once the log has grown by this much since the last rewrite
+    }
+
+    @Data
+    public static class SnapshotProperties {
+        private String path; // Directory holding snapshot.bin; must be distinct per node
+        private long intervalMillis; // Time between scheduled snapshots (0 = only when requested)
+        private boolean loadOnStartup; // Warm the cache from the last snapshot when the node starts
+        private int loadThreads; // Threads decoding the snapshot on startup (0 = one per CPU core)
+    }
+
+    @Data
+    public static class OverflowProperties {
+        private boolean enabled; // Write entries evicted from memory to local disk and read them back on a miss
+        private String path; // Directory holding the overflow files; cleared on startup, must be distinct per node
+        private long maxBytes; // Disk space the tier may use; the oldest file is dropped beyond this
+        private long fileSizeBytes; // Size of each append-only file
+    }
+
+    @Data
+    public static class NearCacheProperties {
+        private boolean enabled; // Keep short-lived copies of values read from other nodes; enable on every node
+        private int maxEntries; // Copies kept, and keys whose readers an owner tracks for invalidation
+        private long ttlMillis; // Longest a copy is served after it was read from the owner
+    }
+
+    @Data
+    public static class StoreProperties {
+        private boolean enabled; // Read misses through, and write changes behind, to a backing store
+        private String type; // "file" (default) or a class implementing CacheLoader and/or CacheWriter
+        private String path; // Directory of the file store, or the string handed to a custom store's constructor
+        private int batchSize; // Changes handed to the writer at once
+        private long flushIntervalMillis; // Longest a change waits for a full batch; also the retry delay
+        private int maxPendingWrites; // Keys waiting to be written before further writes are rejected
+        private double refreshAheadFraction; // Reload a read key in the background once this much of its TTL has passed (0 = off)
+        private long staleWhileRevalidateMillis; // Serve a value this long past its TTL while it is reloaded (0 = off)
+    }
+
+    @Data
+    public static class ProtocolProperties {
+        private boolean enabled; // Serve the pipelined binary protocol on its own TCP port
+        private int port; // Port of the listener, beside the HTTP port
+        private int maxFrameBytes; // Largest request frame; a connection sending a bigger one is closed
+        private int maxInFlight; // Requests a connection may have outstanding before the node stops reading from it
+        private int threads; // Event loop threads serving connections (0 = one per CPU core)
+    }
+
+    @Data
+    public static class NamedCacheProperties {
+        private int maxEntries; // Maximum number of entries in this cache
+        private long maxBytes; // Byte budget for this cache; when > 0 it replaces the max-entries limit
+        private String policy; // Eviction policy, as for cache.capacity.policy
+        private long defaultTtlMillis; // TTL of writes that do not set one (0 = none)
+        private int replicationFactor; // Nodes holding each key (0 = cache.replication.factor)
+    }
 }
@@ -0,0 +1,88 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+
+/**
+ * Adaptive Replacement Cache. Resident keys are split between T1 (seen once recently) and T2 (seen at least twice).
+ * Ghost lists B1 and B2 remember the keys recently evicted from each; a miss that hits a ghost list shifts the target
+ * size of T1 towards the side that would have kept the key, so the policy balances recency and frequency by itself.
+ */
+final class ArcPolicy implements EvictionPolicy {
+    private final LinkedHashMap<String, Boolean> t1 = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Boolean> t2 = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashSet<String> b1 = new LinkedHashSet<>();
+    private final LinkedHashSet<String> b2 = new LinkedHashSet<>();
+    private final int capacity;
+    private int target; // Desired size of T1
+
+    ArcPolicy(int expectedEntries) {
+        this.capacity = Math.max(1, expectedEntries);
+    }
+
+    @Override
+    public void recordInsert(String key) {
+        if (b1.contains(key)) {
+            // Evicted from T1 too early: favour recency
+            target = Math.min(capacity, target + Math.max(1, b2.size() / b1.size()));
+            b1.remove(key);
+            t2.put(key, Boolean.TRUE);
+        } else if (b2.contains(key)) {
+            // Evicted from T2 too early: favour frequency
+            target = Math.max(0, target - Math.max(1, b1.size() / b2.size()));
+            b2.remove(key);
+            t2.put(key, Boolean.TRUE);
+        } else {
+            t1.put(key, Boolean.TRUE);
+        }
+    }
+
+    @Override
+    public void recordAccess(String key) {
+        if (t1.remove(key) != null) {
+            t2.put(key, Boolean.TRUE);
+        } else {
+            t2.get(key); // Moves the key to the most recently used end
+        }
+    }
+
+    @Override
+    public void recordRemoval(String key) {
+        if (t1.remove(key) == null) {
+            t2.remove(key);
+        }
+    }
+
+    @Override
+    public String evict() {
+        String victim;
+        if (!t1.isEmpty() && (t1.size() > target || t2.isEmpty())) {
+            victim = pollEldest(t1.keySet().iterator());
+            b1.add(victim);
+        } else if (!t2.isEmpty()) {
+            victim = pollEldest(t2.keySet().iterator());
+            b2.add(victim);
+        } else {
+            return null;
+        }
+        trimGhosts();
+        return victim;
+    }
+
+    // Keeps |T1| + |B1| <= c and the whole directory <= 2c
+    private void trimGhosts() {
+        while (!b1.isEmpty() && t1.size() + b1.size() > capacity) {
+            pollEldest(b1.iterator());
+        }
+        while ((!b1.isEmpty() || !b2.isEmpty()) && t1.size() + t2.size() + b1.size() + b2.size() > 2 * capacity) {
+            pollEldest(b2.isEmpty() ? b1.iterator() : b2.iterator());
+        }
+    }
+
+    private static String pollEldest(Iterator<String> it) {
+        String key = it.next();
+        it.remove();
+        return key;
+    }
+}
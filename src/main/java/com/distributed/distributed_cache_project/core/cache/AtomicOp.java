@@ -0,0 +1,60 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+/**
+ * A read-modify-write run on a key's primary owner under the key's write lock, so it costs one hop from any node and
+ * no other write to the key can land between its read and its write. Only the resulting value is replicated.
+ *
+ * Version stamps come from the entry the owner holds. Any write to the key, and the entry being reloaded after a
+ * restart or from the overflow tier, gives it a new stamp, so a stale stamp can make a CAS fail but never succeed.
+ */
+public enum AtomicOp {
+    /** Reads the value with its version stamp, for a later CAS. */
+    GETS("gets"),
+    /** Adds the operand to an integer value, starting from 0 if the key is absent; the TTL is kept. */
+    INCR("incr"),
+    /** Stores the value if the entry's stamp equals the operand; 0 matches an absent key. */
+    CAS("cas"),
+    /** Stores the value unless the key is present, in which case the present value is returned. */
+    PUT_IF_ABSENT("put-if-absent"),
+    /** Stores the value and returns the one it replaced. */
+    GET_AND_SET("get-and-set");
+
+    private final String param;
+
+    AtomicOp(String param) {
+        this.param = param;
+    }
+
+    /**
+     * The name used in {@code op=} query parameters.
+     */
+    public String param() {
+        return param;
+    }
+
+    /**
+     * Whether the operation takes a value to store.
+     */
+    public boolean storesValue() {
+        return this == CAS || this == PUT_IF_ABSENT || this == GET_AND_SET;
+    }
+
+    public static AtomicOp fromParam(String param) {
+        for (AtomicOp op : values()) {
+            if (op.param.equalsIgnoreCase(param)) {
+                return op;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation '" + param + "'.");
+    }
+
+    /**
+     * The outcome of an operation.
+     * @param applied whether it wrote the key; for GETS, whether the key was found
+     * @param value the value written by INCR, read by GETS, found by a failed PUT_IF_ABSENT, or replaced by
+     *              GET_AND_SET; otherwise null
+     * @param version the key's stamp afterwards, or 0 if it is absent
+     */
+    public record Result(boolean applied, CacheValue value, long version) {
+    }
+}
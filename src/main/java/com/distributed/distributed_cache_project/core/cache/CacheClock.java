@@ -0,0 +1,37 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Coarse wall clock shared by all caches. A daemon thread refreshes it every millisecond, so expiry checks on the
+ * hit path are a single volatile read instead of a call to {@link System#currentTimeMillis()}. Code outside the cache
+ * that compares times against entry deadlines should read this clock too, so both sides agree on what has expired.
+ */
+public final class CacheClock {
+    private static final long TICK_NANOS = 1_000_000L;
+
+    private static volatile long nowMillis = System.currentTimeMillis();
+
+    static {
+        Thread ticker = new Thread(CacheClock::tick, "cache-clock");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    private CacheClock() {
+    }
+
+    /**
+     * Current time in epoch milliseconds, at most about one tick behind.
+     */
+    public static long millis() {
+        return nowMillis;
+    }
+
+    private static void tick() {
+        while (true) {
+            nowMillis = System.currentTimeMillis();
+            LockSupport.parkNanos(TICK_NANOS);
+        }
+    }
+}
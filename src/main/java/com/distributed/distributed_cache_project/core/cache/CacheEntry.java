@@ -1,24 +1,58 @@
 package com.distributed.distributed_cache_project.core.cache;
 
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import lombok.Getter;
 
-@Data
-@AllArgsConstructor
-@NoArgsConstructor
+/**
+ * A cached value, its weight and its version stamp. Entries without a TTL are this class alone: an object header and
+ * three fields, 24 bytes with compressed oops. Entries with a TTL are {@link TimerNode}s, which add the deadline and the timing
+ * wheel links, so no entry pays for fields it does not use.
+ *
+ * Equality is identity, so a conditional remove such as {@code remove(key, entry)} only ever removes this exact entry.
+ */
+@Getter
 public class CacheEntry {
-    private Object value;
-    private long creationTimeMillis;
-    private long ttlMillis;
-    private long lastModifiedTimeMillis;
+    private final Object value;
+    private final int weight; // Estimated bytes, only tracked when cache.capacity.max-bytes is set
+    // Differs from the stamp of every other entry the key had on this node; fills what was padding, so costs nothing
+    private final int version;
 
-    public CacheEntry(Object value, long creationTimeMillis, long ttlMillis){
-        this(value,creationTimeMillis,ttlMillis,creationTimeMillis);
-    }// 0 for no expiration, or specific milliseconds
+    CacheEntry(Object value, int weight, int version) {
+        this.value = value;
+        this.weight = weight;
+        this.version = version;
+    }
+
+    /**
+     * @param expiresAtMillis last millisecond at which the entry is live, or 0 for no expiry
+     */
+    static CacheEntry create(String key, Object value, int weight, int version, long expiresAtMillis) {
+        return create(key, value, weight, version, expiresAtMillis, 0);
+    }
+
+    /**
+     * @param ttlMillis the TTL the entry was written with, or 0 if unknown (restored from disk)
+     */
+    static CacheEntry create(String key, Object value, int weight, int version, long expiresAtMillis, long ttlMillis) {
+        return expiresAtMillis > 0
+                ? new TimerNode(key, value, weight, version, expiresAtMillis, ttlMillis)
+                : new CacheEntry(value, weight, version);
+    }
+
+    public boolean isExpired(long nowMillis) {
+        return false;
+    }
 
-    public boolean isExpired(){
-        return ttlMillis > 0 && (System.currentTimeMillis() - creationTimeMillis) > ttlMillis;
+    /**
+     * Last millisecond at which the entry is live, or 0 if it never expires.
+     */
+    public long getExpiresAtMillis() {
+        return 0;
     }
 
+    /**
+     * The TTL the entry was written with, or 0 if it never expires or the TTL is unknown.
+     */
+    public long getTtlMillis() {
+        return 0;
+    }
 }
@@ -0,0 +1,458 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * One independently locked stripe of a {@link LocalCache}.
+ *
+ * Lookups go straight to an {@link EntryTable} and never block. The {@link EvictionPolicy} is kept separately
+ * and guarded by this segment's lock. Writes always take the lock. A hit is reported to the policy directly when the
+ * policy allows lock-free access recording, and otherwise only if the lock is free at that moment, so hot keys never
+ * make readers queue up.
+ * Entries with a TTL are also filed in a {@link TimerWheel}, which {@link #expire} advances to drop them near
+ * their deadline.
+ * With an {@link OverflowTier}, entries evicted for lack of room are written to it once the segment lock is released,
+ * so the disk write never holds up other keys. Each one is marked as pending under the lock; a put or delete of the
+ * key clears the mark, and the tier only takes the record while it is still set, so it never holds a key that is
+ * also in memory or has since been deleted.
+ * While a point-in-time snapshot is running, every write first preserves what the key held when the snapshot
+ * started, unless the snapshot has already written that key out; see {@link #snapshot}.
+ */
+final class CacheSegment {
+    private static final Logger log = LoggerFactory.getLogger(CacheSegment.class);
+
+    private final EntryTable data = new EntryTable();
+    private final EvictionPolicy policy;
+    private final boolean lockFreeAccess;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final int maxEntries;
+    private final long maxBytes; // 0 when the segment is bounded by entry count only
+    private final ValueStorage storage;
+    private final OverflowTier overflow; // Null when evicted entries are dropped
+    private final TimerWheel timerWheel = new TimerWheel(CacheClock.millis());
+    private long weightedSize; // Sum of entry weights; guarded by lock, volatile for the admin stats
+    private volatile long weightedSizeSnapshot;
+    // Maintained under the lock on every insert and removal so size() never has to walk the map
+    private volatile int count;
+    private volatile long evictionCount;
+    private volatile long expirationCount;
+    private volatile Capture capture; // Set while a point-in-time snapshot is running
+    private final Map<String, Spill> spilling = new ConcurrentHashMap<>(); // Evicted keys not yet written to the tier
+    private final Queue<Spill> spilled = new ConcurrentLinkedQueue<>(); // Written by whichever caller unlocks next
+
+    /**
+     * Copy-on-write state of one snapshot. Maps a key to what it held when the snapshot started ({@link Preserved} or
+     * {@link #ABSENT}), or to {@link #WRITTEN} once the snapshot has visited it.
+     */
+    private static final class Capture {
+        static final Object ABSENT = new Object();
+        static final Object WRITTEN = new Object();
+        final Map<String, Object> keys = new ConcurrentHashMap<>();
+    }
+
+    // An evicted entry on its way to the overflow tier; identity tells a newer eviction of the same key apart
+    private static final class Spill {
+        final String key;
+        final Object value;
+        final long expiresAtMillis;
+
+        Spill(String key, Object value, long expiresAtMillis) {
+            this.key = key;
+            this.value = value;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+
+    // An entry's value as the snapshot must see it; off-heap values are copied, as their memory is reused on release
+    private record Preserved(Object value, boolean loaded, long expiresAtMillis) {
+    }
+
+    /**
+     * @param maxEntries entry limit; also the expected entry count the policy was sized for
+     * @param maxBytes   byte budget, or 0 to bound the segment by entry count
+     * @param overflow   where evicted entries go, or null
+     */
+    CacheSegment(int maxEntries, long maxBytes, EvictionPolicy policy, ValueStorage storage, OverflowTier overflow) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.policy = policy;
+        this.lockFreeAccess = policy.isAccessLockFree();
+        this.storage = storage;
+        this.overflow = overflow;
+    }
+
+    /**
+     * Returns the entry for the key, or null. Does not check expiry; that is up to the caller.
+     */
+    CacheEntry get(String key) {
+        CacheEntry entry = data.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (lockFreeAccess) {
+            policy.recordAccess(key);
+        } else if (lock.tryLock()) {
+            // Under contention the bookkeeping is skipped: the order becomes approximate, but the hit stays lock-free.
+            try {
+                policy.recordAccess(key);
+            } finally {
+                lock.unlock();
+            }
+        }
+        return entry;
+    }
+
+    void put(String key, CacheEntry entry) {
+        if (maxBytes > 0 && entry.getWeight() > maxBytes) {
+            // Admitting it would flush the whole segment and still not fit
+            storage.release(entry.getValue());
+            throw new IllegalArgumentException("Entry for key '" + key + "' weighs " + entry.getWeight()
+                    + " bytes, more than the per-segment budget of " + maxBytes + " bytes.");
+        }
+        lock.lock();
+        try {
+            preserve(key);
+            if (overflow != null) {
+                spilling.remove(key);
+                overflow.invalidate(key);
+            }
+            CacheEntry previous = data.put(key, entry);
+            if (previous == null) {
+                count++;
+            }
+            addWeight(entry.getWeight());
+            if (entry instanceof TimerNode node) {
+                timerWheel.schedule(node);
+            }
+            if (previous == null) {
+                policy.recordInsert(key);
+            } else {
+                policy.recordAccess(key);
+            }
+            if (previous != null) {
+                discard(previous);
+            }
+            evictIfNeeded();
+        } finally {
+            lock.unlock();
+        }
+        appendSpills();
+    }
+
+    CacheEntry remove(String key) {
+        lock.lock();
+        try {
+            preserve(key);
+            if (overflow != null) {
+                spilling.remove(key);
+                overflow.invalidate(key);
+            }
+            CacheEntry removed = data.remove(key);
+            if (removed != null) {
+                unmapped(key, removed);
+            }
+            return removed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Moves an entry read from the overflow tier back into memory, unless the key has been written, deleted or
+     * promoted by another caller since it was read. Returns false in that case; the caller then releases the entry.
+     */
+    boolean promote(String key, CacheEntry entry, OverflowTier.Location location) {
+        lock.lock();
+        try {
+            if (data.get(key) != null || !overflow.remove(key, location)) {
+                return false;
+            }
+            preserve(key);
+            data.put(key, entry);
+            count++;
+            addWeight(entry.getWeight());
+            if (entry instanceof TimerNode node) {
+                timerWheel.schedule(node);
+            }
+            policy.recordInsert(key);
+            evictIfNeeded();
+            return true;
+        } finally {
+            lock.unlock();
+            appendSpills();
+        }
+    }
+
+    /**
+     * Removes an entry the caller found expired, but only if the key is still mapped to it, so a concurrent put is
+     * never undone.
+     */
+    boolean removeExpired(String key, CacheEntry expected) {
+        lock.lock();
+        try {
+            preserve(key);
+            if (data.remove(key, expected)) {
+                unmapped(key, expected);
+                expirationCount++;
+                return true;
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * True if the key is still mapped to exactly this entry. Used to validate lock-free reads of off-heap values.
+     */
+    boolean isCurrent(String key, CacheEntry entry) {
+        return data.get(key) == entry;
+    }
+
+    /**
+     * Evicts the key if its entry still holds exactly this stored value. Used by value storage to drain memory;
+     * a key that has since been rewritten elsewhere is left alone.
+     */
+    void evictIfStored(String key, Object stored) {
+        lock.lock();
+        try {
+            CacheEntry entry = data.get(key);
+            if (entry != null && stored.equals(entry.getValue())) {
+                preserve(key);
+                data.remove(key);
+                spill(key, entry);
+                unmapped(key, entry);
+                evictionCount++;
+                log.debug("Evicted key '{}' to free storage memory.", key);
+            }
+        } finally {
+            lock.unlock();
+        }
+        appendSpills();
+    }
+
+    int size() {
+        return count;
+    }
+
+    long evictionCount() {
+        return evictionCount;
+    }
+
+    long expirationCount() {
+        return expirationCount;
+    }
+
+    long weightedSize() {
+        return weightedSizeSnapshot;
+    }
+
+    /**
+     * Weakly consistent view of the segment's entries; safe to iterate without holding the lock.
+     */
+    Iterable<Map.Entry<String, CacheEntry>> entries() {
+        return data.entries();
+    }
+
+    /**
+     * Passes the entries of up to {@code buckets} hash buckets to the sink, without the segment lock; see
+     * {@link EntryTable#scan}. Returns the cursor to continue from, 0 once the segment is done.
+     */
+    int scan(int cursor, int buckets, BiConsumer<String, CacheEntry> sink) {
+        return data.scan(cursor, buckets, sink);
+    }
+
+    /**
+     * Advances the timing wheel to {@code nowMillis} and removes up to {@code maxRemovals} of the entries whose
+     * deadline has passed. Only due buckets are visited, so the cost follows the number of expiring entries, not the
+     * segment size. Returns the number of entries removed; when that equals {@code maxRemovals}, more may be due.
+     */
+    int expire(long nowMillis, int maxRemovals) {
+        int expired = 0;
+        lock.lock();
+        try {
+            timerWheel.advance(nowMillis);
+            TimerNode node;
+            while (expired < maxRemovals && (node = timerWheel.pollExpired()) != null) {
+                preserve(node.getKey());
+                if (data.remove(node.getKey(), node)) {
+                    unmapped(node.getKey(), node);
+                    expirationCount++;
+                    expired++;
+                    log.debug("Expired key '{}' from the timing wheel.", node.getKey());
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return expired;
+    }
+
+    /**
+     * Blocks writes to this segment until {@link #unlockWrites()}. Used to start a snapshot in every segment at the
+     * same instant.
+     */
+    void lockWrites() {
+        lock.lock();
+    }
+
+    void unlockWrites() {
+        lock.unlock();
+    }
+
+    /**
+     * Starts preserving the segment's current contents for {@link #snapshot}. The caller holds {@link #lockWrites()}.
+     */
+    void startCapture() {
+        capture = new Capture();
+    }
+
+    /**
+     * Stops preserving entries for the running snapshot, if any.
+     */
+    void endCapture() {
+        lock.lock();
+        try {
+            capture = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Visits every entry the segment held when {@link #startCapture()} was called, skipping those already expired at
+     * {@code atMillis}, then ends the capture. Writes carry on meanwhile.
+     *
+     * The table is walked without the lock. A key no write has touched since the capture started still holds its
+     * original entry, so the walk claims the key and visits that entry; from then on writes to it preserve nothing.
+     * A key that was written first has its original entry preserved by the writer, and is visited from there once the
+     * walk is done. Either way each key is visited once, with what it held at the start.
+     */
+    int snapshot(long atMillis, LocalCache.EntryVisitor visitor) {
+        Capture c = capture;
+        int visited = 0;
+        try {
+            for (Map.Entry<String, CacheEntry> e : data.pinnedEntries()) {
+                String key = e.getKey();
+                CacheEntry entry = e.getValue();
+                if (c.keys.containsKey(key) || entry.isExpired(atMillis)) {
+                    continue;
+                }
+                // Read before claiming: once claimed, a writer may release the value's memory without preserving it
+                Object value = storage.load(entry.getValue(), () -> isCurrent(key, entry));
+                if (c.keys.putIfAbsent(key, Capture.WRITTEN) == null && value != ValueStorage.RECYCLED) {
+                    visitor.visit(key, value, entry.getExpiresAtMillis());
+                    visited++;
+                }
+            }
+        } finally {
+            endCapture();
+        }
+        for (Map.Entry<String, Object> e : c.keys.entrySet()) {
+            if (e.getValue() instanceof Preserved p && (p.expiresAtMillis() == 0 || p.expiresAtMillis() >= atMillis)) {
+                visitor.visit(e.getKey(), p.loaded() ? p.value() : storage.load(p.value(), () -> true), p.expiresAtMillis());
+                visited++;
+            }
+        }
+        return visited;
+    }
+
+    // Writes the queued evictions to the overflow tier; called without the lock
+    private void appendSpills() {
+        Spill spill;
+        while ((spill = spilled.poll()) != null) {
+            Spill s = spill;
+            overflow.append(s.key, s.value, s.expiresAtMillis, () -> spilling.get(s.key) == s);
+            spilling.remove(s.key, s);
+        }
+    }
+
+    // The methods below must be called with the lock held.
+
+    // Records what the key holds before its first change since the running snapshot started
+    private void preserve(String key) {
+        Capture c = capture;
+        if (c == null || c.keys.containsKey(key)) {
+            return;
+        }
+        CacheEntry entry = data.get(key);
+        Object original = Capture.ABSENT;
+        if (entry != null) {
+            Object stored = entry.getValue();
+            original = stored instanceof OffHeapRef
+                    ? new Preserved(storage.load(stored, () -> true), true, entry.getExpiresAtMillis())
+                    : new Preserved(stored, false, entry.getExpiresAtMillis());
+        }
+        c.keys.putIfAbsent(key, original);
+    }
+
+    // Bookkeeping for a key whose entry has just been removed from the data map
+    private void unmapped(String key, CacheEntry entry) {
+        count--;
+        policy.recordRemoval(key);
+        discard(entry);
+    }
+
+    // Queues an entry evicted for lack of room for the overflow tier, copying its value before the memory is released
+    private void spill(String key, CacheEntry entry) {
+        if (overflow != null && !entry.isExpired(CacheClock.millis())) {
+            Spill spill = new Spill(key, storage.load(entry.getValue(), () -> true), entry.getExpiresAtMillis());
+            spilling.put(key, spill);
+            spilled.add(spill);
+        }
+    }
+
+    // Releases everything an entry holds once it has left the data map
+    private void discard(CacheEntry entry) {
+        addWeight(-entry.getWeight());
+        if (entry instanceof TimerNode node) {
+            timerWheel.deschedule(node);
+        }
+        storage.release(entry.getValue());
+    }
+
+    private void addWeight(long delta) {
+        weightedSize += delta;
+        weightedSizeSnapshot = weightedSize;
+    }
+
+    private void evictIfNeeded() {
+        if (maxBytes > 0) {
+            while (weightedSize > maxBytes && evict()) {
+                // Keep evicting until the segment fits its byte budget
+            }
+        } else {
+            while (count > maxEntries && evict()) {
+                // Keep evicting until the segment fits its entry limit
+            }
+        }
+    }
+
+    private boolean evict() {
+        // May be the key that was just inserted, when the policy refuses to admit it
+        String victim = policy.evict();
+        if (victim == null) {
+            log.warn("Eviction policy has no key left to evict, but the segment is over capacity ({} entries).", count);
+            return false;
+        }
+        log.debug("Evicting key '{}' chosen by the eviction policy (segment max entries {}, max bytes {}).",
+                victim, maxEntries, maxBytes);
+        preserve(victim);
+        CacheEntry evicted = data.remove(victim);
+        if (evicted != null) {
+            count--;
+            evictionCount++;
+            spill(victim, evicted);
+            discard(evicted);
+        }
+        return true;
+    }
+}
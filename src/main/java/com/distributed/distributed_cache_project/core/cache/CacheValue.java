@@ -0,0 +1,63 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A value exactly as a client sent it: the raw bytes and their media type. The cache never parses or re-encodes
+ * it, so reads, forwards and replication copy the bytes through unchanged.
+ *
+ * Equality is identity, like {@link CacheEntry}; compare {@link #bytes()} explicitly where content matters.
+ */
+public record CacheValue(byte[] bytes, String contentType) {
+    public static final String JSON = "application/json";
+    public static final String TEXT = "text/plain;charset=UTF-8";
+    public static final String BINARY = "application/octet-stream";
+    private static final String[] COMMON_TYPES = {JSON, TEXT, BINARY};
+
+    public CacheValue {
+        if (bytes == null) {
+            throw new IllegalArgumentException("Cache value bytes must not be null.");
+        }
+        contentType = canonical(contentType);
+    }
+
+    public static CacheValue ofText(String text) {
+        return new CacheValue(text.getBytes(StandardCharsets.UTF_8), TEXT);
+    }
+
+    public boolean isJson() {
+        return contentType.equals(JSON) || contentType.startsWith(JSON + ";") || contentType.endsWith("+json");
+    }
+
+    public boolean isText() {
+        return contentType.startsWith("text/");
+    }
+
+    // Reuses the shared instance for the common types, so entries do not each hold their own copy of the string
+    private static String canonical(String contentType) {
+        if (contentType == null || contentType.isBlank()) {
+            return BINARY;
+        }
+        for (String common : COMMON_TYPES) {
+            if (common.equalsIgnoreCase(contentType)) {
+                return common;
+            }
+        }
+        return contentType;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(this);
+    }
+
+    @Override
+    public String toString() {
+        return "CacheValue[" + bytes.length + " bytes, " + contentType + "]";
+    }
+}
@@ -0,0 +1,90 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * CLOCK (second chance): keys sit on a ring swept by a hand. A hit only sets the key's reference bit, so it needs no
+ * lock; the hand clears set bits as it passes and evicts the first key whose bit is already clear.
+ */
+final class ClockPolicy implements EvictionPolicy {
+    private final ConcurrentHashMap<String, Node> index = new ConcurrentHashMap<>();
+    private Node hand; // Next key to inspect; new keys go just behind it, so they get a full sweep
+
+    @Override
+    public void recordInsert(String key) {
+        Node node = new Node(key);
+        Node previous = index.put(key, node);
+        if (previous != null) {
+            unlink(previous);
+        }
+        if (hand == null) {
+            node.prev = node;
+            node.next = node;
+            hand = node;
+        } else {
+            node.prev = hand.prev;
+            node.next = hand;
+            hand.prev.next = node;
+            hand.prev = node;
+        }
+    }
+
+    @Override
+    public void recordAccess(String key) {
+        Node node = index.get(key);
+        if (node != null) {
+            node.referenced = true;
+        }
+    }
+
+    @Override
+    public void recordRemoval(String key) {
+        Node node = index.remove(key);
+        if (node != null) {
+            unlink(node);
+        }
+    }
+
+    @Override
+    public String evict() {
+        if (hand == null) {
+            return null;
+        }
+        while (hand.referenced) {
+            hand.referenced = false;
+            hand = hand.next;
+        }
+        Node victim = hand;
+        index.remove(victim.key);
+        unlink(victim);
+        return victim.key;
+    }
+
+    @Override
+    public boolean isAccessLockFree() {
+        return true;
+    }
+
+    private void unlink(Node node) {
+        if (node.next == node) {
+            hand = null;
+            return;
+        }
+        if (hand == node) {
+            hand = node.next;
+        }
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+    }
+
+    private static final class Node {
+        final String key;
+        volatile boolean referenced;
+        Node prev;
+        Node next;
+
+        Node(String key) {
+            this.key = key;
+        }
+    }
+}
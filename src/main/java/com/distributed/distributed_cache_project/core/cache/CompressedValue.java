@@ -0,0 +1,8 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+/**
+ * Stored form of a value that was deflated on put. {@code bytes} inflate to {@code originalLength} bytes of
+ * {@link ValueCodec} encoding.
+ */
+record CompressedValue(byte[] bytes, int originalLength) {
+}
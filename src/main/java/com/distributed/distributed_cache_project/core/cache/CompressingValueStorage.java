@@ -0,0 +1,81 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Sits in front of another {@link ValueStorage} and deflates values over the compression threshold before they are
+ * stored. Values are inflated again on every read, so nothing but the compressed form is kept.
+ */
+final class CompressingValueStorage implements ValueStorage {
+    private static final Logger log = LoggerFactory.getLogger(CompressingValueStorage.class);
+
+    private final ValueStorage delegate;
+    private final ValueCompressor compressor;
+
+    CompressingValueStorage(ValueStorage delegate, ValueCompressor compressor) {
+        this.delegate = delegate;
+        this.compressor = compressor;
+    }
+
+    @Override
+    public Object store(String key, Object value, long expiresAtMillis) {
+        Object form = value;
+        // Small values skip encoding entirely
+        if (compressor.mayCompress(value)) {
+            try {
+                byte[] raw = ValueCodec.encode(value);
+                byte[] deflated = compressor.compress(raw);
+                if (deflated != null) {
+                    form = new CompressedValue(deflated, raw.length);
+                }
+            } catch (IllegalArgumentException e) {
+                log.debug("Storing key '{}' uncompressed: {}", key, e.getMessage());
+            }
+        }
+        return delegate.store(key, form, expiresAtMillis);
+    }
+
+    @Override
+    public Object load(Object stored, BooleanSupplier stillCurrent) {
+        Object value = delegate.load(stored, stillCurrent);
+        if (value instanceof CompressedValue c) {
+            return ValueCodec.decode(compressor.decompress(c.bytes(), c.originalLength()));
+        }
+        return value;
+    }
+
+    @Override
+    public void release(Object stored) {
+        delegate.release(stored);
+    }
+
+    @Override
+    public int weigh(String key, Object value, Object stored) {
+        // On the heap the stored form is what occupies memory; off-heap storage weighs its chunk regardless
+        return delegate.weigh(key, stored instanceof CompressedValue ? stored : value, stored);
+    }
+
+    @Override
+    public boolean reclaim(BiConsumer<String, Object> evictIfStored) {
+        return delegate.reclaim(evictIfStored);
+    }
+
+    @Override
+    public long usedBytes() {
+        return delegate.usedBytes();
+    }
+
+    @Override
+    public void recover(RecoveredEntryConsumer consumer) {
+        delegate.recover(consumer); // Stored forms stay compressed until they are loaded
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+}
@@ -0,0 +1,301 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Open-addressing hash table from keys to entries, used as a {@link CacheSegment}'s data map.
+ *
+ * Keys, their precomputed hashes and entries live in three parallel arrays probed linearly, so a mapping costs about
+ * 16 bytes of array slots instead of a 32-byte map node plus its bucket. Lookups hash with the key's cached
+ * {@link String#hashCode()} and allocate nothing.
+ *
+ * Writers must be serialized by the caller (the segment lock). Reads take no lock: they run as optimistic reads of a
+ * {@link StampedLock} and fall back to its read lock only if a write overlapped them.
+ */
+final class EntryTable {
+    private static final int FREE = 0;
+    private static final int REMOVED = 1; // Tombstone; keeps probe chains through the slot intact
+    private static final int MIN_CAPACITY = 16;
+    private static final int ITERATION_CHUNK = 256; // Slots copied per read lock hold while iterating
+
+    private final StampedLock lock = new StampedLock();
+    private volatile Slots slots = new Slots(MIN_CAPACITY);
+    private int size;
+    private int removed;
+
+    /**
+     * One generation of the table. A resize publishes a new instance, so a reader that holds one never sees its
+     * arrays change length.
+     */
+    private static final class Slots {
+        final int[] hashes;
+        final String[] keys;
+        final CacheEntry[] entries;
+
+        Slots(int capacity) {
+            hashes = new int[capacity];
+            keys = new String[capacity];
+            entries = new CacheEntry[capacity];
+        }
+    }
+
+    CacheEntry get(String key) {
+        int hash = hash(key);
+        long stamp = lock.tryOptimisticRead();
+        CacheEntry entry = find(slots, key, hash);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                entry = find(slots, key, hash);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Maps the key to the entry and returns the entry it replaced, or null.
+     */
+    CacheEntry put(String key, CacheEntry entry) {
+        int hash = hash(key);
+        long stamp = lock.writeLock();
+        try {
+            Slots s = slots;
+            int mask = s.hashes.length - 1;
+            int target = -1;
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                int h = s.hashes[i];
+                if (h == FREE) {
+                    if (target < 0) {
+                        target = i;
+                    }
+                    break;
+                }
+                if (h == REMOVED) {
+                    if (target < 0) {
+                        target = i; // Reuse the first tombstone, once we know the key is not further down
+                    }
+                } else if (h == hash && key.equals(s.keys[i])) {
+                    CacheEntry previous = s.entries[i];
+                    s.entries[i] = entry;
+                    return previous;
+                }
+            }
+            if (s.hashes[target] == REMOVED) {
+                removed--;
+            }
+            s.keys[target] = key;
+            s.entries[target] = entry;
+            s.hashes[target] = hash;
+            size++;
+            if ((size + removed) * 4L > s.hashes.length * 3L) {
+                // Grow when live keys fill half the table; otherwise tombstones are the problem and a rebuild clears them
+                rehash(size * 2 > s.hashes.length ? s.hashes.length * 2 : s.hashes.length);
+            }
+            return null;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    CacheEntry remove(String key) {
+        return removeMatching(key, null);
+    }
+
+    /**
+     * Removes the key only if it maps to exactly {@code expected}. Returns true if it was removed.
+     */
+    boolean remove(String key, CacheEntry expected) {
+        return removeMatching(key, expected) != null;
+    }
+
+    /**
+     * Weakly consistent view of the mappings. Slots are copied a chunk at a time under the read lock, so a long
+     * iteration never blocks writers for more than one chunk; mappings changed meanwhile may or may not be seen.
+     */
+    Iterable<Map.Entry<String, CacheEntry>> entries() {
+        return () -> new ChunkIterator(null);
+    }
+
+    /**
+     * Like {@link #entries()}, but stays on the generation of slots that is current when iteration starts. A resize
+     * leaves that generation as it was, so every mapping not changed during the iteration is seen exactly once; a
+     * mapping changed meanwhile may be seen with its old or new entry, or twice.
+     */
+    Iterable<Map.Entry<String, CacheEntry>> pinnedEntries() {
+        return () -> new ChunkIterator(slots);
+    }
+
+    /**
+     * Passes the mappings of up to {@code buckets} home buckets, starting at the cursor, to the sink and returns the
+     * cursor to continue from; 0 starts a scan and is returned once every bucket has been visited.
+     *
+     * As in Redis's SCAN, the cursor counts through bucket indexes with their bits reversed. Growing the table splits
+     * a bucket into two that both come later in that order, so a mapping present for the whole scan is passed at
+     * least once however often the table is resized meanwhile, and possibly twice. The sink runs under the read lock.
+     */
+    int scan(int cursor, int buckets, BiConsumer<String, CacheEntry> sink) {
+        long stamp = lock.readLock();
+        try {
+            Slots s = slots;
+            int mask = s.hashes.length - 1;
+            for (int visited = 0; visited < buckets; visited++) {
+                int bucket = cursor & mask;
+                // A key's slot is its home bucket or further down the probe run that starts there
+                for (int i = bucket, probes = 0; probes < s.hashes.length; i = (i + 1) & mask, probes++) {
+                    int h = s.hashes[i];
+                    if (h == FREE) {
+                        break;
+                    }
+                    if (h != REMOVED && (h & mask) == bucket) {
+                        sink.accept(s.keys[i], s.entries[i]);
+                    }
+                }
+                cursor = Integer.reverse(Integer.reverse(cursor | ~mask) + 1);
+                if (cursor == 0) {
+                    break;
+                }
+            }
+            return cursor;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Removes the key if it maps to expected, or to anything when expected is null; returns the removed entry
+    private CacheEntry removeMatching(String key, CacheEntry expected) {
+        int hash = hash(key);
+        long stamp = lock.writeLock();
+        try {
+            Slots s = slots;
+            int mask = s.hashes.length - 1;
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                int h = s.hashes[i];
+                if (h == FREE) {
+                    return null;
+                }
+                if (h == hash && key.equals(s.keys[i])) {
+                    CacheEntry current = s.entries[i];
+                    if (expected != null && current != expected) {
+                        return null;
+                    }
+                    s.hashes[i] = REMOVED;
+                    s.keys[i] = null;
+                    s.entries[i] = null;
+                    size--;
+                    removed++;
+                    return current;
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Must hold the write lock
+    private void rehash(int capacity) {
+        Slots old = slots;
+        Slots s = new Slots(capacity);
+        int mask = capacity - 1;
+        for (int j = 0; j < old.hashes.length; j++) {
+            int h = old.hashes[j];
+            if (h == FREE || h == REMOVED) {
+                continue;
+            }
+            int i = h & mask;
+            while (s.hashes[i] != FREE) {
+                i = (i + 1) & mask;
+            }
+            s.hashes[i] = h;
+            s.keys[i] = old.keys[j];
+            s.entries[i] = old.entries[j];
+        }
+        removed = 0;
+        slots = s;
+    }
+
+    /**
+     * Probes for the key. Safe to run while a writer changes the slots: the probe is bounded by the table length and
+     * tolerates half-written slots, and the caller discards the result unless the read is validated.
+     */
+    private static CacheEntry find(Slots s, String key, int hash) {
+        int[] hashes = s.hashes;
+        int mask = hashes.length - 1;
+        int i = hash & mask;
+        for (int probes = 0; probes < hashes.length; probes++, i = (i + 1) & mask) {
+            int h = hashes[i];
+            if (h == FREE) {
+                return null;
+            }
+            if (h == hash && key.equals(s.keys[i])) {
+                return s.entries[i];
+            }
+        }
+        return null;
+    }
+
+    // Spreads String.hashCode() and keeps clear of the FREE and REMOVED markers
+    static int hash(String key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h == FREE || h == REMOVED ? h + 2 : h;
+    }
+
+    private final class ChunkIterator implements Iterator<Map.Entry<String, CacheEntry>> {
+        private final List<Map.Entry<String, CacheEntry>> chunk = new ArrayList<>(ITERATION_CHUNK);
+        private final Slots pinned; // Null to follow the table across resizes
+        private int chunkIndex;
+        private int nextSlot;
+        private boolean exhausted;
+
+        ChunkIterator(Slots pinned) {
+            this.pinned = pinned;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (chunkIndex == chunk.size() && !exhausted) {
+                fill();
+            }
+            return chunkIndex < chunk.size();
+        }
+
+        @Override
+        public Map.Entry<String, CacheEntry> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return chunk.get(chunkIndex++);
+        }
+
+        private void fill() {
+            chunk.clear();
+            chunkIndex = 0;
+            long stamp = lock.readLock();
+            try {
+                // After a resize this continues at the same index of the new table, which is what makes it weak
+                Slots s = pinned != null ? pinned : slots;
+                int end = Math.min(nextSlot + ITERATION_CHUNK, s.hashes.length);
+                for (int i = nextSlot; i < end; i++) {
+                    if (s.hashes[i] != FREE && s.hashes[i] != REMOVED) {
+                        chunk.add(new AbstractMap.SimpleImmutableEntry<>(s.keys[i], s.entries[i]));
+                    }
+                }
+                nextSlot = end;
+                exhausted = end >= s.hashes.length;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Estimates how many bytes an entry costs, for byte-weighted capacity limits.
+ *
+ * The estimate is the entry's serialized size (key as UTF-8, value as its raw bytes or compact JSON) plus a fixed overhead for the
+ * entry object and its map node. It walks the value once and allocates nothing.
+ */
+final class EntryWeigher {
+    static final int ENTRY_OVERHEAD_BYTES = 64;
+    private static final int SCALAR_BYTES = 8;
+
+    private EntryWeigher() {
+    }
+
+    static int weigh(String key, Object value) {
+        long weight = ENTRY_OVERHEAD_BYTES + utf8Length(key) + valueWeight(value);
+        return (int) Math.min(Integer.MAX_VALUE, weight);
+    }
+
+    /**
+     * Estimated size of the value alone, as its raw bytes or compact JSON.
+     */
+    static long valueWeight(Object value) {
+        if (value == null) {
+            return 4;
+        }
+        if (value instanceof CompressedValue c) {
+            return c.bytes().length;
+        }
+        if (value instanceof CacheValue v) {
+            return v.bytes().length + v.contentType().length();
+        }
+        if (value instanceof String s) {
+            return utf8Length(s) + 2;
+        }
+        if (value instanceof byte[] bytes) {
+            return bytes.length;
+        }
+        if (value instanceof Map<?, ?> map) {
+            long weight = 2;
+            for (Map.Entry<?, ?> e : map.entrySet()) {
+                weight += valueWeight(e.getKey()) + valueWeight(e.getValue()) + 2;
+            }
+            return weight;
+        }
+        if (value instanceof Collection<?> collection) {
+            long weight = 2;
+            for (Object element : collection) {
+                weight += valueWeight(element) + 1;
+            }
+            return weight;
+        }
+        if (value instanceof Number || value instanceof Boolean || value instanceof Character) {
+            return SCALAR_BYTES;
+        }
+        return utf8Length(value.toString());
+    }
+
+    static int utf8Length(String s) {
+        int length = s.length();
+        int bytes = length;
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x800) {
+                bytes += Character.isSurrogate(c) ? 1 : 2; // A surrogate pair is 4 bytes in total
+            } else if (c >= 0x80) {
+                bytes += 1;
+            }
+        }
+        return bytes;
+    }
+}
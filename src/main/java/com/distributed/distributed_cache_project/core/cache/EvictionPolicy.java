@@ -0,0 +1,81 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+import java.lang.reflect.Constructor;
+import java.util.Locale;
+
+/**
+ * Decides which key a {@link CacheSegment} drops when it is over capacity. Each segment owns its own instance.
+ *
+ * The segment calls every method under its lock, except {@link #recordAccess} on policies whose
+ * {@link #isAccessLockFree()} returns true: those get hits reported straight from the lock-free read path, so a hit
+ * never waits for a writer. Policies that only flip a flag on a hit (FIFO, CLOCK, SIEVE) should take that route.
+ *
+ * Built-in policies are chosen by name with {@code cache.capacity.policy}. Any other value is treated as the
+ * fully-qualified name of a class implementing this interface with a public {@code (int expectedEntries)} constructor.
+ */
+public interface EvictionPolicy {
+
+    /**
+     * A key was added to the segment.
+     */
+    void recordInsert(String key);
+
+    /**
+     * A key already in the segment was read or overwritten.
+     */
+    void recordAccess(String key);
+
+    /**
+     * A key left the segment for a reason other than {@link #evict()}: delete, expiry or storage reclaim.
+     */
+    void recordRemoval(String key);
+
+    /**
+     * Chooses a victim, forgets it, and returns it; null if the policy tracks no keys. The victim may be the key that
+     * was just inserted, if the policy refuses to admit it.
+     */
+    String evict();
+
+    /**
+     * True if {@link #recordAccess} is safe to call concurrently with itself and with the other methods.
+     */
+    default boolean isAccessLockFree() {
+        return false;
+    }
+
+    static EvictionPolicy create(String name, int expectedEntries) {
+        String policy = name == null || name.isBlank() ? "lru" : name.trim();
+        switch (policy.toLowerCase(Locale.ROOT)) {
+            case "lru":
+                return new LruPolicy();
+            case "lfu":
+                return new LfuPolicy();
+            case "fifo":
+                return new FifoPolicy();
+            case "clock":
+                return new ClockPolicy();
+            case "sieve":
+                return new SievePolicy();
+            case "arc":
+                return new ArcPolicy(expectedEntries);
+            case "tiny-lfu":
+                return new TinyLfuPolicy(expectedEntries);
+            default:
+                return load(policy, expectedEntries);
+        }
+    }
+
+    private static EvictionPolicy load(String className, int expectedEntries) {
+        try {
+            Class<?> type = Class.forName(className);
+            if (!EvictionPolicy.class.isAssignableFrom(type)) {
+                throw new IllegalArgumentException("Class " + className + " does not implement EvictionPolicy.");
+            }
+            Constructor<?> constructor = type.getConstructor(int.class);
+            return (EvictionPolicy) constructor.newInstance(expectedEntries);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Unknown cache eviction policy '" + className
+                    + "'. Use lru, lfu, fifo, clock, sieve, arc, tiny-lfu or a class name.", e);
+        }
+    }
+}
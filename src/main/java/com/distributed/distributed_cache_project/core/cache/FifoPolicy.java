@@ -0,0 +1,42 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+/**
+ * First in, first out: evicts the oldest insert regardless of reads. Hits cost nothing.
+ */
+final class FifoPolicy implements EvictionPolicy {
+    private final LinkedHashSet<String> order = new LinkedHashSet<>();
+
+    @Override
+    public void recordInsert(String key) {
+        order.add(key);
+    }
+
+    @Override
+    public void recordAccess(String key) {
+        // Reads do not change insertion order
+    }
+
+    @Override
+    public void recordRemoval(String key) {
+        order.remove(key);
+    }
+
+    @Override
+    public String evict() {
+        Iterator<String> it = order.iterator();
+        if (!it.hasNext()) {
+            return null;
+        }
+        String victim = it.next();
+        it.remove();
+        return victim;
+    }
+
+    @Override
+    public boolean isAccessLockFree() {
+        return true;
+    }
+}
@@ -0,0 +1,81 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+/**
+ * Count-min sketch of recent key accesses with 4-bit counters, used by the TinyLFU admission filter.
+ *
+ * Sixteen counters are packed into each long and every key maps to four of them; its estimated frequency is the
+ * smallest of the four. Once the number of recorded accesses reaches ten times the table's capacity every counter is
+ * halved, so the sketch tracks recent popularity instead of all-time totals.
+ */
+final class FrequencySketch {
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int MAX_COUNT = 15;
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+    private final long[] table;
+    private final int counterMask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int expectedEntries) {
+        // One long (16 counters) per expected entry, rounded up to a power of two, keeps collisions rare enough
+        // that a burst of one-off keys does not inflate the estimates of everything else
+        int longs = Integer.highestOneBit(Math.max(2, expectedEntries) - 1) << 1;
+        this.table = new long[longs];
+        this.counterMask = (longs << 4) - 1;
+        this.sampleSize = 10 * Math.max(1, expectedEntries);
+    }
+
+    int frequency(String key) {
+        int hash = spread(key.hashCode());
+        int min = MAX_COUNT;
+        for (int i = 0; i < SEEDS.length; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index >>> 4] >>> ((index & 15) << 2)) & 0xfL);
+            min = Math.min(min, count);
+        }
+        return min;
+    }
+
+    void increment(String key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            added |= incrementAt(indexOf(hash, i));
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(int index) {
+        int slot = index >>> 4;
+        int shift = (index & 15) << 2;
+        if (((table[slot] >>> shift) & 0xfL) < MAX_COUNT) {
+            table[slot] += 1L << shift;
+            return true;
+        }
+        return false;
+    }
+
+    // Halves every counter, which ages out keys that were popular a long time ago
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions >>>= 1;
+    }
+
+    private int indexOf(int hash, int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+        return (int) h & counterMask;
+    }
+
+    private static int spread(int h) {
+        h = ((h >>> 16) ^ h) * 0x45d9f3b;
+        h = ((h >>> 16) ^ h) * 0x45d9f3b;
+        return (h >>> 16) ^ h;
+    }
+}
@@ -0,0 +1,40 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Default storage: values stay on the Java heap as the objects they were put in as.
+ */
+final class HeapValueStorage implements ValueStorage {
+
+    @Override
+    public Object store(String key, Object value, long expiresAtMillis) {
+        return value;
+    }
+
+    @Override
+    public Object load(Object stored, BooleanSupplier stillCurrent) {
+        return stored;
+    }
+
+    @Override
+    public void release(Object stored) {
+        // Nothing to free; the garbage collector takes care of it
+    }
+
+    @Override
+    public int weigh(String key, Object value, Object stored) {
+        return EntryWeigher.weigh(key, value);
+    }
+
+    @Override
+    public boolean reclaim(BiConsumer<String, Object> evictIfStored) {
+        return false; // store() never runs out of room; the entry limit bounds the heap
+    }
+
+    @Override
+    public long usedBytes() {
+        return 0;
+    }
+}
@@ -0,0 +1,128 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Glob filter for scanned keys, with the syntax of Redis's MATCH: {@code *} matches any run of characters, {@code ?}
+ * any single one, {@code [abc]}, {@code [a-z]} and {@code [^a]} a character class, and {@code \} escapes the next
+ * character. A literal prefix followed by a single trailing {@code *}, the common case, is checked with
+ * {@link String#startsWith} instead of a regular expression.
+ */
+public final class KeyPattern {
+    private static final KeyPattern ANY = new KeyPattern(null, "");
+
+    private final Pattern regex; // Null when the pattern is a plain prefix
+    private final String prefix;
+
+    private KeyPattern(Pattern regex, String prefix) {
+        this.regex = regex;
+        this.prefix = prefix;
+    }
+
+    /**
+     * @param glob the pattern, or null or empty to match every key
+     * @throws IllegalArgumentException if the pattern is malformed, such as an unclosed character class
+     */
+    public static KeyPattern compile(String glob) {
+        if (glob == null || glob.isEmpty() || glob.equals("*")) {
+            return ANY;
+        }
+        int firstSpecial = indexOfSpecial(glob);
+        if (firstSpecial == glob.length() - 1 && glob.charAt(firstSpecial) == '*') {
+            return new KeyPattern(null, glob.substring(0, firstSpecial));
+        }
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '\\' && i + 1 < glob.length()) {
+                literal.append(glob.charAt(++i));
+                continue;
+            }
+            if (c != '*' && c != '?' && c != '[') {
+                literal.append(c);
+                continue;
+            }
+            if (!literal.isEmpty()) {
+                regex.append(Pattern.quote(literal.toString()));
+                literal.setLength(0);
+            }
+            if (c == '*') {
+                regex.append(".*");
+            } else if (c == '?') {
+                regex.append('.');
+            } else {
+                int end = classEnd(glob, i);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Unclosed character class in key pattern: " + glob);
+                }
+                regex.append(characterClass(glob.substring(i + 1, end)));
+                i = end;
+            }
+        }
+        if (!literal.isEmpty()) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        try {
+            return new KeyPattern(Pattern.compile(regex.toString(), Pattern.DOTALL), null);
+        } catch (PatternSyntaxException e) {
+            throw new IllegalArgumentException("Invalid key pattern '" + glob + "': " + e.getDescription(), e);
+        }
+    }
+
+    public boolean matches(String key) {
+        return regex == null ? key.startsWith(prefix) : regex.matcher(key).matches();
+    }
+
+    private static int indexOfSpecial(String glob) {
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == '\\') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Index of the ']' closing the class opened at start, or -1; a ']' right after "[" or "[^" is a member
+    private static int classEnd(String glob, int start) {
+        int i = start + 1;
+        if (i < glob.length() && glob.charAt(i) == '^') {
+            i++;
+        }
+        for (i++; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == ']') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Rebuilds a class body so only ranges and a leading negation keep their meaning in the regular expression
+    private static String characterClass(String body) {
+        StringBuilder out = new StringBuilder("[");
+        int i = 0;
+        if (body.startsWith("^")) {
+            out.append('^');
+            i = 1;
+        }
+        boolean afterMember = false;
+        for (; i < body.length(); i++) {
+            char c = body.charAt(i);
+            if (c == '\\' && i + 1 < body.length()) {
+                c = body.charAt(++i);
+            } else if (c == '-' && afterMember && i + 1 < body.length()) {
+                out.append('-'); // A range; a '-' at either end is a member
+                afterMember = false;
+                continue;
+            }
+            out.append(Character.isLetterOrDigit(c) ? String.valueOf(c) : "\\" + c);
+            afterMember = true;
+        }
+        return out.append(']').toString();
+    }
+}
@@ -0,0 +1,66 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Least frequently used, with ties broken by least recent use. Keys are grouped into buckets by access count;
+ * eviction takes the oldest key of the lowest bucket.
+ */
+final class LfuPolicy implements EvictionPolicy {
+    private final Map<String, Integer> counts = new HashMap<>();
+    private final TreeMap<Integer, LinkedHashSet<String>> buckets = new TreeMap<>();
+
+    @Override
+    public void recordInsert(String key) {
+        counts.put(key, 1);
+        buckets.computeIfAbsent(1, c -> new LinkedHashSet<>()).add(key);
+    }
+
+    @Override
+    public void recordAccess(String key) {
+        Integer count = counts.get(key);
+        if (count == null) {
+            return;
+        }
+        removeFromBucket(key, count);
+        int next = count == Integer.MAX_VALUE ? count : count + 1;
+        counts.put(key, next);
+        buckets.computeIfAbsent(next, c -> new LinkedHashSet<>()).add(key);
+    }
+
+    @Override
+    public void recordRemoval(String key) {
+        Integer count = counts.remove(key);
+        if (count != null) {
+            removeFromBucket(key, count);
+        }
+    }
+
+    @Override
+    public String evict() {
+        Map.Entry<Integer, LinkedHashSet<String>> lowest = buckets.firstEntry();
+        if (lowest == null) {
+            return null;
+        }
+        Iterator<String> it = lowest.getValue().iterator();
+        String victim = it.next();
+        it.remove();
+        if (lowest.getValue().isEmpty()) {
+            buckets.remove(lowest.getKey());
+        }
+        counts.remove(victim);
+        return victim;
+    }
+
+    private void removeFromBucket(String key, int count) {
+        LinkedHashSet<String> bucket = buckets.get(count);
+        bucket.remove(key);
+        if (bucket.isEmpty()) {
+            buckets.remove(count);
+        }
+    }
+}
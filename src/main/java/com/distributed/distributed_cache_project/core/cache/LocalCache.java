@@ -4,17 +4,42 @@ import com.distributed.distributed_cache_project.config.NodeConfigProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.*;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
-public class LocalCache {
+public final class LocalCache {
     private static final Logger log = LoggerFactory.getLogger(LocalCache.class);
+    private static final int SEGMENTS_PER_CORE = 4;
+    private static final long DEFAULT_EXPIRY_TICK_MILLIS = 100;
+    private static final long DEFAULT_EXPIRY_CYCLE_BUDGET_MILLIS = 25;
+    private static final int EXPIRY_BATCH = 64; // Expired entries removed per segment lock hold
+    private static final int MAX_STORAGE_RECLAIMS = 8; // Reclaim rounds attempted to free storage for a single put
+    private static final int DEFAULT_SLAB_SIZE_BYTES = 1024 * 1024;
+    private static final long DEFAULT_OFF_HEAP_MAX_BYTES = 256L * 1024 * 1024;
+    private static final String DEFAULT_STORAGE_PATH = "cache-data";
+    private static final long DEFAULT_OVERFLOW_MAX_BYTES = 1024L * 1024 * 1024;
+    private static final long DEFAULT_OVERFLOW_FILE_BYTES = 64L * 1024 * 1024;
+    private static final int MAX_SCAN_COUNT = 10_000;
+    private static final int SCAN_BUCKETS_PER_ENTRY = 16; // Bounds the work of a scan call whose pattern rarely matches
 
-    private final Map<String,CacheEntry> store;
+    private final CacheSegment[] segments;
+    private final int segmentMask;
     private final int maxEntries;
+    private final long maxBytes; // 0 = bounded by entry count
+    private final ValueStorage storage;
+    private final OverflowTier overflow; // Null unless cache.overflow.enabled is set
+    private final long expiryBudgetNanos;
+    private final long staleGraceMillis; // How long expired entries are kept for lookup(); 0 = dropped at their deadline
+    private int nextExpirySegment; // Where the next expiry cycle starts; only touched by the scheduler thread
 
     private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
 
@@ -22,9 +47,21 @@ public class LocalCache {
     private final AtomicLong missCount = new AtomicLong(0);
     private final AtomicLong putCount = new AtomicLong(0);
     private final AtomicLong deleteCount = new AtomicLong(0);
+    private final AtomicBoolean snapshotRunning = new AtomicBoolean();
+    // Every entry created gets the next stamp. Starting at random keeps stamps a client saw before a restart from
+    // matching the entries recovered after it.
+    private final AtomicInteger versionSequence = new AtomicInteger(ThreadLocalRandom.current().nextInt());
 
     public LocalCache(NodeConfigProperties nodeConfigProperties) {
-        int nodeMaxEntries = nodeConfigProperties.getCapacity().getMaxEntries();
+        this(nodeConfigProperties, new ValueCompressor(nodeConfigProperties.getCompression()));
+    }
+
+    /**
+     * @param compressor shared with the rest of the node, so its statistics cover replication traffic too
+     */
+    public LocalCache(NodeConfigProperties nodeConfigProperties, ValueCompressor compressor) {
+        NodeConfigProperties.CacheCapacityProperties capacity = nodeConfigProperties.getCapacity();
+        int nodeMaxEntries = capacity.getMaxEntries();
         if (nodeMaxEntries <= 0) {
             log.warn("Cache max-entries configured as {}. Setting to default 1000.", nodeMaxEntries);
             this.maxEntries = 1000; // Fallback default
@@ -32,106 +69,455 @@ public class LocalCache {
             this.maxEntries = nodeMaxEntries;
         }
 
-        this.store = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) { // <--- LRU IMPLEMENTATION
-            @Override
-            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
-                // This method is called after a new entry is added or an existing entry is accessed.
-                // Return true if the eldest entry should be removed.
-                boolean shouldEvict = size() > maxEntries;
-                if (shouldEvict) {
-                    log.info("Evicting LRU entry: Key '{}' due to cache exceeding max entries ({} > {}).", eldest.getKey(), size(), maxEntries);
-                }
-                return shouldEvict;
+        this.maxBytes = Math.max(0, capacity.getMaxBytes());
+        ValueStorage baseStorage = createStorage(nodeConfigProperties.getStorage());
+        if (compressor.isEnabled()) {
+            log.info("LocalCache compressing values of {} bytes or more.", compressor.getThresholdBytes());
+            this.storage = new CompressingValueStorage(baseStorage, compressor);
+        } else {
+            this.storage = baseStorage;
+        }
+        this.overflow = createOverflowTier(nodeConfigProperties.getOverflow());
+        String policy = policyName(capacity.getPolicy());
+        int segmentCount = segmentCountFor(capacity.getSegments(), this.maxEntries);
+        this.segments = new CacheSegment[segmentCount];
+        this.segmentMask = segmentCount - 1;
+        // Split the limits across segments; the first (limit % segmentCount) segments take one extra unit.
+        // With max-bytes set, max-entries only sizes the eviction policy's bookkeeping.
+        for (int i = 0; i < segmentCount; i++) {
+            int share = this.maxEntries / segmentCount + (i < this.maxEntries % segmentCount ? 1 : 0);
+            long byteShare = this.maxBytes / segmentCount + (i < this.maxBytes % segmentCount ? 1 : 0);
+            segments[i] = new CacheSegment(share, byteShare, EvictionPolicy.create(policy, share), storage, overflow);
+        }
+        if (this.maxBytes > 0) {
+            log.info("LocalCache initialized with {} segments sharing a {} byte budget. Eviction policy: {}.",
+                    segmentCount, this.maxBytes, policy);
+        } else {
+            log.info("LocalCache initialized with {} segments sharing {} max entries. Eviction policy: {}.",
+                    segmentCount, this.maxEntries, policy);
+        }
+        recoverEntries();
+
+        NodeConfigProperties.ExpiryProperties expiry = nodeConfigProperties.getExpiry();
+        long tickMillis = expiry != null && expiry.getTickMillis() > 0 ? expiry.getTickMillis() : DEFAULT_EXPIRY_TICK_MILLIS;
+        long budgetMillis = expiry != null && expiry.getCycleBudgetMillis() > 0
+                ? expiry.getCycleBudgetMillis() : DEFAULT_EXPIRY_CYCLE_BUDGET_MILLIS;
+        this.expiryBudgetNanos = TimeUnit.MILLISECONDS.toNanos(Math.min(budgetMillis, tickMillis));
+        NodeConfigProperties.StoreProperties store = nodeConfigProperties.getStore();
+        this.staleGraceMillis = store != null && store.isEnabled() ? Math.max(0, store.getStaleWhileRevalidateMillis()) : 0;
+        // Advance every segment's timing wheel so TTL entries are dropped shortly after their deadline
+        scheduler.scheduleAtFixedRate(this::expireEntries, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static ValueStorage createStorage(NodeConfigProperties.StorageProperties props) {
+        String mode = props != null ? props.getMode() : null;
+        if (mode == null || mode.isBlank() || mode.equalsIgnoreCase("heap")) {
+            return new HeapValueStorage();
+        }
+        int slabSize = props.getSlabSizeBytes() > 0 ? props.getSlabSizeBytes() : DEFAULT_SLAB_SIZE_BYTES;
+        long maxBytes = props.getOffHeapMaxBytes() > 0 ? props.getOffHeapMaxBytes() : DEFAULT_OFF_HEAP_MAX_BYTES;
+        if (mode.equalsIgnoreCase("off-heap")) {
+            log.info("LocalCache storing values off-heap: {} byte slabs, up to {} bytes.", slabSize, maxBytes);
+            return new OffHeapValueStorage(slabSize, maxBytes);
+        }
+        if (mode.equalsIgnoreCase("mapped")) {
+            Path path = Path.of(props.getPath() != null && !props.getPath().isBlank() ? props.getPath() : DEFAULT_STORAGE_PATH);
+            log.info("LocalCache storing values in memory-mapped files under {}: {} byte slabs, up to {} bytes.",
+                    path.toAbsolutePath(), slabSize, maxBytes);
+            return new MappedValueStorage(path, slabSize, maxBytes);
+        }
+        log.warn("Unknown cache storage mode '{}'. Falling back to heap.", mode);
+        return new HeapValueStorage();
+    }
+
+    private static OverflowTier createOverflowTier(NodeConfigProperties.OverflowProperties props) {
+        if (props == null || !props.isEnabled()) {
+            return null;
+        }
+        Path path = Path.of(props.getPath() != null && !props.getPath().isBlank() ? props.getPath() : DEFAULT_STORAGE_PATH + "/overflow");
+        long maxBytes = props.getMaxBytes() > 0 ? props.getMaxBytes() : DEFAULT_OVERFLOW_MAX_BYTES;
+        long fileBytes = props.getFileSizeBytes() > 0 ? props.getFileSizeBytes() : DEFAULT_OVERFLOW_FILE_BYTES;
+        log.info("LocalCache keeping evicted entries on disk under {}: up to {} bytes in {} byte files.",
+                path.toAbsolutePath(), maxBytes, fileBytes);
+        return new OverflowTier(path, maxBytes, fileBytes);
+    }
+
+    // Puts entries that persistent storage kept across a restart back into the segments, without loading their values
+    private void recoverEntries() {
+        int[] recovered = new int[1];
+        storage.recover((key, stored, expiresAtMillis) -> {
+            int weight = maxBytes > 0 ? storage.weigh(key, null, stored) : 0;
+            try {
+                segmentFor(key).put(key, CacheEntry.create(key, stored, weight, nextVersion(), expiresAtMillis));
+                recovered[0]++;
+            } catch (IllegalArgumentException e) {
+                log.warn("LocalCache: Dropped recovered key '{}': {}", key, e.getMessage());
             }
         });
-        // Schedule cleanup task
-        scheduler.scheduleAtFixedRate(this::cleanupExpiredEntries, 1, 5, TimeUnit.MINUTES);
+        if (recovered[0] > 0) {
+            log.info("LocalCache: Recovered {} entries from persistent storage. Size: {}", recovered[0], size());
+        }
+    }
+
+    // Validates the configured policy once, so an unknown name falls back to lru instead of failing every segment
+    private static String policyName(String policy) {
+        if (policy == null || policy.isBlank()) {
+            return "lru";
+        }
+        try {
+            EvictionPolicy.create(policy, 1);
+            return policy.trim();
+        } catch (IllegalArgumentException e) {
+            log.warn("Unknown cache policy '{}'. Falling back to lru.", policy);
+            return "lru";
+        }
+    }
+
+    /**
+     * Resolves the configured segment count to a power of two. A value of 0 picks one based on the core count,
+     * and the result never exceeds max-entries so that every segment can hold at least one entry.
+     */
+    private static int segmentCountFor(int configured, int maxEntries) {
+        int requested = configured > 0 ? configured : Runtime.getRuntime().availableProcessors() * SEGMENTS_PER_CORE;
+        int count = Integer.highestOneBit(Math.max(1, Math.min(requested, maxEntries)));
+        if (configured > 0 && count != configured) {
+            log.warn("Cache segments configured as {}. Using {} (power of two, at most max-entries).", configured, count);
+        }
+        return count;
     }
-    public void put(String key, Object value, long ttlMillis) {
-        store.put(key, new CacheEntry(value, System.currentTimeMillis(), ttlMillis, System.currentTimeMillis()));
+
+    private CacheSegment segmentFor(String key) {
+        int h = key.hashCode();
+        // Mix the high bits down so the segment choice does not correlate with the bucket choice inside the segment
+        h ^= (h >>> 16);
+        h *= 0x9E3779B9;
+        return segments[(h >>> 16) & segmentMask];
+    }
+
+    /**
+     * @return the version stamp of the new entry
+     */
+    public long put(String key, Object value, long ttlMillis) {
+        long expiresAtMillis = ttlMillis > 0 ? CacheClock.millis() + ttlMillis : 0;
+        Object stored = store(key, value, expiresAtMillis);
+        if (stored == null) {
+            throw new IllegalStateException("Not enough cache storage memory to store key '" + key + "'.");
+        }
+        int weight = maxBytes > 0 ? storage.weigh(key, value, stored) : 0;
+        int version = nextVersion();
+        segmentFor(key).put(key, CacheEntry.create(key, stored, weight, version, expiresAtMillis, ttlMillis));
         putCount.incrementAndGet(); // Increment put count
-        log.debug("LocalCache: Stored key '{}'. Current size: {}. Put Count: {}", key, store.size(), putCount.get());
+        log.debug("LocalCache: Stored key '{}'. Put Count: {}", key, putCount.get());
+        return Integer.toUnsignedLong(version);
     }
+
+    // Never 0, which stands for no entry; wraps after 2^32 entries
+    private int nextVersion() {
+        int version;
+        do {
+            version = versionSequence.incrementAndGet();
+        } while (version == 0);
+        return version;
+    }
+    // Returns the value's stored form, or null if storage memory could not be freed for it
+    private Object store(String key, Object value, long expiresAtMillis) {
+        Object stored = storage.store(key, value, expiresAtMillis);
+        // Out of storage memory: let the storage pick entries to drop until the value fits
+        for (int attempt = 0; stored == null && attempt < MAX_STORAGE_RECLAIMS; attempt++) {
+            if (!storage.reclaim((victimKey, victimStored) -> segmentFor(victimKey).evictIfStored(victimKey, victimStored))) {
+                break;
+            }
+            stored = storage.store(key, value, expiresAtMillis);
+        }
+        return stored;
+    }
+
     public Object get(String key) {
-        CacheEntry entry = store.get(key);
+        CacheSegment segment = segmentFor(key);
+        CacheEntry entry = segment.get(key);
+        if (entry == null && overflow != null) {
+            Object promoted = promote(segment, key);
+            if (promoted != null) {
+                hitCount.incrementAndGet();
+                log.debug("LocalCache: Retrieved key '{}' from the overflow tier. Hit Count: {}", key, hitCount.get());
+                return promoted;
+            }
+        }
         if (entry == null) {
             missCount.incrementAndGet(); // Increment miss count
             log.debug("LocalCache: Key '{}' not found. Miss Count: {}", key, missCount.get());
             return null;
         }
-        if (entry.isExpired()) {
-            store.remove(key);
+        long now = CacheClock.millis();
+        if (entry.isExpired(now)) {
+            if (entry.isExpired(now - staleGraceMillis)) {
+                segment.removeExpired(key, entry); // Within the grace period it stays for lookup()
+            }
             missCount.incrementAndGet(); // Expired is also a miss
-            log.info("LocalCache: Key '{}' expired and removed. Miss Count: {}", key, missCount.get());
+            log.info("LocalCache: Key '{}' expired. Miss Count: {}", key, missCount.get());
+            return null;
+        }
+        Object value = storage.load(entry.getValue(), () -> segment.isCurrent(key, entry));
+        if (value == ValueStorage.RECYCLED) {
+            missCount.incrementAndGet(); // Removed or replaced while we were reading it
             return null;
         }
         hitCount.incrementAndGet(); // Increment hit count
-        log.debug("LocalCache: Retrieved key '{}'. Current size: {}. Hit Count: {}", key, store.size(), hitCount.get());
-        return entry.getValue();
+        log.debug("LocalCache: Retrieved key '{}'. Hit Count: {}", key, hitCount.get());
+        return value;
+    }
+
+    /**
+     * A value found by {@link #lookup}, with its deadline (0 = none), the TTL it was written with (0 = none or
+     * unknown) and its entry's version stamp. A stale value's TTL has passed, but it is within the stale grace period.
+     */
+    public record Lookup(Object value, long expiresAtMillis, long ttlMillis, long version, boolean stale) {
+    }
+
+    /**
+     * Like {@link #get}, but also finds an entry whose TTL passed less than {@code cache.store.stale-while-revalidate-millis}
+     * ago, so the caller can serve it while the key is reloaded, and reports when the entry expires.
+     * @return the value found, or null on a miss
+     */
+    public Lookup lookup(String key) {
+        CacheSegment segment = segmentFor(key);
+        CacheEntry entry = segment.get(key);
+        long now = CacheClock.millis();
+        if (entry == null || entry.isExpired(now - staleGraceMillis)) {
+            // Missing or past its grace period; the plain path checks the overflow tier and counts the miss
+            Object value = get(key);
+            if (value == null) {
+                return null;
+            }
+            CacheEntry promoted = segment.get(key);
+            return promoted != null
+                    ? new Lookup(value, promoted.getExpiresAtMillis(), 0, Integer.toUnsignedLong(promoted.getVersion()), false)
+                    : new Lookup(value, 0, 0, 0, false); // Could not be moved back into memory
+        }
+        Object value = storage.load(entry.getValue(), () -> segment.isCurrent(key, entry));
+        if (value == ValueStorage.RECYCLED) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return new Lookup(value, entry.getExpiresAtMillis(), entry.getTtlMillis(),
+                Integer.toUnsignedLong(entry.getVersion()), entry.isExpired(now));
+    }
+
+    /**
+     * Looks up a key that missed in memory in the overflow tier, and moves it back into memory if it is there. The
+     * disk read happens without the segment lock; the segment then checks that nothing replaced the key meanwhile.
+     */
+    private Object promote(CacheSegment segment, String key) {
+        OverflowTier.Hit hit = overflow.read(key, CacheClock.millis());
+        if (hit == null) {
+            return null;
+        }
+        long expiresAtMillis = hit.location().expiresAtMillis();
+        Object stored = store(key, hit.value(), expiresAtMillis);
+        if (stored == null) {
+            return hit.value(); // No room in memory right now; it stays on disk
+        }
+        int weight = maxBytes > 0 ? storage.weigh(key, hit.value(), stored) : 0;
+        if (!segment.promote(key, CacheEntry.create(key, stored, weight, nextVersion(), expiresAtMillis), hit.location())) {
+            storage.release(stored);
+            // Written, deleted or promoted by someone else since the read; memory has the answer now
+            CacheEntry current = segment.get(key);
+            if (current == null || current.isExpired(CacheClock.millis())) {
+                return null;
+            }
+            Object value = storage.load(current.getValue(), () -> segment.isCurrent(key, current));
+            return value != ValueStorage.RECYCLED ? value : null;
+        }
+        overflow.recordHit();
+        return hit.value();
     }
 
     public void delete(String key) {
-        store.remove(key);
+        segmentFor(key).remove(key);
         deleteCount.incrementAndGet(); // Increment delete count
-        log.debug("LocalCache: Deleted key '{}'. Current size: {}. Delete Count: {}", key, store.size(), deleteCount.get());
+        log.debug("LocalCache: Deleted key '{}'. Delete Count: {}", key, deleteCount.get());
     }
 
+    /**
+     * Number of entries held, read from per-segment counters in time independent of the cache size.
+     * Expired entries are dropped by the active expiry cycle shortly after their deadline, so a few
+     * expired entries can still be included.
+     */
     public int size(){
-        return (int) store.entrySet().stream().filter(e -> !e.getValue().isExpired()).count();
+        int total = 0;
+        for (CacheSegment segment : segments) {
+            total += segment.size();
+        }
+        return total;
     }
 
-    public Map<String, Object> getAll() {
-        Map<String, Object> allEntries = new LinkedHashMap<>();
-        List<String> keysToProcess = new ArrayList<>();
-        synchronized (store) { // Synchronize during key collection
-            keysToProcess.addAll(store.keySet());
+    /**
+     * Visits one page of live entries, starting at the cursor, and returns the cursor of the next page; 0 starts a scan
+     * and is returned with its last page. Pages hold about {@code count} entries whose key matches the glob pattern
+     * (null for all), but may hold fewer or none when the pattern is selective, as each call stops after a bounded
+     * amount of work.
+     *
+     * Each segment is walked by hash bucket (see {@link EntryTable#scan}), so no state is kept between calls and an
+     * entry present for the whole scan is visited at least once, however the cache changes meanwhile. An entry written
+     * during the scan may be missed or visited twice. Entries in the overflow tier are not included.
+     *
+     * @throws IllegalArgumentException if the cursor was not returned by this method or the pattern is malformed
+     */
+    public long scan(long cursor, int count, String match, EntryVisitor visitor) {
+        int segmentIndex = (int) (cursor >>> 32);
+        if (segmentIndex < 0 || segmentIndex >= segments.length) { // Negative when a client sets the top bit
+            throw new IllegalArgumentException("Invalid scan cursor: " + Long.toUnsignedString(cursor));
         }
-        for (String key : keysToProcess) { // Iterate over the copy
-            CacheEntry entry;
-            // Get the entry while holding the lock (or rely on synchronizedMap's get)
-            // It's safer to re-fetch potentially expired entries
-            synchronized (store) { // Synchronize for get and remove if done within the loop
-                entry = store.get(key);
+        KeyPattern pattern = KeyPattern.compile(match);
+        int wanted = Math.clamp(count, 1, MAX_SCAN_COUNT);
+        int bucketBudget = wanted * SCAN_BUCKETS_PER_ENTRY;
+        int bucketCursor = (int) cursor;
+        long now = CacheClock.millis();
+        List<Map.Entry<String, CacheEntry>> found = new ArrayList<>();
+        int visited = 0;
+        while (visited < wanted && bucketBudget > 0) {
+            CacheSegment segment = segments[segmentIndex];
+            int buckets = Math.min(bucketBudget, wanted - visited);
+            bucketBudget -= buckets;
+            found.clear();
+            bucketCursor = segment.scan(bucketCursor, buckets, (key, entry) -> {
+                if (pattern.matches(key)) {
+                    found.add(Map.entry(key, entry));
+                }
+            });
+            // Values are loaded outside the table's read lock
+            for (Map.Entry<String, CacheEntry> e : found) {
+                CacheEntry entry = e.getValue();
+                if (entry.isExpired(now)) {
+                    continue;
+                }
+                Object value = storage.load(entry.getValue(), () -> segment.isCurrent(e.getKey(), entry));
+                if (value != ValueStorage.RECYCLED) {
+                    visitor.visit(e.getKey(), value, entry.getExpiresAtMillis());
+                    visited++;
+                }
+            }
+            if (bucketCursor == 0 && ++segmentIndex == segments.length) {
+                return 0;
             }
+        }
+        return (long) segmentIndex << 32 | (bucketCursor & 0xFFFFFFFFL);
+    }
 
-            if (entry != null) { // Entry might be null if removed by another thread/cleanup
-                if (!entry.isExpired()) {
-                    allEntries.put(key, entry.getValue());
-                } else {
-                    synchronized (store) { // Synchronize for removal
-                        store.remove(key); // Proactively remove expired entry
-                        log.debug("LocalCache: Proactively removed expired key '{}' during getAll.", key);
-                    }
+    /**
+     * Visits every live entry with its deadline (0 for none), including those in the overflow tier, without counting
+     * hits or touching eviction order. Iteration is weakly consistent: entries written meanwhile may or may not be
+     * seen, and an entry moving between memory and the tier may be seen twice.
+     */
+    public void forEach(EntryVisitor visitor) {
+        long now = CacheClock.millis();
+        for (CacheSegment segment : segments) {
+            for (Map.Entry<String, CacheEntry> e : segment.entries()) {
+                CacheEntry entry = e.getValue();
+                if (entry.isExpired(now)) {
+                    continue;
+                }
+                Object value = storage.load(entry.getValue(), () -> segment.isCurrent(e.getKey(), entry));
+                if (value != ValueStorage.RECYCLED) {
+                    visitor.visit(e.getKey(), value, entry.getExpiresAtMillis());
                 }
             }
         }
-        log.debug("LocalCache: Retrieved all {} entries.", allEntries.size());
-        return allEntries;
+        if (overflow != null) {
+            overflow.forEach(visitor, now);
+        }
     }
 
-    private void cleanupExpiredEntries() {
-        log.info("LocalCache: Running TTL cleanup. Initial size: {}", store.size());
-        // CRITICAL FIX: Use a safe removal method.
-        // Option 1: Iterate over keys and remove (similar to getAll)
-        List<String> keysToRemove = new ArrayList<>();
-        synchronized (store) { // Synchronize during key collection
-            store.forEach((key, entry) -> {
-                if (entry != null && entry.isExpired()) {
-                    keysToRemove.add(key);
+    /**
+     * Visits every live entry as the cache held it at one instant, while reads and writes carry on. Writers wait only
+     * while the snapshot starts, for as long as it takes to mark every segment. After that, the first write to each
+     * key that the snapshot has not reached yet keeps a copy of the key's previous entry (see
+     * {@link CacheSegment#snapshot}). Only one snapshot runs at a time. Entries in the overflow tier are not included.
+     *
+     * @return the instant the snapshot shows, in {@link CacheClock} milliseconds
+     */
+    public long snapshot(EntryVisitor visitor) {
+        if (!snapshotRunning.compareAndSet(false, true)) {
+            throw new IllegalStateException("A snapshot of the cache is already running.");
+        }
+        try {
+            long atMillis;
+            for (CacheSegment segment : segments) {
+                segment.lockWrites();
+            }
+            try {
+                atMillis = CacheClock.millis();
+                for (CacheSegment segment : segments) {
+                    segment.startCapture();
                 }
-            });
+            } finally {
+                for (CacheSegment segment : segments) {
+                    segment.unlockWrites();
+                }
+            }
+            int visited = 0;
+            try {
+                for (CacheSegment segment : segments) {
+                    visited += segment.snapshot(atMillis, visitor);
+                }
+            } finally {
+                for (CacheSegment segment : segments) {
+                    segment.endCapture(); // Segments a failed visitor never reached
+                }
+            }
+            log.info("LocalCache: Snapshot visited {} entries.", visited);
+            return atMillis;
+        } finally {
+            snapshotRunning.set(false);
         }
-        for (String key : keysToRemove) {
-            synchronized (store) { // Synchronize for each removal
-                store.remove(key);
-                log.debug("LocalCache: Removed expired entry: {}", key);
+    }
+
+    @FunctionalInterface
+    public interface EntryVisitor {
+        void visit(String key, Object value, long expiresAtMillis);
+    }
+
+    /**
+     * One active expiry cycle. Segments are visited round robin and drained in batches of {@link #EXPIRY_BATCH},
+     * so no segment lock is held for long. A segment is revisited as long as its last batch came back full, until
+     * the cycle's time budget runs out; the next cycle then resumes where this one stopped. A burst of expirations
+     * is therefore spread over several ticks instead of stalling writers for one long pass.
+     */
+    private void expireEntries() {
+        try {
+            long now = CacheClock.millis();
+            long deadlineNanos = System.nanoTime() + expiryBudgetNanos;
+            int removed = 0;
+            for (int visited = 0; visited < segments.length; visited++) {
+                int index = (nextExpirySegment + visited) & segmentMask;
+                int batch;
+                do {
+                    batch = segments[index].expire(now - staleGraceMillis, EXPIRY_BATCH);
+                    removed += batch;
+                } while (batch == EXPIRY_BATCH && System.nanoTime() < deadlineNanos);
+                if (System.nanoTime() >= deadlineNanos) {
+                    // Resume with this segment if it may still have due entries, otherwise with the next one
+                    nextExpirySegment = batch == EXPIRY_BATCH ? index : (index + 1) & segmentMask;
+                    log.debug("LocalCache: Expiry cycle hit its time budget after {} entries.", removed);
+                    break;
+                }
+            }
+            if (removed > 0) {
+                log.debug("LocalCache: Expired {} entries.", removed);
             }
+        } catch (RuntimeException e) {
+            // An exception would cancel the scheduled task for good; log and keep ticking
+            log.error("LocalCache: Expiry tick failed: {}", e.getMessage(), e);
         }
-        log.info("LocalCache: TTL cleanup complete. Final size: {}", store.size());
     }
 
     public void shutdown() {
         scheduler.shutdownNow();
+        storage.close();
+        if (overflow != null) {
+            overflow.close();
+        }
         log.info("LocalCache scheduler shut down.");
     }
 
@@ -151,12 +537,67 @@ public class LocalCache {
         return deleteCount.get();
     }
 
+    public long getEvictionCount() {
+        long total = 0;
+        for (CacheSegment segment : segments) {
+            total += segment.evictionCount();
+        }
+        return total;
+    }
+
+    public long getExpiredCount() {
+        long total = 0;
+        for (CacheSegment segment : segments) {
+            total += segment.expirationCount();
+        }
+        return total;
+    }
+
+    // Overflow tier statistics; all 0 when the tier is disabled
+    public int getOverflowEntryCount() {
+        return overflow != null ? overflow.size() : 0;
+    }
+
+    public long getOverflowDiskBytes() {
+        return overflow != null ? overflow.diskBytes() : 0;
+    }
+
+    public long getOverflowSpillCount() {
+        return overflow != null ? overflow.spillCount() : 0;
+    }
+
+    public long getOverflowHitCount() {
+        return overflow != null ? overflow.hitCount() : 0;
+    }
+
+    public long getOverflowDroppedCount() {
+        return overflow != null ? overflow.droppedCount() : 0;
+    }
+
     public double getHitRatio() {
         long hits = hitCount.get();
         long total = hits + missCount.get();
         return total == 0 ? 0.0 : (double) hits / total;
     }
 
+    // Estimated bytes held by entries; only tracked when max-bytes is set
+    public long getWeightedSizeBytes() {
+        long total = 0;
+        for (CacheSegment segment : segments) {
+            total += segment.weightedSize();
+        }
+        return total;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    // Bytes of off-heap or mapped chunks currently holding entries (0 when values are kept on the heap)
+    public long getOffHeapUsedBytes() {
+        return storage.usedBytes();
+    }
+
     // Get current JVM memory usage (approximate heap usage)
     public long getUsedMemoryBytes() {
         Runtime runtime = Runtime.getRuntime();
@@ -0,0 +1,37 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Least recently used: an access-ordered {@link LinkedHashMap}. Every hit relinks the key, so hits need the lock.
+ */
+final class LruPolicy implements EvictionPolicy {
+    private final LinkedHashMap<String, Boolean> order = new LinkedHashMap<>(16, 0.75f, true);
+
+    @Override
+    public void recordInsert(String key) {
+        order.put(key, Boolean.TRUE);
+    }
+
+    @Override
+    public void recordAccess(String key) {
+        order.get(key); // Moves the key to the most recently used end
+    }
+
+    @Override
+    public void recordRemoval(String key) {
+        order.remove(key);
+    }
+
+    @Override
+    public String evict() {
+        Iterator<String> it = order.keySet().iterator();
+        if (!it.hasNext()) {
+            return null;
+        }
+        String victim = it.next();
+        it.remove();
+        return victim;
+    }
+}
@@ -0,0 +1,422 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.zip.CRC32C;
+
+/**
+ * Persistent storage: records live in slabs carved out of a memory-mapped data file, and the slab table lives in a
+ * memory-mapped index file. A restarted node remaps both and serves its previous entries straight away. Values are not
+ * copied or deserialized on restart; only record headers and keys are read to rebuild the key map.
+ *
+ * Record layout: {@code [int magic][int headerCrc][long sequence][long expiresAtMillis][int keyLength]
+ * [int valueLength][int valueCrc][key UTF-8][value]}, with the value in {@link ValueCodec} encoding. The magic is
+ * written last, and freeing a chunk overwrites it with a free-list link, so only fully written records are live. The
+ * header checksum (CRC32C) covers the header fields and the key. After an unclean shutdown the value checksums are
+ * verified as well, and records that fail either check are dropped. If a crash left two live records for a key, the
+ * one with the higher sequence wins.
+ *
+ * Index file: {@code [int magic][int version][int slabSize][int maxSlabs][int clean][int headerCrc]}, then one
+ * {@code [int classIndex + 1][int chunkSize][int crc]} slot per slab, written whenever the slab is carved.
+ *
+ * Writes reach the disk through the OS page cache, so a process crash loses nothing; a power failure can lose the
+ * most recent writes, which the checksums then reject. Reads work as in {@link OffHeapValueStorage}.
+ */
+final class MappedValueStorage implements ValueStorage {
+    private static final Logger log = LoggerFactory.getLogger(MappedValueStorage.class);
+
+    static final String DATA_FILE = "cache.data";
+    static final String INDEX_FILE = "cache.index";
+
+    private static final int RECORD_MAGIC = 0xD1CA5E01; // Negative and not -1, so never a free-list link
+    private static final int SEQUENCE = 8;
+    private static final int EXPIRES_AT = 16;
+    private static final int KEY_LENGTH = 24;
+    private static final int VALUE_LENGTH = 28;
+    private static final int VALUE_CRC = 32;
+    private static final int HEADER_BYTES = 36;
+
+    private static final int INDEX_MAGIC = 0x44434958; // "DCIX"
+    private static final int INDEX_VERSION = 1;
+    private static final int INDEX_CLEAN = 16;
+    private static final int INDEX_HEADER_CRC = 20;
+    private static final int INDEX_HEADER_BYTES = 64;
+    private static final int SLOT_BYTES = 16;
+
+    private final Path directory;
+    private final int slabSize;
+    private final FileChannel dataChannel;
+    private final FileChannel indexChannel;
+    private final MappedByteBuffer index;
+    private final MappedByteBuffer[] slabBuffers;
+    private final SlabAllocator allocator;
+    private final AtomicLong sequence = new AtomicLong(1);
+    private List<Recovered> recovered = List.of();
+    private boolean closed; // guarded by this
+
+    private record Recovered(String key, long handle, long expiresAtMillis, long sequence) {
+    }
+
+    MappedValueStorage(Path directory, int slabSize, long maxBytes) {
+        this.directory = directory;
+        this.slabSize = slabSize;
+        this.allocator = new SlabAllocator(slabSize, maxBytes, new SlabAllocator.SlabSource() {
+            @Override
+            public ByteBuffer slab(int index) {
+                return slabBuffer(index);
+            }
+
+            @Override
+            public void carved(int index, int classIndex, int chunkSize) {
+                writeSlot(index, classIndex, chunkSize);
+            }
+        });
+        int maxSlabs = allocator.maxSlabs();
+        this.slabBuffers = new MappedByteBuffer[maxSlabs];
+        try {
+            Files.createDirectories(directory);
+            this.dataChannel = FileChannel.open(directory.resolve(DATA_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.indexChannel = FileChannel.open(directory.resolve(INDEX_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            // Held until close(); two nodes sharing a directory would overwrite each other's records
+            if (!lock(indexChannel)) {
+                dataChannel.close();
+                indexChannel.close();
+                throw new IllegalStateException("Mapped cache storage in " + directory + " is already in use.");
+            }
+            int previousSlabs = previousSlabCount();
+            boolean clean = previousSlabs >= 0 && readCleanFlag();
+            if (previousSlabs < 0) {
+                dataChannel.truncate(0);
+                indexChannel.truncate(0);
+            } else if (previousSlabs > maxSlabs) {
+                log.warn("MappedValueStorage: Storage shrank from {} to {} slabs; entries in the dropped slabs are lost.",
+                        previousSlabs, maxSlabs);
+                dataChannel.truncate((long) maxSlabs * slabSize);
+            }
+            this.index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, INDEX_HEADER_BYTES + (long) SLOT_BYTES * maxSlabs);
+            if (previousSlabs > 0) {
+                recover(Math.min(previousSlabs, maxSlabs), clean);
+            }
+            writeIndexHeader(maxSlabs);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot open mapped cache storage in " + directory + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Object store(String key, Object value, long expiresAtMillis) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] valueBytes = ValueCodec.encode(value);
+        int size = HEADER_BYTES + keyBytes.length + valueBytes.length;
+        if (size > allocator.maxChunkSize()) {
+            throw new IllegalArgumentException("Entry for key '" + key + "' needs " + size
+                    + " bytes, more than the mapped slab size of " + allocator.maxChunkSize() + " bytes.");
+        }
+        long handle = allocator.allocate(size);
+        if (handle < 0) {
+            return null;
+        }
+        ByteBuffer slab = allocator.slab(handle);
+        int offset = allocator.offset(handle);
+        slab.putLong(offset + SEQUENCE, sequence.getAndIncrement());
+        slab.putLong(offset + EXPIRES_AT, expiresAtMillis);
+        slab.putInt(offset + KEY_LENGTH, keyBytes.length);
+        slab.putInt(offset + VALUE_LENGTH, valueBytes.length);
+        slab.put(offset + HEADER_BYTES, keyBytes);
+        slab.put(offset + HEADER_BYTES + keyBytes.length, valueBytes);
+        CRC32C valueCrc = new CRC32C();
+        valueCrc.update(valueBytes);
+        slab.putInt(offset + VALUE_CRC, (int) valueCrc.getValue());
+        slab.putInt(offset + 4, crc(slab, offset + SEQUENCE, HEADER_BYTES - SEQUENCE + keyBytes.length));
+        slab.putInt(offset, RECORD_MAGIC); // Last, so a record is never live before it is complete
+        return new OffHeapRef(handle);
+    }
+
+    @Override
+    public Object load(Object stored, BooleanSupplier stillCurrent) {
+        long handle = ((OffHeapRef) stored).handle();
+        ByteBuffer slab = allocator.slab(handle);
+        int offset = allocator.offset(handle);
+        int keyLength = slab.getInt(offset + KEY_LENGTH);
+        int valueLength = slab.getInt(offset + VALUE_LENGTH);
+        byte[] valueBytes = null;
+        long length = HEADER_BYTES + (long) keyLength + valueLength;
+        // Lengths can be garbage if the chunk was recycled under us; only copy when they fit the chunk. If the slab was
+        // carved again for a larger class, the offset is no longer a chunk boundary, so the slab's end bounds it too.
+        if (keyLength >= 0 && valueLength > 0 && length <= allocator.chunkSize(handle) && offset + length <= slab.limit()) {
+            valueBytes = new byte[valueLength];
+            slab.get(offset + HEADER_BYTES + keyLength, valueBytes);
+        }
+        VarHandle.loadLoadFence(); // The copy above must complete before the entry is re-checked
+        if (!stillCurrent.getAsBoolean() || valueBytes == null) {
+            return RECYCLED;
+        }
+        return ValueCodec.decode(valueBytes);
+    }
+
+    @Override
+    public void release(Object stored) {
+        allocator.free(((OffHeapRef) stored).handle()); // Overwrites the magic, so the record stays dead after a restart
+    }
+
+    @Override
+    public int weigh(String key, Object value, Object stored) {
+        return EntryWeigher.ENTRY_OVERHEAD_BYTES + allocator.chunkSize(((OffHeapRef) stored).handle());
+    }
+
+    @Override
+    public boolean reclaim(BiConsumer<String, Object> evictIfStored) {
+        int slabIndex = allocator.nextSlabToReclaim();
+        if (slabIndex < 0) {
+            return false;
+        }
+        for (long handle : allocator.chunkHandles(slabIndex)) {
+            String key = readKey(allocator.slab(handle), allocator.offset(handle), allocator.chunkSize(handle));
+            if (key != null) { // Free chunks hold stale or garbage keys; evictIfStored ignores those
+                evictIfStored.accept(key, new OffHeapRef(handle));
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public long usedBytes() {
+        return allocator.usedBytes();
+    }
+
+    @Override
+    public void recover(RecoveredEntryConsumer consumer) {
+        List<Recovered> entries = recovered;
+        recovered = List.of();
+        for (Recovered entry : entries) {
+            consumer.accept(entry.key(), new OffHeapRef(entry.handle()), entry.expiresAtMillis());
+        }
+    }
+
+    /**
+     * Flushes every slab to disk, then marks the files as cleanly closed so the next start can skip value checksums.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            synchronized (slabBuffers) {
+                for (MappedByteBuffer slab : slabBuffers) {
+                    if (slab != null) {
+                        slab.force();
+                    }
+                }
+            }
+            index.putInt(INDEX_CLEAN, 1);
+            index.force();
+            dataChannel.close();
+            indexChannel.close();
+            log.info("MappedValueStorage: Flushed and closed {}.", directory);
+        } catch (IOException e) {
+            log.error("MappedValueStorage: Failed to close {}: {}", directory, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Rebuilds the allocator from the slabs of the previous run and collects the live records for {@link #recover}.
+     */
+    private void recover(int slabCount, boolean clean) {
+        long startNanos = System.nanoTime();
+        long now = CacheClock.millis();
+        int[] classes = new int[slabCount];
+        int lastCarved = -1;
+        for (int i = 0; i < slabCount; i++) {
+            classes[i] = readSlot(i);
+            if (classes[i] >= 0) {
+                lastCarved = i;
+            }
+        }
+        Map<String, Recovered> latest = new HashMap<>();
+        int dropped = 0;
+        for (int i = 0; i <= lastCarved; i++) {
+            if (classes[i] < 0) {
+                continue;
+            }
+            ByteBuffer slab = slabBuffer(i);
+            int chunkSize = allocator.chunkSizeOfClass(classes[i]);
+            for (int offset = 0; offset + chunkSize <= slabSize; offset += chunkSize) {
+                if (slab.getInt(offset) != RECORD_MAGIC) {
+                    continue;
+                }
+                Recovered record = readRecord(slab, SlabAllocator.handle(i, offset), chunkSize, !clean);
+                if (record == null) {
+                    dropped++;
+                } else if (record.expiresAtMillis() == 0 || record.expiresAtMillis() >= now) {
+                    Recovered other = latest.put(record.key(), record);
+                    if (other != null && other.sequence() > record.sequence()) {
+                        latest.put(other.key(), other);
+                    }
+                }
+            }
+        }
+        long[] live = new long[latest.size()];
+        long maxSequence = 0;
+        int n = 0;
+        for (Recovered record : latest.values()) {
+            live[n++] = record.handle();
+            maxSequence = Math.max(maxSequence, record.sequence());
+        }
+        Arrays.sort(live);
+        // Chunks that are not live, including superseded, expired and corrupt records, go back on the free lists
+        for (int i = 0; i <= lastCarved; i++) {
+            allocator.restore(classes[i], handle -> Arrays.binarySearch(live, handle) >= 0);
+        }
+        sequence.set(maxSequence + 1);
+        recovered = new ArrayList<>(latest.values());
+        if (dropped > 0) {
+            log.warn("MappedValueStorage: Dropped {} records that failed their checksums.", dropped);
+        }
+        log.info("MappedValueStorage: Remapped {} entries from {} slabs in {} ms ({} shutdown).", recovered.size(),
+                lastCarved + 1, (System.nanoTime() - startNanos) / 1_000_000, clean ? "clean" : "unclean");
+    }
+
+    // Returns the record at the handle if its header checks out, and its value too when verifyValue is set
+    private Recovered readRecord(ByteBuffer slab, long handle, int chunkSize, boolean verifyValue) {
+        int offset = allocator.offset(handle);
+        int keyLength = slab.getInt(offset + KEY_LENGTH);
+        int valueLength = slab.getInt(offset + VALUE_LENGTH);
+        if (keyLength < 0 || valueLength <= 0 || HEADER_BYTES + (long) keyLength + valueLength > chunkSize) {
+            return null;
+        }
+        if (crc(slab, offset + SEQUENCE, HEADER_BYTES - SEQUENCE + keyLength) != slab.getInt(offset + 4)) {
+            return null;
+        }
+        if (verifyValue && crc(slab, offset + HEADER_BYTES + keyLength, valueLength) != slab.getInt(offset + VALUE_CRC)) {
+            return null;
+        }
+        String key = readKey(slab, offset, chunkSize);
+        return new Recovered(key, handle, slab.getLong(offset + EXPIRES_AT), slab.getLong(offset + SEQUENCE));
+    }
+
+    private static String readKey(ByteBuffer slab, int offset, int chunkSize) {
+        int keyLength = slab.getInt(offset + KEY_LENGTH);
+        if (keyLength < 0 || HEADER_BYTES + (long) keyLength > chunkSize) {
+            return null;
+        }
+        byte[] keyBytes = new byte[keyLength];
+        slab.get(offset + HEADER_BYTES, keyBytes);
+        return new String(keyBytes, StandardCharsets.UTF_8);
+    }
+
+    private static int crc(ByteBuffer buffer, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(offset, length));
+        return (int) crc.getValue();
+    }
+
+    private static boolean lock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock() != null;
+        } catch (OverlappingFileLockException e) {
+            return false; // Held by this JVM
+        }
+    }
+
+    private ByteBuffer slabBuffer(int index) {
+        synchronized (slabBuffers) {
+            if (slabBuffers[index] == null) {
+                try {
+                    slabBuffers[index] = dataChannel.map(FileChannel.MapMode.READ_WRITE, (long) index * slabSize, slabSize);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Cannot map slab " + index + " of " + directory + ": " + e.getMessage(), e);
+                }
+            }
+            return slabBuffers[index];
+        }
+    }
+
+    /**
+     * Slab count of the previous run, or -1 if there is no usable index (missing, corrupt, or another slab size).
+     */
+    private int previousSlabCount() throws IOException {
+        if (indexChannel.size() < INDEX_HEADER_BYTES) {
+            return -1;
+        }
+        ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER_BYTES);
+        indexChannel.read(header, 0);
+        if (header.getInt(0) != INDEX_MAGIC || header.getInt(4) != INDEX_VERSION
+                || header.getInt(INDEX_HEADER_CRC) != crc(header, 0, INDEX_CLEAN)) {
+            log.warn("MappedValueStorage: Index in {} is missing or corrupt. Starting empty.", directory);
+            return -1;
+        }
+        if (header.getInt(8) != slabSize) {
+            log.warn("MappedValueStorage: Files in {} use {} byte slabs, not {}. Starting empty.",
+                    directory, header.getInt(8), slabSize);
+            return -1;
+        }
+        int slabs = header.getInt(12);
+        return indexChannel.size() >= INDEX_HEADER_BYTES + (long) SLOT_BYTES * slabs ? slabs : -1;
+    }
+
+    private boolean readCleanFlag() throws IOException {
+        ByteBuffer flag = ByteBuffer.allocate(4);
+        indexChannel.read(flag, INDEX_CLEAN);
+        return flag.getInt(0) == 1;
+    }
+
+    // Marks the files as in use: until close() sets the flag again, a restart treats them as possibly torn
+    private void writeIndexHeader(int maxSlabs) {
+        index.putInt(0, INDEX_MAGIC);
+        index.putInt(4, INDEX_VERSION);
+        index.putInt(8, slabSize);
+        index.putInt(12, maxSlabs);
+        index.putInt(INDEX_HEADER_CRC, crc(index, 0, INDEX_CLEAN));
+        index.putInt(INDEX_CLEAN, 0);
+        index.force();
+    }
+
+    private void writeSlot(int slabIndex, int classIndex, int chunkSize) {
+        int slot = INDEX_HEADER_BYTES + slabIndex * SLOT_BYTES;
+        index.putInt(slot, classIndex + 1);
+        index.putInt(slot + 4, chunkSize);
+        index.putInt(slot + 8, crc(index, slot, 8));
+    }
+
+    // Class the slab was last carved for, or -1 if it never was or its slot is corrupt
+    private int readSlot(int slabIndex) {
+        int slot = INDEX_HEADER_BYTES + slabIndex * SLOT_BYTES;
+        int classIndex = index.getInt(slot) - 1;
+        if (classIndex < 0) {
+            return -1;
+        }
+        if (index.getInt(slot + 8) != crc(index, slot, 8) || allocator.chunkSizeOfClass(classIndex) != index.getInt(slot + 4)) {
+            log.warn("MappedValueStorage: Slot of slab {} is corrupt; its records are dropped.", slabIndex);
+            // Records can start at any 8-byte boundary; clear them all so a later carve cannot bring them back
+            ByteBuffer slab = slabBuffer(slabIndex);
+            for (int offset = 0; offset < slabSize; offset += 8) {
+                slab.putInt(offset, 0);
+            }
+            return -1;
+        }
+        return classIndex;
+    }
+}
@@ -0,0 +1,228 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+import com.distributed.distributed_cache_project.config.NodeConfigProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Short-lived copies of values read from other nodes, so repeated GETs of a hot key owned elsewhere skip the hop.
+ *
+ * Both sides of the protocol live here. A reading node asks the owner for a lease along with a forwarded GET. The
+ * owner notes the reader for the lease's duration and tells it to drop its copy when the key is next written or
+ * deleted. The reader keeps a copy only if a lease was granted, for at most the lease's duration. A copy is never
+ * older than {@code ttl-millis}, even when an invalidation is lost.
+ *
+ * Keys are routing keys ({@code name:key} for a named cache), so one instance serves every cache.
+ */
+public class NearCache {
+    private static final Logger log = LoggerFactory.getLogger(NearCache.class);
+
+    private static final int DEFAULT_MAX_ENTRIES = 10_000;
+    private static final long DEFAULT_TTL_MILLIS = 1_000;
+
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LocalCache copies; // Null when disabled
+
+    // Reader side: forwarded GETs in flight, by key. An invalidation drops the entry, so a reply fetched before the
+    // write is not kept.
+    private final ConcurrentHashMap<String, Long> fetches = new ConcurrentHashMap<>();
+    private final AtomicLong fetchSequence = new AtomicLong();
+
+    // Owner side: nodes holding a lease on each key, with the time their lease runs out
+    private final ConcurrentHashMap<String, Map<String, Long>> readers = new ConcurrentHashMap<>();
+    private volatile long nextPurgeMillis;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    /**
+     * A value read from its owner, with how long the reader may keep a copy (0 = not at all).
+     */
+    public record Lease(CacheValue value, long ttlMillis) {
+    }
+
+    /**
+     * When enabled, copies are held in a {@link LocalCache} of their own, which runs its own expiry scheduler thread.
+     * Copies are kept uncompressed by a compressor of their own: they are few, short-lived and read on the hot path,
+     * and the node's compression statistics then describe only the values it owns and replicates.
+     */
+    public NearCache(NodeConfigProperties.NearCacheProperties props) {
+        this.enabled = props != null && props.isEnabled();
+        this.maxEntries = props != null && props.getMaxEntries() > 0 ? props.getMaxEntries() : DEFAULT_MAX_ENTRIES;
+        this.ttlMillis = props != null && props.getTtlMillis() > 0 ? props.getTtlMillis() : DEFAULT_TTL_MILLIS;
+        if (!enabled) {
+            this.copies = null;
+            return;
+        }
+        NodeConfigProperties.CacheCapacityProperties capacity = new NodeConfigProperties.CacheCapacityProperties();
+        capacity.setMaxEntries(maxEntries);
+        capacity.setPolicy("lru");
+        NodeConfigProperties copyProps = new NodeConfigProperties();
+        copyProps.setCapacity(capacity);
+        this.copies = new LocalCache(copyProps); // No compression settings, so a compressor that never deflates
+        log.info("NearCache: Keeping up to {} values read from other nodes for at most {} ms.", maxEntries, ttlMillis);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // --- Reader side ---
+
+    /**
+     * The local copy of the key, or null.
+     */
+    public CacheValue get(String key) {
+        Object value = copies.get(key);
+        if (value == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return (CacheValue) value;
+    }
+
+    /**
+     * Registers a forwarded GET about to be sent. Pass the returned token to {@link #complete} with the reply, and to
+     * {@link #abandon} once the request is over.
+     */
+    public long startFetch(String key) {
+        long token = fetchSequence.incrementAndGet();
+        fetches.put(key, token); // A later fetch of the same key takes over
+        return token;
+    }
+
+    /**
+     * Keeps a copy of the reply, unless the key was invalidated or fetched again since the fetch started.
+     */
+    public void complete(String key, long token, Lease lease) {
+        if (lease.ttlMillis() <= 0) {
+            return;
+        }
+        long keepMillis = Math.min(lease.ttlMillis(), ttlMillis);
+        // Stored inside the map's lock for the key, so an invalidation cannot run between the check and the put
+        fetches.computeIfPresent(key, (k, current) -> {
+            if (current != token) {
+                return current;
+            }
+            copies.put(k, lease.value(), keepMillis);
+            return null;
+        });
+    }
+
+    public void abandon(String key, long token) {
+        fetches.remove(key, token);
+    }
+
+    /**
+     * Drops the local copy of the key and any reply still on its way.
+     */
+    public void invalidate(String key) {
+        if (!enabled) {
+            return;
+        }
+        fetches.compute(key, (k, current) -> {
+            copies.delete(k);
+            return null;
+        });
+        invalidationCount.incrementAndGet();
+    }
+
+    // --- Owner side ---
+
+    /**
+     * Notes that the reader is about to receive the key's value. Must be called before the value is read, so a write
+     * that lands after the read is sure to find the reader.
+     * @return the lease to grant in milliseconds, or 0 if the reader must not keep a copy
+     */
+    public long registerReader(String key, String readerId) {
+        if (!enabled) {
+            return 0;
+        }
+        long now = CacheClock.millis();
+        if (readers.size() >= maxEntries && !readers.containsKey(key)) {
+            purgeExpiredReaders(now);
+            if (readers.size() >= maxEntries) {
+                return 0; // Tracking is full; the reader just goes back to the owner next time
+            }
+        }
+        long expiresAt = now + ttlMillis;
+        readers.compute(key, (k, leases) -> {
+            Map<String, Long> updated = leases != null ? leases : new HashMap<>(4);
+            updated.put(readerId, expiresAt);
+            return updated;
+        });
+        return ttlMillis;
+    }
+
+    /**
+     * Removes and returns the nodes whose lease on the key is still running, to be sent an invalidation.
+     */
+    public List<String> takeReaders(String key) {
+        if (!enabled) {
+            return List.of();
+        }
+        Map<String, Long> leases = readers.remove(key);
+        if (leases == null) {
+            return List.of();
+        }
+        long now = CacheClock.millis();
+        List<String> live = new ArrayList<>(leases.size());
+        leases.forEach((readerId, expiresAt) -> {
+            if (expiresAt > now) {
+                live.add(readerId);
+            }
+        });
+        return live;
+    }
+
+    // Runs at most twice per lease duration, so a table full of live leases is not rescanned on every read
+    private void purgeExpiredReaders(long now) {
+        if (now < nextPurgeMillis) {
+            return;
+        }
+        nextPurgeMillis = now + Math.max(1, ttlMillis / 2);
+        for (String key : readers.keySet()) {
+            readers.computeIfPresent(key, (k, leases) -> {
+                leases.values().removeIf(expiresAt -> expiresAt <= now);
+                return leases.isEmpty() ? null : leases;
+            });
+        }
+    }
+
+    public void shutdown() {
+        if (copies != null) {
+            copies.shutdown();
+        }
+    }
+
+    public int size() {
+        return copies != null ? copies.size() : 0;
+    }
+
+    public int getTrackedKeyCount() {
+        return readers.size();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getInvalidationCount() {
+        return invalidationCount.get();
+    }
+}
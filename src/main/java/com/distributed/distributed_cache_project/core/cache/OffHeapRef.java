@@ -0,0 +1,7 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+/**
+ * Fixed-size on-heap handle to a record held by {@link OffHeapValueStorage} or {@link MappedValueStorage}.
+ */
+record OffHeapRef(long handle) {
+}
@@ -0,0 +1,121 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Keeps keys and values serialized in direct memory managed by a {@link SlabAllocator}, so the heap only holds an
+ * {@link OffHeapRef} per entry no matter how large the values are.
+ *
+ * Record layout: {@code [int keyLength][int valueLength][key UTF-8][value]}, where the value is in
+ * {@link ValueCodec} encoding.
+ *
+ * When memory runs out, a whole slab is drained: the key of every chunk in it is read back from the record and that
+ * key is evicted if its entry still points at the chunk. The empty slab can then serve any size class.
+ *
+ * Reads do not lock. A reader copies the record, then checks that the entry is still mapped; a chunk is only freed
+ * after its entry has been unmapped, so if the entry is still there the copy cannot have seen a recycled chunk.
+ */
+final class OffHeapValueStorage implements ValueStorage {
+    private static final int HEADER_BYTES = 8;
+
+    private final SlabAllocator allocator;
+
+    OffHeapValueStorage(int slabSizeBytes, long maxBytes) {
+        this.allocator = new SlabAllocator(slabSizeBytes, maxBytes);
+    }
+
+    @Override
+    public Object store(String key, Object value, long expiresAtMillis) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] valueBytes = ValueCodec.encode(value);
+        int size = HEADER_BYTES + keyBytes.length + valueBytes.length;
+        if (size > allocator.maxChunkSize()) {
+            throw new IllegalArgumentException("Entry for key '" + key + "' needs " + size
+                    + " bytes, more than the off-heap slab size of " + allocator.maxChunkSize() + " bytes.");
+        }
+        long handle = allocator.allocate(size);
+        if (handle < 0) {
+            return null;
+        }
+        ByteBuffer slab = allocator.slab(handle);
+        int offset = allocator.offset(handle);
+        slab.putInt(offset, keyBytes.length);
+        slab.putInt(offset + 4, valueBytes.length);
+        slab.put(offset + HEADER_BYTES, keyBytes);
+        slab.put(offset + HEADER_BYTES + keyBytes.length, valueBytes);
+        return new OffHeapRef(handle);
+    }
+
+    @Override
+    public Object load(Object stored, BooleanSupplier stillCurrent) {
+        long handle = ((OffHeapRef) stored).handle();
+        ByteBuffer slab = allocator.slab(handle);
+        int offset = allocator.offset(handle);
+        int keyLength = slab.getInt(offset);
+        int valueLength = slab.getInt(offset + 4);
+        byte[] valueBytes = null;
+        long length = HEADER_BYTES + (long) keyLength + valueLength;
+        // Lengths can be garbage if the chunk was recycled under us; only copy when they fit the chunk. If the slab was
+        // carved again for a larger class, the offset is no longer a chunk boundary, so the slab's end bounds it too.
+        if (keyLength >= 0 && valueLength > 0 && length <= allocator.chunkSize(handle) && offset + length <= slab.limit()) {
+            valueBytes = new byte[valueLength];
+            slab.get(offset + HEADER_BYTES + keyLength, valueBytes);
+        }
+        VarHandle.loadLoadFence(); // The copy above must complete before the entry is re-checked
+        if (!stillCurrent.getAsBoolean() || valueBytes == null) {
+            return RECYCLED;
+        }
+        return ValueCodec.decode(valueBytes);
+    }
+
+    @Override
+    public void release(Object stored) {
+        allocator.free(((OffHeapRef) stored).handle());
+    }
+
+    @Override
+    public int weigh(String key, Object value, Object stored) {
+        // The whole chunk is spoken for, whatever part of it the record fills
+        return EntryWeigher.ENTRY_OVERHEAD_BYTES + allocator.chunkSize(((OffHeapRef) stored).handle());
+    }
+
+    @Override
+    public boolean reclaim(BiConsumer<String, Object> evictIfStored) {
+        int slabIndex = allocator.nextSlabToReclaim();
+        if (slabIndex < 0) {
+            return false;
+        }
+        for (long handle : allocator.chunkHandles(slabIndex)) {
+            String key = readKey(handle);
+            if (key != null) { // Free chunks hold stale or garbage keys; evictIfStored ignores those
+                evictIfStored.accept(key, new OffHeapRef(handle));
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public long usedBytes() {
+        return allocator.usedBytes();
+    }
+
+    long reservedBytes() {
+        return allocator.reservedBytes();
+    }
+
+    private String readKey(long handle) {
+        ByteBuffer slab = allocator.slab(handle);
+        int offset = allocator.offset(handle);
+        int keyLength = slab.getInt(offset);
+        if (keyLength < 0 || HEADER_BYTES + (long) keyLength > allocator.chunkSize(handle)) {
+            return null;
+        }
+        byte[] keyBytes = new byte[keyLength];
+        slab.get(offset + HEADER_BYTES, keyBytes);
+        return new String(keyBytes, StandardCharsets.UTF_8);
+    }
+}
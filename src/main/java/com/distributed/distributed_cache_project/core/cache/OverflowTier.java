@@ -0,0 +1,477 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.zip.CRC32C;
+
+/**
+ * Second cache tier on local disk for entries evicted from memory. A {@link LocalCache} lookup that misses in memory
+ * checks here and moves a hit back into memory.
+ *
+ * Evicted entries are appended to log files of up to {@code fileBytes} each, through a write buffer, so an eviction
+ * costs a memory copy and only every full buffer costs a write. An in-memory index maps each key to its latest record.
+ * A record stops counting once its key is read back, written or deleted, and a file with no live records left is
+ * deleted. Once the files pass three quarters of {@code maxBytes}, a cleaner thread picks the file with the smallest
+ * share of live records, copies those to the end of the log and deletes the file, as long as that share is below
+ * half. If the files still exceed {@code maxBytes}, the oldest one is deleted with whatever it holds. Nothing is kept
+ * across restarts: the index lives in memory, so old files are cleared on startup.
+ *
+ * Record layout: {@code [int length][int crc32c][long expiresAtMillis][int keyLength][key][value]}, with the value
+ * encoded by {@link ValueCodec} and the checksum covering everything after it.
+ */
+final class OverflowTier {
+    private static final Logger log = LoggerFactory.getLogger(OverflowTier.class);
+
+    private static final String FILE_PREFIX = "overflow-";
+    private static final String FILE_SUFFIX = ".log";
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int WRITE_BUFFER_BYTES = 256 * 1024;
+    private static final long CLEANER_IDLE_NANOS = 1_000_000_000L;
+
+    private final Path directory;
+    private final long maxBytes;
+    private final long fileBytes;
+    private final long cleanAtBytes;
+    private final Thread cleaner;
+    private volatile boolean closed;
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+
+    // Guarded by this tier's monitor
+    private final Deque<LogFile> files = new ArrayDeque<>(); // Oldest first; the last one is being appended to
+    private final ByteBuffer writeBuffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES);
+    private long bufferStart; // Offset in the current file of the first buffered byte
+    private int nextFileId;
+    private volatile long diskBytes;
+
+    private final AtomicLong spillCount = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /**
+     * Where a key's latest record is. Identity matters: a promotion only succeeds if the key still maps to the exact
+     * location that was read.
+     */
+    record Location(LogFile file, long offset, int length, long expiresAtMillis) {
+        boolean isExpired(long nowMillis) {
+            return expiresAtMillis > 0 && nowMillis > expiresAtMillis;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
+    }
+
+    record Hit(Object value, Location location) {
+    }
+
+    static final class LogFile {
+        final Path path;
+        final FileChannel channel;
+        final AtomicLong liveBytes = new AtomicLong();
+        long size; // Bytes appended, including those still in the write buffer; guarded by the tier
+
+        LogFile(Path path, FileChannel channel) {
+            this.path = path;
+            this.channel = channel;
+        }
+    }
+
+    OverflowTier(Path directory, long maxBytes, long fileBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.fileBytes = Math.max(WRITE_BUFFER_BYTES, Math.min(fileBytes, maxBytes));
+        this.cleanAtBytes = maxBytes / 4 * 3;
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> stale = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+                for (Path path : stale) {
+                    Files.delete(path); // Left by the previous run; without its index the records are unreachable
+                }
+            }
+            synchronized (this) {
+                openNextFile();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot create the overflow tier in " + directory + ": " + e.getMessage(), e);
+        }
+        this.cleaner = new Thread(this::runCleaner, "overflow-cleaner");
+        this.cleaner.setDaemon(true);
+        this.cleaner.start();
+    }
+
+    /**
+     * Records an entry evicted from memory. Never throws: if the write fails, the entry is simply lost as it would be
+     * without this tier.
+     */
+    void append(String key, Object value, long expiresAtMillis) {
+        append(key, value, expiresAtMillis, () -> true);
+    }
+
+    /**
+     * Like {@link #append(String, Object, long)}, for a caller that writes the entry after letting go of the key:
+     * the record only becomes visible if {@code stillEvicted} holds at that moment. It is checked atomically with
+     * {@link #invalidate}, so a key written or deleted meanwhile never gets its old value back from here.
+     */
+    void append(String key, Object value, long expiresAtMillis, BooleanSupplier stillEvicted) {
+        byte[] record;
+        try {
+            record = encode(key, value, expiresAtMillis);
+        } catch (IllegalArgumentException e) {
+            log.debug("OverflowTier: Not keeping key '{}': {}", key, e.getMessage());
+            return;
+        }
+        synchronized (this) {
+            try {
+                Location appended = appendRecord(record, expiresAtMillis);
+                Location[] replaced = new Location[1];
+                Location current = index.compute(key, (k, previous) -> {
+                    if (!stillEvicted.getAsBoolean()) {
+                        return previous;
+                    }
+                    replaced[0] = previous;
+                    return appended;
+                });
+                if (current == appended) {
+                    superseded(replaced[0]);
+                    spillCount.incrementAndGet();
+                } else {
+                    superseded(appended); // Written or deleted since it was evicted
+                }
+                while (diskBytes > maxBytes && files.size() > 1) {
+                    dropFile(files.getFirst());
+                }
+            } catch (IOException e) {
+                log.warn("OverflowTier: Could not write key '{}': {}", key, e.getMessage());
+            }
+        }
+        if (diskBytes > cleanAtBytes) {
+            LockSupport.unpark(cleaner);
+        }
+    }
+
+    /**
+     * Reads the key's latest record, or returns null if the tier does not hold it. Does not remove it; see
+     * {@link #remove(String, Location)}.
+     */
+    Hit read(String key, long nowMillis) {
+        Location location = index.get(key);
+        if (location == null) {
+            return null;
+        }
+        if (location.isExpired(nowMillis)) {
+            remove(key, location);
+            return null;
+        }
+        ByteBuffer record = ByteBuffer.allocate(location.length());
+        try {
+            if (!readBuffered(location, record)) {
+                readFully(location, record); // Not buffered any more, so the file holds it
+            }
+            record.flip();
+            return new Hit(decode(key, record), location);
+        } catch (IOException | IllegalArgumentException e) {
+            // A file dropped under us reads as closed; anything else is a damaged record
+            log.debug("OverflowTier: Could not read key '{}': {}", key, e.getMessage());
+            remove(key, location);
+            return null;
+        }
+    }
+
+    /**
+     * Forgets the key if it still maps to this location. Returns true if it did, which makes the caller the one
+     * that moves the entry back into memory.
+     */
+    boolean remove(String key, Location location) {
+        if (index.remove(key, location)) {
+            superseded(location);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Forgets whatever the tier holds for the key, as it has been written or deleted.
+     */
+    void invalidate(String key) {
+        // No isEmpty() shortcut: the count lags a concurrent append's compute, which this must not miss
+        superseded(index.remove(key));
+    }
+
+    /**
+     * Visits every entry the tier holds, reading each from disk. Weakly consistent, like {@link LocalCache#forEach}.
+     */
+    void forEach(LocalCache.EntryVisitor visitor, long nowMillis) {
+        for (String key : index.keySet()) {
+            Hit hit = read(key, nowMillis);
+            if (hit != null) {
+                visitor.visit(key, hit.value(), hit.location().expiresAtMillis());
+            }
+        }
+    }
+
+    void recordHit() {
+        hitCount.incrementAndGet();
+    }
+
+    int size() {
+        return index.size();
+    }
+
+    long diskBytes() {
+        return diskBytes;
+    }
+
+    long spillCount() {
+        return spillCount.get();
+    }
+
+    long hitCount() {
+        return hitCount.get();
+    }
+
+    long droppedCount() {
+        return droppedCount.get();
+    }
+
+    synchronized void close() {
+        closed = true;
+        LockSupport.unpark(cleaner);
+        while (!files.isEmpty()) {
+            deleteFile(files.removeFirst());
+        }
+        index.clear();
+        diskBytes = 0;
+    }
+
+    private static byte[] encode(String key, Object value, long expiresAtMillis) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] valueBytes = ValueCodec.encode(value);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + 8 + 4 + keyBytes.length + valueBytes.length);
+        record.putInt(record.capacity());
+        record.putInt(0); // Checksum, filled in below
+        record.putLong(expiresAtMillis);
+        record.putInt(keyBytes.length).put(keyBytes);
+        record.put(valueBytes);
+        CRC32C crc = new CRC32C();
+        crc.update(record.array(), RECORD_HEADER_BYTES, record.capacity() - RECORD_HEADER_BYTES);
+        record.putInt(4, (int) crc.getValue());
+        return record.array();
+    }
+
+    private static Object decode(String key, ByteBuffer record) {
+        int length = record.getInt();
+        int checksum = record.getInt();
+        CRC32C crc = new CRC32C();
+        crc.update(record.slice(RECORD_HEADER_BYTES, record.limit() - RECORD_HEADER_BYTES));
+        if (length != record.limit() || (int) crc.getValue() != checksum) {
+            throw new IllegalArgumentException("Record checksum mismatch");
+        }
+        record.getLong(); // Deadline, also held by the index
+        byte[] keyBytes = new byte[record.getInt()];
+        record.get(keyBytes);
+        if (!key.equals(new String(keyBytes, StandardCharsets.UTF_8))) {
+            throw new IllegalArgumentException("Record belongs to another key");
+        }
+        byte[] valueBytes = new byte[record.remaining()];
+        record.get(valueBytes);
+        return ValueCodec.decode(valueBytes);
+    }
+
+    // Copies the record from the write buffer if it has not been written to its file yet
+    private synchronized boolean readBuffered(Location location, ByteBuffer target) {
+        if (location.file() != files.peekLast() || location.offset() < bufferStart) {
+            return false;
+        }
+        target.put(writeBuffer.slice((int) (location.offset() - bufferStart), location.length()));
+        return true;
+    }
+
+    private static void readFully(Location location, ByteBuffer target) throws IOException {
+        long position = location.offset();
+        while (target.hasRemaining()) {
+            int read = location.file().channel.read(target, position);
+            if (read < 0) {
+                throw new IOException("Record runs past the end of " + location.file().path);
+            }
+            position += read;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer source, long position) throws IOException {
+        while (source.hasRemaining()) {
+            position += channel.write(source, position);
+        }
+    }
+
+    // Accounts for a record that no longer backs its key, and deletes its file once nothing in it is live
+    private void superseded(Location location) {
+        if (location != null && location.file().liveBytes.addAndGet(-location.length()) == 0) {
+            synchronized (this) {
+                if (location.file() != files.peekLast() && files.contains(location.file())) {
+                    dropFile(location.file());
+                }
+            }
+        }
+    }
+
+    private void runCleaner() {
+        while (!closed) {
+            try {
+                if (diskBytes <= cleanAtBytes || !cleanOneFile()) {
+                    LockSupport.parkNanos(CLEANER_IDLE_NANOS);
+                }
+            } catch (RuntimeException e) {
+                log.error("OverflowTier: Cleaning failed: {}", e.getMessage(), e);
+                LockSupport.parkNanos(CLEANER_IDLE_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Copies the live records of the file with the smallest live share to the end of the log and deletes the file.
+     * Returns false if no file is worth it. Records are read without the monitor, so evictions only wait for the
+     * copies to be appended.
+     */
+    private boolean cleanOneFile() {
+        LogFile victim = null;
+        synchronized (this) {
+            for (LogFile file : files) {
+                if (file != files.peekLast() && file.size > 0
+                        && (victim == null || file.liveBytes.get() * victim.size < victim.liveBytes.get() * file.size)) {
+                    victim = file;
+                }
+            }
+        }
+        if (victim == null || victim.liveBytes.get() * 2 >= victim.size) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Location> e : index.entrySet()) {
+            Location location = e.getValue();
+            if (location.file() != victim) {
+                continue;
+            }
+            if (location.isExpired(now)) {
+                remove(e.getKey(), location);
+                continue;
+            }
+            ByteBuffer record = ByteBuffer.allocate(location.length());
+            try {
+                readFully(location, record);
+            } catch (IOException ex) {
+                break; // Dropped meanwhile
+            }
+            synchronized (this) {
+                if (closed || !files.contains(victim)) {
+                    return true;
+                }
+                try {
+                    Location moved = appendRecord(record.array(), location.expiresAtMillis());
+                    if (index.replace(e.getKey(), location, moved)) {
+                        superseded(location);
+                    } else {
+                        superseded(moved); // Read back, written or deleted while it was being copied
+                    }
+                } catch (IOException ex) {
+                    log.warn("OverflowTier: Could not relocate key '{}': {}", e.getKey(), ex.getMessage());
+                    return false;
+                }
+            }
+        }
+        synchronized (this) {
+            if (files.contains(victim)) {
+                dropFile(victim);
+            }
+        }
+        return true;
+    }
+
+    // The methods below must be called with the tier's monitor held.
+
+    // Appends a record to the log and returns its location, counted as live
+    private Location appendRecord(byte[] record, long expiresAtMillis) throws IOException {
+        LogFile current = files.getLast();
+        if (current.size > 0 && current.size + record.length > fileBytes) {
+            flush();
+            openNextFile();
+            if (current.liveBytes.get() == 0) {
+                dropFile(current); // Emptied while it was being appended to
+            }
+            current = files.getLast();
+        }
+        if (record.length > writeBuffer.remaining()) {
+            flush();
+        }
+        Location location = new Location(current, current.size, record.length, expiresAtMillis);
+        if (record.length > writeBuffer.capacity()) {
+            writeFully(current.channel, ByteBuffer.wrap(record), current.size);
+            bufferStart += record.length;
+        } else {
+            writeBuffer.put(record);
+        }
+        current.size += record.length;
+        current.liveBytes.addAndGet(record.length);
+        diskBytes += record.length;
+        return location;
+    }
+
+    private void flush() throws IOException {
+        LogFile current = files.getLast();
+        writeBuffer.flip();
+        writeFully(current.channel, writeBuffer, bufferStart);
+        bufferStart += writeBuffer.limit();
+        writeBuffer.clear();
+    }
+
+    private void openNextFile() throws IOException {
+        Path path = directory.resolve(FILE_PREFIX + nextFileId++ + FILE_SUFFIX);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        files.addLast(new LogFile(path, channel));
+        bufferStart = 0;
+    }
+
+    private void dropFile(LogFile file) {
+        files.remove(file);
+        diskBytes -= file.size;
+        if (file.liveBytes.get() > 0) {
+            for (Map.Entry<String, Location> e : index.entrySet()) {
+                if (e.getValue().file() == file && index.remove(e.getKey(), e.getValue())) {
+                    droppedCount.incrementAndGet();
+                }
+            }
+        }
+        deleteFile(file);
+    }
+
+    private void deleteFile(LogFile file) {
+        try {
+            file.channel.close();
+            Files.deleteIfExists(file.path);
+        } catch (IOException e) {
+            log.warn("OverflowTier: Could not delete {}: {}", file.path, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SIEVE: keys are kept in insertion order and a hit only marks the key as visited, so it needs no lock. A hand walks
+ * from the oldest key towards the newest, clearing visited marks, and evicts the first unvisited key it finds. Unlike
+ * CLOCK, survivors stay where they are instead of being moved, which lets new keys that are never read again leave
+ * quickly.
+ */
+final class SievePolicy implements EvictionPolicy {
+    private final ConcurrentHashMap<String, Node> index = new ConcurrentHashMap<>();
+    private Node head; // Newest
+    private Node tail; // Oldest
+    private Node hand; // Where the next sweep resumes; null means start at the tail
+
+    @Override
+    public void recordInsert(String key) {
+        Node node = new Node(key);
+        Node previous = index.put(key, node);
+        if (previous != null) {
+            unlink(previous);
+        }
+        node.next = head;
+        if (head != null) {
+            head.prev = node;
+        }
+        head = node;
+        if (tail == null) {
+            tail = node;
+        }
+    }
+
+    @Override
+    public void recordAccess(String key) {
+        Node node = index.get(key);
+        if (node != null) {
+            node.visited = true;
+        }
+    }
+
+    @Override
+    public void recordRemoval(String key) {
+        Node node = index.remove(key);
+        if (node != null) {
+            unlink(node);
+        }
+    }
+
+    @Override
+    public String evict() {
+        if (tail == null) {
+            return null;
+        }
+        Node node = hand != null ? hand : tail;
+        while (node.visited) {
+            node.visited = false;
+            node = node.prev != null ? node.prev : tail;
+        }
+        hand = node; // unlink() then leaves the hand on the next newer key
+        index.remove(node.key);
+        unlink(node);
+        return node.key;
+    }
+
+    @Override
+    public boolean isAccessLockFree() {
+        return true;
+    }
+
+    private void unlink(Node node) {
+        if (hand == node) {
+            hand = node.prev;
+        }
+        if (node.prev != null) {
+            node.prev.next = node.next;
+        } else {
+            head = node.next;
+        }
+        if (node.next != null) {
+            node.next.prev = node.prev;
+        } else {
+            tail = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+    }
+
+    private static final class Node {
+        final String key;
+        volatile boolean visited;
+        Node prev; // Towards the head
+        Node next; // Towards the tail
+
+        Node(String key) {
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongPredicate;
+
+/**
+ * Memcached-style allocator over direct {@link ByteBuffer} slabs.
+ *
+ * Chunk sizes grow by 25% per size class, from 64 bytes up to the slab size. Each slab serves one size class at a
+ * time. Free chunks are chained through their own first four bytes, so free-space tracking costs no heap. A slab whose
+ * chunks are all free goes back to a shared pool and can be re-carved for whichever class needs memory next. When
+ * memory runs out, the owner drains a slab picked by {@link #nextSlabToReclaim()} so that it can move to another class.
+ * Chunks are addressed by a long handle: slab index in the high 32 bits, byte offset in the low 32 bits.
+ *
+ * Slab memory comes from a {@link SlabSource}: direct buffers by default, or regions of a memory-mapped file, in
+ * which case {@link #restore} rebuilds the allocator from the chunks that survived a restart.
+ */
+final class SlabAllocator {
+    private static final int MIN_CHUNK_SIZE = 64;
+    private static final double GROWTH_FACTOR = 1.25;
+    private static final int NONE = -1;
+
+    private final int slabSize;
+    private final SlabSource source;
+    private final int[] chunkSizes;
+    private final SizeClass[] classes;
+    private final Slab[] slabs;
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final int[] emptySlabs; // guarded by slabs
+    private int emptyCount; // guarded by slabs
+    private int slabCount; // guarded by slabs
+    private int reclaimHand; // guarded by slabs
+
+    /**
+     * Provides the memory behind each slab and hears about every carve, so a persistent source can record it.
+     */
+    interface SlabSource {
+        ByteBuffer slab(int index);
+
+        default void carved(int index, int classIndex, int chunkSize) {
+        }
+    }
+
+    SlabAllocator(int slabSize, long maxBytes) {
+        this(slabSize, maxBytes, index -> ByteBuffer.allocateDirect(slabSize));
+    }
+
+    SlabAllocator(int slabSize, long maxBytes, SlabSource source) {
+        if (slabSize < MIN_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Slab size must be at least " + MIN_CHUNK_SIZE + " bytes.");
+        }
+        this.slabSize = slabSize;
+        this.source = source;
+        List<Integer> sizes = new ArrayList<>();
+        for (double size = MIN_CHUNK_SIZE; size < slabSize; size *= GROWTH_FACTOR) {
+            int aligned = ((int) size + 7) & ~7;
+            if (sizes.isEmpty() || sizes.getLast() != aligned) {
+                sizes.add(aligned);
+            }
+        }
+        sizes.add(slabSize);
+        this.chunkSizes = sizes.stream().mapToInt(Integer::intValue).toArray();
+        this.classes = new SizeClass[chunkSizes.length];
+        for (int i = 0; i < classes.length; i++) {
+            classes[i] = new SizeClass();
+        }
+        int maxSlabs = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxBytes / slabSize));
+        this.slabs = new Slab[maxSlabs];
+        this.emptySlabs = new int[maxSlabs];
+    }
+
+    /**
+     * Returns a handle to a chunk of at least {@code size} bytes, or -1 if the matching size class is full and no
+     * empty slab is left to give it. Throws if the size can never fit in a slab.
+     */
+    long allocate(int size) {
+        int classIndex = classFor(size);
+        SizeClass sizeClass = classes[classIndex];
+        synchronized (sizeClass) {
+            while (sizeClass.partialCount > 0) {
+                Slab slab = slabs[sizeClass.partial[sizeClass.partialCount - 1]];
+                int offset = slab.take();
+                if (slab.isFull()) {
+                    sizeClass.partialCount--;
+                }
+                if (offset != NONE) {
+                    usedBytes.addAndGet(slab.chunkSize);
+                    return handle(slab.index, offset);
+                }
+            }
+            Slab slab = acquireEmptySlab(classIndex);
+            if (slab == null) {
+                return -1;
+            }
+            int offset = slab.take();
+            if (!slab.isFull()) {
+                sizeClass.pushPartial(slab.index);
+            }
+            usedBytes.addAndGet(slab.chunkSize);
+            return handle(slab.index, offset);
+        }
+    }
+
+    void free(long handle) {
+        Slab slab = slabs[slabIndex(handle)];
+        boolean empty;
+        // The slab's class cannot change while it has a chunk in use, so this read is stable
+        SizeClass sizeClass = classes[slab.classIndex];
+        synchronized (sizeClass) {
+            boolean wasFull = slab.isFull();
+            slab.give(offset(handle));
+            usedBytes.addAndGet(-slab.chunkSize);
+            empty = slab.used == 0;
+            if (empty) {
+                if (!wasFull) {
+                    sizeClass.removePartial(slab.index);
+                }
+            } else if (wasFull) {
+                sizeClass.pushPartial(slab.index);
+            }
+        }
+        if (empty) {
+            synchronized (slabs) {
+                emptySlabs[emptyCount++] = slab.index;
+            }
+        }
+    }
+
+    ByteBuffer slab(long handle) {
+        return slabs[slabIndex(handle)].buffer;
+    }
+
+    int offset(long handle) {
+        return (int) handle;
+    }
+
+    int chunkSize(long handle) {
+        return slabs[slabIndex(handle)].chunkSize;
+    }
+
+    int maxChunkSize() {
+        return slabSize;
+    }
+
+    int maxSlabs() {
+        return slabs.length;
+    }
+
+    /**
+     * Chunk size of a size class, or -1 if there is no such class.
+     */
+    int chunkSizeOfClass(int classIndex) {
+        return classIndex >= 0 && classIndex < chunkSizes.length ? chunkSizes[classIndex] : -1;
+    }
+
+    /**
+     * Adds the next slab from the source as it was carved before a restart, before any allocation happens. Chunks
+     * for which {@code isLive} returns true are in use; all others are threaded onto the free list. A class index of
+     * -1 adds the slab as empty.
+     */
+    void restore(int classIndex, LongPredicate isLive) {
+        Slab slab;
+        synchronized (slabs) {
+            if (slabCount == slabs.length) {
+                throw new IllegalStateException("Cannot restore more than " + slabs.length + " slabs.");
+            }
+            slab = new Slab(slabCount, source.slab(slabCount));
+            slabs[slabCount++] = slab;
+            if (classIndex < 0) {
+                emptySlabs[emptyCount++] = slab.index;
+                return;
+            }
+        }
+        slab.carve(classIndex, chunkSizes[classIndex], slabSize);
+        slab.bump = slab.capacity;
+        slab.used = slab.capacity;
+        // Highest offset first, so the free list hands out low offsets first
+        for (int i = slab.capacity - 1; i >= 0; i--) {
+            long handle = handle(slab.index, i * slab.chunkSize);
+            if (isLive.test(handle)) {
+                usedBytes.addAndGet(slab.chunkSize);
+            } else {
+                slab.give(offset(handle));
+            }
+        }
+        if (slab.used == 0) {
+            synchronized (slabs) {
+                emptySlabs[emptyCount++] = slab.index;
+            }
+        } else if (!slab.isFull()) {
+            SizeClass sizeClass = classes[classIndex];
+            synchronized (sizeClass) {
+                sizeClass.pushPartial(slab.index);
+            }
+        }
+    }
+
+    long usedBytes() {
+        return usedBytes.get();
+    }
+
+    long reservedBytes() {
+        synchronized (slabs) {
+            return (long) slabCount * slabSize;
+        }
+    }
+
+    /**
+     * Picks the next in-use slab, clock-style, for the caller to drain when memory is exhausted. Returns -1 if no
+     * slab holds any chunk.
+     */
+    int nextSlabToReclaim() {
+        synchronized (slabs) {
+            for (int i = 0; i < slabCount; i++) {
+                int index = reclaimHand;
+                reclaimHand = (reclaimHand + 1) % slabCount;
+                if (slabs[index].used > 0) {
+                    return index;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Handles of every chunk position in the slab, free or not, as it is carved right now.
+     */
+    long[] chunkHandles(int slabIndex) {
+        Slab slab = slabs[slabIndex];
+        int count = slabSize / slab.chunkSize;
+        long[] handles = new long[count];
+        for (int i = 0; i < count; i++) {
+            handles[i] = handle(slabIndex, i * slab.chunkSize);
+        }
+        return handles;
+    }
+
+    private Slab acquireEmptySlab(int classIndex) {
+        Slab slab;
+        synchronized (slabs) {
+            if (emptyCount > 0) {
+                slab = slabs[emptySlabs[--emptyCount]];
+            } else if (slabCount < slabs.length) {
+                slab = new Slab(slabCount, source.slab(slabCount));
+                slabs[slabCount++] = slab;
+            } else {
+                return null;
+            }
+        }
+        slab.carve(classIndex, chunkSizes[classIndex], slabSize);
+        source.carved(slab.index, classIndex, chunkSizes[classIndex]);
+        return slab;
+    }
+
+    private int classFor(int size) {
+        if (size > slabSize) {
+            throw new IllegalArgumentException("Value of " + size + " bytes exceeds the off-heap slab size of " + slabSize + " bytes.");
+        }
+        int lo = 0;
+        int hi = chunkSizes.length - 1;
+        while (lo < hi) { // First class whose chunk size fits
+            int mid = (lo + hi) >>> 1;
+            if (chunkSizes[mid] < size) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    static long handle(int slabIndex, int offset) {
+        return ((long) slabIndex << 32) | offset;
+    }
+
+    private static int slabIndex(long handle) {
+        return (int) (handle >>> 32);
+    }
+
+    /**
+     * One slab's free space: a bump pointer over never-used chunks plus a free list threaded through freed ones.
+     * Guarded by the monitor of the size class that currently owns it.
+     */
+    private static final class Slab {
+        final int index;
+        final ByteBuffer buffer;
+        volatile int classIndex;
+        volatile int chunkSize;
+        volatile int used; // Also read without the class monitor when picking a slab to reclaim
+        int capacity;
+        int bump;
+        int freeHead = NONE;
+
+        Slab(int index, ByteBuffer buffer) {
+            this.index = index;
+            this.buffer = buffer;
+        }
+
+        void carve(int classIndex, int chunkSize, int slabSize) {
+            this.classIndex = classIndex;
+            this.chunkSize = chunkSize;
+            this.capacity = slabSize / chunkSize;
+            this.used = 0;
+            this.bump = 0;
+            this.freeHead = NONE;
+        }
+
+        int take() {
+            int offset;
+            if (freeHead != NONE) {
+                offset = freeHead;
+                freeHead = buffer.getInt(offset);
+            } else if (bump < capacity) {
+                offset = bump++ * chunkSize;
+            } else {
+                return NONE;
+            }
+            used++;
+            return offset;
+        }
+
+        void give(int offset) {
+            buffer.putInt(offset, freeHead);
+            freeHead = offset;
+            used--;
+        }
+
+        boolean isFull() {
+            return used == capacity;
+        }
+    }
+
+    private static final class SizeClass {
+        private int[] partial = new int[8]; // Slabs of this class with at least one free chunk
+        private int partialCount;
+
+        void pushPartial(int slabIndex) {
+            if (partialCount == partial.length) {
+                int[] grown = new int[partial.length * 2];
+                System.arraycopy(partial, 0, grown, 0, partialCount);
+                partial = grown;
+            }
+            partial[partialCount++] = slabIndex;
+        }
+
+        void removePartial(int slabIndex) {
+            for (int i = 0; i < partialCount; i++) {
+                if (partial[i] == slabIndex) {
+                    partial[i] = partial[--partialCount];
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+/**
+ * A cache entry with a TTL, linked into a {@link TimerWheel} bucket. Buckets are circular lists closed by a sentinel
+ * node. The entry is its own wheel node, so a TTL costs one object instead of an entry plus a separate node.
+ */
+final class TimerNode extends CacheEntry {
+    private final String key;
+    private final long deadlineMillis;
+    private final int ttlMillis; // Capped at about 24 days; only used to place refresh-ahead
+    TimerNode prev;
+    TimerNode next;
+
+    TimerNode(String key, Object value, int weight, int version, long deadlineMillis, long ttlMillis) {
+        super(value, weight, version);
+        this.key = key;
+        this.deadlineMillis = deadlineMillis;
+        this.ttlMillis = (int) Math.min(ttlMillis, Integer.MAX_VALUE);
+    }
+
+    static TimerNode sentinel() {
+        TimerNode sentinel = new TimerNode(null, null, 0, 0, Long.MAX_VALUE, 0);
+        sentinel.prev = sentinel;
+        sentinel.next = sentinel;
+        return sentinel;
+    }
+
+    @Override
+    public boolean isExpired(long nowMillis) {
+        return nowMillis > deadlineMillis;
+    }
+
+    @Override
+    public long getExpiresAtMillis() {
+        return deadlineMillis;
+    }
+
+    @Override
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    long getDeadlineMillis() {
+        return deadlineMillis;
+    }
+
+    boolean isLinked() {
+        return next != null;
+    }
+
+    void linkBefore(TimerNode sentinel) {
+        prev = sentinel.prev;
+        next = sentinel;
+        sentinel.prev.next = this;
+        sentinel.prev = this;
+    }
+
+    void unlink() {
+        prev.next = next;
+        next.prev = prev;
+        prev = null;
+        next = null;
+    }
+
+    /**
+     * Empties the bucket this sentinel closes and returns its first node; the returned chain ends with null.
+     */
+    TimerNode detachAll() {
+        if (next == this) {
+            return null;
+        }
+        TimerNode first = next;
+        prev.next = null;
+        prev = this;
+        next = this;
+        return first;
+    }
+}
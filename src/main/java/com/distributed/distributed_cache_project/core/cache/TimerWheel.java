@@ -0,0 +1,126 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+/**
+ * Hierarchical timing wheel that expires TTL entries close to their deadline without scanning the cache.
+ *
+ * Each level is a ring of buckets holding doubly linked lists of {@link TimerNode}s. Level 0 has 64 buckets of
+ * ~1 second; coarser levels cover ~65 seconds, ~70 minutes, ~18.6 hours and ~12.4 days per bucket. An entry goes into
+ * the finest level whose range covers its remaining time. When time advances past a bucket, its nodes are either
+ * moved to a due list or cascaded into a finer level, so every entry is touched a small constant number of times.
+ * Due nodes are then handed out one at a time by {@link #pollExpired}, which lets the owner drain them in small
+ * batches instead of all at once.
+ *
+ * Not thread-safe; the owning {@link CacheSegment} calls it under its lock.
+ */
+final class TimerWheel {
+    private static final int[] BUCKETS = {64, 64, 16, 16, 1};
+    private static final int[] SHIFTS = {10, 16, 22, 26, 30}; // log2 of each level's bucket span in millis
+    private static final long[] SPANS = {1L << 10, 1L << 16, 1L << 22, 1L << 26, 1L << 30, 1L << 30};
+
+    private final TimerNode[][] wheel;
+    private final TimerNode expired = TimerNode.sentinel(); // Due nodes not yet polled
+    private long currentTimeMillis;
+    private int scheduled;
+
+    TimerWheel(long nowMillis) {
+        this.currentTimeMillis = nowMillis;
+        this.wheel = new TimerNode[BUCKETS.length][];
+        for (int level = 0; level < BUCKETS.length; level++) {
+            wheel[level] = new TimerNode[BUCKETS[level]];
+            for (int bucket = 0; bucket < BUCKETS[level]; bucket++) {
+                wheel[level][bucket] = TimerNode.sentinel();
+            }
+        }
+    }
+
+    void schedule(TimerNode node) {
+        if (node.isLinked()) {
+            node.unlink();
+            scheduled--;
+        }
+        TimerNode sentinel = findBucket(node.getDeadlineMillis());
+        node.linkBefore(sentinel);
+        scheduled++;
+    }
+
+    void deschedule(TimerNode node) {
+        if (node != null && node.isLinked()) {
+            node.unlink();
+            scheduled--;
+        }
+    }
+
+    /**
+     * Moves the wheel forward to {@code nowMillis}, putting every node whose deadline has passed on the due list.
+     * Nodes in a passed bucket that are not due yet are re-filed into a finer level. Moving a node is a few pointer
+     * writes, so this stays cheap even when many entries fall due together.
+     */
+    void advance(long nowMillis) {
+        long previousTimeMillis = currentTimeMillis;
+        if (nowMillis <= previousTimeMillis) {
+            return;
+        }
+        currentTimeMillis = nowMillis;
+        for (int level = 0; level < SHIFTS.length; level++) {
+            long previousTicks = previousTimeMillis >>> SHIFTS[level];
+            long delta = (nowMillis >>> SHIFTS[level]) - previousTicks;
+            if (delta <= 0) {
+                break; // Coarser levels have not ticked either
+            }
+            expire(level, previousTicks, delta);
+        }
+    }
+
+    /**
+     * Removes and returns the next due node, or null if none are left.
+     */
+    TimerNode pollExpired() {
+        TimerNode node = expired.next;
+        if (node == expired) {
+            return null;
+        }
+        node.unlink();
+        scheduled--;
+        return node;
+    }
+
+    int scheduledCount() {
+        return scheduled;
+    }
+
+    private void expire(int level, long previousTicks, long delta) {
+        TimerNode[] buckets = wheel[level];
+        int mask = buckets.length - 1;
+        int steps = (int) Math.min(delta + 1, buckets.length);
+        int start = (int) (previousTicks & mask);
+        for (int i = start; i < start + steps; i++) {
+            TimerNode sentinel = buckets[i & mask];
+            TimerNode node = sentinel.detachAll();
+            while (node != null) {
+                TimerNode next = node.next;
+                node.prev = null;
+                node.next = null;
+                if (node.getDeadlineMillis() < currentTimeMillis) {
+                    node.linkBefore(expired);
+                } else {
+                    scheduled--;
+                    schedule(node);
+                }
+                node = next;
+            }
+        }
+    }
+
+    private TimerNode findBucket(long deadlineMillis) {
+        long duration = Math.max(0, deadlineMillis - currentTimeMillis);
+        int lastLevel = BUCKETS.length - 1;
+        for (int level = 0; level < lastLevel; level++) {
+            if (duration < SPANS[level + 1]) {
+                // A deadline already passed goes in the current bucket; its own is behind the wheel until it wraps
+                long ticks = (currentTimeMillis + duration) >>> SHIFTS[level];
+                return wheel[level][(int) (ticks & (BUCKETS[level] - 1))];
+            }
+        }
+        return wheel[lastLevel][0];
+    }
+}
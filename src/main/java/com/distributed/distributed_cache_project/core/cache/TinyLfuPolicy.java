@@ -0,0 +1,109 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * W-TinyLFU eviction policy. Not thread-safe; the segment lock guards every call.
+ *
+ * New keys land in a small LRU window (1% of capacity). When the window overflows, its eldest key becomes a candidate
+ * for the main region and has to beat the main region's eviction victim on estimated access frequency to get in, so a
+ * scan of cold keys only churns the window. The main region is a segmented LRU: keys enter probation and are promoted
+ * to the protected area (80% of the main region) when they are hit again.
+ */
+final class TinyLfuPolicy implements EvictionPolicy {
+    private static final double WINDOW_FRACTION = 0.01;
+    private static final double PROTECTED_FRACTION = 0.8;
+
+    private final FrequencySketch sketch;
+    private final LinkedHashMap<String, Boolean> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Boolean> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Boolean> protectedArea = new LinkedHashMap<>(16, 0.75f, true);
+    private final int windowMax;
+    private final int mainMax;
+    private final int protectedMax;
+
+    TinyLfuPolicy(int maxEntries) {
+        this.sketch = new FrequencySketch(maxEntries);
+        this.windowMax = Math.max(1, (int) (maxEntries * WINDOW_FRACTION));
+        this.mainMax = Math.max(0, maxEntries - windowMax);
+        this.protectedMax = (int) (mainMax * PROTECTED_FRACTION);
+    }
+
+    @Override
+    public void recordAccess(String key) {
+        sketch.increment(key);
+        if (window.get(key) != null || protectedArea.get(key) != null) {
+            return; // get() on an access-ordered map already moved it to the MRU end
+        }
+        if (probation.remove(key) != null) {
+            protectedArea.put(key, Boolean.TRUE);
+            if (protectedArea.size() > protectedMax) {
+                // Demote the protected LRU key back to probation to keep the split
+                String demoted = pollEldest(protectedArea);
+                probation.put(demoted, Boolean.TRUE);
+            }
+        }
+    }
+
+    @Override
+    public void recordInsert(String key) {
+        sketch.increment(key);
+        window.put(key, Boolean.TRUE);
+        // While the main region has room the window spills into it without any admission check
+        if (window.size() > windowMax && probation.size() + protectedArea.size() < mainMax) {
+            probation.put(pollEldest(window), Boolean.TRUE);
+        }
+    }
+
+    @Override
+    public void recordRemoval(String key) {
+        if (window.remove(key) == null && probation.remove(key) == null) {
+            protectedArea.remove(key);
+        }
+    }
+
+    @Override
+    public String evict() {
+        if (window.size() > windowMax) {
+            String candidate = pollEldest(window);
+            String victim = eldest(probation.isEmpty() ? protectedArea : probation);
+            if (victim == null) {
+                return candidate;
+            }
+            // The candidate has to be strictly more popular than the victim; ties go to the incumbent
+            if (sketch.frequency(candidate) > sketch.frequency(victim)) {
+                recordRemoval(victim);
+                probation.put(candidate, Boolean.TRUE);
+                return victim;
+            }
+            return candidate;
+        }
+        if (!probation.isEmpty()) {
+            return pollEldest(probation);
+        }
+        if (!protectedArea.isEmpty()) {
+            return pollEldest(protectedArea);
+        }
+        return pollEldest(window);
+    }
+
+    int size() {
+        return window.size() + probation.size() + protectedArea.size();
+    }
+
+    private static String eldest(LinkedHashMap<String, Boolean> map) {
+        Iterator<String> it = map.keySet().iterator();
+        return it.hasNext() ? it.next() : null;
+    }
+
+    private static String pollEldest(LinkedHashMap<String, Boolean> map) {
+        Iterator<String> it = map.keySet().iterator();
+        if (!it.hasNext()) {
+            return null;
+        }
+        String key = it.next();
+        it.remove();
+        return key;
+    }
+}
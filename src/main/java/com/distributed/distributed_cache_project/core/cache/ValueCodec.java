@@ -0,0 +1,97 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Byte encoding for values that leave the heap or get compressed. The first byte is a tag: null, UTF-8 string,
+ * Java-serialized object, an already compressed value ({@code [int originalLength][deflated bytes]}), or a
+ * {@link CacheValue} ({@code [short contentTypeLength][content type][bytes]}), which is copied without serialization.
+ */
+final class ValueCodec {
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_STRING = 1;
+    private static final byte TAG_SERIALIZED = 2;
+    private static final byte TAG_COMPRESSED = 3;
+    private static final byte TAG_BYTES = 4;
+
+    private ValueCodec() {
+    }
+
+    static byte[] encode(Object value) {
+        if (value == null) {
+            return new byte[]{TAG_NULL};
+        }
+        if (value instanceof String s) {
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            byte[] out = new byte[utf8.length + 1];
+            out[0] = TAG_STRING;
+            System.arraycopy(utf8, 0, out, 1, utf8.length);
+            return out;
+        }
+        if (value instanceof CompressedValue c) {
+            byte[] out = new byte[c.bytes().length + 5];
+            out[0] = TAG_COMPRESSED;
+            ByteBuffer.wrap(out, 1, 4).putInt(c.originalLength());
+            System.arraycopy(c.bytes(), 0, out, 5, c.bytes().length);
+            return out;
+        }
+        if (value instanceof CacheValue v) {
+            byte[] type = v.contentType().getBytes(StandardCharsets.UTF_8);
+            if (type.length > 0xFFFF) {
+                throw new IllegalArgumentException("Content type is too long: " + type.length + " bytes");
+            }
+            byte[] out = new byte[3 + type.length + v.bytes().length];
+            out[0] = TAG_BYTES;
+            ByteBuffer.wrap(out, 1, 2).putShort((short) type.length);
+            System.arraycopy(type, 0, out, 3, type.length);
+            System.arraycopy(v.bytes(), 0, out, 3 + type.length, v.bytes().length);
+            return out;
+        }
+        if (!(value instanceof Serializable)) {
+            throw new IllegalArgumentException("Cannot serialize values of type " + value.getClass().getName());
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(TAG_SERIALIZED);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Failed to serialize value: " + e.getMessage(), e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static Object decode(byte[] bytes) {
+        switch (bytes[0]) {
+            case TAG_NULL:
+                return null;
+            case TAG_STRING:
+                return new String(bytes, 1, bytes.length - 1, StandardCharsets.UTF_8);
+            case TAG_SERIALIZED:
+                try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes, 1, bytes.length - 1))) {
+                    return in.readObject();
+                } catch (IOException | ClassNotFoundException e) {
+                    throw new IllegalStateException("Failed to deserialize value: " + e.getMessage(), e);
+                }
+            case TAG_COMPRESSED:
+                int originalLength = ByteBuffer.wrap(bytes, 1, 4).getInt();
+                byte[] deflated = new byte[bytes.length - 5];
+                System.arraycopy(bytes, 5, deflated, 0, deflated.length);
+                return new CompressedValue(deflated, originalLength);
+            case TAG_BYTES:
+                int typeLength = ByteBuffer.wrap(bytes, 1, 2).getShort() & 0xFFFF;
+                String contentType = new String(bytes, 3, typeLength, StandardCharsets.UTF_8);
+                byte[] value = new byte[bytes.length - 3 - typeLength];
+                System.arraycopy(bytes, 3 + typeLength, value, 0, value.length);
+                return new CacheValue(value, contentType);
+            default:
+                throw new IllegalStateException("Unknown value tag: " + bytes[0]);
+        }
+    }
+}
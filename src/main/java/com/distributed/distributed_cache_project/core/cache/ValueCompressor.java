@@ -0,0 +1,150 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+import com.distributed.distributed_cache_project.config.NodeConfigProperties;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflates large values, for the local cache and for replication traffic, and keeps node-wide statistics on how
+ * much that saves and what it costs.
+ *
+ * Values smaller than the threshold are left alone, and so are values that do not shrink by at least an eighth:
+ * inflating them again on every read would cost more than the memory it saves.
+ */
+public class ValueCompressor {
+    private static final int DEFAULT_THRESHOLD_BYTES = 1024;
+
+    private final boolean enabled;
+    private final int thresholdBytes;
+    private final int level;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final boolean cpuTimeSupported = threads.isCurrentThreadCpuTimeSupported();
+
+    private final AtomicLong compressedCount = new AtomicLong();
+    private final AtomicLong skippedCount = new AtomicLong(); // Over the threshold, but did not compress well enough
+    private final AtomicLong bytesBefore = new AtomicLong();
+    private final AtomicLong bytesAfter = new AtomicLong();
+    private final AtomicLong compressNanos = new AtomicLong();
+    private final AtomicLong decompressNanos = new AtomicLong();
+
+    public ValueCompressor(NodeConfigProperties.CompressionProperties props) {
+        this.enabled = props != null && props.isEnabled();
+        this.thresholdBytes = props != null && props.getThresholdBytes() > 0 ? props.getThresholdBytes() : DEFAULT_THRESHOLD_BYTES;
+        int configuredLevel = props != null ? props.getLevel() : 0;
+        this.level = configuredLevel >= Deflater.BEST_SPEED && configuredLevel <= Deflater.BEST_COMPRESSION
+                ? configuredLevel : Deflater.BEST_SPEED;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getThresholdBytes() {
+        return thresholdBytes;
+    }
+
+    /**
+     * Cheap pre-check on a value before it is encoded: false if it is certainly too small to be compressed.
+     */
+    public boolean mayCompress(Object value) {
+        return enabled && value != null && EntryWeigher.valueWeight(value) >= thresholdBytes;
+    }
+
+    /**
+     * Returns the deflated bytes, or null if compression is off, the input is under the threshold, or it did not
+     * compress well enough to be worth it.
+     */
+    public byte[] compress(byte[] raw) {
+        if (!enabled || raw.length < thresholdBytes) {
+            return null;
+        }
+        long start = cpuTime();
+        Deflater deflater = new Deflater(level);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            byte[] out = new byte[raw.length - raw.length / 8];
+            int length = 0;
+            while (!deflater.finished() && length < out.length) {
+                length += deflater.deflate(out, length, out.length - length);
+            }
+            if (!deflater.finished()) {
+                skippedCount.incrementAndGet();
+                return null;
+            }
+            compressedCount.incrementAndGet();
+            bytesBefore.addAndGet(raw.length);
+            bytesAfter.addAndGet(length);
+            return Arrays.copyOf(out, length);
+        } finally {
+            deflater.end();
+            compressNanos.addAndGet(cpuTime() - start);
+        }
+    }
+
+    public byte[] decompress(byte[] compressed, int originalLength) {
+        long start = cpuTime();
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] out = new byte[originalLength];
+            int length = 0;
+            while (!inflater.finished()) {
+                int n = inflater.inflate(out, length, out.length - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary() || length == out.length)) {
+                    break;
+                }
+                length += n;
+            }
+            if (!inflater.finished() || length != originalLength) {
+                throw new IllegalStateException("Compressed value is corrupt: expected " + originalLength
+                        + " bytes, inflated " + length + ".");
+            }
+            return out;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Compressed value is corrupt: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+            decompressNanos.addAndGet(cpuTime() - start);
+        }
+    }
+
+    public long getCompressedCount() {
+        return compressedCount.get();
+    }
+
+    public long getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    public long getBytesSaved() {
+        return bytesBefore.get() - bytesAfter.get();
+    }
+
+    /**
+     * Original size over compressed size, across every value compressed so far; 1.0 before the first one.
+     */
+    public double getCompressionRatio() {
+        long after = bytesAfter.get();
+        return after == 0 ? 1.0 : (double) bytesBefore.get() / after;
+    }
+
+    public long getCompressCpuNanos() {
+        return compressNanos.get();
+    }
+
+    public long getDecompressCpuNanos() {
+        return decompressNanos.get();
+    }
+
+    // CPU time of the calling thread where the JVM supports it, wall time otherwise
+    private long cpuTime() {
+        return cpuTimeSupported ? threads.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+}
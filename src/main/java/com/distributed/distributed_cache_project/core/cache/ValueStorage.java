@@ -0,0 +1,63 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Decides where a {@link LocalCache} keeps its values. Whatever {@link #store} returns is what ends up in
+ * {@link CacheEntry#getValue()}; the segment hands it back to {@link #release} once the entry leaves the cache.
+ */
+interface ValueStorage {
+
+    /**
+     * Returned by {@link #load} when the value's memory was recycled while it was being read.
+     */
+    Object RECYCLED = new Object();
+
+    /**
+     * Converts a value into its stored form, or returns null if there is no room for it right now.
+     *
+     * @param expiresAtMillis the entry's deadline, or 0 for none; persistent storage keeps it for {@link #recover}
+     */
+    Object store(String key, Object value, long expiresAtMillis);
+
+    /**
+     * Reads a stored value back. {@code stillCurrent} reports whether the entry is still mapped in the cache, which
+     * lets implementations detect reads that raced with a release; those return {@link #RECYCLED}.
+     */
+    Object load(Object stored, BooleanSupplier stillCurrent);
+
+    void release(Object stored);
+
+    /**
+     * Bytes the entry costs, including {@link EntryWeigher#ENTRY_OVERHEAD_BYTES}, for byte-weighted capacity.
+     */
+    int weigh(String key, Object value, Object stored);
+
+    /**
+     * Frees memory after {@link #store} returned null by asking the cache to drop entries. {@code evictIfStored} is
+     * called with a key and a stored form; it should evict the key only if its entry still holds that stored form.
+     * Returns false if there was nothing left to reclaim.
+     */
+    boolean reclaim(BiConsumer<String, Object> evictIfStored);
+
+    long usedBytes();
+
+    /**
+     * Hands over the entries that survived a restart, for storage that persists them. Called once, while the cache
+     * is being built.
+     */
+    default void recover(RecoveredEntryConsumer consumer) {
+    }
+
+    /**
+     * Flushes and releases whatever the storage holds outside the heap. The storage is not used afterwards.
+     */
+    default void close() {
+    }
+
+    @FunctionalInterface
+    interface RecoveredEntryConsumer {
+        void accept(String key, Object stored, long expiresAtMillis);
+    }
+}
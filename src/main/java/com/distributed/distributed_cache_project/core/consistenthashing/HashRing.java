@@ -3,12 +3,10 @@ package com.distributed.distributed_cache_project.core.consistenthashing;
 import com.distributed.distributed_cache_project.config.NodeConfigProperties;
 import jakarta.annotation.PostConstruct;
 import lombok.Getter;
-import org.apache.commons.codec.digest.MurmurHash3;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
-import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -74,7 +72,7 @@ public class HashRing {
     }
 
     private int hash(String value){
-        return MurmurHash3.hash32(value.getBytes(StandardCharsets.UTF_8));
+        return Utf8MurmurHash3.hash32(value); // Same result as MurmurHash3.hash32(value.getBytes(UTF_8)), without the copy
     }
 
     public void addRealNodeToRing(Node node){
@@ -134,6 +132,13 @@ public class HashRing {
      * Returns an empty list if the ring is empty.
      */
     public List<Node> getNodesForKey(String key) {
+        return getNodesForKey(key, replicationFactor);
+    }
+
+    /**
+     * Like {@link #getNodesForKey(String)}, for a cache with its own replication factor.
+     */
+    public List<Node> getNodesForKey(String key, int replicationFactor) {
         if (ring.isEmpty()) {
             log.warn("Attempted to get nodes for key '{}' from an empty HashRing.", key);
             return Collections.emptyList();
@@ -0,0 +1,95 @@
+package com.distributed.distributed_cache_project.core.consistenthashing;
+
+/**
+ * MurmurHash3 (x86, 32-bit) of a string's UTF-8 encoding, computed straight from its chars without allocating a
+ * byte array.
+ *
+ * Returns exactly what {@code MurmurHash3.hash32(value.getBytes(UTF_8))} from commons-codec returns, including that
+ * method's sign extension of the trailing bytes, so ring positions stay the same across nodes running either version.
+ * Unpaired surrogates are hashed as '?', as {@code getBytes} encodes them.
+ */
+final class Utf8MurmurHash3 {
+    private static final int SEED = 104729; // commons-codec's default seed
+    private static final int C1 = 0xcc9e2d51;
+    private static final int C2 = 0x1b873593;
+
+    private Utf8MurmurHash3() {
+    }
+
+    @SuppressWarnings("fallthrough") // The tail switch falls through on purpose, as in the reference implementation
+    static int hash32(String value) {
+        int hash = SEED;
+        int block = 0; // Little-endian bytes of the 4-byte block being filled
+        int length = 0;
+        int chars = value.length();
+        for (int i = 0; i < chars; i++) {
+            int c = value.charAt(i);
+            if (c < 0x80) {
+                block |= c << ((length & 3) << 3);
+                if ((++length & 3) == 0) {
+                    hash = mix(block, hash);
+                    block = 0;
+                }
+                continue;
+            }
+            int encoded; // Up to 4 UTF-8 bytes, first byte lowest
+            int bytes;
+            if (c < 0x800) {
+                encoded = (0xc0 | c >> 6) | (0x80 | c & 0x3f) << 8;
+                bytes = 2;
+            } else if (!Character.isSurrogate((char) c)) {
+                encoded = (0xe0 | c >> 12) | (0x80 | c >> 6 & 0x3f) << 8 | (0x80 | c & 0x3f) << 16;
+                bytes = 3;
+            } else if (Character.isHighSurrogate((char) c) && i + 1 < chars
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint((char) c, value.charAt(++i));
+                encoded = (0xf0 | cp >> 18) | (0x80 | cp >> 12 & 0x3f) << 8 | (0x80 | cp >> 6 & 0x3f) << 16
+                        | (0x80 | cp & 0x3f) << 24;
+                bytes = 4;
+            } else {
+                encoded = '?';
+                bytes = 1;
+            }
+            for (int b = 0; b < bytes; b++) {
+                block |= (encoded >>> (b << 3) & 0xff) << ((length & 3) << 3);
+                if ((++length & 3) == 0) {
+                    hash = mix(block, hash);
+                    block = 0;
+                }
+            }
+        }
+        // Tail bytes are sign-extended, as in commons-codec's hash32(byte[])
+        int k = 0;
+        switch (length & 3) {
+            case 3:
+                k ^= (byte) (block >>> 16) << 16;
+            case 2:
+                k ^= (byte) (block >>> 8) << 8;
+            case 1:
+                k ^= (byte) block;
+                k *= C1;
+                k = Integer.rotateLeft(k, 15);
+                k *= C2;
+                hash ^= k;
+        }
+        hash ^= length;
+        return fmix(hash);
+    }
+
+    private static int mix(int k, int hash) {
+        k *= C1;
+        k = Integer.rotateLeft(k, 15);
+        k *= C2;
+        hash ^= k;
+        return Integer.rotateLeft(hash, 13) * 5 + 0xe6546b64;
+    }
+
+    private static int fmix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+}
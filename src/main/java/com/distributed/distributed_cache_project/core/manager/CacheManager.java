@@ -1,4 +1,134 @@
 package com.distributed.distributed_cache_project.core.manager;
 
+import com.distributed.distributed_cache_project.config.NodeConfigProperties;
+import com.distributed.distributed_cache_project.core.cache.LocalCache;
+import com.distributed.distributed_cache_project.core.cache.ValueCompressor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Registry of the node's caches. The default cache holds the keys addressed as {@code /cache/{key}} and is configured
+ * by {@code cache.capacity}, {@code cache.storage} and the rest. Every entry under {@code cache.caches} adds a named
+ * cache, addressed as {@code /cache/{name}/{key}}, with its own capacity, eviction policy, default TTL and replication
+ * factor. Each cache is a separate {@link LocalCache}, so one workload never evicts another's entries.
+ *
+ * Named caches keep their values on the heap and are not covered by the operation log, snapshots or the overflow
+ * tier; those stay with the default cache.
+ */
 public class CacheManager {
+    private static final Logger log = LoggerFactory.getLogger(CacheManager.class);
+
+    public static final String DEFAULT_CACHE = "default";
+    private static final Pattern NAME_PATTERN = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    private final Map<String, NamedCache> caches;
+
+    /**
+     * A cache with the settings that apply to it across the cluster.
+     * @param defaultTtlMillis TTL of writes that do not set one (0 = none)
+     * @param replicationFactor nodes holding each key, the primary included
+     */
+    public record NamedCache(String name, LocalCache cache, long defaultTtlMillis, int replicationFactor) {
+        public boolean isDefault() {
+            return DEFAULT_CACHE.equals(name);
+        }
+
+        /**
+         * The TTL to store a write with: the one requested, or this cache's default if none was.
+         */
+        public long ttlFor(long requestedTtlMillis) {
+            return requestedTtlMillis > 0 ? requestedTtlMillis : defaultTtlMillis;
+        }
+    }
+
+    public CacheManager(NodeConfigProperties nodeConfigProperties, LocalCache defaultCache, ValueCompressor compressor) {
+        int defaultReplication = nodeConfigProperties.getReplication().getFactor();
+        Map<String, NamedCache> registry = new LinkedHashMap<>();
+        registry.put(DEFAULT_CACHE, new NamedCache(DEFAULT_CACHE, defaultCache, 0, defaultReplication));
+        try {
+            for (Map.Entry<String, NodeConfigProperties.NamedCacheProperties> e : nodeConfigProperties.getCaches().entrySet()) {
+                String name = e.getKey();
+                NodeConfigProperties.NamedCacheProperties props = e.getValue();
+                if (!NAME_PATTERN.matcher(name).matches() || name.equals(DEFAULT_CACHE)) {
+                    throw new IllegalStateException("Invalid cache name '" + name
+                            + "': use up to 64 letters, digits, '-' or '_', other than '" + DEFAULT_CACHE + "'.");
+                }
+                int replicationFactor = props.getReplicationFactor() > 0 ? props.getReplicationFactor() : defaultReplication;
+                long defaultTtlMillis = Math.max(0, props.getDefaultTtlMillis());
+                log.info("CacheManager: Creating cache '{}' with replication factor {} and default TTL {} ms.",
+                        name, replicationFactor, defaultTtlMillis);
+                LocalCache cache = new LocalCache(namedCacheProperties(nodeConfigProperties, props), compressor);
+                registry.put(name, new NamedCache(name, cache, defaultTtlMillis, replicationFactor));
+            }
+        } catch (RuntimeException e) {
+            registry.values().stream().filter(c -> !c.isDefault()).forEach(c -> c.cache().shutdown());
+            throw e;
+        }
+        this.caches = Collections.unmodifiableMap(registry);
+    }
+
+    /**
+     * Settings for a named cache's {@link LocalCache}: its own capacity and policy, the node's expiry settings, and
+     * heap storage without an overflow tier.
+     */
+    private static NodeConfigProperties namedCacheProperties(NodeConfigProperties node, NodeConfigProperties.NamedCacheProperties props) {
+        NodeConfigProperties.CacheCapacityProperties capacity = new NodeConfigProperties.CacheCapacityProperties();
+        capacity.setMaxEntries(props.getMaxEntries());
+        capacity.setMaxBytes(props.getMaxBytes());
+        capacity.setPolicy(props.getPolicy());
+        capacity.setSegments(node.getCapacity().getSegments());
+        NodeConfigProperties derived = new NodeConfigProperties();
+        derived.setCapacity(capacity);
+        derived.setExpiry(node.getExpiry());
+        derived.setStore(node.getStore()); // For the stale grace period of read-through caches
+        return derived;
+    }
+
+    /**
+     * @throws IllegalArgumentException if there is no cache of that name
+     */
+    public NamedCache getCache(String name) {
+        NamedCache cache = caches.get(name);
+        if (cache == null) {
+            throw new IllegalArgumentException("Unknown cache '" + name + "'.");
+        }
+        return cache;
+    }
+
+    public boolean contains(String name) {
+        return caches.containsKey(name);
+    }
+
+    public NamedCache getDefaultCache() {
+        return caches.get(DEFAULT_CACHE);
+    }
+
+    public Collection<NamedCache> getCaches() {
+        return caches.values();
+    }
+
+    /**
+     * The string a key is placed on the hash ring by. Keys of the default cache keep their own position; a named
+     * cache's keys are prefixed with its name, so equal keys in different caches land on different nodes.
+     */
+    public static String routingKey(String cache, String key) {
+        return DEFAULT_CACHE.equals(cache) ? key : cache + ":" + key;
+    }
+
+    /**
+     * Shuts down the named caches; the default cache is a bean of its own and is shut down with it.
+     */
+    public void shutdown() {
+        for (NamedCache cache : caches.values()) {
+            if (!cache.isDefault()) {
+                cache.cache().shutdown();
+            }
+        }
+    }
 }
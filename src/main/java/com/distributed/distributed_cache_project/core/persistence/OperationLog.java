@@ -0,0 +1,511 @@
+package com.distributed.distributed_cache_project.core.persistence;
+
+import com.distributed.distributed_cache_project.config.NodeConfigProperties;
+import com.distributed.distributed_cache_project.core.cache.CacheValue;
+import com.distributed.distributed_cache_project.core.cache.LocalCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of every write applied to the {@link LocalCache}, replayed on startup to rebuild it.
+ *
+ * Request threads only enqueue records; they never touch the disk. A single writer thread drains the queue in
+ * batches, appends each batch with one write, and fsyncs according to {@link FsyncPolicy}, so one fsync covers every
+ * record that queued up while the previous one ran. If the queue is full a record is dropped rather than blocking the
+ * caller, and a rewrite is scheduled: the rewrite snapshots the cache itself, so it captures the dropped write too.
+ *
+ * A rewrite compacts the log down to one record per live key. A background thread writes a snapshot of the cache to
+ * a temporary file while the writer keeps appending to the old log and also buffers what it appends. Once the
+ * snapshot is complete, the writer adds the buffered records to it and atomically renames it over the log. Replaying
+ * those records after the snapshot yields the final state whether or not the snapshot already saw them.
+ *
+ * File layout: {@code [int magic][int version]}, then records {@code [int bodyLength][int crc32c][body]} with body
+ * {@code [byte op][long expiresAtMillis][int keyLength][key]} and, for puts,
+ * {@code [int contentTypeLength][content type][int valueLength][value]}. Replay stops at the first torn or corrupt
+ * record and truncates the log there.
+ */
+public class OperationLog {
+    private static final Logger log = LoggerFactory.getLogger(OperationLog.class);
+
+    static final String LOG_FILE = "operations.log";
+    private static final String REWRITE_FILE = "operations.log.rewrite";
+    private static final int MAGIC = 0x44434F4C; // "DCOL"
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_BYTES = 8;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final byte OP_PUT = 1;
+    private static final byte OP_DELETE = 2;
+    private static final int MAX_BATCH = 4096;
+    private static final int SNAPSHOT_BUFFER_BYTES = 1024 * 1024;
+    private static final int KEY_LOCK_STRIPES = 64;
+    private static final long DEFAULT_FSYNC_INTERVAL_MILLIS = 1000;
+    private static final int DEFAULT_MAX_PENDING_RECORDS = 100_000;
+    private static final long DEFAULT_REWRITE_MIN_BYTES = 64L * 1024 * 1024;
+    private static final int DEFAULT_REWRITE_GROWTH_PERCENT = 100;
+
+    public enum FsyncPolicy {
+        ALWAYS, // After every batch
+        INTERVAL, // At most every fsync-interval-millis
+        NEVER // Left to the operating system
+    }
+
+    private record Record(byte op, String key, CacheValue value, long expiresAtMillis) {
+    }
+
+    private final boolean enabled;
+    private final Path directory;
+    private final LocalCache localCache;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalMillis;
+    private final long rewriteMinBytes;
+    private final int rewriteGrowthPercent;
+    private final Object[] keyLocks = new Object[KEY_LOCK_STRIPES];
+    private final BlockingQueue<Record> queue;
+    private final Thread writer;
+    private volatile boolean running = true;
+    private volatile boolean rewriteRequested;
+    private volatile boolean dropping; // Warn once per overflow, not once per dropped record
+
+    // The fields below are only touched by the writer thread
+    private FileChannel channel;
+    private ByteBuffer batchBuffer = ByteBuffer.allocate(64 * 1024);
+    private long lastFsyncMillis;
+    private boolean unsynced; // Written since the last fsync
+    private long sizeAfterRewrite;
+    private Rewrite rewrite;
+
+    private final AtomicLong logBytes = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong rewriteCount = new AtomicLong();
+
+    /**
+     * A rewrite in progress: the snapshot thread fills the file, the writer collects what it appends meanwhile.
+     */
+    private static final class Rewrite {
+        final Path path;
+        final FileChannel channel;
+        final List<byte[]> appendedSince = new ArrayList<>();
+        volatile boolean snapshotDone;
+        volatile IOException failure;
+
+        Rewrite(Path path, FileChannel channel) {
+            this.path = path;
+            this.channel = channel;
+        }
+    }
+
+    public OperationLog(NodeConfigProperties.OperationLogProperties props, LocalCache localCache) {
+        this.enabled = props != null && props.isEnabled();
+        this.localCache = localCache;
+        this.directory = Path.of(props != null && props.getPath() != null && !props.getPath().isBlank() ? props.getPath() : "cache-data");
+        this.fsyncPolicy = fsyncPolicy(props != null ? props.getFsync() : null);
+        this.fsyncIntervalMillis = props != null && props.getFsyncIntervalMillis() > 0 ? props.getFsyncIntervalMillis() : DEFAULT_FSYNC_INTERVAL_MILLIS;
+        this.rewriteMinBytes = props != null && props.getRewriteMinBytes() > 0 ? props.getRewriteMinBytes() : DEFAULT_REWRITE_MIN_BYTES;
+        this.rewriteGrowthPercent = props != null && props.getRewriteGrowthPercent() > 0 ? props.getRewriteGrowthPercent() : DEFAULT_REWRITE_GROWTH_PERCENT;
+        for (int i = 0; i < keyLocks.length; i++) {
+            keyLocks[i] = new Object();
+        }
+        this.queue = new LinkedBlockingQueue<>(props != null && props.getMaxPendingRecords() > 0 ? props.getMaxPendingRecords() : DEFAULT_MAX_PENDING_RECORDS);
+        this.writer = new Thread(this::runWriter, "oplog-writer");
+        this.writer.setDaemon(true);
+        if (!enabled) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            Path file = directory.resolve(LOG_FILE);
+            Files.deleteIfExists(directory.resolve(REWRITE_FILE)); // Left behind by a rewrite that never finished
+            long replayed = Files.exists(file) ? replay(file) : 0;
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (channel.size() < FILE_HEADER_BYTES) {
+                channel.truncate(0);
+                channel.write(fileHeader(), 0);
+                channel.force(true);
+            }
+            channel.position(channel.size());
+            logBytes.set(channel.size());
+            sizeAfterRewrite = channel.size();
+            log.info("OperationLog: Replayed {} records from {} ({} bytes). Fsync policy: {}.",
+                    replayed, file.toAbsolutePath(), channel.size(), fsyncPolicy);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot open the operation log in " + directory + ": " + e.getMessage(), e);
+        }
+        lastFsyncMillis = System.currentTimeMillis();
+        writer.start();
+    }
+
+    private static FsyncPolicy fsyncPolicy(String name) {
+        if (name == null || name.isBlank()) {
+            return FsyncPolicy.INTERVAL;
+        }
+        try {
+            return FsyncPolicy.valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            log.warn("Unknown operation log fsync policy '{}'. Falling back to interval.", name);
+            return FsyncPolicy.INTERVAL;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Lock to hold while applying a write to the cache and logging it, so that two writes to one key reach the log
+     * in the order they reached the cache.
+     */
+    public Object lockFor(String key) {
+        return keyLocks[(key.hashCode() & 0x7fffffff) % KEY_LOCK_STRIPES];
+    }
+
+    public void appendPut(String key, CacheValue value, long ttlMillis) {
+        if (enabled) {
+            enqueue(new Record(OP_PUT, key, value, ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : 0));
+        }
+    }
+
+    public void appendDelete(String key) {
+        if (enabled) {
+            enqueue(new Record(OP_DELETE, key, null, 0));
+        }
+    }
+
+    /**
+     * Compacts the log in the background as soon as the writer gets to it.
+     */
+    public void requestRewrite() {
+        rewriteRequested = true;
+    }
+
+    public long getLogBytes() {
+        return logBytes.get();
+    }
+
+    public int getPendingRecords() {
+        return queue.size();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getRewriteCount() {
+        return rewriteCount.get();
+    }
+
+    /**
+     * Writes out everything queued, completes a pending rewrite, fsyncs and closes the log.
+     */
+    public void close() {
+        if (!enabled || !running) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(60));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("OperationLog: Closed with {} bytes in the log.", logBytes.get());
+    }
+
+    private void enqueue(Record record) {
+        if (!queue.offer(record)) {
+            droppedCount.incrementAndGet();
+            rewriteRequested = true; // The write is in the cache, so the next snapshot will carry it
+            if (!dropping) {
+                dropping = true;
+                log.warn("OperationLog: Queue is full; dropping records until a rewrite captures them.");
+            }
+        }
+    }
+
+    private void runWriter() {
+        List<Record> batch = new ArrayList<>(MAX_BATCH);
+        try {
+            while (running || !queue.isEmpty()) {
+                Record first = queue.poll(fsyncPolicy == FsyncPolicy.INTERVAL ? fsyncIntervalMillis : 100, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                    writeBatch(batch);
+                    batch.clear();
+                    unsynced = true;
+                }
+                long now = System.currentTimeMillis();
+                if (unsynced && (fsyncPolicy == FsyncPolicy.ALWAYS
+                        || fsyncPolicy == FsyncPolicy.INTERVAL && now - lastFsyncMillis >= fsyncIntervalMillis)) {
+                    channel.force(false);
+                    lastFsyncMillis = now;
+                    unsynced = false;
+                }
+                manageRewrite();
+            }
+            finishRewriteOnShutdown();
+            channel.force(true);
+            channel.close();
+        } catch (IOException e) {
+            log.error("OperationLog: Writing the log failed; no further writes will be logged: {}", e.getMessage(), e);
+            running = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeBatch(List<Record> batch) throws IOException {
+        batchBuffer.clear();
+        for (Record record : batch) {
+            batchBuffer = encode(batchBuffer, record);
+        }
+        batchBuffer.flip();
+        int length = batchBuffer.remaining();
+        if (rewrite != null) {
+            byte[] copy = new byte[length];
+            batchBuffer.get(batchBuffer.position(), copy);
+            rewrite.appendedSince.add(copy);
+        }
+        writeFully(channel, batchBuffer);
+        logBytes.addAndGet(length);
+    }
+
+    // Appends the record to the buffer and returns it, or a larger copy if it did not fit
+    private static ByteBuffer encode(ByteBuffer buffer, Record record) {
+        byte[] key = record.key().getBytes(StandardCharsets.UTF_8);
+        byte[] contentType = record.value() != null ? record.value().contentType().getBytes(StandardCharsets.UTF_8) : null;
+        byte[] value = record.value() != null ? record.value().bytes() : null;
+        int bodyLength = 1 + 8 + 4 + key.length + (value != null ? 4 + contentType.length + 4 + value.length : 0);
+        if (buffer.remaining() < RECORD_HEADER_BYTES + bodyLength) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + RECORD_HEADER_BYTES + bodyLength));
+            buffer = grown.put(buffer.flip());
+        }
+        int start = buffer.position();
+        buffer.putInt(bodyLength);
+        buffer.putInt(0); // Checksum, filled in below
+        buffer.put(record.op());
+        buffer.putLong(record.expiresAtMillis());
+        buffer.putInt(key.length).put(key);
+        if (value != null) {
+            buffer.putInt(contentType.length).put(contentType);
+            buffer.putInt(value.length).put(value);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(start + RECORD_HEADER_BYTES, bodyLength));
+        buffer.putInt(start + 4, (int) crc.getValue());
+        return buffer;
+    }
+
+    private static void writeFully(FileChannel target, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+
+    /**
+     * Starts a rewrite when one is due, and finishes it once its snapshot is written. Runs on the writer thread.
+     */
+    private void manageRewrite() throws IOException {
+        if (rewrite == null) {
+            long size = logBytes.get();
+            boolean grown = size >= rewriteMinBytes && size >= sizeAfterRewrite + sizeAfterRewrite * rewriteGrowthPercent / 100;
+            if (rewriteRequested || grown) {
+                rewriteRequested = false;
+                dropping = false;
+                startRewrite();
+            }
+            return;
+        }
+        if (rewrite.failure != null) {
+            log.error("OperationLog: Rewrite failed: {}", rewrite.failure.getMessage(), rewrite.failure);
+            abandonRewrite();
+        } else if (rewrite.snapshotDone) {
+            finishRewrite();
+        }
+    }
+
+    // Records dropped since the last snapshot exist only in the cache, so a pending rewrite must complete before close
+    private void finishRewriteOnShutdown() throws IOException, InterruptedException {
+        if (rewriteRequested && rewrite == null) {
+            startRewrite();
+        }
+        if (rewrite == null) {
+            return;
+        }
+        while (!rewrite.snapshotDone) {
+            Thread.sleep(10);
+        }
+        manageRewrite();
+        List<Record> late = new ArrayList<>();
+        queue.drainTo(late);
+        if (!late.isEmpty()) {
+            writeBatch(late);
+        }
+    }
+
+    private void startRewrite() throws IOException {
+        Path path = directory.resolve(REWRITE_FILE);
+        FileChannel rewriteChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        Rewrite started = new Rewrite(path, rewriteChannel);
+        // From here on the writer buffers every batch, so the snapshot may start anywhere after this point
+        rewrite = started;
+        Thread snapshot = new Thread(() -> writeSnapshot(started), "oplog-rewrite");
+        snapshot.setDaemon(true);
+        snapshot.start();
+        log.info("OperationLog: Rewriting the log ({} bytes).", logBytes.get());
+    }
+
+    // Runs on the rewrite thread; only uses its own buffer and the rewrite's channel
+    private void writeSnapshot(Rewrite target) {
+        ByteBuffer[] buffer = {ByteBuffer.allocate(SNAPSHOT_BUFFER_BYTES)};
+        try {
+            writeFully(target.channel, fileHeader());
+            localCache.forEach((key, value, expiresAtMillis) -> {
+                if (value instanceof CacheValue v) {
+                    buffer[0] = encode(buffer[0], new Record(OP_PUT, key, v, expiresAtMillis));
+                    if (buffer[0].position() >= SNAPSHOT_BUFFER_BYTES) {
+                        try {
+                            writeFully(target.channel, buffer[0].flip());
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        buffer[0].clear();
+                    }
+                }
+            });
+            writeFully(target.channel, buffer[0].flip());
+            target.channel.force(true);
+        } catch (IOException e) {
+            target.failure = e;
+        } catch (UncheckedIOException e) {
+            target.failure = e.getCause();
+        }
+        target.snapshotDone = true;
+    }
+
+    private void finishRewrite() throws IOException {
+        Rewrite done = rewrite;
+        rewrite = null;
+        for (byte[] chunk : done.appendedSince) {
+            writeFully(done.channel, ByteBuffer.wrap(chunk));
+        }
+        done.channel.force(true);
+        Path file = directory.resolve(LOG_FILE);
+        Files.move(done.path, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        long before = logBytes.get();
+        channel.close();
+        channel = done.channel; // Still open, now under the log's name
+        logBytes.set(channel.size());
+        sizeAfterRewrite = channel.size();
+        rewriteCount.incrementAndGet();
+        log.info("OperationLog: Rewrote the log from {} to {} bytes.", before, channel.size());
+    }
+
+    private void abandonRewrite() throws IOException {
+        Rewrite abandoned = rewrite;
+        rewrite = null;
+        abandoned.channel.close();
+        Files.deleteIfExists(abandoned.path);
+    }
+
+    /**
+     * Applies the log to the cache. Stops at the first incomplete or corrupt record, truncates the log there, and
+     * returns the number of records applied.
+     */
+    private long replay(Path file) throws IOException {
+        long applied = 0;
+        long validLength = FILE_HEADER_BYTES;
+        long now = System.currentTimeMillis();
+        long fileSize = Files.size(file);
+        try (InputStream raw = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(raw, 64 * 1024))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                Path corrupt = file.resolveSibling(LOG_FILE + ".corrupt");
+                log.error("OperationLog: {} is not an operation log; moved it to {} and starting empty.", file, corrupt);
+                Files.move(file, corrupt, StandardCopyOption.REPLACE_EXISTING);
+                return 0;
+            }
+            while (true) {
+                int bodyLength = in.readInt();
+                int checksum = in.readInt();
+                if (bodyLength < 13 || bodyLength > fileSize - validLength - RECORD_HEADER_BYTES) {
+                    throw new IOException("Record length " + bodyLength + " is out of range");
+                }
+                byte[] body = in.readNBytes(bodyLength);
+                CRC32C crc = new CRC32C();
+                crc.update(body);
+                if (body.length != bodyLength || (int) crc.getValue() != checksum) {
+                    throw new IOException("Record checksum mismatch");
+                }
+                apply(ByteBuffer.wrap(body), now);
+                applied++;
+                validLength += RECORD_HEADER_BYTES + bodyLength;
+            }
+        } catch (EOFException e) {
+            // Clean end of the log, or a record cut short by a crash; either way everything before it is applied
+        } catch (IOException | RuntimeException e) {
+            log.warn("OperationLog: Stopped replay at offset {}: {}", validLength, e.getMessage());
+        }
+        if (Files.exists(file) && Files.size(file) > validLength) {
+            log.warn("OperationLog: Truncating {} bytes of incomplete or corrupt records.", Files.size(file) - validLength);
+            try (FileChannel truncate = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                truncate.truncate(validLength);
+            }
+        }
+        return applied;
+    }
+
+    private void apply(ByteBuffer body, long now) {
+        byte op = body.get();
+        long expiresAtMillis = body.getLong();
+        String key = new String(readBytes(body), StandardCharsets.UTF_8);
+        if (op == OP_DELETE) {
+            localCache.delete(key);
+            return;
+        }
+        if (op != OP_PUT) {
+            throw new IllegalStateException("Unknown operation " + op);
+        }
+        String contentType = new String(readBytes(body), StandardCharsets.UTF_8);
+        CacheValue value = new CacheValue(readBytes(body), contentType);
+        if (expiresAtMillis > 0 && expiresAtMillis <= now) {
+            localCache.delete(key); // Expired while the node was down; it must not resurrect an older value
+            return;
+        }
+        localCache.put(key, value, expiresAtMillis > 0 ? expiresAtMillis - now : 0);
+    }
+
+    private static byte[] readBytes(ByteBuffer body) {
+        int length = body.getInt();
+        if (length < 0 || length > body.remaining()) {
+            throw new IllegalStateException("Field length " + length + " is out of range");
+        }
+        byte[] bytes = new byte[length];
+        body.get(bytes);
+        return bytes;
+    }
+
+    private static ByteBuffer fileHeader() {
+        return ByteBuffer.allocate(FILE_HEADER_BYTES).putInt(MAGIC).putInt(VERSION).flip();
+    }
+}
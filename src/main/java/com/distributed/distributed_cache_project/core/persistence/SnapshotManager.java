@@ -0,0 +1,393 @@
+package com.distributed.distributed_cache_project.core.persistence;
+
+import com.distributed.distributed_cache_project.config.NodeConfigProperties;
+import com.distributed.distributed_cache_project.core.cache.CacheValue;
+import com.distributed.distributed_cache_project.core.cache.LocalCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+
+/**
+ * Writes point-in-time snapshots of the {@link LocalCache} to a binary file, on demand or on a schedule, and loads
+ * the latest one on startup to warm the cache.
+ *
+ * Snapshots come from {@link LocalCache#snapshot}, so requests are served throughout and the file still shows the
+ * cache at a single instant. A snapshot is written to a temporary file and renamed over the previous one, so the file
+ * on disk is always a complete snapshot.
+ *
+ * File layout: {@code [int magic][int version]}, then blocks {@code [int length][int crc32c][records]}, then
+ * {@code [int -1][long snapshotMillis][long entryCount]}. A record is {@code [int keyLength][key]
+ * [long expiresAtMillis][short contentTypeLength][content type][int valueLength][value]}. Blocks are independent of
+ * each other, so loading reads them in order and decodes them on a pool of threads.
+ */
+public final class SnapshotManager {
+    private static final Logger log = LoggerFactory.getLogger(SnapshotManager.class);
+
+    static final String SNAPSHOT_FILE = "snapshot.bin";
+    private static final String TEMP_FILE = "snapshot.bin.tmp";
+    private static final int MAGIC = 0x4443534E; // "DCSN"
+    private static final int VERSION = 1;
+    private static final int END_MARKER = -1;
+    private static final int BLOCK_BYTES = 256 * 1024;
+
+    public enum State {
+        IDLE, RUNNING, COMPLETED, FAILED
+    }
+
+    private final LocalCache localCache;
+    private final Path directory;
+    private final int loadThreads;
+    private final ScheduledExecutorService executor;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    // Progress of the current or last snapshot; only written by the thread that holds running
+    private volatile State state = State.IDLE;
+    private volatile long startedAtMillis;
+    private volatile long finishedAtMillis;
+    private volatile long snapshotMillis;
+    private volatile long expectedEntries;
+    private volatile long entriesWritten;
+    private volatile long bytesWritten;
+    private volatile String error;
+
+    /**
+     * @param operationLog when enabled, the log is replayed on startup instead, as it is newer than any snapshot
+     */
+    public SnapshotManager(NodeConfigProperties.SnapshotProperties props, LocalCache localCache, OperationLog operationLog) {
+        this.localCache = localCache;
+        this.directory = Path.of(props != null && props.getPath() != null && !props.getPath().isBlank() ? props.getPath() : "cache-data");
+        this.loadThreads = props != null && props.getLoadThreads() > 0 ? props.getLoadThreads() : Runtime.getRuntime().availableProcessors();
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cache-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Path file = directory.resolve(SNAPSHOT_FILE);
+        if (props != null && props.isLoadOnStartup() && Files.exists(file)) {
+            if (operationLog.isEnabled()) {
+                log.info("SnapshotManager: Not loading {}; the cache was rebuilt from the operation log.", file);
+            } else if (localCache.size() > 0) {
+                log.info("SnapshotManager: Not loading {}; the cache already holds {} entries from persistent storage.",
+                        file, localCache.size());
+            } else {
+                load(file);
+            }
+        }
+        long intervalMillis = props != null ? props.getIntervalMillis() : 0;
+        if (intervalMillis > 0) {
+            executor.scheduleWithFixedDelay(this::runScheduled, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+            log.info("SnapshotManager: Writing a snapshot to {} every {} ms.", file.toAbsolutePath(), intervalMillis);
+        }
+    }
+
+    /**
+     * Starts a snapshot in the background. Returns false if one is already running.
+     */
+    public boolean requestSnapshot() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        resetProgress();
+        try {
+            executor.execute(this::takeSnapshot);
+        } catch (RejectedExecutionException e) {
+            state = State.FAILED;
+            error = "The node is shutting down.";
+            running.set(false);
+            return false;
+        }
+        return true;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public Path getPath() {
+        return directory.resolve(SNAPSHOT_FILE).toAbsolutePath();
+    }
+
+    public long getStartedAtMillis() {
+        return startedAtMillis;
+    }
+
+    public long getFinishedAtMillis() {
+        return finishedAtMillis;
+    }
+
+    /**
+     * The instant the last completed snapshot shows, or 0.
+     */
+    public long getSnapshotMillis() {
+        return snapshotMillis;
+    }
+
+    /**
+     * Entries in the cache when the current snapshot started; with {@link #getEntriesWritten()} this gives progress.
+     */
+    public long getExpectedEntries() {
+        return expectedEntries;
+    }
+
+    public long getEntriesWritten() {
+        return entriesWritten;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * Waits for a running snapshot to finish and stops the schedule.
+     */
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(60, TimeUnit.SECONDS)) {
+                log.warn("SnapshotManager: Snapshot still running at shutdown; {} is left as it was.", getPath());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runScheduled() {
+        if (running.compareAndSet(false, true)) {
+            resetProgress();
+            takeSnapshot();
+        } else {
+            log.debug("SnapshotManager: Skipping the scheduled snapshot; one is already running.");
+        }
+    }
+
+    // Called by whoever set running, so the status shows the new snapshot as soon as it is accepted
+    private void resetProgress() {
+        startedAtMillis = System.currentTimeMillis();
+        finishedAtMillis = 0;
+        expectedEntries = localCache.size();
+        entriesWritten = 0;
+        bytesWritten = 0;
+        error = null;
+        state = State.RUNNING;
+    }
+
+    // Runs on the snapshot thread with running set
+    private void takeSnapshot() {
+        Path temp = directory.resolve(TEMP_FILE);
+        try {
+            Files.createDirectories(directory);
+            long atMillis;
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                atMillis = writeSnapshot(channel);
+                channel.force(true);
+            }
+            Files.move(temp, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            snapshotMillis = atMillis;
+            finishedAtMillis = System.currentTimeMillis();
+            state = State.COMPLETED;
+            log.info("SnapshotManager: Wrote {} entries ({} bytes) to {} in {} ms.",
+                    entriesWritten, bytesWritten, getPath(), finishedAtMillis - startedAtMillis);
+        } catch (IOException | RuntimeException e) {
+            Throwable cause = e instanceof UncheckedIOException u ? u.getCause() : e;
+            error = cause.getMessage();
+            finishedAtMillis = System.currentTimeMillis();
+            state = State.FAILED;
+            log.error("SnapshotManager: Snapshot failed: {}", cause.getMessage(), cause);
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // Overwritten by the next snapshot
+            }
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private long writeSnapshot(FileChannel channel) throws IOException {
+        ByteBuffer[] block = {ByteBuffer.allocate(BLOCK_BYTES + 8)};
+        write(channel, ByteBuffer.allocate(8).putInt(MAGIC).putInt(VERSION).flip());
+        block[0].position(8); // Room for the block's length and checksum
+        long atMillis = localCache.snapshot((key, value, expiresAtMillis) -> {
+            if (!(value instanceof CacheValue v)) {
+                return;
+            }
+            block[0] = encode(block[0], key, v, expiresAtMillis);
+            entriesWritten++;
+            if (block[0].position() >= BLOCK_BYTES) {
+                try {
+                    writeBlock(channel, block[0]);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                block[0].clear().position(8);
+            }
+        });
+        if (block[0].position() > 8) {
+            writeBlock(channel, block[0]);
+        }
+        write(channel, ByteBuffer.allocate(20).putInt(END_MARKER).putLong(atMillis).putLong(entriesWritten).flip());
+        return atMillis;
+    }
+
+    private void writeBlock(FileChannel channel, ByteBuffer block) throws IOException {
+        int length = block.position() - 8;
+        CRC32C crc = new CRC32C();
+        crc.update(block.slice(8, length));
+        block.putInt(0, length).putInt(4, (int) crc.getValue());
+        write(channel, block.flip());
+    }
+
+    private void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        bytesWritten += buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // Appends the record to the buffer and returns it, or a larger copy if it did not fit
+    private static ByteBuffer encode(ByteBuffer buffer, String key, CacheValue value, long expiresAtMillis) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] contentType = value.contentType().getBytes(StandardCharsets.UTF_8);
+        int length = 4 + keyBytes.length + 8 + 2 + contentType.length + 4 + value.bytes().length;
+        if (buffer.remaining() < length) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + length));
+            buffer = grown.put(buffer.flip());
+        }
+        buffer.putInt(keyBytes.length).put(keyBytes);
+        buffer.putLong(expiresAtMillis);
+        buffer.putShort((short) contentType.length).put(contentType);
+        buffer.putInt(value.bytes().length).put(value.bytes());
+        return buffer;
+    }
+
+    /**
+     * Reads the blocks in order on this thread and decodes them into the cache on {@code loadThreads} threads. Stops
+     * at the first block that is cut short; a block whose checksum fails is skipped.
+     */
+    private void load(Path file) {
+        long startNanos = System.nanoTime();
+        long now = System.currentTimeMillis();
+        AtomicLong loaded = new AtomicLong();
+        AtomicLong expired = new AtomicLong();
+        AtomicInteger corruptBlocks = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(loadThreads, runnable -> new Thread(runnable, "snapshot-load"));
+        Semaphore inFlight = new Semaphore(loadThreads * 2); // Bounds the blocks held in memory
+        boolean complete = false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BLOCK_BYTES))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                log.error("SnapshotManager: {} is not a snapshot of this version; not loading it.", file);
+                return;
+            }
+            long fileSize = Files.size(file);
+            while (true) {
+                int length = in.readInt();
+                if (length == END_MARKER) {
+                    complete = true;
+                    break;
+                }
+                if (length <= 0 || length > fileSize) {
+                    throw new IOException("Block length " + length + " is out of range");
+                }
+                int checksum = in.readInt();
+                byte[] block = in.readNBytes(length);
+                if (block.length != length) {
+                    throw new EOFException();
+                }
+                inFlight.acquire();
+                pool.execute(() -> {
+                    try {
+                        loadBlock(block, checksum, now, loaded, expired, corruptBlocks);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        } catch (EOFException e) {
+            log.warn("SnapshotManager: {} ends early; loading the blocks before the cut.", file);
+        } catch (IOException e) {
+            log.warn("SnapshotManager: Stopped reading {}: {}", file, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdown();
+            try {
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        log.info("SnapshotManager: Loaded {} entries from {} in {} ms on {} threads ({} expired, {} corrupt blocks{}).",
+                loaded.get(), file.toAbsolutePath(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos),
+                loadThreads, expired.get(), corruptBlocks.get(), complete ? "" : ", incomplete file");
+    }
+
+    private void loadBlock(byte[] block, int checksum, long now, AtomicLong loaded, AtomicLong expired, AtomicInteger corruptBlocks) {
+        CRC32C crc = new CRC32C();
+        crc.update(block);
+        if ((int) crc.getValue() != checksum) {
+            corruptBlocks.incrementAndGet();
+            log.warn("SnapshotManager: Skipping a block of {} bytes with a bad checksum.", block.length);
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(block);
+        try {
+            while (buffer.hasRemaining()) {
+                String key = new String(readBytes(buffer, buffer.getInt()), StandardCharsets.UTF_8);
+                long expiresAtMillis = buffer.getLong();
+                String contentType = new String(readBytes(buffer, buffer.getShort() & 0xFFFF), StandardCharsets.UTF_8);
+                byte[] value = readBytes(buffer, buffer.getInt());
+                if (expiresAtMillis > 0 && expiresAtMillis <= now) {
+                    expired.incrementAndGet(); // Expired while the node was down
+                    continue;
+                }
+                try {
+                    localCache.put(key, new CacheValue(value, contentType), expiresAtMillis > 0 ? expiresAtMillis - now : 0);
+                    loaded.incrementAndGet();
+                } catch (IllegalArgumentException | IllegalStateException e) {
+                    log.debug("SnapshotManager: Skipped key '{}': {}", key, e.getMessage()); // Over the cache's limits
+                }
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            corruptBlocks.incrementAndGet();
+            log.warn("SnapshotManager: Stopped loading a block: {}", e.getMessage());
+        }
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer, int length) {
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Field length " + length + " is out of range");
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
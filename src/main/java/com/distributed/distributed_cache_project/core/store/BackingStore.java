@@ -0,0 +1,295 @@
+package com.distributed.distributed_cache_project.core.store;
+
+import com.distributed.distributed_cache_project.config.NodeConfigProperties;
+import com.distributed.distributed_cache_project.core.cache.CacheValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The system of record behind the cache: a {@link CacheLoader} for read-through and a {@link CacheWriter} for
+ * write-behind, either of which may be absent.
+ *
+ * Writes are queued per key, so a key written many times before a flush costs one write to the store. A writer
+ * thread hands the queue to the {@link CacheWriter} in batches of {@code batch-size}, or whatever has queued up once
+ * {@code flush-interval-millis} has passed. A failed batch goes back on the queue, behind any newer change to its keys,
+ * and is retried after the interval. When {@code max-pending-writes} keys are waiting, a change to any other key is
+ * rejected with a {@link QueueFullException} rather than queued or lost; writers call in with the key's lock held, on
+ * event loop threads, so waiting for the store is not an option. Loads look at the queue first, so a value evicted
+ * before its write reached the store is still read back as written.
+ */
+public final class BackingStore {
+    private static final Logger log = LoggerFactory.getLogger(BackingStore.class);
+
+    private static final String DEFAULT_PATH = "cache-data/store";
+    private static final int DEFAULT_BATCH_SIZE = 100;
+    private static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 500;
+    private static final int DEFAULT_MAX_PENDING_WRITES = 100_000;
+
+    private record PendingKey(String cache, String key) {
+    }
+
+    /**
+     * Thrown by {@link #writeBehind} and {@link #deleteBehind} when the queue is full. Nothing has been queued, so the
+     * caller must not apply the change either.
+     */
+    public static class QueueFullException extends IllegalStateException {
+        private static final long serialVersionUID = 1L;
+
+        QueueFullException(int maxPendingWrites) {
+            super("Write-behind queue is full: " + maxPendingWrites + " keys are waiting for the backing store.");
+        }
+    }
+
+    private final CacheLoader loader; // Null without read-through
+    private final CacheWriter writer; // Null without write-behind
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final int maxPendingWrites;
+
+    // Guarded by itself. Changes not yet handed to the writer, oldest first, and the batch the writer is applying.
+    private final LinkedHashMap<PendingKey, CacheWriter.Write> pending = new LinkedHashMap<>();
+    private final Map<PendingKey, CacheWriter.Write> flushing = new LinkedHashMap<>();
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    private final AtomicLong loadCount = new AtomicLong();
+    private final AtomicLong loadMissCount = new AtomicLong();
+    private final AtomicLong loadFailureCount = new AtomicLong();
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong failedBatchCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    public BackingStore(NodeConfigProperties.StoreProperties props) {
+        boolean enabled = props != null && props.isEnabled();
+        this.batchSize = props != null && props.getBatchSize() > 0 ? props.getBatchSize() : DEFAULT_BATCH_SIZE;
+        this.flushIntervalMillis = props != null && props.getFlushIntervalMillis() > 0 ? props.getFlushIntervalMillis() : DEFAULT_FLUSH_INTERVAL_MILLIS;
+        this.maxPendingWrites = props != null && props.getMaxPendingWrites() > 0 ? props.getMaxPendingWrites() : DEFAULT_MAX_PENDING_WRITES;
+        Object store = enabled ? create(props.getType(), props.getPath() != null && !props.getPath().isBlank() ? props.getPath() : DEFAULT_PATH) : null;
+        this.loader = store instanceof CacheLoader l ? l : null;
+        this.writer = store instanceof CacheWriter w ? w : null;
+        this.flusher = new Thread(this::runFlusher, "store-writer");
+        this.flusher.setDaemon(true);
+        if (store == null) {
+            return;
+        }
+        if (loader == null && writer == null) {
+            throw new IllegalStateException("Backing store " + store.getClass().getName()
+                    + " implements neither CacheLoader nor CacheWriter.");
+        }
+        log.info("BackingStore: Using {} for {}{}.", store.getClass().getSimpleName(),
+                loader != null ? "read-through" : "", writer != null ? (loader != null ? " and " : "") + "write-behind" : "");
+        if (writer != null) {
+            flusher.start();
+        }
+    }
+
+    private static Object create(String type, String path) {
+        String name = type == null || type.isBlank() ? "file" : type.trim();
+        if (name.equalsIgnoreCase("file")) {
+            return new FileCacheStore(path);
+        }
+        try {
+            Class<?> storeClass = Class.forName(name);
+            try {
+                Constructor<?> withPath = storeClass.getConstructor(String.class);
+                return withPath.newInstance(path);
+            } catch (NoSuchMethodException e) {
+                return storeClass.getConstructor().newInstance();
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Unknown backing store '" + name
+                    + "'. Use file or the name of a class implementing CacheLoader and/or CacheWriter.", e);
+        }
+    }
+
+    public boolean canLoad() {
+        return loader != null;
+    }
+
+    public boolean canWrite() {
+        return writer != null;
+    }
+
+    /**
+     * Reads the key through the loader, or from the queue if a change to it has not reached the store yet.
+     * @return the value, or null if there is none
+     */
+    public CacheValue load(String cache, String key) throws Exception {
+        PendingKey id = new PendingKey(cache, key);
+        synchronized (pending) {
+            CacheWriter.Write queued = pending.containsKey(id) ? pending.get(id) : flushing.get(id);
+            if (queued != null) {
+                return queued.value();
+            }
+        }
+        loadCount.incrementAndGet();
+        try {
+            CacheValue value = loader.load(cache, key);
+            if (value == null) {
+                loadMissCount.incrementAndGet();
+            }
+            return value;
+        } catch (Exception e) {
+            loadFailureCount.incrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Queues the value to be written to the store. Never blocks.
+     * @throws QueueFullException if {@code max-pending-writes} other keys are waiting
+     */
+    public void writeBehind(String cache, String key, CacheValue value) {
+        if (writer != null) {
+            enqueue(new CacheWriter.Write(cache, key, value));
+        }
+    }
+
+    public void deleteBehind(String cache, String key) {
+        if (writer != null) {
+            enqueue(new CacheWriter.Write(cache, key, null));
+        }
+    }
+
+    private void enqueue(CacheWriter.Write write) {
+        PendingKey id = new PendingKey(write.cache(), write.key());
+        synchronized (pending) {
+            if (pending.size() >= maxPendingWrites && !pending.containsKey(id)) {
+                rejectedCount.incrementAndGet();
+                throw new QueueFullException(maxPendingWrites); // A change to a key already waiting takes no room
+            }
+            pending.remove(id); // Requeued at the back, so keys go out in the order of their last change
+            pending.put(id, write);
+            if (pending.size() >= batchSize) {
+                pending.notifyAll();
+            }
+        }
+    }
+
+    private void runFlusher() {
+        List<CacheWriter.Write> batch = new ArrayList<>(batchSize);
+        while (true) {
+            synchronized (pending) {
+                long deadline = System.currentTimeMillis() + flushIntervalMillis;
+                long remaining;
+                while (running && pending.size() < batchSize && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                    try {
+                        pending.wait(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                if (pending.isEmpty()) {
+                    if (!running) {
+                        return;
+                    }
+                    continue;
+                }
+                Iterator<Map.Entry<PendingKey, CacheWriter.Write>> it = pending.entrySet().iterator();
+                while (batch.size() < batchSize && it.hasNext()) {
+                    Map.Entry<PendingKey, CacheWriter.Write> e = it.next();
+                    flushing.put(e.getKey(), e.getValue());
+                    batch.add(e.getValue());
+                    it.remove();
+                }
+            }
+            boolean written = flush(batch);
+            synchronized (pending) {
+                if (!written) {
+                    // Back in front of the queue, unless the key has changed again since
+                    LinkedHashMap<PendingKey, CacheWriter.Write> retry = new LinkedHashMap<>(flushing);
+                    retry.keySet().removeAll(pending.keySet());
+                    retry.putAll(pending);
+                    pending.clear();
+                    pending.putAll(retry);
+                }
+                flushing.clear();
+            }
+            batch.clear();
+            if (!written) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(running ? flushIntervalMillis : 0);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (!running) {
+                    log.error("BackingStore: Giving up on {} writes that could not be flushed before shutdown.", getPendingWrites());
+                    return;
+                }
+            }
+        }
+    }
+
+    private boolean flush(List<CacheWriter.Write> batch) {
+        try {
+            writer.writeAll(batch);
+            writtenCount.addAndGet(batch.size());
+            return true;
+        } catch (Exception e) {
+            failedBatchCount.incrementAndGet();
+            log.warn("BackingStore: Failed to write a batch of {} changes; retrying in {} ms: {}",
+                    batch.size(), flushIntervalMillis, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Flushes the queue to the store and stops the writer thread.
+     */
+    public void shutdown() {
+        if (writer == null || !running) {
+            return;
+        }
+        synchronized (pending) {
+            running = false;
+            pending.notifyAll();
+        }
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(60));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("BackingStore: Stopped after writing {} changes to the store.", writtenCount.get());
+    }
+
+    public int getPendingWrites() {
+        synchronized (pending) {
+            return pending.size() + flushing.size();
+        }
+    }
+
+    public long getLoadCount() {
+        return loadCount.get();
+    }
+
+    public long getLoadMissCount() {
+        return loadMissCount.get();
+    }
+
+    public long getLoadFailureCount() {
+        return loadFailureCount.get();
+    }
+
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    public long getFailedBatchCount() {
+        return failedBatchCount.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+}
@@ -0,0 +1,20 @@
+package com.distributed.distributed_cache_project.core.store;
+
+import com.distributed.distributed_cache_project.core.cache.CacheValue;
+
+/**
+ * Reads values missing from the cache from the system of record behind it.
+ *
+ * Only a key's primary owner calls the loader, and at most once at a time per key: concurrent misses share the call.
+ * The loaded value is stored with the cache's default TTL and replicated like a write, but is not written back.
+ * Implementations need a public no-argument constructor, or one taking the {@code cache.store.path} string.
+ */
+public interface CacheLoader {
+
+    /**
+     * @param cache the cache the key was read from ({@code default} for the default cache)
+     * @return the value, or null if the store has none
+     * @throws Exception if the store cannot be read; the GET fails rather than reporting a miss
+     */
+    CacheValue load(String cache, String key) throws Exception;
+}
@@ -0,0 +1,30 @@
+package com.distributed.distributed_cache_project.core.store;
+
+import com.distributed.distributed_cache_project.core.cache.CacheValue;
+
+import java.util.List;
+
+/**
+ * Writes the cache's changes back to the system of record behind it.
+ *
+ * Writes and deletes applied by a key's primary owner are queued and handed over in batches, off the request path.
+ * A batch holds each key at most once, with its latest change. Implementations need a public no-argument
+ * constructor, or one taking the {@code cache.store.path} string.
+ */
+public interface CacheWriter {
+
+    /**
+     * One change to apply: a new value, or a delete when {@code value} is null.
+     */
+    record Write(String cache, String key, CacheValue value) {
+        public boolean isDelete() {
+            return value == null;
+        }
+    }
+
+    /**
+     * Applies the batch. Throwing fails the whole batch, which is retried after the flush interval; changes made
+     * to a key in the meantime replace its failed one.
+     */
+    void writeAll(List<Write> batch) throws Exception;
+}
@@ -0,0 +1,83 @@
+package com.distributed.distributed_cache_project.core.store;
+
+import com.distributed.distributed_cache_project.core.cache.CacheValue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Reference backing store keeping one file per key under a directory: {@code <path>/<cache>/<key in URL-safe Base64>}.
+ * Stands in for a database when testing read-through and write-behind offline; nodes on one machine share it by
+ * pointing {@code cache.store.path} at the same directory.
+ *
+ * File layout: {@code [int contentTypeLength][content type][value]}. A file is written under a temporary name and
+ * renamed into place, so a reader never sees half a value. File names limit keys to about 180 bytes.
+ */
+public class FileCacheStore implements CacheLoader, CacheWriter {
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path directory;
+
+    public FileCacheStore(String path) {
+        this.directory = Path.of(path);
+    }
+
+    @Override
+    public CacheValue load(String cache, String key) throws IOException {
+        byte[] record;
+        try {
+            record = Files.readAllBytes(fileFor(cache, key));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        int contentTypeLength = buffer.getInt();
+        if (contentTypeLength < 0 || contentTypeLength > buffer.remaining()) {
+            throw new IOException("Corrupt store file for key '" + key + "' in cache '" + cache + "'.");
+        }
+        String contentType = new String(record, buffer.position(), contentTypeLength, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + contentTypeLength);
+        byte[] value = new byte[buffer.remaining()];
+        buffer.get(value);
+        return new CacheValue(value, contentType);
+    }
+
+    @Override
+    public void writeAll(List<Write> batch) throws IOException {
+        for (Write write : batch) {
+            Path file = fileFor(write.cache(), write.key());
+            if (write.isDelete()) {
+                Files.deleteIfExists(file);
+                continue;
+            }
+            Files.createDirectories(file.getParent());
+            Path temp = file.resolveSibling(file.getFileName() + TEMP_SUFFIX);
+            Files.write(temp, encode(write.value()));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private Path fileFor(String cache, String key) {
+        String name = Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+        return directory.resolve(cache).resolve(name);
+    }
+
+    private static byte[] encode(CacheValue value) throws IOException {
+        byte[] contentType = value.contentType().getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4 + contentType.length + value.bytes().length);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(contentType.length);
+        out.write(contentType);
+        out.write(value.bytes());
+        return bytes.toByteArray();
+    }
+}
@@ -1,31 +1,60 @@
 package com.distributed.distributed_cache_project.network.client;
 
 import com.distributed.distributed_cache_project.api.InternalCacheController;
+import com.distributed.distributed_cache_project.api.model.BatchEntry;
+import com.distributed.distributed_cache_project.api.model.BatchKeysRequest;
+import com.distributed.distributed_cache_project.api.model.BatchResponse;
+import com.distributed.distributed_cache_project.api.model.BatchResult;
+import com.distributed.distributed_cache_project.api.model.BatchWriteRequest;
+import com.distributed.distributed_cache_project.api.model.ScanPage;
+import com.distributed.distributed_cache_project.core.cache.AtomicOp;
+import com.distributed.distributed_cache_project.core.cache.CacheValue;
+import com.distributed.distributed_cache_project.core.cache.NearCache;
+import com.distributed.distributed_cache_project.core.cache.ValueCompressor;
 import com.distributed.distributed_cache_project.core.consistenthashing.Node;
+import com.distributed.distributed_cache_project.core.manager.CacheManager;
 import com.distributed.distributed_cache_project.network.model.HeartbeatRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
+import java.net.URI;
 import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
 
 @Component
 public class NodeApiClient {
     private static final Logger log = LoggerFactory.getLogger(NodeApiClient.class);
+    private static final int MAX_CONNECTIONS_PER_NODE = 500;
 
     private final WebClient webClient;
+    private final ValueCompressor valueCompressor;
 
     // Constructor: Spring injects WebClient.Builder
-    public NodeApiClient(WebClient.Builder webClientBuilder) {
+    public NodeApiClient(WebClient.Builder webClientBuilder, ValueCompressor valueCompressor) {
+        this.valueCompressor = valueCompressor;
         // Configure a base WebClient instance here.
         // You can add default headers, timeouts, etc.
+        // Forwards wait for a pooled connection instead of failing once the default wait list of 1000 is full;
+        // a pipelined client alone can have thousands of requests for other nodes' keys outstanding
+        ConnectionProvider pool = ConnectionProvider.builder("node-api")
+                .maxConnections(MAX_CONNECTIONS_PER_NODE)
+                .pendingAcquireMaxCount(-1)
+                .build();
         this.webClient = webClientBuilder
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(pool)))
                 .baseUrl("") // Base URL set per request below
                 // Add timeouts (from application.properties if you added them)
                 // .build(); // Build here if you want a single WebClient instance configured once
@@ -35,24 +64,33 @@ public class NodeApiClient {
 
     /**
      * Forwards a PUT request to the specified target node's internal API.
+     * The value's bytes are sent as the request body with their original content type.
      * @param targetNode The node to forward the request to.
+     * @param cache The cache holding the key.
      * @param key The key to store.
      * @param value The value to store.
      * @param ttlMillis The time-to-live in milliseconds.
      * @return A Mono<Void> indicating completion or error.
      */
-    public Mono<Void> forwardPut(Node targetNode, String key, Object value, long ttlMillis) {
-        String url = String.format("http://%s:%d/internal/cache/%s", targetNode.getHost(), targetNode.getPort(), key);
+    public Mono<Void> forwardPut(Node targetNode, String cache, String key, CacheValue value, long ttlMillis) {
+        String url = String.format("http://%s:%d/internal/cache/%s?ttlMillis=%d%s", targetNode.getHost(), targetNode.getPort(), key, ttlMillis,
+                cacheParam(cache, '&'));
         log.info("Forwarding PUT request for key '{}' to node: {}", key, targetNode.getId());
 
-        InternalCacheController.InternalCachePutRequest requestBody = new InternalCacheController.InternalCachePutRequest();
-        requestBody.setValue(value);
-        requestBody.setTtlMillis(ttlMillis);
-
-        return webClient.post()
+        byte[] body = value.bytes();
+        byte[] deflated = valueCompressor.compress(body);
+        WebClient.RequestBodySpec request = webClient.post()
                 .uri(url)
-                .contentType(MediaType.APPLICATION_JSON)
-                .bodyValue(requestBody)
+                .header(HttpHeaders.CONTENT_TYPE, value.contentType());
+        if (deflated != null) {
+            // Deflated on the wire only; the receiving node inflates it before storing
+            log.debug("Compressed value for key '{}' from {} to {} bytes for forwarding.", key, body.length, deflated.length);
+            request.header(InternalCacheController.UNCOMPRESSED_LENGTH_HEADER, Integer.toString(body.length));
+            body = deflated;
+        }
+
+        return request
+                .bodyValue(body)
                 .retrieve()
                 .onStatus(HttpStatusCode::isError, clientResponse -> {
                     // Handle error responses from the target node
@@ -71,23 +109,44 @@ public class NodeApiClient {
     /**
      * Forwards a GET request to the specified target node's internal API.
      * @param targetNode The node to forward the request to.
+     * @param cache The cache holding the key.
      * @param key The key to retrieve.
-     * @return A Mono<Object> containing the retrieved value, or Mono.empty() if not found.
+     * @return A Mono<CacheValue> with the value's bytes and content type, or Mono.empty() if not found.
      */
-    public Mono<String> forwardGet(Node targetNode, String key) {
-        String url = String.format("http://%s:%d/internal/cache/%s", targetNode.getHost(), targetNode.getPort(), key);
+    public Mono<CacheValue> forwardGet(Node targetNode, String cache, String key) {
+        return forwardGet(targetNode, cache, key, null).map(NearCache.Lease::value);
+    }
+
+    /**
+     * Forwards a GET request and asks the target node for a near-cache lease on the key.
+     * @param nearCacheReader The id of the node asking for the lease, or null to ask for none.
+     * @return A Mono<NearCache.Lease> with the value and the lease granted (0 if none), or Mono.empty() if not found.
+     */
+    public Mono<NearCache.Lease> forwardGet(Node targetNode, String cache, String key, String nearCacheReader) {
+        String url = String.format("http://%s:%d/internal/cache/%s%s", targetNode.getHost(), targetNode.getPort(), key, cacheParam(cache, '?'));
         log.info("Forwarding GET request for key '{}' to node: {}", key, targetNode.getId());
 
-        return webClient.get()
-                .uri(url)
-                .retrieve()
-                .onStatus(HttpStatus.NOT_FOUND::equals, clientResponse -> Mono.empty()) // Handle 404 explicitly as empty
-                .onStatus(HttpStatusCode::isError, clientResponse -> {
-                    log.error("Error forwarding GET for key '{}' to {}: Status {}", key, targetNode.getId(), clientResponse.statusCode());
-                    return clientResponse.bodyToMono(String.class)
-                            .flatMap(errorBody -> Mono.error(new RuntimeException("Forwarded GET failed: " + errorBody)));
+        WebClient.RequestHeadersSpec<?> request = webClient.get().uri(url);
+        if (nearCacheReader != null) {
+            request.header(InternalCacheController.NEAR_CACHE_READER_HEADER, nearCacheReader);
+        }
+        return request
+                .exchangeToMono(clientResponse -> {
+                    if (clientResponse.statusCode().equals(HttpStatus.NOT_FOUND)) {
+                        return clientResponse.releaseBody().then(Mono.<NearCache.Lease>empty()); // Handle 404 explicitly as empty
+                    }
+                    if (clientResponse.statusCode().isError()) {
+                        log.error("Error forwarding GET for key '{}' to {}: Status {}", key, targetNode.getId(), clientResponse.statusCode());
+                        return clientResponse.bodyToMono(String.class)
+                                .flatMap(errorBody -> Mono.error(new RuntimeException("Forwarded GET failed: " + errorBody)));
+                    }
+                    String contentType = clientResponse.headers().contentType().map(MediaType::toString).orElse(null);
+                    String lease = clientResponse.headers().asHttpHeaders().getFirst(InternalCacheController.NEAR_CACHE_LEASE_HEADER);
+                    long leaseMillis = lease != null ? Long.parseLong(lease) : 0;
+                    return clientResponse.bodyToMono(byte[].class)
+                            .defaultIfEmpty(new byte[0]) // An empty value is still a hit
+                            .map(bytes -> new NearCache.Lease(new CacheValue(bytes, contentType), leaseMillis));
                 })
-                .bodyToMono(String.class) // Expecting the value as an Object
                 .timeout(Duration.ofMillis(5000)) // Example timeout
                 .doOnError(WebClientRequestException.class, e ->
                         log.error("Network error forwarding GET for key '{}' to {}: {}", key, targetNode.getId(), e.getMessage()))
@@ -95,14 +154,64 @@ public class NodeApiClient {
                         log.error("An unexpected error occurred while forwarding GET for key '{}' to {}: {}", key, targetNode.getId(), e.getMessage()));
     }
 
+    /**
+     * Forwards an atomic operation to the key's primary owner, which runs it and replies with the result.
+     * @param targetNode The primary owner of the key.
+     * @param cache The cache holding the key.
+     * @param key The key to operate on.
+     * @param op The operation.
+     * @param operand The delta for INCR, or the expected version stamp for CAS.
+     * @param value The value to store, or null for operations that store none.
+     * @param ttlMillis The time-to-live of a value stored, in milliseconds.
+     * @return A Mono<AtomicOp.Result> with the outcome; a value the owner rejected fails with IllegalArgumentException.
+     */
+    public Mono<AtomicOp.Result> forwardAtomic(Node targetNode, String cache, String key, AtomicOp op, long operand,
+                                               CacheValue value, long ttlMillis) {
+        String url = String.format("http://%s:%d/internal/cache/%s?op=%s&operand=%d&ttlMillis=%d%s", targetNode.getHost(), targetNode.getPort(),
+                key, op.param(), operand, ttlMillis, cacheParam(cache, '&'));
+        log.info("Forwarding {} request for key '{}' to node: {}", op.param(), key, targetNode.getId());
+
+        WebClient.RequestBodySpec request = webClient.post().uri(url);
+        WebClient.RequestHeadersSpec<?> withBody = value != null
+                ? request.header(HttpHeaders.CONTENT_TYPE, value.contentType()).bodyValue(value.bytes())
+                : request;
+        return withBody
+                .exchangeToMono(clientResponse -> {
+                    if (clientResponse.statusCode().isError()) {
+                        log.error("Error forwarding {} for key '{}' to {}: Status {}", op.param(), key, targetNode.getId(), clientResponse.statusCode());
+                        boolean rejected = clientResponse.statusCode().equals(HttpStatus.BAD_REQUEST);
+                        return clientResponse.bodyToMono(String.class)
+                                .defaultIfEmpty(clientResponse.statusCode().toString())
+                                .flatMap(errorBody -> Mono.<AtomicOp.Result>error(rejected
+                                        ? new IllegalArgumentException(errorBody)
+                                        : new RuntimeException("Forwarded " + op.param() + " failed: " + errorBody)));
+                    }
+                    HttpHeaders headers = clientResponse.headers().asHttpHeaders();
+                    boolean applied = Boolean.parseBoolean(headers.getFirst(InternalCacheController.APPLIED_HEADER));
+                    String version = headers.getFirst(InternalCacheController.VERSION_HEADER);
+                    long versionStamp = version != null ? Long.parseLong(version) : 0;
+                    if (clientResponse.statusCode().equals(HttpStatus.NO_CONTENT)) {
+                        return clientResponse.releaseBody().thenReturn(new AtomicOp.Result(applied, null, versionStamp));
+                    }
+                    String contentType = clientResponse.headers().contentType().map(MediaType::toString).orElse(null);
+                    return clientResponse.bodyToMono(byte[].class)
+                            .defaultIfEmpty(new byte[0])
+                            .map(bytes -> new AtomicOp.Result(applied, new CacheValue(bytes, contentType), versionStamp));
+                })
+                .timeout(Duration.ofMillis(5000))
+                .doOnError(WebClientRequestException.class, e ->
+                        log.error("Network error forwarding {} for key '{}' to {}: {}", op.param(), key, targetNode.getId(), e.getMessage()));
+    }
+
     /**
      * Forwards a DELETE request to the specified target node's internal API.
      * @param targetNode The node to forward the request to.
+     * @param cache The cache holding the key.
      * @param key The key to delete.
      * @return A Mono<Void> indicating completion or error.
      */
-    public Mono<Void> forwardDelete(Node targetNode, String key) {
-        String url = String.format("http://%s:%d/internal/cache/%s", targetNode.getHost(), targetNode.getPort(), key);
+    public Mono<Void> forwardDelete(Node targetNode, String cache, String key) {
+        String url = String.format("http://%s:%d/internal/cache/%s%s", targetNode.getHost(), targetNode.getPort(), key, cacheParam(cache, '?'));
         log.info("Forwarding DELETE request for key '{}' to node: {}", key, targetNode.getId());
 
         return webClient.delete()
@@ -121,6 +230,116 @@ public class NodeApiClient {
                         log.error("An unexpected error occurred while forwarding DELETE for key '{}' to {}: {}", key, targetNode.getId(), e.getMessage()));
     }
 
+    /**
+     * Tells a node to drop its near-cache copy of a key that has just been written or deleted.
+     * @param targetNode The node holding a lease on the key.
+     * @param cache The cache holding the key.
+     * @param key The key that changed.
+     * @return A Mono<Void> indicating completion or error.
+     */
+    public Mono<Void> invalidateNearCache(Node targetNode, String cache, String key) {
+        String url = String.format("http://%s:%d/internal/cache/near/%s%s", targetNode.getHost(), targetNode.getPort(), key, cacheParam(cache, '?'));
+        log.debug("Invalidating near-cache copy of key '{}' on node: {}", key, targetNode.getId());
+
+        return webClient.delete()
+                .uri(url)
+                .retrieve()
+                .onStatus(HttpStatusCode::isError, clientResponse ->
+                        clientResponse.releaseBody().then(Mono.error(new RuntimeException("Near-cache invalidation failed: " + clientResponse.statusCode()))))
+                .bodyToMono(Void.class)
+                .timeout(Duration.ofMillis(5000));
+    }
+
+    /**
+     * Fetches one page of the entries the target node owns, for a cluster-wide scan.
+     * @param targetNode The node to scan.
+     * @param cache The cache to scan.
+     * @param cursor The cursor returned with the previous page, or "0" to start.
+     * @param count The page size hint.
+     * @param match Glob pattern the keys must match, or null for all.
+     * @return A Mono<ScanPage> whose entries hold raw value bytes, Base64-encoded.
+     */
+    public Mono<ScanPage> scanPage(Node targetNode, String cache, String cursor, int count, String match) {
+        UriComponentsBuilder builder = UriComponentsBuilder
+                .fromUriString(String.format("http://%s:%d/internal/cache/", targetNode.getHost(), targetNode.getPort()))
+                .queryParam("cursor", cursor)
+                .queryParam("count", count);
+        if (!CacheManager.DEFAULT_CACHE.equals(cache)) {
+            builder.queryParam("cache", cache);
+        }
+        if (match != null) {
+            builder.queryParam("match", "{match}"); // Expanded values are encoded strictly, so '+' and '&' survive
+        }
+        URI uri = builder.encode().buildAndExpand(Collections.singletonMap("match", match)).toUri();
+        log.debug("Fetching scan page at cursor {} from node: {}", cursor, targetNode.getId());
+
+        return webClient.get()
+                .uri(uri)
+                .retrieve()
+                .onStatus(HttpStatusCode::isError, clientResponse -> {
+                    log.error("Error scanning node {}: Status {}", targetNode.getId(), clientResponse.statusCode());
+                    return clientResponse.bodyToMono(String.class)
+                            .flatMap(errorBody -> Mono.error(new RuntimeException("Scan of node " + targetNode.getId() + " failed: " + errorBody)));
+                })
+                .bodyToMono(ScanPage.class)
+                .timeout(Duration.ofMillis(5000))
+                .doOnError(WebClientRequestException.class, e ->
+                        log.error("Network error scanning node {}: {}", targetNode.getId(), e.getMessage()));
+    }
+
+    /**
+     * Reads a batch of keys the target node owns.
+     * @param targetNode The primary owner of the keys.
+     * @param cache The cache holding the keys.
+     * @param keys The keys to read.
+     * @return A Mono<List<BatchResult>> with one result per key; found values hold raw bytes, Base64-encoded.
+     */
+    public Mono<List<BatchResult>> batchGet(Node targetNode, String cache, List<String> keys) {
+        return postBatch(targetNode, "get", cache, new BatchKeysRequest(keys), keys.size());
+    }
+
+    /**
+     * Stores a batch of entries on the node that owns their keys, which replicates them.
+     * @return A Mono<List<BatchResult>> with one result per entry.
+     */
+    public Mono<List<BatchResult>> batchPut(Node targetNode, String cache, List<BatchEntry> entries) {
+        return postBatch(targetNode, "put", cache, new BatchWriteRequest(entries), entries.size());
+    }
+
+    /**
+     * Deletes a batch of keys on the node that owns them.
+     * @return A Mono<List<BatchResult>> with one result per key.
+     */
+    public Mono<List<BatchResult>> batchDelete(Node targetNode, String cache, List<String> keys) {
+        return postBatch(targetNode, "delete", cache, new BatchKeysRequest(keys), keys.size());
+    }
+
+    private Mono<List<BatchResult>> postBatch(Node targetNode, String operation, String cache, Object body, int count) {
+        String url = String.format("http://%s:%d/internal/cache/batch/%s%s", targetNode.getHost(), targetNode.getPort(), operation, cacheParam(cache, '?'));
+        log.info("Forwarding batch {} of {} keys to node: {}", operation, count, targetNode.getId());
+
+        return webClient.post()
+                .uri(url)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(body)
+                .retrieve()
+                .onStatus(HttpStatusCode::isError, clientResponse -> {
+                    log.error("Error forwarding batch {} to {}: Status {}", operation, targetNode.getId(), clientResponse.statusCode());
+                    return clientResponse.bodyToMono(String.class)
+                            .flatMap(errorBody -> Mono.error(new RuntimeException("Forwarded batch " + operation + " failed: " + errorBody)));
+                })
+                .bodyToMono(BatchResponse.class)
+                .map(BatchResponse::getResults)
+                .timeout(Duration.ofMillis(5000))
+                .doOnError(WebClientRequestException.class, e ->
+                        log.error("Network error forwarding batch {} to {}: {}", operation, targetNode.getId(), e.getMessage()));
+    }
+
+    // Names the cache in internal URLs; the default cache is left implicit, so its URLs are unchanged
+    private static String cacheParam(String cache, char separator) {
+        return CacheManager.DEFAULT_CACHE.equals(cache) ? "" : separator + "cache=" + cache;
+    }
+
     public Mono<Void> sendHeartbeat(Node targetNode, HeartbeatRequest heartbeat){
         String url = String.format("http://%s:%d/internal/cache/heartbeat", targetNode.getHost(), targetNode.getPort());
 //        log.debug("Sending heartbeat to {}: {}", targetNode.getId(), heartbeat);
@@ -0,0 +1,214 @@
+package com.distributed.distributed_cache_project.network.server;
+
+import com.distributed.distributed_cache_project.core.cache.AtomicOp;
+import com.distributed.distributed_cache_project.core.cache.CacheValue;
+import com.distributed.distributed_cache_project.core.manager.CacheManager;
+import com.distributed.distributed_cache_project.service.CacheService;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves one connection of the pipelined protocol described on {@link PipelineServer}: decodes each frame, starts
+ * the operation, and writes its reply whenever the operation completes.
+ *
+ * Frames are decoded on the event loop, but operations are started on a worker of their own for each connection, in
+ * the order they arrived. A read-through load, a spill to disk or a primary write waiting on storage then holds up
+ * only the later requests of its own connection, not every connection sharing the event loop.
+ *
+ * Once {@code max-in-flight} requests are outstanding the node stops reading from the connection, leaving further
+ * requests in the socket buffers, and reads again when half of them have been answered.
+ */
+class PipelineHandler extends SimpleChannelInboundHandler<ByteBuf> {
+    private static final Logger log = LoggerFactory.getLogger(PipelineHandler.class);
+
+    // Opcodes
+    static final byte OP_PING = 0; // Replies OK with nothing else; for measuring the protocol itself
+    static final byte OP_GET = 1;
+    static final byte OP_PUT = 2;
+    static final byte OP_DELETE = 3;
+    static final byte OP_GETS = 4;
+    static final byte OP_INCR = 5;
+    static final byte OP_CAS = 6;
+    static final byte OP_PUT_IF_ABSENT = 7;
+    static final byte OP_GET_AND_SET = 8;
+
+    // Reply statuses
+    static final byte STATUS_OK = 0; // Found, stored, deleted or applied
+    static final byte STATUS_MISS = 1; // GET or GETS found nothing, or an atomic operation did not apply
+    static final byte STATUS_ERROR = 2; // The value is the error message
+
+    private record Reply(byte status, CacheValue value, long version) {
+        static final Reply OK = new Reply(STATUS_OK, null, 0);
+        static final Reply MISS = new Reply(STATUS_MISS, null, 0);
+
+        static Reply of(AtomicOp.Result result) {
+            return new Reply(result.applied() ? STATUS_OK : STATUS_MISS, result.value(), result.version());
+        }
+
+        static Reply error(Throwable e) {
+            String message = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            return new Reply(STATUS_ERROR, new CacheValue(message.getBytes(StandardCharsets.UTF_8), ""), 0);
+        }
+    }
+
+    private final CacheService cacheService;
+    private final int maxInFlight;
+    private final AtomicInteger openConnections;
+    private final AtomicLong requestCount;
+    private final Scheduler worker; // Starts this connection's operations one at a time
+
+    // Requests of this connection whose reply has not been written yet; replies complete on any thread
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * @param scheduler where operations run; the handler takes a single worker of it
+     */
+    PipelineHandler(CacheService cacheService, int maxInFlight, AtomicInteger openConnections, AtomicLong requestCount,
+                    Scheduler scheduler) {
+        this.cacheService = cacheService;
+        this.maxInFlight = maxInFlight;
+        this.openConnections = openConnections;
+        this.requestCount = requestCount;
+        this.worker = Schedulers.single(scheduler);
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        openConnections.incrementAndGet();
+        log.debug("PipelineHandler: Connection from {} opened.", ctx.channel().remoteAddress());
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        openConnections.decrementAndGet();
+        worker.dispose();
+        log.debug("PipelineHandler: Connection from {} closed.", ctx.channel().remoteAddress());
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, ByteBuf frame) {
+        if (frame.readableBytes() < Integer.BYTES + 1) {
+            log.warn("PipelineHandler: Closing connection from {} after a frame of {} bytes.",
+                    ctx.channel().remoteAddress(), frame.readableBytes());
+            ctx.close();
+            return;
+        }
+        int id = frame.readInt();
+        requestCount.incrementAndGet();
+        if (inFlight.incrementAndGet() >= maxInFlight) {
+            ctx.channel().config().setAutoRead(false);
+            resumeReadingIfDrained(ctx); // Replies may all have been written before reading stopped
+        }
+        Mono<Reply> reply;
+        try {
+            reply = dispatch(frame);
+        } catch (IndexOutOfBoundsException e) {
+            reply = Mono.error(new IllegalArgumentException("Malformed request frame."));
+        } catch (RuntimeException e) {
+            reply = Mono.error(e);
+        }
+        reply.onErrorResume(e -> {
+                    log.debug("PipelineHandler: Request {} failed: {}", id, e.getMessage());
+                    return Mono.just(Reply.error(e));
+                })
+                .defaultIfEmpty(Reply.MISS) // Every request must be answered, or it is never taken off inFlight
+                .subscribe(r -> write(ctx, id, r));
+    }
+
+    // Decodes the rest of the frame; the frame is released once this returns, so everything read from it is copied
+    private Mono<Reply> dispatch(ByteBuf frame) {
+        byte op = frame.readByte();
+        if (op == OP_PING) {
+            return Mono.just(Reply.OK);
+        }
+        String cacheName = readString(frame);
+        String cache = cacheName.isEmpty() ? CacheManager.DEFAULT_CACHE : cacheName;
+        String key = readString(frame);
+        if (key.isEmpty()) {
+            throw new IllegalArgumentException("Key must not be empty.");
+        }
+        long ttlMillis = frame.readLong();
+        long operand = frame.readLong();
+        String contentType = readString(frame);
+        if (!contentType.isEmpty()) {
+            MediaType.parseMediaType(contentType); // Rejected now, rather than when an HTTP GET fails to serve the value
+        }
+        byte[] bytes = new byte[frame.readableBytes()];
+        frame.readBytes(bytes);
+        CacheValue value = new CacheValue(bytes, contentType);
+
+        Mono<Reply> operation = switch (op) {
+            case OP_GET -> Mono.defer(() -> cacheService.get(cache, key))
+                    .map(v -> new Reply(STATUS_OK, v, 0))
+                    .defaultIfEmpty(Reply.MISS);
+            case OP_PUT -> Mono.defer(() -> cacheService.put(cache, key, value, ttlMillis)).thenReturn(Reply.OK);
+            case OP_DELETE -> Mono.defer(() -> cacheService.delete(cache, key)).thenReturn(Reply.OK);
+            case OP_GETS -> atomic(cache, key, AtomicOp.GETS, operand, null, ttlMillis);
+            case OP_INCR -> atomic(cache, key, AtomicOp.INCR, operand, null, ttlMillis);
+            case OP_CAS -> atomic(cache, key, AtomicOp.CAS, operand, value, ttlMillis);
+            case OP_PUT_IF_ABSENT -> atomic(cache, key, AtomicOp.PUT_IF_ABSENT, operand, value, ttlMillis);
+            case OP_GET_AND_SET -> atomic(cache, key, AtomicOp.GET_AND_SET, operand, value, ttlMillis);
+            default -> throw new IllegalArgumentException("Unknown opcode " + op + ".");
+        };
+        return operation.subscribeOn(worker);
+    }
+
+    private Mono<Reply> atomic(String cache, String key, AtomicOp op, long operand, CacheValue value, long ttlMillis) {
+        return Mono.defer(() -> cacheService.atomic(cache, key, op, operand, value, ttlMillis))
+                .map(Reply::of)
+                .defaultIfEmpty(Reply.MISS);
+    }
+
+    private void write(ChannelHandlerContext ctx, int id, Reply reply) {
+        inFlight.decrementAndGet();
+        resumeReadingIfDrained(ctx);
+        if (!ctx.channel().isActive()) {
+            return;
+        }
+        CacheValue value = reply.value();
+        byte[] contentType = value != null && reply.status() != STATUS_ERROR
+                ? value.contentType().getBytes(StandardCharsets.UTF_8) : new byte[0];
+        byte[] bytes = value != null ? value.bytes() : new byte[0];
+        int length = Integer.BYTES + 1 + Long.BYTES + Short.BYTES + contentType.length + bytes.length;
+        ByteBuf out = ctx.alloc().buffer(Integer.BYTES + length);
+        out.writeInt(length);
+        out.writeInt(id);
+        out.writeByte(reply.status());
+        out.writeLong(reply.version());
+        out.writeShort(contentType.length);
+        out.writeBytes(contentType);
+        out.writeBytes(bytes);
+        ctx.writeAndFlush(out, ctx.voidPromise());
+    }
+
+    // Reads again once half of the limit has been answered, rather than toggling on every reply
+    private void resumeReadingIfDrained(ChannelHandlerContext ctx) {
+        if (inFlight.get() <= maxInFlight / 2 && !ctx.channel().config().isAutoRead()) {
+            ctx.channel().config().setAutoRead(true);
+        }
+    }
+
+    private static String readString(ByteBuf frame) {
+        int length = frame.readUnsignedShort();
+        return frame.readCharSequence(length, StandardCharsets.UTF_8).toString();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        log.warn("PipelineHandler: Closing connection from {}: {}", ctx.channel().remoteAddress(), cause.getMessage());
+        ctx.close();
+    }
+}
@@ -0,0 +1,131 @@
+package com.distributed.distributed_cache_project.network.server;
+
+import com.distributed.distributed_cache_project.config.NodeConfigProperties;
+import com.distributed.distributed_cache_project.service.CacheService;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Listener for the pipelined binary protocol: GET, PUT, DELETE and the atomic operations over long-lived TCP
+ * connections, for clients that find an HTTP request per operation too slow.
+ *
+ * A client writes requests back to back without waiting for replies, each tagged with an id of its choosing. The node
+ * runs them concurrently and writes each reply as soon as it is ready, so a reply can overtake those of requests sent
+ * before it (a GET of a local key overtakes one forwarded to another node); the client matches them up by id. Replies
+ * finishing together go out in one write. Requests go through {@link CacheService} exactly like HTTP ones, started off the
+ * event loop in the order each connection sent them.
+ *
+ * Every frame is a big-endian {@code int} length followed by that many bytes. Strings are an unsigned {@code short}
+ * byte count followed by UTF-8.
+ * <pre>
+ * request: [int id][byte op][string cache][string key][long ttlMillis][long operand][string contentType][value...]
+ * reply:   [int id][byte status][long version][string contentType][value...]
+ * </pre>
+ * An empty cache name means the default cache, and an empty content type means {@code application/octet-stream};
+ * any other content type must parse as a media type. {@code operand} is the INCR delta or the CAS version, as in
+ * {@link com.distributed.distributed_cache_project.core.cache.AtomicOp}. The value is the rest of the frame. See
+ * {@link PipelineHandler} for the opcodes and statuses. A reply carries a value exactly when its content type is
+ * non-empty; an ERROR reply carries its message as the value instead.
+ */
+@Component
+public class PipelineServer {
+    private static final Logger log = LoggerFactory.getLogger(PipelineServer.class);
+
+    private static final int DEFAULT_PORT = 9090;
+    private static final int DEFAULT_MAX_FRAME_BYTES = 16 * 1024 * 1024;
+    private static final int DEFAULT_MAX_IN_FLIGHT = 10_000;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+    private static final int FLUSH_AFTER_WRITES = 256; // Replies written before a flush is forced, while reading
+
+    private final CacheService cacheService;
+    private final boolean enabled;
+    private final int port;
+    private final int maxFrameBytes;
+    private final int maxInFlight;
+    private final int threads;
+
+    private EventLoopGroup acceptGroup;
+    private EventLoopGroup workerGroup;
+    private Channel serverChannel;
+
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final AtomicLong requestCount = new AtomicLong();
+
+    public PipelineServer(CacheService cacheService, NodeConfigProperties nodeConfigProperties) {
+        this.cacheService = cacheService;
+        NodeConfigProperties.ProtocolProperties props = nodeConfigProperties.getProtocol();
+        this.enabled = props != null && props.isEnabled();
+        this.port = props != null && props.getPort() > 0 ? props.getPort() : DEFAULT_PORT;
+        this.maxFrameBytes = props != null && props.getMaxFrameBytes() > 0 ? props.getMaxFrameBytes() : DEFAULT_MAX_FRAME_BYTES;
+        this.maxInFlight = props != null && props.getMaxInFlight() > 0 ? props.getMaxInFlight() : DEFAULT_MAX_IN_FLIGHT;
+        this.threads = props != null && props.getThreads() > 0 ? props.getThreads() : Runtime.getRuntime().availableProcessors();
+    }
+
+    @PostConstruct
+    public void start() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        acceptGroup = new NioEventLoopGroup(1);
+        workerGroup = new NioEventLoopGroup(threads);
+        ServerBootstrap bootstrap = new ServerBootstrap()
+                .group(acceptGroup, workerGroup)
+                .channel(NioServerSocketChannel.class)
+                .childOption(ChannelOption.TCP_NODELAY, true) // Replies are batched by the flush handler instead
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel channel) {
+                        channel.pipeline().addLast(
+                                new FlushConsolidationHandler(FLUSH_AFTER_WRITES, true),
+                                new LengthFieldBasedFrameDecoder(maxFrameBytes, 0, 4, 0, 4),
+                                new PipelineHandler(cacheService, maxInFlight, openConnections, requestCount,
+                                        Schedulers.boundedElastic()));
+                    }
+                });
+        try {
+            serverChannel = bootstrap.bind(port).sync().channel();
+        } catch (InterruptedException | RuntimeException e) {
+            shutdown();
+            throw e;
+        }
+        log.info("PipelineServer: Listening on port {} with {} event loop threads.", port, threads);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (serverChannel != null) {
+            serverChannel.close().syncUninterruptibly();
+        }
+        if (acceptGroup != null) {
+            acceptGroup.shutdownGracefully(0, SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            workerGroup.shutdownGracefully(0, SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS).syncUninterruptibly();
+            log.info("PipelineServer: Stopped after serving {} requests.", requestCount.get());
+        }
+    }
+
+    public int getOpenConnections() {
+        return openConnections.get();
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+}
@@ -1,65 +1,276 @@
 package com.distributed.distributed_cache_project.service;
 
+import com.distributed.distributed_cache_project.api.model.BatchEntry;
+import com.distributed.distributed_cache_project.api.model.BatchResult;
+import com.distributed.distributed_cache_project.api.model.ScanEntry;
+import com.distributed.distributed_cache_project.api.model.ScanPage;
 import com.distributed.distributed_cache_project.config.NodeConfigProperties;
+import com.distributed.distributed_cache_project.core.cache.AtomicOp;
+import com.distributed.distributed_cache_project.core.cache.CacheClock;
+import com.distributed.distributed_cache_project.core.cache.CacheValue;
+import com.distributed.distributed_cache_project.core.cache.KeyPattern;
 import com.distributed.distributed_cache_project.core.cache.LocalCache;
+import com.distributed.distributed_cache_project.core.cache.NearCache;
 import com.distributed.distributed_cache_project.core.consistenthashing.HashRing;
+import com.distributed.distributed_cache_project.core.manager.CacheManager;
 import com.distributed.distributed_cache_project.core.consistenthashing.Node;
+import com.distributed.distributed_cache_project.core.persistence.OperationLog;
+import com.distributed.distributed_cache_project.core.store.BackingStore;
 import com.distributed.distributed_cache_project.network.client.NodeApiClient;
+import com.fasterxml.jackson.databind.util.RawValue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
 public class CacheService {
 
+    // Cursor that starts a scan, and is returned with its last page
+    public static final String SCAN_START = "0";
+
     private static final Logger log = LoggerFactory.getLogger(CacheService.class);
 
-    private final LocalCache localCache;
+    private final CacheManager cacheManager;
     private final HashRing hashRing;
     private final NodeApiClient nodeApiClient;
+    private final OperationLog operationLog;
+    private final NearCache nearCache;
+    private final BackingStore backingStore;
     private final Node currentNode;
 
-    private final int replicationFactor;
+    // GETs on their way to other nodes, by routing key; concurrent reads of a key share one
+    private final ConcurrentHashMap<String, Mono<Optional<CacheValue>>> inFlightGets = new ConcurrentHashMap<>();
+    private final AtomicLong forwardedGetCount = new AtomicLong();
+    private final AtomicLong coalescedGetCount = new AtomicLong();
+
+    // Loads from the backing store running on this node as the owner, by routing key, shared like forwarded GETs
+    private final ConcurrentHashMap<String, Mono<Optional<CacheValue>>> inFlightLoads = new ConcurrentHashMap<>();
+    // Token of the load allowed to store its value; a write or delete of the key removes it. Primary writes and loads
+    // storing their value check and take tokens under the key's lock (see keyLock), which orders them with each other.
+    private final ConcurrentHashMap<String, Long> loadTokens = new ConcurrentHashMap<>();
+    private final AtomicLong loadSequence = new AtomicLong();
+    private final AtomicLong coalescedLoadCount = new AtomicLong();
+    private final double refreshAheadFraction; // 0 = off
+    private final AtomicLong refreshCount = new AtomicLong();
+    private final AtomicLong staleServedCount = new AtomicLong();
+
+    private final AtomicLong atomicCount = new AtomicLong();
+    private final AtomicLong atomicConflictCount = new AtomicLong();
+
+    // Replication messages per replica and routing key: present while one is on its way, holding the next change to
+    // send once it is answered (NOTHING_WAITING if none). A newer change replaces one still waiting, so a replica gets
+    // a key's changes one at a time and in order, and a hot key costs at most two messages in flight or waiting.
+    private static final Supplier<Mono<Void>> NOTHING_WAITING = Mono::empty;
+    private final ConcurrentHashMap<ReplicaKey, Supplier<Mono<Void>>> replicating = new ConcurrentHashMap<>();
+    private final AtomicLong coalescedReplicationCount = new AtomicLong();
+
+    private record ReplicaKey(String nodeId, String routingKey) {
+    }
+
+    // What an atomic operation did under the key's lock: its result, and the value it wrote (null if none)
+    private record AtomicWrite(AtomicOp.Result result, CacheValue written, long ttlMillis) {
+    }
 
-    public CacheService(LocalCache localCache,
+    public CacheService(CacheManager cacheManager,
                         HashRing hashRing,
                         NodeApiClient nodeApiClient,
+                        OperationLog operationLog,
+                        NearCache nearCache,
+                        BackingStore backingStore,
                         NodeConfigProperties nodeConfigProperties){
-        this.localCache = localCache;
+        this.cacheManager = cacheManager;
         this.hashRing = hashRing;
         this.nodeApiClient = nodeApiClient;
+        this.operationLog = operationLog;
+        this.nearCache = nearCache;
+        this.backingStore = backingStore;
         NodeConfigProperties.NodeProperties currentProps = nodeConfigProperties.getNode();
         if(currentProps == null){
             throw new IllegalStateException("Current node properties (cache.node) are not configured for CacheService.");
         }
         this.currentNode = new Node(currentProps.getHost() + ":" + currentProps.getPort(), currentProps.getHost(), currentProps.getPort());
-        this.replicationFactor = nodeConfigProperties.getReplication().getFactor();
+        NodeConfigProperties.StoreProperties store = nodeConfigProperties.getStore();
+        double fraction = store != null ? store.getRefreshAheadFraction() : 0;
+        this.refreshAheadFraction = fraction > 0 && fraction < 1 ? fraction : 0;
 
-        log.info("CacheService initialized. Current node: {}. Replication Factor: {}", currentNode, replicationFactor);
+        log.info("CacheService initialized. Current node: {}. Caches: {}", currentNode,
+                cacheManager.getCaches().stream().map(CacheManager.NamedCache::name).toList());
     }
 
-    public Mono<String> get(String key) {
-        Node ownerNode = hashRing.getOwnerNode(key);
+    public Mono<CacheValue> get(String cache, String key) {
+        LocalCache localCache = cacheManager.getCache(cache).cache();
+        Node ownerNode = hashRing.getOwnerNode(CacheManager.routingKey(cache, key));
 
         if (currentNode.equals(ownerNode)) {
             log.debug("Key '{}' belongs to this node. Retrieving locally.", key);
-            // Convert immediate local result into a Mono
-            Object value = localCache.get(key);
-            return Mono.justOrEmpty(value != null ? value.toString() : null);
+            if (!backingStore.canLoad()) {
+                // Convert immediate local result into a Mono
+                return Mono.justOrEmpty(toCacheValue(localCache.get(key)));
+            }
+            String routingKey = CacheManager.routingKey(cache, key);
+            LocalCache.Lookup hit = localCache.lookup(key);
+            if (hit == null) {
+                return coalesce(inFlightLoads, routingKey, () -> loadThrough(cache, key, routingKey, false), coalescedLoadCount);
+            }
+            if (hit.stale()) {
+                staleServedCount.incrementAndGet();
+                refreshAhead(cache, key, routingKey);
+            } else if (isRefreshDue(hit)) {
+                refreshAhead(cache, key, routingKey);
+            }
+            return Mono.just(toCacheValue(hit.value()));
+        } else {
+            String routingKey = CacheManager.routingKey(cache, key);
+            if (nearCache.isEnabled()) {
+                CacheValue copy = nearCache.get(routingKey);
+                if (copy != null) {
+                    log.debug("Key '{}' belongs to node {}. Serving it from the near cache.", key, ownerNode.getId());
+                    return Mono.just(copy);
+                }
+            }
+            return coalesce(inFlightGets, routingKey, () -> forwardGet(ownerNode, cache, key, routingKey), coalescedGetCount);
+        }
+    }
+
+    /**
+     * Joins the call already running for this key in the table, or starts one. Every caller waiting on the key gets
+     * the same reply, a miss or an error included, so a burst of reads for a hot key costs a single hop or load.
+     */
+    private Mono<CacheValue> coalesce(ConcurrentHashMap<String, Mono<Optional<CacheValue>>> calls, String routingKey,
+                                      Supplier<Mono<CacheValue>> fetch, AtomicLong joinedCount) {
+        Mono<Optional<CacheValue>> call = calls.get(routingKey);
+        if (call == null) {
+            AtomicReference<Mono<Optional<CacheValue>>> self = new AtomicReference<>();
+            Mono<Optional<CacheValue>> created = Mono.defer(fetch)
+                    .map(Optional::of)
+                    .defaultIfEmpty(Optional.empty())
+                    .doFinally(signal -> calls.remove(routingKey, self.get()))
+                    .cache(); // Callers cancelling, such as a client going away, leave the call running for the rest
+            self.set(created);
+            call = calls.putIfAbsent(routingKey, created);
+            if (call == null) {
+                call = created;
+            } else {
+                joinedCount.incrementAndGet();
+            }
         } else {
+            joinedCount.incrementAndGet();
+        }
+        return call.flatMap(Mono::justOrEmpty);
+    }
+
+    // Past refresh-ahead-fraction of its TTL; entries restored from disk have no known TTL and are not refreshed early
+    private boolean isRefreshDue(LocalCache.Lookup hit) {
+        if (refreshAheadFraction <= 0 || hit.ttlMillis() <= 0) {
+            return false;
+        }
+        long refreshAtMillis = hit.expiresAtMillis() - (long) (hit.ttlMillis() * (1 - refreshAheadFraction));
+        return CacheClock.millis() >= refreshAtMillis;
+    }
+
+    /**
+     * Reloads the key in the background while readers keep getting the current value, unless a load of it is
+     * already running. If the reload fails, the value is served until it expires, or its grace period ends.
+     */
+    private void refreshAhead(String cache, String key, String routingKey) {
+        if (inFlightLoads.containsKey(routingKey)) {
+            return;
+        }
+        refreshCount.incrementAndGet();
+        log.debug("CacheService: Refreshing key '{}' from the backing store ahead of its expiry.", key);
+        coalesce(inFlightLoads, routingKey, () -> loadThrough(cache, key, routingKey, true), coalescedLoadCount)
+                .doOnError(e -> log.warn("CacheService: Failed to refresh key '{}': {}", key, e.getMessage()))
+                .onErrorResume(e -> Mono.empty())
+                .subscribe();
+    }
+
+    /**
+     * Loads a key this node owns from the backing store, stores it with the cache's default TTL and replicates it.
+     * The token is taken before the second look at the cache; a write or delete of the key removes it, so a value
+     * loaded before that write never replaces it.
+     * @param refresh reload even though the cache holds the key, for refresh-ahead
+     */
+    private Mono<CacheValue> loadThrough(String cache, String key, String routingKey, boolean refresh) {
+        return Mono.fromCallable(() -> {
+            CacheManager.NamedCache namedCache = cacheManager.getCache(cache);
+            long token = loadSequence.incrementAndGet();
+            loadTokens.put(routingKey, token);
+            try {
+                CacheValue cached = refresh ? null : toCacheValue(namedCache.cache().get(key));
+                if (cached != null) {
+                    return cached; // Written while this load waited to start
+                }
+                CacheValue loaded = backingStore.load(cache, key);
+                if (loaded == null) {
+                    return null;
+                }
+                long ttl = namedCache.ttlFor(0);
+                synchronized (keyLock(routingKey)) {
+                    if (loadTokens.remove(routingKey, token)) { // Still ours, so the key was not written meanwhile
+                        storeLocally(namedCache, key, loaded, ttl);
+                        replicateWrite(namedCache, key, loaded, ttl);
+                        log.debug("CacheService: Loaded key '{}' from the backing store.", key);
+                    }
+                }
+                return loaded;
+            } finally {
+                loadTokens.remove(routingKey, token);
+            }
+        }).subscribeOn(Schedulers.boundedElastic()); // Loaders may block on I/O
+    }
+
+    private static CacheValue toCacheValue(Object value) {
+        if (value == null || value instanceof CacheValue) {
+            return (CacheValue) value;
+        }
+        return CacheValue.ofText(value.toString()); // Put directly into the LocalCache, not through the API
+    }
+
+    // Sends the GET to the owner, asking for a near-cache lease when the near cache is on
+    private Mono<CacheValue> forwardGet(Node ownerNode, String cache, String key, String routingKey) {
+        forwardedGetCount.incrementAndGet();
+        if (!nearCache.isEnabled()) {
             log.debug("Key '{}' belongs to node {}. Forwarding GET request.", key, ownerNode.getId());
-            return nodeApiClient.forwardGet(ownerNode, key);
+            return nodeApiClient.forwardGet(ownerNode, cache, key);
         }
+        log.debug("Key '{}' belongs to node {}. Forwarding GET request with a near-cache lease.", key, ownerNode.getId());
+        long token = nearCache.startFetch(routingKey);
+        return nodeApiClient.forwardGet(ownerNode, cache, key, currentNode.getId())
+                .doOnNext(lease -> nearCache.complete(routingKey, token, lease))
+                .map(NearCache.Lease::value)
+                .doFinally(signal -> nearCache.abandon(routingKey, token));
+    }
+
+    // After a write, later reads must not join a GET that may have been answered before it
+    private void forgetCachedReads(String routingKey) {
+        inFlightGets.remove(routingKey);
+        nearCache.invalidate(routingKey);
     }
 
-    public Mono<Void> put(String key, Object value, long ttlMillis) {
-        List<Node> responsibleNodes = hashRing.getNodesForKey(key);
+    public Mono<Void> put(String cache, String key, CacheValue value, long ttlMillis) {
+        cacheManager.getCache(cache); // Fails fast on an unknown cache
+        List<Node> responsibleNodes = hashRing.getNodesForKey(CacheManager.routingKey(cache, key));
         if (responsibleNodes.isEmpty()) {
             log.error("No nodes found in HashRing for key '{}'. Cannot store.", key);
             return Mono.error(new IllegalStateException("No nodes available in cluster."));
@@ -72,16 +283,20 @@ public class CacheService {
             // It will store locally and THEN initiate replication.
             log.debug("CacheService: Key '{}' belongs to this node. Processing as primary owner's initial PUT.", key);
             // Call internal method to process locally and then replicate
-            return processPrimaryWrite(key, value, ttlMillis); // <--- NEW METHOD CALL
+            return processPrimaryWrite(cache, key, value, ttlMillis); // <--- NEW METHOD CALL
         } else {
             // This node is NOT the primary owner, so forward the initial client request to the primary.
             log.debug("CacheService: Key '{}' belongs to primary node {}. Forwarding initial client PUT request.", key, primaryOwner.getId());
-            return nodeApiClient.forwardPut(primaryOwner, key, value, ttlMillis); // This call hits InternalCacheController on primary
+            String routingKey = CacheManager.routingKey(cache, key);
+            forgetCachedReads(routingKey); // Reads on this node see the write without waiting for the owner's invalidation
+            return nodeApiClient.forwardPut(primaryOwner, cache, key, value, ttlMillis) // This call hits InternalCacheController on primary
+                    .doFinally(signal -> forgetCachedReads(routingKey));
         }
     }
 
-    public Mono<Void> delete(String key) {
-        List<Node> responsibleNodes = hashRing.getNodesForKey(key);
+    public Mono<Void> delete(String cache, String key) {
+        cacheManager.getCache(cache);
+        List<Node> responsibleNodes = hashRing.getNodesForKey(CacheManager.routingKey(cache, key));
         if (responsibleNodes.isEmpty()) {
             log.warn("CacheService: No nodes found in HashRing for key '{}'. Cannot delete.", key);
             return Mono.empty();
@@ -91,28 +306,436 @@ public class CacheService {
 
         if (currentNode.equals(primaryOwner)) {
             log.debug("CacheService: Key '{}' belongs to this node. Processing as primary owner's initial DELETE.", key);
-            return processPrimaryDelete(key); // <--- NEW METHOD CALL
+            return processPrimaryDelete(cache, key); // <--- NEW METHOD CALL
         } else {
             log.debug("CacheService: Key '{}' belongs to primary node {}. Forwarding initial client DELETE request.", key, primaryOwner.getId());
-            return nodeApiClient.forwardDelete(primaryOwner, key);
+            String routingKey = CacheManager.routingKey(cache, key);
+            forgetCachedReads(routingKey);
+            return nodeApiClient.forwardDelete(primaryOwner, cache, key)
+                    .doFinally(signal -> forgetCachedReads(routingKey));
+        }
+    }
+
+    /**
+     * Runs an atomic operation on the key's primary owner, forwarding it there in one hop if that is another node.
+     * @param operand the delta for INCR, or the expected version stamp for CAS; unused otherwise
+     * @param value the value CAS, PUT_IF_ABSENT and GET_AND_SET store; null for the others
+     * @param ttlMillis TTL of the value stored, or of the counter INCR creates; 0 for the cache's default
+     */
+    public Mono<AtomicOp.Result> atomic(String cache, String key, AtomicOp op, long operand, CacheValue value, long ttlMillis) {
+        cacheManager.getCache(cache);
+        String routingKey = CacheManager.routingKey(cache, key);
+        Node primaryOwner = hashRing.getOwnerNode(routingKey);
+        if (currentNode.equals(primaryOwner)) {
+            log.debug("CacheService: Key '{}' belongs to this node. Running {} as primary owner.", key, op);
+            return processPrimaryAtomic(cache, key, op, operand, value, ttlMillis);
+        }
+        log.debug("CacheService: Key '{}' belongs to primary node {}. Forwarding {}.", key, primaryOwner.getId(), op);
+        if (op == AtomicOp.GETS) {
+            return nodeApiClient.forwardAtomic(primaryOwner, cache, key, op, operand, null, ttlMillis);
         }
+        forgetCachedReads(routingKey);
+        return nodeApiClient.forwardAtomic(primaryOwner, cache, key, op, operand, value, ttlMillis)
+                .doFinally(signal -> forgetCachedReads(routingKey));
+    }
+
+    /**
+     * Runs an atomic operation on a key this node is the primary owner of. With a loader, an absent key is loaded
+     * first, so a counter that was evicted carries on from its stored value rather than from 0. Runs on the calling
+     * event loop thread without blocking: an operation that would write while the write-behind queue is full fails
+     * with {@link BackingStore.QueueFullException} and changes nothing.
+     */
+    public Mono<AtomicOp.Result> processPrimaryAtomic(String cache, String key, AtomicOp op, long operand, CacheValue value, long ttlMillis) {
+        Mono<CacheValue> loaded = backingStore.canLoad() ? get(cache, key) : Mono.empty();
+        return loaded.then(Mono.fromCallable(() -> {
+            CacheManager.NamedCache namedCache = cacheManager.getCache(cache);
+            atomicCount.incrementAndGet();
+            AtomicWrite write = applyPrimary(CacheManager.routingKey(cache, key), () -> {
+                AtomicWrite applied = applyAtomic(namedCache, key, op, operand, value, ttlMillis);
+                if (applied.written() != null) {
+                    // Replicas get the resulting value only, in the order the operations ran
+                    replicateWrite(namedCache, key, applied.written(), applied.ttlMillis());
+                }
+                return applied;
+            });
+            if (write.written() == null) {
+                if (op != AtomicOp.GETS) {
+                    atomicConflictCount.incrementAndGet();
+                }
+                return write.result();
+            }
+            invalidateNearCopies(cache, key);
+            return write.result();
+        }));
+    }
+
+    // Runs under the key's write lock
+    private AtomicWrite applyAtomic(CacheManager.NamedCache namedCache, String key, AtomicOp op, long operand,
+                                    CacheValue value, long ttlMillis) {
+        LocalCache.Lookup current = namedCache.cache().lookup(key);
+        boolean present = current != null && !current.stale(); // A stale value has expired; it is only kept for reads
+        CacheValue currentValue = present ? toCacheValue(current.value()) : null;
+        long currentVersion = present ? current.version() : 0;
+        AtomicWrite unchanged = new AtomicWrite(new AtomicOp.Result(false, currentValue, currentVersion), null, 0);
+        return switch (op) {
+            case GETS -> new AtomicWrite(new AtomicOp.Result(present, currentValue, currentVersion), null, 0);
+            case INCR -> {
+                long counter = present ? parseCounter(key, currentValue) : 0;
+                long next;
+                try {
+                    next = Math.addExact(counter, operand);
+                } catch (ArithmeticException e) {
+                    throw new IllegalArgumentException("Adding " + operand + " to key '" + key + "' overflows a 64-bit integer.");
+                }
+                byte[] bytes = Long.toString(next).getBytes(StandardCharsets.UTF_8);
+                CacheValue counterValue = new CacheValue(bytes, present ? currentValue.contentType() : CacheValue.TEXT);
+                // An existing counter keeps its deadline, so a rate-limit window is not extended by each hit
+                long ttl = present ? remainingTtl(current) : namedCache.ttlFor(ttlMillis);
+                yield writeAtomic(namedCache, key, counterValue, ttl, counterValue);
+            }
+            case CAS -> {
+                // A value that could not be moved back from the overflow tier has no stamp, and matches nothing
+                boolean matches = present ? currentVersion != 0 && currentVersion == operand : operand == 0;
+                yield matches ? writeAtomic(namedCache, key, value, namedCache.ttlFor(ttlMillis), null) : unchanged;
+            }
+            case PUT_IF_ABSENT -> present ? unchanged : writeAtomic(namedCache, key, value, namedCache.ttlFor(ttlMillis), null);
+            case GET_AND_SET -> writeAtomic(namedCache, key, value, namedCache.ttlFor(ttlMillis), currentValue);
+        };
+    }
+
+    private AtomicWrite writeAtomic(CacheManager.NamedCache namedCache, String key, CacheValue value, long ttl, CacheValue returned) {
+        backingStore.writeBehind(namedCache.name(), key, value);
+        long version = storeLocally(namedCache, key, value, ttl);
+        return new AtomicWrite(new AtomicOp.Result(true, returned, version), value, ttl);
+    }
+
+    private static long parseCounter(String key, CacheValue value) {
+        String text = new String(value.bytes(), StandardCharsets.UTF_8).trim();
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Value of key '" + key + "' is not a 64-bit integer.");
+        }
+    }
+
+    private static long remainingTtl(LocalCache.Lookup entry) {
+        return entry.expiresAtMillis() > 0 ? Math.max(1, entry.expiresAtMillis() - CacheClock.millis()) : 0;
+    }
+
+    /**
+     * Applies a write to a key this node is the primary owner of under the key's lock, so writes to one key reach the
+     * cache, the write-behind queue and the replicas in the same order. Removing the key's load token first keeps a
+     * load already running from overwriting the write. Only the token is touched inside loadTokens, so storage I/O
+     * never runs under the map's own locks. The caller may be an event loop thread, and writes to keys sharing the
+     * lock's stripe wait meanwhile, so the write must not block on the backing store; a full write-behind queue
+     * rejects it instead, before anything is applied.
+     */
+    private <T> T applyPrimary(String routingKey, Supplier<T> write) {
+        synchronized (keyLock(routingKey)) {
+            loadTokens.remove(routingKey);
+            return write.get();
+        }
+    }
+
+    // The operation log's striped lock for the key. For the default cache routing keys are plain keys, so
+    // storeLocally re-enters the lock already held rather than taking a second one; named caches are not logged.
+    private Object keyLock(String routingKey) {
+        return operationLog.lockFor(routingKey);
+    }
+
+    /**
+     * Reads many keys at once. Keys are grouped by primary owner and each owner holding some of them gets one batch
+     * request, all in parallel, while keys this node owns are read locally. A key whose read fails, or whose owner
+     * cannot be reached, gets an ERROR result without affecting the others.
+     * @return one result per distinct key, in request order, with values shaped for a JSON response
+     */
+    public Mono<List<BatchResult>> getAll(String cache, List<String> keys) {
+        return fanOut(cache, new ArrayList<>(new LinkedHashSet<>(keys)), Function.identity(),
+                group -> getAllOwned(cache, group),
+                (owner, group) -> getAllRemote(owner, cache, group))
+                .map(results -> {
+                    for (BatchResult result : results) {
+                        if (BatchResult.FOUND.equals(result.getStatus())) {
+                            result.setValue(toJsonValue(fromRaw(result.getValue(), result.getContentType())));
+                        }
+                    }
+                    return results;
+                });
+    }
+
+    /**
+     * Reads keys for another node's batch, or for this node's own, with raw bytes. A key this node turns out not to
+     * own is forwarded as a GET would be.
+     */
+    public Mono<List<BatchResult>> getAllOwned(String cache, List<String> keys) {
+        return Flux.fromIterable(keys)
+                .flatMapSequential(key -> Mono.defer(() -> get(cache, key))
+                        .map(value -> new BatchResult(key, BatchResult.FOUND, value.bytes(), value.contentType(), null))
+                        .defaultIfEmpty(BatchResult.of(key, BatchResult.MISSING))
+                        .onErrorResume(e -> Mono.just(BatchResult.failed(key, e.getMessage()))))
+                .collectList();
+    }
+
+    // Keys with a near-cache copy are answered here; the rest go to the owner in one request
+    private Mono<List<BatchResult>> getAllRemote(Node owner, String cache, List<String> keys) {
+        List<BatchResult> copies = new ArrayList<>();
+        List<String> fetch = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            CacheValue copy = nearCache.isEnabled() ? nearCache.get(CacheManager.routingKey(cache, key)) : null;
+            if (copy != null) {
+                copies.add(new BatchResult(key, BatchResult.FOUND, copy.bytes(), copy.contentType(), null));
+            } else {
+                fetch.add(key);
+            }
+        }
+        if (fetch.isEmpty()) {
+            return Mono.just(copies);
+        }
+        return nodeApiClient.batchGet(owner, cache, fetch).map(results -> {
+            copies.addAll(results);
+            return copies;
+        });
+    }
+
+    /**
+     * Stores many entries at once, grouped by primary owner as in {@link #getAll}. Each entry is stored and
+     * replicated as a single PUT would be. A key given more than once is stored with its last entry.
+     * @return one result per distinct key, in request order
+     */
+    public Mono<List<BatchResult>> putAll(String cache, List<BatchEntry> entries) {
+        Map<String, BatchEntry> byKey = new LinkedHashMap<>();
+        for (BatchEntry entry : entries) {
+            byKey.put(entry.getKey(), entry);
+        }
+        return fanOut(cache, new ArrayList<>(byKey.values()), BatchEntry::getKey,
+                group -> putAllOwned(cache, group),
+                (owner, group) -> {
+                    group.forEach(entry -> forgetCachedReads(CacheManager.routingKey(cache, entry.getKey())));
+                    return nodeApiClient.batchPut(owner, cache, group)
+                            .doFinally(signal -> group.forEach(entry -> forgetCachedReads(CacheManager.routingKey(cache, entry.getKey()))));
+                });
+    }
+
+    public Mono<List<BatchResult>> putAllOwned(String cache, List<BatchEntry> entries) {
+        return Flux.fromIterable(entries)
+                .flatMapSequential(entry -> {
+                    CacheValue value = new CacheValue(entry.getValue() != null ? entry.getValue() : new byte[0], entry.getContentType());
+                    return Mono.defer(() -> put(cache, entry.getKey(), value, entry.getTtlMillis()))
+                            .thenReturn(BatchResult.of(entry.getKey(), BatchResult.STORED))
+                            .onErrorResume(e -> Mono.just(BatchResult.failed(entry.getKey(), e.getMessage())));
+                })
+                .collectList();
+    }
+
+    /**
+     * Deletes many keys at once, grouped by primary owner as in {@link #getAll}.
+     * @return one result per distinct key, in request order
+     */
+    public Mono<List<BatchResult>> deleteAll(String cache, List<String> keys) {
+        return fanOut(cache, new ArrayList<>(new LinkedHashSet<>(keys)), Function.identity(),
+                group -> deleteAllOwned(cache, group),
+                (owner, group) -> {
+                    group.forEach(key -> forgetCachedReads(CacheManager.routingKey(cache, key)));
+                    return nodeApiClient.batchDelete(owner, cache, group)
+                            .doFinally(signal -> group.forEach(key -> forgetCachedReads(CacheManager.routingKey(cache, key))));
+                });
+    }
+
+    public Mono<List<BatchResult>> deleteAllOwned(String cache, List<String> keys) {
+        return Flux.fromIterable(keys)
+                .flatMapSequential(key -> Mono.defer(() -> delete(cache, key))
+                        .thenReturn(BatchResult.of(key, BatchResult.DELETED))
+                        .onErrorResume(e -> Mono.just(BatchResult.failed(key, e.getMessage()))))
+                .collectList();
+    }
+
+    /**
+     * Splits a batch by the primary owner of each item's key and runs the groups in parallel: this node's own group
+     * through {@code local}, every other through one {@code remote} call to its owner. A group that fails as a whole,
+     * such as one whose owner is down, turns into an ERROR result for each of its keys.
+     * @return one result per item, in the order of {@code items}
+     */
+    private <T> Mono<List<BatchResult>> fanOut(String cache, List<T> items, Function<T, String> keyOf,
+                                               Function<List<T>, Mono<List<BatchResult>>> local,
+                                               BiFunction<Node, List<T>, Mono<List<BatchResult>>> remote) {
+        cacheManager.getCache(cache);
+        Map<Node, List<T>> byOwner = new LinkedHashMap<>();
+        for (T item : items) {
+            List<Node> responsibleNodes = hashRing.getNodesForKey(CacheManager.routingKey(cache, keyOf.apply(item)));
+            if (responsibleNodes.isEmpty()) {
+                return Mono.error(new IllegalStateException("No nodes available in cluster."));
+            }
+            byOwner.computeIfAbsent(responsibleNodes.getFirst(), node -> new ArrayList<>()).add(item);
+        }
+        return Flux.fromIterable(byOwner.entrySet())
+                .flatMap(group -> {
+                    Node owner = group.getKey();
+                    List<T> groupItems = group.getValue();
+                    log.debug("CacheService: Batch of {} keys for node {}.", groupItems.size(), owner.getId());
+                    Mono<List<BatchResult>> results = currentNode.equals(owner)
+                            ? local.apply(groupItems)
+                            : remote.apply(owner, groupItems);
+                    return results.onErrorResume(e -> {
+                        log.warn("CacheService: Batch of {} keys for node {} failed: {}", groupItems.size(), owner.getId(), e.getMessage());
+                        return Mono.just(groupItems.stream().map(item -> BatchResult.failed(keyOf.apply(item), e.getMessage())).toList());
+                    });
+                })
+                .flatMapIterable(results -> results)
+                .collectList()
+                .map(results -> {
+                    Map<String, BatchResult> byKey = new HashMap<>(results.size() * 2);
+                    for (BatchResult result : results) {
+                        byKey.put(result.getKey(), result);
+                    }
+                    return items.stream()
+                            .map(keyOf)
+                            .map(key -> byKey.getOrDefault(key, BatchResult.failed(key, "No result from the key's owner.")))
+                            .toList();
+                });
+    }
+
+    public boolean hasCache(String cache) {
+        return cacheManager.contains(cache);
     }
 
     public int size() {
-        return localCache.size();
+        return cacheManager.getDefaultCache().cache().size();
+    }
+
+    public long getForwardedGetCount() {
+        return forwardedGetCount.get();
+    }
+
+    public long getCoalescedGetCount() {
+        return coalescedGetCount.get();
+    }
+
+    public long getCoalescedLoadCount() {
+        return coalescedLoadCount.get();
+    }
+
+    public long getRefreshCount() {
+        return refreshCount.get();
+    }
+
+    public long getStaleServedCount() {
+        return staleServedCount.get();
+    }
+
+    public long getAtomicCount() {
+        return atomicCount.get();
+    }
+
+    public long getAtomicConflictCount() {
+        return atomicConflictCount.get();
+    }
+
+    public long getCoalescedReplicationCount() {
+        return coalescedReplicationCount.get();
+    }
+
+    /**
+     * One page of this node's entries, primary and replica copies alike, shaped for a JSON response. Start with
+     * cursor "0" and pass back the returned cursor until it is "0" again.
+     */
+    public ScanPage scan(String cache, String cursor, int count, String match) {
+        return scanLocal(cache, cursor, count, match, false);
+    }
+
+    /**
+     * One page of the entries this node is the primary owner of, with their raw bytes, for another node's cluster
+     * scan. Replica copies are left to their owners, so the cluster scan sees each key once.
+     */
+    public ScanPage scanOwned(String cache, String cursor, int count, String match) {
+        return scanLocal(cache, cursor, count, match, true);
+    }
+
+    /**
+     * Every entry in the cluster, walked node by node through each node's owned entries, one page at a time. A page
+     * is only requested once the previous one has been consumed, so a slow reader holds back the scan rather than
+     * building up results. Fails if a node cannot be scanned.
+     */
+    public Flux<ScanEntry> scanCluster(String cache, String match, int count) {
+        cacheManager.getCache(cache);
+        KeyPattern.compile(match); // Rejects a malformed pattern before the response starts
+        List<Node> nodes = hashRing.getNodesInRing().stream()
+                .distinct()
+                .sorted(Comparator.comparing(Node::getId))
+                .toList();
+        return Flux.fromIterable(nodes).concatMap(node -> scanNode(node, cache, count, match));
+    }
+
+    private Flux<ScanEntry> scanNode(Node node, String cache, int count, String match) {
+        Function<String, Mono<ScanPage>> fetch = currentNode.equals(node)
+                ? cursor -> Mono.fromCallable(() -> scanOwned(cache, cursor, count, match))
+                : cursor -> nodeApiClient.scanPage(node, cache, cursor, count, match);
+        return fetch.apply(SCAN_START)
+                .expand(page -> SCAN_START.equals(page.getCursor()) ? Mono.empty() : fetch.apply(page.getCursor()))
+                .concatMapIterable(ScanPage::getEntries, 1)
+                .map(entry -> {
+                    entry.setValue(toJsonValue(fromRaw(entry.getValue(), entry.getContentType())));
+                    return entry;
+                });
+    }
+
+    // Raw bytes arrive as Base64 from other nodes
+    private static CacheValue fromRaw(Object raw, String contentType) {
+        byte[] bytes = raw instanceof byte[] b ? b : Base64.getDecoder().decode((String) raw);
+        return new CacheValue(bytes, contentType);
+    }
+
+    private ScanPage scanLocal(String cache, String cursor, int count, String match, boolean ownedOnly) {
+        LocalCache localCache = cacheManager.getCache(cache).cache();
+        long now = CacheClock.millis();
+        List<ScanEntry> entries = new ArrayList<>();
+        long next = localCache.scan(Long.parseUnsignedLong(cursor), count, match, (key, value, expiresAtMillis) -> {
+            if (ownedOnly && !currentNode.equals(hashRing.getOwnerNode(CacheManager.routingKey(cache, key)))) {
+                return;
+            }
+            CacheValue v = value instanceof CacheValue cv ? cv : CacheValue.ofText(value.toString());
+            long ttlMillis = expiresAtMillis > 0 ? Math.max(1, expiresAtMillis - now) : 0;
+            entries.add(new ScanEntry(key, ownedOnly ? v.bytes() : toJsonValue(v), v.contentType(), ttlMillis));
+        });
+        return new ScanPage(Long.toUnsignedString(next), entries);
     }
 
-    public Map<String, Object> getAllCacheEntries() {
-        return localCache.getAll();
+    private static Object toJsonValue(CacheValue value) {
+        if (value.isJson()) {
+            // Line breaks in JSON are only whitespace; dropping them keeps an entry on one line of an NDJSON stream
+            return new RawValue(new String(value.bytes(), StandardCharsets.UTF_8).replace('\n', ' ').replace('\r', ' '));
+        }
+        if (value.isText()) {
+            return new String(value.bytes(), StandardCharsets.UTF_8);
+        }
+        return Base64.getEncoder().encodeToString(value.bytes());
     }
 
-    public Mono<Void> processPrimaryWrite(String key, Object value, long ttlMillis) {
+    public Mono<Void> processPrimaryWrite(String cache, String key, CacheValue value, long ttlMillis) {
+        CacheManager.NamedCache namedCache = cacheManager.getCache(cache);
+        long ttl = namedCache.ttlFor(ttlMillis); // Resolved once here, so replicas expire the key with the primary
         log.debug("CacheService (Primary Write): Storing key '{}' locally.", key);
-        localCache.put(key, value, ttlMillis); // Store locally on the primary
+        try {
+            applyPrimary(CacheManager.routingKey(cache, key), () -> {
+                backingStore.writeBehind(cache, key, value); // Queued first, so a load that starts after the write finds it
+                long version = storeLocally(namedCache, key, value, ttl); // Store locally on the primary
+                replicateWrite(namedCache, key, value, ttl);
+                return version;
+            });
+        } catch (BackingStore.QueueFullException e) {
+            return Mono.error(e);
+        }
+        invalidateNearCopies(cache, key);
+        return Mono.empty(); // Primary operation completes immediately
+    }
 
+    // Copies a write made on the primary to the key's replicas, asynchronously. Must be called under the key's lock
+    // in applyPrimary, which fixes the order replicas apply the key's changes in.
+    private void replicateWrite(CacheManager.NamedCache namedCache, String key, CacheValue value, long ttl) {
+        String cache = namedCache.name();
         // Replicate to other responsible nodes (if replication factor > 1)
+        int replicationFactor = namedCache.replicationFactor();
         if (replicationFactor > 1) {
-            List<Node> responsibleNodes = hashRing.getNodesForKey(key);
+            List<Node> responsibleNodes = hashRing.getNodesForKey(CacheManager.routingKey(cache, key), replicationFactor);
             List<Node> replicas = responsibleNodes.stream()
                     .filter(node -> !node.equals(currentNode)) // Exclude primary
                     .limit(replicationFactor - 1)
@@ -126,26 +749,81 @@ public class CacheService {
             for (Node replica : replicas) {
                 log.debug("CacheService (Primary Write): Replicating PUT for key '{}' to replica node: {}", key, replica.getId());
                 // Call NodeApiClient to forward to replica. This will hit InternalCacheController on replica.
-                nodeApiClient.forwardPut(replica, key, value, ttlMillis)
-                        .subscribeOn(Schedulers.parallel()) // Perform replication asynchronously
-                        .doOnError(e -> log.warn("CacheService (Primary Write): Failed to replicate PUT for key '{}' to {}: {}", key, replica.getId(), e.getMessage()))
-                        .subscribe(); // Subscribe to trigger the reactive flow
+                replicate(replica, CacheManager.routingKey(cache, key), () -> nodeApiClient.forwardPut(replica, cache, key, value, ttl)
+                        .doOnError(e -> log.warn("CacheService (Primary Write): Failed to replicate PUT for key '{}' to {}: {}", key, replica.getId(), e.getMessage())));
             }
         }
-        return Mono.empty(); // Primary operation completes immediately
+    }
+
+    /**
+     * Sends a change of the key to the replica once the previous one sent there has been answered, replacing any
+     * change already waiting for that; see {@link #replicating}.
+     */
+    private void replicate(Node replica, String routingKey, Supplier<Mono<Void>> send) {
+        ReplicaKey id = new ReplicaKey(replica.getId(), routingKey);
+        boolean[] sendNow = new boolean[1];
+        replicating.compute(id, (k, waiting) -> {
+            if (waiting == null) {
+                sendNow[0] = true;
+                return NOTHING_WAITING;
+            }
+            if (waiting != NOTHING_WAITING) {
+                coalescedReplicationCount.incrementAndGet();
+            }
+            return send;
+        });
+        if (sendNow[0]) {
+            sendReplication(id, send);
+        }
+    }
+
+    private void sendReplication(ReplicaKey id, Supplier<Mono<Void>> send) {
+        Mono.defer(send)
+                .subscribeOn(Schedulers.parallel()) // Perform replication asynchronously
+                .onErrorResume(e -> Mono.empty()) // Logged by the sender; later changes still go out
+                .doFinally(signal -> {
+                    AtomicReference<Supplier<Mono<Void>>> next = new AtomicReference<>();
+                    replicating.computeIfPresent(id, (k, waiting) -> {
+                        if (waiting == NOTHING_WAITING) {
+                            return null;
+                        }
+                        next.set(waiting);
+                        return NOTHING_WAITING;
+                    });
+                    if (next.get() != null) {
+                        sendReplication(id, next.get());
+                    }
+                })
+                .subscribe();
     }
 
     /**
      * Handles local deletion and propagates deletion to replicas.
      * This method is called ONLY by the node that is the PRIMARY owner for the key.
      */
-    public Mono<Void> processPrimaryDelete(String key) {
+    public Mono<Void> processPrimaryDelete(String cache, String key) {
+        CacheManager.NamedCache namedCache = cacheManager.getCache(cache);
         log.debug("CacheService (Primary Delete): Deleting key '{}' locally.", key);
-        localCache.delete(key); // Delete locally on the primary
+        try {
+            applyPrimary(CacheManager.routingKey(cache, key), () -> {
+                backingStore.deleteBehind(cache, key);
+                deleteLocally(namedCache, key); // Delete locally on the primary
+                replicateDelete(namedCache, key);
+                return null;
+            });
+        } catch (BackingStore.QueueFullException e) {
+            return Mono.error(e);
+        }
+        invalidateNearCopies(cache, key);
+        return Mono.empty();
+    }
 
-        // Propagate deletion to replicas
+    // Propagates a delete to the key's replicas, queued behind the key's earlier changes like replicateWrite
+    private void replicateDelete(CacheManager.NamedCache namedCache, String key) {
+        String cache = namedCache.name();
+        int replicationFactor = namedCache.replicationFactor();
         if (replicationFactor > 1) {
-            List<Node> responsibleNodes = hashRing.getNodesForKey(key);
+            List<Node> responsibleNodes = hashRing.getNodesForKey(CacheManager.routingKey(cache, key), replicationFactor);
             List<Node> replicas = responsibleNodes.stream()
                     .filter(node -> !node.equals(currentNode))
                     .limit(replicationFactor - 1)
@@ -153,13 +831,10 @@ public class CacheService {
 
             for (Node replica : replicas) {
                 log.debug("CacheService (Primary Delete): Propagating DELETE for key '{}' to replica node: {}", key, replica.getId());
-                nodeApiClient.forwardDelete(replica, key)
-                        .subscribeOn(Schedulers.parallel())
-                        .doOnError(e -> log.warn("CacheService (Primary Delete): Failed to propagate DELETE for key '{}' to {}: {}", key, replica.getId(), e.getMessage()))
-                        .subscribe();
+                replicate(replica, CacheManager.routingKey(cache, key), () -> nodeApiClient.forwardDelete(replica, cache, key)
+                        .doOnError(e -> log.warn("CacheService (Primary Delete): Failed to propagate DELETE for key '{}' to {}: {}", key, replica.getId(), e.getMessage())));
             }
         }
-        return Mono.empty();
     }
 
     /**
@@ -167,9 +842,9 @@ public class CacheService {
      * It only performs local storage, without any further routing or replication.
      * This is the dedicated entry point for internal PUT requests representing replicated data.
      */
-    public Mono<Void> processReplicaWrite(String key, Object value, long ttlMillis) {
+    public Mono<Void> processReplicaWrite(String cache, String key, CacheValue value, long ttlMillis) {
         log.debug("CacheService (Replica Write): Storing key '{}' locally as replica.", key);
-        localCache.put(key, value, ttlMillis);
+        storeLocally(cacheManager.getCache(cache), key, value, ttlMillis);
         return Mono.empty();
     }
 
@@ -178,9 +853,81 @@ public class CacheService {
      * It only performs local deletion, without any further routing or propagation.
      * This is the dedicated entry point for internal DELETE requests representing replicated data.
      */
-    public Mono<Void> processReplicaDelete(String key) {
+    public Mono<Void> processReplicaDelete(String cache, String key) {
         log.debug("CacheService (Replica Delete): Deleting key '{}' locally as replica.", key);
-        localCache.delete(key);
+        deleteLocally(cacheManager.getCache(cache), key);
         return Mono.empty();
     }
+
+    /**
+     * Whether this node is the primary owner of the key, rather than one of its replicas.
+     */
+    public boolean isPrimary(String cache, String key) {
+        return currentNode.equals(hashRing.getOwnerNode(CacheManager.routingKey(cache, key)));
+    }
+
+    /**
+     * Called by the owner before it reads a key for a node that asked for a near-cache lease. Returns the lease in
+     * milliseconds, or 0 if the reader must not keep a copy: this node is not the primary, or does not know the reader.
+     */
+    public long grantNearCacheLease(String cache, String key, String readerId) {
+        if (!isPrimary(cache, key) || findNode(readerId) == null) {
+            return 0;
+        }
+        return nearCache.registerReader(CacheManager.routingKey(cache, key), readerId);
+    }
+
+    /**
+     * Drops this node's near-cache copy of a key, on the owner's word that it has changed.
+     */
+    public void invalidateNearCache(String cache, String key) {
+        forgetCachedReads(CacheManager.routingKey(cache, key));
+    }
+
+    // Tells the nodes holding a near-cache lease on the key to drop their copy. Runs after the local write, so a
+    // reader registered later reads the new value.
+    private void invalidateNearCopies(String cache, String key) {
+        for (String readerId : nearCache.takeReaders(CacheManager.routingKey(cache, key))) {
+            Node reader = findNode(readerId);
+            if (reader == null) {
+                continue;
+            }
+            nodeApiClient.invalidateNearCache(reader, cache, key)
+                    .subscribeOn(Schedulers.parallel())
+                    .doOnError(e -> log.warn("CacheService: Failed to invalidate near-cache copy of key '{}' on {}: {}", key, readerId, e.getMessage()))
+                    .onErrorResume(e -> Mono.empty()) // The reader's lease running out bounds the staleness
+                    .subscribe();
+        }
+    }
+
+    private Node findNode(String nodeId) {
+        return hashRing.getNodesInRing().stream()
+                .filter(node -> node.getId().equals(nodeId) && !node.equals(currentNode))
+                .findFirst()
+                .orElse(null);
+    }
+
+    // Applies the write and queues it for the operation log under one key lock, so the log sees writes in cache order.
+    // Only the default cache is logged. Returns the new entry's version stamp.
+    private long storeLocally(CacheManager.NamedCache cache, String key, CacheValue value, long ttlMillis) {
+        if (!cache.isDefault() || !operationLog.isEnabled()) {
+            return cache.cache().put(key, value, ttlMillis);
+        }
+        synchronized (operationLog.lockFor(key)) {
+            long version = cache.cache().put(key, value, ttlMillis);
+            operationLog.appendPut(key, value, ttlMillis);
+            return version;
+        }
+    }
+
+    private void deleteLocally(CacheManager.NamedCache cache, String key) {
+        if (!cache.isDefault() || !operationLog.isEnabled()) {
+            cache.cache().delete(key);
+            return;
+        }
+        synchronized (operationLog.lockFor(key)) {
+            cache.cache().delete(key);
+            operationLog.appendDelete(key);
+        }
+    }
 }
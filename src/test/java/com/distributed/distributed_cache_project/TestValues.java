@@ -0,0 +1,21 @@
+package com.distributed.distributed_cache_project;
+
+import com.distributed.distributed_cache_project.core.cache.CacheValue;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reading cache values back in tests.
+ */
+public final class TestValues {
+    private TestValues() {
+    }
+
+    /**
+     * The value's bytes as UTF-8, or null for no value. Takes an Object because that is what {@code LocalCache.get}
+     * returns.
+     */
+    public static String text(Object value) {
+        return value == null ? null : new String(((CacheValue) value).bytes(), StandardCharsets.UTF_8);
+    }
+}
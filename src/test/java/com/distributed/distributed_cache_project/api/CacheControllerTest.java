@@ -0,0 +1,158 @@
+package com.distributed.distributed_cache_project.api;
+
+import com.distributed.distributed_cache_project.api.model.BatchEntry;
+import com.distributed.distributed_cache_project.api.model.BatchKeysRequest;
+import com.distributed.distributed_cache_project.api.model.BatchResult;
+import com.distributed.distributed_cache_project.core.cache.CacheValue;
+import com.distributed.distributed_cache_project.core.manager.CacheManager;
+import com.distributed.distributed_cache_project.service.CacheService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static com.distributed.distributed_cache_project.TestValues.text;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CacheControllerTest {
+    private static final String CACHE = CacheManager.DEFAULT_CACHE;
+
+    private CacheService cacheService;
+    private CacheController controller;
+
+    @BeforeEach
+    void setUp() {
+        cacheService = mock(CacheService.class);
+        when(cacheService.hasCache(CACHE)).thenReturn(true);
+        when(cacheService.put(anyString(), anyString(), any(CacheValue.class), anyLong())).thenReturn(Mono.empty());
+        controller = new CacheController(cacheService, new ObjectMapper());
+    }
+
+    @Test
+    void envelopeWithAStringValueIsStoredAsText() {
+        ResponseEntity<String> response = put("{\"ttlMillis\": 5000, \"value\": \"héllo\"}", MediaType.APPLICATION_JSON_VALUE, 0);
+
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        CacheValue stored = stored(5000);
+        assertEquals("héllo", text(stored));
+        assertEquals(CacheValue.TEXT, stored.contentType());
+    }
+
+    @Test
+    void envelopeWithAJsonValueKeepsItsExactBytes() {
+        String value = "{ \"b\" : [1, 2.50, {\"c\": null}],\n  \"a\": true }";
+        put("{\"value\": " + value + ", \"extra\": {\"ignored\": [1]}}", "application/json;charset=UTF-8", 0);
+
+        CacheValue stored = stored(0);
+        assertEquals(value, text(stored)); // Whitespace, field order and number formatting all kept
+        assertEquals(CacheValue.JSON, stored.contentType());
+
+        put("{\"value\": 12.50}", MediaType.APPLICATION_JSON_VALUE, 0);
+        assertEquals("12.50", text(stored(0)));
+    }
+
+    @Test
+    void otherContentTypesAreStoredVerbatimWithTheQueryTtl() {
+        byte[] png = {(byte) 0x89, 'P', 'N', 'G', 0, 1};
+        controller.put(CACHE, "key", png, MediaType.IMAGE_PNG_VALUE, 750).block();
+
+        CacheValue stored = stored(750);
+        assertArrayEquals(png, stored.bytes());
+        assertEquals(MediaType.IMAGE_PNG_VALUE, stored.contentType());
+
+        put("{\"value\": \"not an envelope\"}", MediaType.TEXT_PLAIN_VALUE, 0);
+        assertEquals("{\"value\": \"not an envelope\"}", text(stored(0)));
+    }
+
+    @Test
+    void malformedEnvelopesAreRejected() {
+        for (String body : new String[]{"{\"ttlMillis\": 10}", "[\"value\"]", "{\"value\": ", "\"value\""}) {
+            ResponseEntity<String> response = put(body, MediaType.APPLICATION_JSON_VALUE, 0);
+            assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode(), body);
+        }
+        verify(cacheService, never()).put(anyString(), anyString(), any(CacheValue.class), anyLong());
+    }
+
+    @Test
+    void getReturnsTheStoredBytesWithTheirContentType() {
+        byte[] json = "{\"a\":1}".getBytes(StandardCharsets.UTF_8);
+        when(cacheService.get(CACHE, "key")).thenReturn(Mono.just(new CacheValue(json, "application/vnd.api+json")));
+        when(cacheService.get(CACHE, "missing")).thenReturn(Mono.empty());
+
+        ResponseEntity<byte[]> found = controller.get(CACHE, "key").block();
+        assertEquals(HttpStatus.OK, found.getStatusCode());
+        assertEquals(MediaType.parseMediaType("application/vnd.api+json"), found.getHeaders().getContentType());
+        assertArrayEquals(json, found.getBody());
+        assertEquals(HttpStatus.NOT_FOUND, controller.get(CACHE, "missing").block().getStatusCode());
+    }
+
+    @Test
+    void msetReadsEachEntryLikeASingleKeyEnvelope() {
+        when(cacheService.putAll(eq(CACHE), anyList())).thenAnswer(invocation -> Mono.just(invocation.<List<BatchEntry>>getArgument(1)
+                .stream().map(entry -> BatchResult.of(entry.getKey(), BatchResult.STORED)).toList()));
+        String body = "{\"entries\": [{\"key\": \"a\", \"value\": \"text\", \"ttlMillis\": 500},"
+                + " {\"value\": {\"n\": 1}, \"key\": \"b\"}], \"ignored\": true}";
+
+        ResponseEntity<?> response = controller.mset(CACHE, body.getBytes(StandardCharsets.UTF_8)).block();
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<BatchEntry>> entries = ArgumentCaptor.forClass(List.class);
+        verify(cacheService).putAll(eq(CACHE), entries.capture());
+        BatchEntry a = entries.getValue().get(0);
+        assertEquals("a", a.getKey());
+        assertEquals("text", new String(a.getValue(), StandardCharsets.UTF_8));
+        assertEquals(CacheValue.TEXT, a.getContentType());
+        assertEquals(500, a.getTtlMillis());
+        BatchEntry b = entries.getValue().get(1);
+        assertEquals("{\"n\": 1}", new String(b.getValue(), StandardCharsets.UTF_8));
+        assertEquals(CacheValue.JSON, b.getContentType());
+        assertEquals(0, b.getTtlMillis());
+    }
+
+    @Test
+    void malformedBatchesAreRejected() {
+        for (String body : new String[]{"{\"entries\": [{\"value\": 1}]}", "{\"entries\": {}}", "[]", "{\"entries\": []}"}) {
+            ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                    () -> controller.mset(CACHE, body.getBytes(StandardCharsets.UTF_8)), body);
+            assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode(), body);
+        }
+        List<String> tooMany = IntStream.range(0, 1001).mapToObj(i -> "key-" + i).toList();
+        assertThrows(ResponseStatusException.class, () -> controller.mdel(CACHE, new BatchKeysRequest(tooMany)));
+        verify(cacheService, never()).putAll(anyString(), anyList());
+        verify(cacheService, never()).deleteAll(anyString(), anyList());
+    }
+
+    private ResponseEntity<String> put(String body, String contentType, long ttlMillis) {
+        return controller.put(CACHE, "key", body.getBytes(StandardCharsets.UTF_8), contentType, ttlMillis).block();
+    }
+
+    // The value of the latest put, checking the TTL it was stored with
+    private CacheValue stored(long ttlMillis) {
+        ArgumentCaptor<CacheValue> value = ArgumentCaptor.forClass(CacheValue.class);
+        ArgumentCaptor<Long> ttl = ArgumentCaptor.forClass(Long.class);
+        verify(cacheService, atLeastOnce()).put(eq(CACHE), eq("key"), value.capture(), ttl.capture());
+        assertEquals(ttlMillis, ttl.getValue());
+        return value.getValue();
+    }
+}
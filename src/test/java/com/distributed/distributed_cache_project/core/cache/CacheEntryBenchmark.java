@@ -0,0 +1,84 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+import com.distributed.distributed_cache_project.config.NodeConfigProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the local cache hit path and the cost of creating entries, plus the clock read each of them does.
+ *
+ * Not run by the test suite. Run {@link #main} from the IDE, or after {@code mvn test-compile} with the test
+ * classpath. Add {@code -prof gc} to see the bytes allocated per put, which tracks the size of one entry.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheEntryBenchmark {
+    private static final int KEYS = 16_384; // Power of two, so the key index can be masked
+    private static final long TTL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private LocalCache cache;
+    private String[] keys;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        NodeConfigProperties.CacheCapacityProperties capacity = new NodeConfigProperties.CacheCapacityProperties();
+        capacity.setMaxEntries(KEYS * 2);
+        NodeConfigProperties properties = new NodeConfigProperties();
+        properties.setCapacity(capacity);
+        cache = new LocalCache(properties);
+        keys = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = "key-" + i;
+            cache.put(keys[i], "value-" + i, TTL_MILLIS);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        cache.shutdown();
+    }
+
+    @Benchmark
+    public Object getHit() {
+        return cache.get(keys[next++ & (KEYS - 1)]);
+    }
+
+    @Benchmark
+    public void putWithTtl() {
+        String key = keys[next++ & (KEYS - 1)];
+        cache.put(key, key, TTL_MILLIS);
+    }
+
+    @Benchmark
+    public long systemClock() {
+        return System.currentTimeMillis();
+    }
+
+    @Benchmark
+    public long cachedClock() {
+        return CacheClock.millis();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CacheEntryBenchmark.class.getSimpleName()).build()).run();
+    }
+}
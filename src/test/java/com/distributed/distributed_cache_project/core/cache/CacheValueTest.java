@@ -0,0 +1,70 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static com.distributed.distributed_cache_project.TestValues.text;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CacheValueTest {
+
+    @Test
+    void commonContentTypesShareOneInstance() {
+        assertSame(CacheValue.JSON, new CacheValue(new byte[0], "Application/JSON").contentType());
+        assertSame(CacheValue.TEXT, CacheValue.ofText("v").contentType());
+        assertSame(CacheValue.BINARY, new CacheValue(new byte[0], null).contentType());
+        assertSame(CacheValue.BINARY, new CacheValue(new byte[0], " ").contentType());
+        assertEquals("image/png", new CacheValue(new byte[0], "image/png").contentType());
+    }
+
+    @Test
+    void jsonAndTextAreRecognisedFromTheContentType() {
+        assertTrue(new CacheValue(new byte[0], CacheValue.JSON).isJson());
+        assertTrue(new CacheValue(new byte[0], "application/json;charset=UTF-8").isJson());
+        assertTrue(new CacheValue(new byte[0], "application/problem+json").isJson());
+        assertFalse(new CacheValue(new byte[0], "application/jsonx").isJson());
+        assertTrue(CacheValue.ofText("v").isText());
+        assertFalse(new CacheValue(new byte[0], CacheValue.BINARY).isText());
+    }
+
+    @Test
+    void bytesAreRequired() {
+        assertThrows(IllegalArgumentException.class, () -> new CacheValue(null, CacheValue.TEXT));
+    }
+
+    @Test
+    void equalityIsIdentity() {
+        CacheValue value = CacheValue.ofText("v");
+        assertEquals(value, value);
+        assertNotEquals(value, CacheValue.ofText("v"));
+    }
+
+    @Test
+    void codecKeepsTheBytesAndContentType() {
+        byte[] binary = {0, (byte) 0xFF, 0x7F, 0x10};
+        CacheValue decoded = (CacheValue) ValueCodec.decode(ValueCodec.encode(new CacheValue(binary, "image/png")));
+        assertArrayEquals(binary, decoded.bytes());
+        assertEquals("image/png", decoded.contentType());
+
+        CacheValue text = (CacheValue) ValueCodec.decode(ValueCodec.encode(CacheValue.ofText("héllo")));
+        assertEquals("héllo", text(text));
+        assertSame(CacheValue.TEXT, text.contentType());
+
+        CacheValue empty = (CacheValue) ValueCodec.decode(ValueCodec.encode(new CacheValue(new byte[0], null)));
+        assertEquals(0, empty.bytes().length);
+        assertSame(CacheValue.BINARY, empty.contentType());
+    }
+
+    @Test
+    void codecRejectsAnOverlongContentType() {
+        CacheValue value = new CacheValue("v".getBytes(StandardCharsets.UTF_8), "x/" + "y".repeat(0x10000));
+        assertThrows(IllegalArgumentException.class, () -> ValueCodec.encode(value));
+    }
+}
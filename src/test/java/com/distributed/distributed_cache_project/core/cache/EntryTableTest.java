@@ -0,0 +1,221 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EntryTableTest {
+    private static final int MIN_CAPACITY = 16;
+
+    @Test
+    void putReplacesAndRemoveMatchesTheEntry() {
+        EntryTable table = new EntryTable();
+        CacheEntry first = entry("first");
+        CacheEntry second = entry("second");
+        assertNull(table.put("key", first));
+        assertSame(first, table.put("key", second));
+        assertSame(second, table.get("key"));
+
+        assertFalse(table.remove("key", first)); // Replaced meanwhile
+        assertSame(second, table.get("key"));
+        assertTrue(table.remove("key", second));
+        assertNull(table.get("key"));
+        assertNull(table.remove("key"));
+    }
+
+    @Test
+    void tombstonesKeepProbeChainsIntact() {
+        EntryTable table = new EntryTable();
+        List<String> keys = collidingKeys(4, MIN_CAPACITY);
+        Map<String, CacheEntry> entries = new HashMap<>();
+        for (String key : keys) {
+            entries.put(key, entry(key));
+            table.put(key, entries.get(key));
+        }
+
+        // Removing from the middle of the run must not cut off the keys probed past it
+        assertSame(entries.get(keys.get(1)), table.remove(keys.get(1)));
+        assertNull(table.get(keys.get(1)));
+        assertSame(entries.get(keys.get(2)), table.get(keys.get(2)));
+        assertSame(entries.get(keys.get(3)), table.get(keys.get(3)));
+
+        // A key further down the run is found and replaced, not added again in the tombstone
+        CacheEntry replacement = entry("replacement");
+        assertSame(entries.get(keys.get(3)), table.put(keys.get(3), replacement));
+        assertTrue(table.remove(keys.get(3), replacement));
+        assertNull(table.get(keys.get(3)));
+
+        // The removed key goes back into the run
+        table.put(keys.get(1), entries.get(keys.get(1)));
+        for (String key : keys.subList(0, 3)) {
+            assertSame(entries.get(key), table.get(key));
+        }
+        assertEquals(new HashSet<>(keys.subList(0, 3)), keysOf(table));
+    }
+
+    @Test
+    void churnRebuildsInsteadOfGrowing() {
+        EntryTable table = new EntryTable();
+        for (int i = 0; i < 100_000; i++) {
+            table.put("key-" + i, entry("v"));
+            if (i >= 4) {
+                assertTrue(table.remove("key-" + (i - 4), table.get("key-" + (i - 4))));
+            }
+        }
+        assertEquals(MIN_CAPACITY, capacity(table)); // Never more than five live keys
+        assertEquals(Set.of("key-99996", "key-99997", "key-99998", "key-99999"), keysOf(table));
+    }
+
+    @Test
+    void growsAndKeepsEveryMapping() {
+        EntryTable table = new EntryTable();
+        int count = 10_000;
+        for (int i = 0; i < count; i++) {
+            table.put("key-" + i, entry("value-" + i));
+        }
+        int capacity = capacity(table);
+        assertTrue(capacity >= count * 4 / 3 && capacity <= count * 4, "capacity " + capacity);
+        assertEquals(Integer.bitCount(capacity), 1);
+        for (int i = 0; i < count; i++) {
+            assertEquals("value-" + i, table.get("key-" + i).getValue());
+        }
+        assertEquals(count, keysOf(table).size());
+    }
+
+    @Test
+    void scanVisitsEveryKeyOnce() {
+        EntryTable table = new EntryTable();
+        Set<String> keys = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            keys.add("key-" + i);
+            table.put("key-" + i, entry("v"));
+        }
+        List<String> seen = new ArrayList<>();
+        int cursor = 0;
+        do {
+            cursor = table.scan(cursor, 7, (key, e) -> seen.add(key));
+        } while (cursor != 0);
+        assertEquals(keys.size(), seen.size()); // No resize, so no duplicates
+        assertEquals(keys, new HashSet<>(seen));
+    }
+
+    @Test
+    void scanCursorSurvivesResizes() {
+        EntryTable table = new EntryTable();
+        Set<String> original = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            original.add("key-" + i);
+            table.put("key-" + i, entry("v"));
+        }
+        Set<String> seen = new HashSet<>();
+        int cursor = 0;
+        int calls = 0;
+        int added = 0;
+        do {
+            cursor = table.scan(cursor, 5, (key, e) -> seen.add(key));
+            calls++;
+            if (calls % 3 == 0 && added < 20_000) {
+                // Grow the table several times over while the scan is half way through it
+                for (int i = 0; i < 2_000; i++, added++) {
+                    table.put("added-" + added, entry("v"));
+                }
+            }
+        } while (cursor != 0);
+        assertTrue(added > 0 && capacity(table) > 256);
+        assertTrue(seen.containsAll(original), "a key present for the whole scan was skipped");
+    }
+
+    @Test
+    void scanCursorSurvivesATombstoneRebuild() {
+        EntryTable table = new EntryTable();
+        Set<String> original = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            original.add("key-" + i);
+            table.put("key-" + i, entry("v"));
+        }
+        int capacity = capacity(table);
+        Set<String> seen = new HashSet<>();
+        int cursor = table.scan(0, capacity / 2, (key, e) -> seen.add(key));
+        for (int i = 0; i < 10_000; i++) {
+            table.put("churn-" + i, entry("v")); // Fills the table with tombstones until it is rebuilt
+            table.remove("churn-" + i);
+        }
+        assertEquals(capacity, capacity(table));
+        while (cursor != 0) {
+            cursor = table.scan(cursor, 3, (key, e) -> seen.add(key));
+        }
+        assertEquals(original, seen);
+    }
+
+    @Test
+    void pinnedEntriesSeeEachUnchangedMappingOnceAcrossAResize() {
+        EntryTable table = new EntryTable();
+        Set<String> original = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            original.add("key-" + i);
+            table.put("key-" + i, entry("v"));
+        }
+        List<String> seen = new ArrayList<>();
+        int added = 0;
+        for (Map.Entry<String, CacheEntry> e : table.pinnedEntries()) {
+            seen.add(e.getKey());
+            if (seen.size() == 10) {
+                for (; added < 10_000; added++) {
+                    table.put("added-" + added, entry("v"));
+                }
+            }
+        }
+        // Keys added before the first resize went into the pinned generation too, as changed mappings may
+        List<String> seenOriginal = seen.stream().filter(original::contains).toList();
+        assertEquals(original.size(), seenOriginal.size());
+        assertEquals(original, new HashSet<>(seenOriginal));
+        assertTrue(seen.stream().allMatch(key -> original.contains(key) || key.startsWith("added-")));
+        assertEquals(seen.size(), new HashSet<>(seen).size());
+    }
+
+    // Keys whose hashes share a home bucket in a table of the given capacity, so they form one probe run
+    private static List<String> collidingKeys(int count, int capacity) {
+        List<String> keys = new ArrayList<>();
+        int bucket = EntryTable.hash("anchor") & (capacity - 1);
+        for (int i = 0; keys.size() < count; i++) {
+            if ((EntryTable.hash("k" + i) & (capacity - 1)) == bucket) {
+                keys.add("k" + i);
+            }
+        }
+        return keys;
+    }
+
+    // Each scan call of one bucket visits one home bucket, so a full scan takes as many calls as there are slots
+    private static int capacity(EntryTable table) {
+        int calls = 0;
+        int cursor = 0;
+        do {
+            cursor = table.scan(cursor, 1, (key, e) -> { });
+            calls++;
+        } while (cursor != 0);
+        return calls;
+    }
+
+    private static Set<String> keysOf(EntryTable table) {
+        Set<String> keys = new HashSet<>();
+        for (Map.Entry<String, CacheEntry> e : table.entries()) {
+            keys.add(e.getKey());
+        }
+        return keys;
+    }
+
+    private static CacheEntry entry(String value) {
+        return CacheEntry.create("key", value, 0, 1, 0);
+    }
+}
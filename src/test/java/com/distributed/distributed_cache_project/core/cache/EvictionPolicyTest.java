@@ -0,0 +1,176 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EvictionPolicyTest {
+
+    @Test
+    void lruEvictsTheLeastRecentlyUsed() {
+        EvictionPolicy policy = new LruPolicy();
+        insert(policy, "a", "b", "c");
+        policy.recordAccess("a");
+        assertEquals(List.of("b", "c", "a"), drain(policy));
+    }
+
+    @Test
+    void lfuEvictsTheLeastFrequentlyUsedThenTheOldest() {
+        EvictionPolicy policy = new LfuPolicy();
+        insert(policy, "a", "b", "c", "d");
+        policy.recordAccess("a");
+        policy.recordAccess("a");
+        policy.recordAccess("c");
+        assertEquals(List.of("b", "d", "c", "a"), drain(policy));
+    }
+
+    @Test
+    void fifoIgnoresReads() {
+        EvictionPolicy policy = new FifoPolicy();
+        insert(policy, "a", "b", "c");
+        policy.recordAccess("a");
+        assertEquals(List.of("a", "b", "c"), drain(policy));
+    }
+
+    @Test
+    void clockGivesAReadKeyASecondChance() {
+        EvictionPolicy policy = new ClockPolicy();
+        insert(policy, "a", "b", "c");
+        policy.recordAccess("a");
+        assertEquals("b", policy.evict());
+
+        policy.recordAccess("a"); // Its bit was cleared by the sweep, so it needs another read to survive again
+        policy.recordInsert("d");
+        assertEquals(List.of("c", "d", "a"), drain(policy));
+    }
+
+    @Test
+    void sieveKeepsSurvivorsInPlaceAndRemovesNewKeysThatAreNotRead() {
+        EvictionPolicy policy = new SievePolicy();
+        insert(policy, "a", "b", "c");
+        policy.recordAccess("a");
+        policy.recordAccess("c");
+        assertEquals("b", policy.evict());
+
+        // The hand resumes where it stopped, towards newer keys, rather than starting over from the oldest
+        policy.recordInsert("d");
+        assertEquals("d", policy.evict());
+        assertEquals(List.of("a", "c"), drain(policy));
+    }
+
+    @Test
+    void arcKeepsKeysSeenTwiceThroughAScan() {
+        PolicyDriver cache = new PolicyDriver(new ArcPolicy(4), 4);
+        cache.put("a");
+        cache.put("b");
+        assertTrue(cache.get("a"));
+        assertTrue(cache.get("b"));
+
+        for (int i = 0; i < 20; i++) {
+            cache.put("scan-" + i);
+        }
+        assertTrue(cache.contains("a"));
+        assertTrue(cache.contains("b"));
+    }
+
+    @Test
+    void arcReadmitsARecentlyEvictedKeyAsFrequent() {
+        PolicyDriver cache = new PolicyDriver(new ArcPolicy(4), 4);
+        cache.put("a");
+        cache.put("b");
+        assertTrue(cache.get("a"));
+        assertTrue(cache.get("b"));
+        for (String key : List.of("c", "d", "e")) {
+            cache.put(key);
+        }
+        assertEquals(List.of("c"), cache.evicted());
+
+        cache.put("c"); // Still remembered, so it comes back as a key seen twice
+        for (int i = 0; i < 20; i++) {
+            cache.put("scan-" + i);
+        }
+        assertTrue(cache.contains("c"));
+        assertFalse(cache.contains("d")); // Seen once, like the scan
+    }
+
+    @Test
+    void removedKeysAreForgottenByEveryPolicy() {
+        for (String name : List.of("lru", "lfu", "fifo", "clock", "sieve", "arc", "tiny-lfu")) {
+            EvictionPolicy policy = EvictionPolicy.create(name, 10);
+            insert(policy, "a", "b");
+            policy.recordAccess("a");
+            policy.recordRemoval("a");
+            assertEquals("b", policy.evict(), name);
+            assertNull(policy.evict(), name);
+        }
+    }
+
+    @Test
+    void policiesAreCreatedByName() {
+        assertInstanceOf(LruPolicy.class, EvictionPolicy.create(null, 10));
+        assertInstanceOf(LruPolicy.class, EvictionPolicy.create(" ", 10));
+        assertInstanceOf(TinyLfuPolicy.class, EvictionPolicy.create("Tiny-LFU", 10));
+        assertInstanceOf(SievePolicy.class, EvictionPolicy.create(" sieve ", 10));
+        assertTrue(EvictionPolicy.create("clock", 10).isAccessLockFree());
+        assertFalse(EvictionPolicy.create("lru", 10).isAccessLockFree());
+
+        EvictionPolicy custom = EvictionPolicy.create(NewestFirstPolicy.class.getName(), 10);
+        insert(custom, "a", "b");
+        assertEquals("b", custom.evict());
+
+        assertThrows(IllegalArgumentException.class, () -> EvictionPolicy.create("mru", 10));
+        assertThrows(IllegalArgumentException.class, () -> EvictionPolicy.create(String.class.getName(), 10));
+    }
+
+    /**
+     * A custom policy, loaded by class name.
+     */
+    public static final class NewestFirstPolicy implements EvictionPolicy {
+        private final List<String> keys = new ArrayList<>();
+
+        public NewestFirstPolicy(int expectedEntries) {
+        }
+
+        @Override
+        public void recordInsert(String key) {
+            keys.add(key);
+        }
+
+        @Override
+        public void recordAccess(String key) {
+        }
+
+        @Override
+        public void recordRemoval(String key) {
+            keys.remove(key);
+        }
+
+        @Override
+        public String evict() {
+            return keys.isEmpty() ? null : keys.removeLast();
+        }
+    }
+
+    private static void insert(EvictionPolicy policy, String... keys) {
+        for (String key : keys) {
+            policy.recordInsert(key);
+        }
+    }
+
+    private static List<String> drain(EvictionPolicy policy) {
+        List<String> victims = new ArrayList<>();
+        String victim;
+        while ((victim = policy.evict()) != null) {
+            victims.add(victim);
+        }
+        return victims;
+    }
+}
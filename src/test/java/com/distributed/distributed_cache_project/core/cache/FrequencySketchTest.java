@@ -0,0 +1,34 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FrequencySketchTest {
+
+    @Test
+    void countsAccessesUpToFifteen() {
+        FrequencySketch sketch = new FrequencySketch(512);
+        assertEquals(0, sketch.frequency("key"));
+        for (int i = 1; i <= 20; i++) {
+            sketch.increment("key");
+            assertEquals(Math.min(i, 15), sketch.frequency("key"));
+        }
+        assertEquals(0, sketch.frequency("other"));
+    }
+
+    @Test
+    void countsAreHalvedOnceTheSampleIsFull() {
+        FrequencySketch sketch = new FrequencySketch(16); // Halves after 160 additions
+        for (int i = 0; i < 15; i++) {
+            sketch.increment("hot");
+        }
+        for (int i = 0; i < 144; i++) {
+            sketch.increment("cold-" + i);
+        }
+        assertEquals(15, sketch.frequency("hot"));
+
+        sketch.increment("cold-144");
+        assertEquals(7, sketch.frequency("hot")); // So a key popular long ago gives way to one popular now
+    }
+}
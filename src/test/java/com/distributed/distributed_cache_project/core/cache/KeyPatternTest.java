@@ -0,0 +1,78 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeyPatternTest {
+
+    @Test
+    void emptyAndStarMatchEverything() {
+        for (String glob : new String[]{null, "", "*"}) {
+            KeyPattern pattern = KeyPattern.compile(glob);
+            assertTrue(pattern.matches(""));
+            assertTrue(pattern.matches("any:key"));
+        }
+    }
+
+    @Test
+    void trailingStarIsAPrefix() {
+        KeyPattern pattern = KeyPattern.compile("user:*");
+        assertTrue(pattern.matches("user:"));
+        assertTrue(pattern.matches("user:42:name"));
+        assertFalse(pattern.matches("users:42"));
+        assertFalse(pattern.matches("xuser:42"));
+    }
+
+    @Test
+    void wildcardsMatchRunsAndSingleCharacters() {
+        KeyPattern pattern = KeyPattern.compile("*:id:?");
+        assertTrue(pattern.matches("user:id:7"));
+        assertTrue(pattern.matches(":id:x"));
+        assertFalse(pattern.matches("user:id:42"));
+        assertFalse(pattern.matches("user:id:"));
+        assertTrue(KeyPattern.compile("a*b*c").matches("a\nb\nc")); // Keys may hold any character
+    }
+
+    @Test
+    void characterClassesSupportRangesAndNegation() {
+        KeyPattern range = KeyPattern.compile("h[a-e]llo");
+        assertTrue(range.matches("hallo"));
+        assertTrue(range.matches("hello"));
+        assertFalse(range.matches("hillo"));
+
+        KeyPattern negated = KeyPattern.compile("h[^e]llo");
+        assertTrue(negated.matches("hallo"));
+        assertFalse(negated.matches("hello"));
+
+        KeyPattern members = KeyPattern.compile("[]-]x"); // ']' first and '-' last are members
+        assertTrue(members.matches("]x"));
+        assertTrue(members.matches("-x"));
+        assertFalse(members.matches("ax"));
+    }
+
+    @Test
+    void regexCharactersAreLiteral() {
+        KeyPattern pattern = KeyPattern.compile("a.b+(c)*");
+        assertTrue(pattern.matches("a.b+(c)"));
+        assertFalse(pattern.matches("axb+(c)"));
+        assertTrue(KeyPattern.compile("[.]?").matches(".x"));
+        assertFalse(KeyPattern.compile("[.]?").matches("ax"));
+    }
+
+    @Test
+    void backslashEscapesTheNextCharacter() {
+        KeyPattern pattern = KeyPattern.compile("what\\?\\*");
+        assertTrue(pattern.matches("what?*"));
+        assertFalse(pattern.matches("whatx*"));
+        assertTrue(KeyPattern.compile("a\\*b*").matches("a*bc"));
+    }
+
+    @Test
+    void unclosedClassIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> KeyPattern.compile("user:[abc"));
+        assertThrows(IllegalArgumentException.class, () -> KeyPattern.compile("[^]"));
+    }
+}
@@ -0,0 +1,241 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+import com.distributed.distributed_cache_project.config.NodeConfigProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.distributed.distributed_cache_project.TestValues.text;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LocalCacheTest {
+    private static final int SEGMENTS = 4;
+    private static final String KILOBYTE = "x".repeat(1024);
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private final List<LocalCache> caches = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        caches.forEach(LocalCache::shutdown);
+    }
+
+    @Test
+    void scanVisitsEveryKeyOnceAcrossSegments() {
+        LocalCache cache = newCache(10_000);
+        Set<String> keys = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            keys.add("key-" + i);
+            cache.put("key-" + i, CacheValue.ofText("value-" + i), 0);
+        }
+        List<String> seen = new ArrayList<>();
+        long cursor = 0;
+        do {
+            cursor = cache.scan(cursor, 10, null, (key, value, expiresAtMillis) -> {
+                assertEquals(key.replace("key-", "value-"), text(value));
+                seen.add(key);
+            });
+        } while (cursor != 0);
+        assertEquals(keys.size(), seen.size());
+        assertEquals(keys, new HashSet<>(seen));
+    }
+
+    @Test
+    void scanReturnsOnlyMatchingLiveKeys() throws InterruptedException {
+        LocalCache cache = newCache(10_000);
+        for (int i = 0; i < 100; i++) {
+            cache.put("user:" + i, CacheValue.ofText("u"), 0);
+            cache.put("order:" + i, CacheValue.ofText("o"), 0);
+        }
+        cache.put("user:expiring", CacheValue.ofText("u"), 1);
+        Thread.sleep(20);
+
+        Set<String> seen = new HashSet<>();
+        long cursor = 0;
+        do {
+            cursor = cache.scan(cursor, 1000, "user:*", (key, value, expiresAtMillis) -> assertTrue(seen.add(key)));
+        } while (cursor != 0);
+        assertEquals(100, seen.size());
+        assertTrue(seen.stream().allMatch(key -> key.startsWith("user:")));
+        assertFalse(seen.contains("user:expiring"));
+    }
+
+    @Test
+    void scanRejectsACursorWithTheTopBitSet() {
+        LocalCache cache = newCache(100);
+        cache.put("key", CacheValue.ofText("v"), 0);
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> cache.scan(Long.parseUnsignedLong("9223372036854775808"), 10, null, (key, value, expiresAtMillis) -> { }));
+        assertTrue(e.getMessage().contains("9223372036854775808"), e.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> cache.scan(-1L, 10, null, (key, value, expiresAtMillis) -> { }));
+    }
+
+    @Test
+    void scanRejectsACursorPastTheLastSegment() {
+        LocalCache cache = newCache(100);
+        assertThrows(IllegalArgumentException.class,
+                () -> cache.scan((long) SEGMENTS << 32, 10, null, (key, value, expiresAtMillis) -> { }));
+        cache.scan((long) (SEGMENTS - 1) << 32, 10, null, (key, value, expiresAtMillis) -> { }); // The last one is valid
+    }
+
+    @Test
+    void scanRejectsAMalformedPattern() {
+        LocalCache cache = newCache(100);
+        assertThrows(IllegalArgumentException.class, () -> cache.scan(0, 10, "[abc", (key, value, expiresAtMillis) -> { }));
+    }
+
+    @Test
+    void byteBudgetBoundsTheCacheByEntryWeight() {
+        int weight = EntryWeigher.weigh("key-00", CacheValue.ofText(KILOBYTE));
+        LocalCache cache = newCache(10_000, 10L * weight, 1);
+        for (int i = 0; i < 20; i++) {
+            cache.put(String.format("key-%02d", i), CacheValue.ofText(KILOBYTE), 0);
+        }
+        assertEquals(10, cache.size()); // Far below max-entries: the budget is what binds
+        assertEquals(10L * weight, cache.getWeightedSizeBytes());
+        assertEquals(10, cache.getEvictionCount());
+        assertNull(cache.get("key-09"));
+        assertEquals(KILOBYTE, text(cache.get("key-19")));
+    }
+
+    @Test
+    void heavyEntryEvictsAsManyLightOnesAsItNeeds() {
+        int light = EntryWeigher.weigh("key-00", CacheValue.ofText("v"));
+        LocalCache cache = newCache(10_000, 20L * light, 1);
+        for (int i = 0; i < 20; i++) {
+            cache.put(String.format("key-%02d", i), CacheValue.ofText("v"), 0);
+        }
+        String heavyValue = "x".repeat(5 * light);
+        cache.put("heavy", CacheValue.ofText(heavyValue), 0);
+
+        int heavy = EntryWeigher.weigh("heavy", CacheValue.ofText(heavyValue));
+        int evicted = (int) cache.getEvictionCount();
+        assertEquals(20 + 1 - evicted, cache.size());
+        assertTrue(evicted >= heavy / light, "evicted " + evicted);
+        assertTrue(cache.getWeightedSizeBytes() <= cache.getMaxBytes());
+        assertEquals(heavyValue, text(cache.get("heavy")));
+        assertNull(cache.get("key-00")); // Least recently used first
+    }
+
+    @Test
+    void overwritesAndDeletesAdjustTheWeight() {
+        LocalCache cache = newCache(10_000, 1L << 20, 1);
+        cache.put("key", CacheValue.ofText(KILOBYTE), 0);
+        cache.put("key", CacheValue.ofText("small"), 0);
+        assertEquals(EntryWeigher.weigh("key", CacheValue.ofText("small")), cache.getWeightedSizeBytes());
+
+        cache.delete("key");
+        assertEquals(0, cache.getWeightedSizeBytes());
+    }
+
+    @Test
+    void entryHeavierThanItsSegmentsBudgetIsRejected() {
+        LocalCache cache = newCache(10_000, 4096, SEGMENTS); // 1 KB per segment
+        cache.put("small", CacheValue.ofText("v"), 0);
+        assertThrows(IllegalArgumentException.class, () -> cache.put("large", CacheValue.ofText(KILOBYTE), 0));
+        assertNull(cache.get("large"));
+        assertEquals("v", text(cache.get("small"))); // Nothing flushed to make room for it
+        assertEquals(0, cache.getEvictionCount());
+    }
+
+    @Test
+    void sizeFollowsInsertsOverwritesDeletesAndEvictions() {
+        LocalCache cache = newCache(100);
+        for (int i = 0; i < 50; i++) {
+            cache.put("key-" + i, CacheValue.ofText("v"), 0);
+        }
+        for (int i = 0; i < 10; i++) {
+            cache.put("key-" + i, CacheValue.ofText("w"), 0);
+        }
+        assertEquals(50, cache.size());
+
+        for (int i = 0; i < 5; i++) {
+            cache.delete("key-" + i);
+        }
+        cache.delete("missing");
+        assertEquals(45, cache.size());
+
+        for (int i = 50; i < 1000; i++) {
+            cache.put("key-" + i, CacheValue.ofText("v"), 0);
+        }
+        assertEquals(100, cache.size());
+        assertEquals(100, countEntries(cache));
+    }
+
+    @Test
+    void sizeDropsAsEntriesExpire() throws InterruptedException {
+        LocalCache cache = newCache(100);
+        cache.put("read", CacheValue.ofText("v"), 1);
+        cache.put("swept", CacheValue.ofText("v"), 1);
+        cache.put("kept", CacheValue.ofText("v"), 0);
+        Thread.sleep(20);
+
+        assertNull(cache.get("read")); // Removed by the read that found it expired
+        await().atMost(TIMEOUT).until(() -> cache.size() == 1); // And the other by the expiry cycle
+        assertEquals(1, countEntries(cache));
+    }
+
+    @Test
+    void sizeMatchesTheEntriesAfterConcurrentWrites() throws Exception {
+        LocalCache cache = newCache(10_000);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int seed = t;
+                writers.add(executor.submit(() -> {
+                    for (int i = 0; i < 5000; i++) {
+                        String key = "key-" + (i * 31 + seed) % 2000; // Writers overlap on the same keys
+                        if (i % 3 == 0) {
+                            cache.delete(key);
+                        } else {
+                            cache.put(key, CacheValue.ofText("v"), 0);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(countEntries(cache), cache.size());
+    }
+
+    private static int countEntries(LocalCache cache) {
+        int[] count = {0};
+        cache.forEach((key, value, expiresAtMillis) -> count[0]++);
+        return count[0];
+    }
+
+    private LocalCache newCache(int maxEntries) {
+        return newCache(maxEntries, 0, SEGMENTS);
+    }
+
+    private LocalCache newCache(int maxEntries, long maxBytes, int segments) {
+        NodeConfigProperties props = new NodeConfigProperties();
+        NodeConfigProperties.CacheCapacityProperties capacity = new NodeConfigProperties.CacheCapacityProperties();
+        capacity.setMaxEntries(maxEntries);
+        capacity.setMaxBytes(maxBytes);
+        capacity.setSegments(segments);
+        props.setCapacity(capacity);
+        LocalCache cache = new LocalCache(props);
+        caches.add(cache);
+        return cache;
+    }
+}
@@ -0,0 +1,244 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+import com.distributed.distributed_cache_project.config.NodeConfigProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.distributed.distributed_cache_project.TestValues.text;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedValueStorageTest {
+    private static final int SLAB_SIZE = 4096;
+    private static final long MAX_BYTES = 16 * SLAB_SIZE;
+    private static final int HEADER_BYTES = 36; // Record header, before the key
+    private static final int KEY_LENGTH = 24; // Offsets of the key and value lengths in the header
+    private static final int VALUE_LENGTH = 28;
+    private static final int INDEX_CLEAN = 16; // Offset of the clean-shutdown flag in the index file
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void cleanShutdownRemapsEveryEntry() {
+        MappedValueStorage storage = open();
+        storage.store("a", "alpha", 0);
+        storage.store("b", "beta", 123_456_789_000_000L);
+        long used = storage.usedBytes();
+        storage.close();
+
+        MappedValueStorage reopened = open();
+        Map<String, Recovered> recovered = recover(reopened);
+        assertEquals(2, recovered.size());
+        assertEquals("alpha", recovered.get("a").value());
+        assertEquals("beta", recovered.get("b").value());
+        assertEquals(123_456_789_000_000L, recovered.get("b").expiresAtMillis());
+        assertEquals(used, reopened.usedBytes());
+        reopened.close();
+    }
+
+    @Test
+    void uncleanShutdownDropsRecordsThatFailTheirValueChecksum() throws IOException {
+        MappedValueStorage storage = open();
+        storage.store("good", "intact", 0);
+        OffHeapRef bad = (OffHeapRef) storage.store("bad", "damaged", 0);
+        long chunk = storage.usedBytes() / 2;
+        storage.close();
+
+        markUnclean();
+        flipByte(fileOffset(bad) + HEADER_BYTES + "bad".length() + 2); // Inside the value, not the header
+
+        MappedValueStorage reopened = open();
+        Map<String, Recovered> recovered = recover(reopened);
+        assertEquals(1, recovered.size());
+        assertEquals("intact", recovered.get("good").value());
+        assertEquals(chunk, reopened.usedBytes()); // The dropped record's chunk went back on the free list
+        reopened.close();
+    }
+
+    @Test
+    void cleanShutdownTrustsValuesWithoutChecksumming() throws IOException {
+        MappedValueStorage storage = open();
+        OffHeapRef ref = (OffHeapRef) storage.store("key", "value", 0);
+        storage.close();
+
+        flipByte(fileOffset(ref) + HEADER_BYTES + "key".length() + 2);
+
+        MappedValueStorage reopened = open();
+        assertTrue(recover(reopened).containsKey("key"));
+        reopened.close();
+    }
+
+    @Test
+    void uncleanShutdownDropsRecordsWithACorruptHeader() throws IOException {
+        MappedValueStorage storage = open();
+        OffHeapRef ref = (OffHeapRef) storage.store("key", "value", 0);
+        storage.close();
+
+        markUnclean();
+        flipByte(fileOffset(ref) + HEADER_BYTES); // First byte of the key, covered by the header checksum
+
+        MappedValueStorage reopened = open();
+        assertTrue(recover(reopened).isEmpty());
+        assertEquals(0, reopened.usedBytes());
+        reopened.close();
+    }
+
+    @Test
+    void releasedRecordsStayDeleted() {
+        MappedValueStorage storage = open();
+        storage.store("kept", "1", 0);
+        Object deleted = storage.store("deleted", "2", 0);
+        storage.release(deleted);
+        storage.close();
+
+        MappedValueStorage reopened = open();
+        Map<String, Recovered> recovered = recover(reopened);
+        assertEquals(1, recovered.size());
+        assertTrue(recovered.containsKey("kept"));
+        assertFalse(recovered.containsKey("deleted"));
+        reopened.close();
+    }
+
+    @Test
+    void newerRecordWinsWhenACrashLeftTwoForOneKey() {
+        MappedValueStorage storage = open();
+        storage.store("key", "first", 0);
+        storage.store("key", "second", 0); // The first was never released, as if the crash came in between
+        storage.close();
+
+        MappedValueStorage reopened = open();
+        Map<String, Recovered> recovered = recover(reopened);
+        assertEquals(1, recovered.size());
+        assertEquals("second", recovered.get("key").value());
+        reopened.close();
+    }
+
+    @Test
+    void localCacheRecoversEntriesWithTheirDeadlines() throws InterruptedException {
+        LocalCache cache = new LocalCache(mappedConfig());
+        cache.put("ttl", CacheValue.ofText("expiring"), 60_000);
+        cache.put("forever", CacheValue.ofText("kept"), 0);
+        cache.put("short", CacheValue.ofText("gone"), 20);
+        cache.put("deleted", CacheValue.ofText("x"), 0);
+        cache.delete("deleted");
+        long deadline = cache.lookup("ttl").expiresAtMillis();
+        Thread.sleep(50);
+        cache.shutdown();
+
+        LocalCache restarted = new LocalCache(mappedConfig());
+        try {
+            LocalCache.Lookup ttl = restarted.lookup("ttl");
+            assertEquals(deadline, ttl.expiresAtMillis());
+            assertEquals("expiring", text(ttl.value()));
+            LocalCache.Lookup forever = restarted.lookup("forever");
+            assertEquals(0, forever.expiresAtMillis());
+            assertEquals("kept", text(forever.value()));
+            assertNull(restarted.get("short"));
+            assertNull(restarted.get("deleted"));
+            assertEquals(2, restarted.size());
+        } finally {
+            restarted.shutdown();
+        }
+    }
+
+    @Test
+    void staleReferenceIntoASlabCarvedForALargerClassIsRecycled() {
+        MappedValueStorage storage = new MappedValueStorage(directory, SLAB_SIZE, SLAB_SIZE); // A single slab
+        try {
+            List<OffHeapRef> small = new ArrayList<>();
+            OffHeapRef ref;
+            while ((ref = (OffHeapRef) storage.store("k", "v", 0)) != null) {
+                small.add(ref);
+            }
+            OffHeapRef stale = small.getLast();
+            int staleOffset = (int) stale.handle();
+            small.forEach(storage::release);
+
+            // One chunk now spans the slab. Where the stale record's lengths were, it holds lengths that fit that
+            // chunk but run past the end of the slab.
+            char[] chars = new char[SLAB_SIZE - HEADER_BYTES - 20];
+            Arrays.fill(chars, 'x');
+            int start = HEADER_BYTES + "k".length() + 1; // The big record's value, after its key and tag byte
+            writeInt(chars, staleOffset + KEY_LENGTH - start, 0);
+            writeInt(chars, staleOffset + VALUE_LENGTH - start, SLAB_SIZE - (staleOffset + HEADER_BYTES) + 4);
+            String big = new String(chars);
+            OffHeapRef current = (OffHeapRef) storage.store("k", big, 0);
+            assertEquals(0, (int) current.handle());
+
+            assertSame(ValueStorage.RECYCLED, storage.load(stale, () -> false));
+            assertEquals(big, storage.load(current, () -> true));
+        } finally {
+            storage.close();
+        }
+    }
+
+    private record Recovered(Object value, long expiresAtMillis) {
+    }
+
+    private static Map<String, Recovered> recover(MappedValueStorage storage) {
+        Map<String, Recovered> recovered = new HashMap<>();
+        storage.recover((key, stored, expiresAtMillis) ->
+                recovered.put(key, new Recovered(storage.load(stored, () -> true), expiresAtMillis)));
+        return recovered;
+    }
+
+    private MappedValueStorage open() {
+        return new MappedValueStorage(directory, SLAB_SIZE, MAX_BYTES);
+    }
+
+    private NodeConfigProperties mappedConfig() {
+        NodeConfigProperties props = new NodeConfigProperties();
+        NodeConfigProperties.CacheCapacityProperties capacity = new NodeConfigProperties.CacheCapacityProperties();
+        capacity.setMaxEntries(1000);
+        props.setCapacity(capacity);
+        NodeConfigProperties.StorageProperties storage = new NodeConfigProperties.StorageProperties();
+        storage.setMode("mapped");
+        storage.setPath(directory.toString());
+        storage.setSlabSizeBytes(SLAB_SIZE);
+        storage.setOffHeapMaxBytes(MAX_BYTES);
+        props.setStorage(storage);
+        return props;
+    }
+
+    // Big-endian, one ASCII character per byte as the value is encoded
+    private static void writeInt(char[] chars, int at, int value) {
+        for (int i = 0; i < 4; i++) {
+            chars[at + i] = (char) ((value >>> (24 - 8 * i)) & 0x7F);
+        }
+    }
+
+    private static long fileOffset(OffHeapRef ref) {
+        return (ref.handle() >>> 32) * SLAB_SIZE + (int) ref.handle();
+    }
+
+    // What a crash leaves behind: the flag close() sets is missing
+    private void markUnclean() throws IOException {
+        try (FileChannel index = FileChannel.open(directory.resolve(MappedValueStorage.INDEX_FILE), StandardOpenOption.WRITE)) {
+            index.write(ByteBuffer.allocate(4).putInt(0).flip(), INDEX_CLEAN);
+        }
+    }
+
+    private void flipByte(long position) throws IOException {
+        try (FileChannel data = FileChannel.open(directory.resolve(MappedValueStorage.DATA_FILE),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            data.read(b, position);
+            data.write(ByteBuffer.wrap(new byte[]{(byte) (b.get(0) ^ 0x5A)}), position);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+import com.distributed.distributed_cache_project.config.NodeConfigProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.distributed.distributed_cache_project.TestValues.text;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class NearCacheTest {
+    private static final long TTL_MILLIS = 60_000;
+    private static final String KEY = "key";
+    private static final String READER = "localhost:18002";
+
+    private final NearCache nearCache = newNearCache(TTL_MILLIS);
+
+    @AfterEach
+    void tearDown() {
+        nearCache.shutdown();
+    }
+
+    @Test
+    void grantedCopyIsDroppedOnInvalidation() {
+        // Owner: the reader is noted before the value is read, and found again by the next write
+        assertEquals(TTL_MILLIS, nearCache.registerReader(KEY, READER));
+        assertEquals(1, nearCache.getTrackedKeyCount());
+
+        // Reader: keeps the copy the lease allows
+        long token = nearCache.startFetch(KEY);
+        nearCache.complete(KEY, token, new NearCache.Lease(CacheValue.ofText("value"), TTL_MILLIS));
+        assertEquals("value", text(nearCache.get(KEY)));
+
+        assertEquals(List.of(READER), nearCache.takeReaders(KEY));
+        assertEquals(List.of(), nearCache.takeReaders(KEY)); // Taken once; the next write has no one to tell
+        nearCache.invalidate(KEY);
+        assertNull(nearCache.get(KEY));
+        assertEquals(1, nearCache.getInvalidationCount());
+    }
+
+    @Test
+    void replyArrivingAfterAnInvalidationIsNotKept() {
+        long token = nearCache.startFetch(KEY);
+        nearCache.invalidate(KEY); // The key was written while the GET was on its way
+        nearCache.complete(KEY, token, new NearCache.Lease(CacheValue.ofText("old"), TTL_MILLIS));
+        nearCache.abandon(KEY, token);
+
+        assertNull(nearCache.get(KEY));
+        assertEquals(0, nearCache.size());
+    }
+
+    @Test
+    void onlyTheLatestFetchOfAKeyIsKept() {
+        long first = nearCache.startFetch(KEY);
+        long second = nearCache.startFetch(KEY);
+        nearCache.complete(KEY, first, new NearCache.Lease(CacheValue.ofText("first"), TTL_MILLIS));
+        assertNull(nearCache.get(KEY));
+
+        nearCache.complete(KEY, second, new NearCache.Lease(CacheValue.ofText("second"), TTL_MILLIS));
+        assertEquals("second", text(nearCache.get(KEY)));
+    }
+
+    @Test
+    void replyWithoutALeaseIsNotKept() {
+        long token = nearCache.startFetch(KEY);
+        nearCache.complete(KEY, token, new NearCache.Lease(CacheValue.ofText("value"), 0));
+        assertNull(nearCache.get(KEY));
+    }
+
+    @Test
+    void expiredLeasesAreNotInvalidated() throws InterruptedException {
+        NearCache shortLived = newNearCache(20);
+        try {
+            assertEquals(20, shortLived.registerReader(KEY, READER));
+            Thread.sleep(50);
+            assertEquals(List.of(), shortLived.takeReaders(KEY)); // Its copy has already expired on the reader
+        } finally {
+            shortLived.shutdown();
+        }
+    }
+
+    @Test
+    void disabledNearCacheGrantsNoLeases() {
+        NearCache disabled = new NearCache(null);
+        assertEquals(0, disabled.registerReader(KEY, READER));
+        assertEquals(List.of(), disabled.takeReaders(KEY));
+    }
+
+    private static NearCache newNearCache(long ttlMillis) {
+        NodeConfigProperties.NearCacheProperties props = new NodeConfigProperties.NearCacheProperties();
+        props.setEnabled(true);
+        props.setMaxEntries(100);
+        props.setTtlMillis(ttlMillis);
+        return new NearCache(props);
+    }
+}
@@ -0,0 +1,79 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.distributed.distributed_cache_project.TestValues.text;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class OffHeapValueStorageTest {
+    private static final int SLAB_SIZE = 1024;
+    private static final int HEADER_BYTES = 8; // Key and value lengths, before the key
+
+    @Test
+    void storedValuesLoadBackUntilReleased() {
+        OffHeapValueStorage storage = new OffHeapValueStorage(SLAB_SIZE, 4L * SLAB_SIZE);
+        Object text = storage.store("text", "hello", 0);
+        Object value = storage.store("value", CacheValue.ofText("world"), 0);
+        assertEquals("hello", storage.load(text, () -> true));
+        Object loaded = storage.load(value, () -> true);
+        assertEquals("world", text(loaded));
+        assertEquals(CacheValue.TEXT, ((CacheValue) loaded).contentType());
+        assertSame(ValueStorage.RECYCLED, storage.load(text, () -> false)); // Replaced while it was read
+
+        long used = storage.usedBytes();
+        storage.release(text);
+        assertEquals(used - 64, storage.usedBytes());
+    }
+
+    @Test
+    void fullStorageRefusesTheEntry() {
+        OffHeapValueStorage storage = new OffHeapValueStorage(SLAB_SIZE, SLAB_SIZE);
+        assertEquals(SLAB_SIZE / 64, storeUntilFull(storage).size());
+        assertNull(storage.store("k", "v", 0));
+    }
+
+    @Test
+    void staleReferenceIntoASlabCarvedForALargerClassIsRecycled() {
+        OffHeapValueStorage storage = new OffHeapValueStorage(SLAB_SIZE, SLAB_SIZE); // A single slab
+        List<OffHeapRef> small = storeUntilFull(storage);
+        OffHeapRef stale = small.getLast();
+        int staleOffset = (int) stale.handle();
+        small.forEach(storage::release);
+
+        // One chunk now spans the slab. Where the stale record's lengths were, it holds lengths that fit that chunk
+        // but run past the end of the slab.
+        char[] chars = new char[SLAB_SIZE - HEADER_BYTES - 20];
+        Arrays.fill(chars, 'x');
+        int at = staleOffset - (HEADER_BYTES + "k".length() + 1); // Past the big record's header, key and tag byte
+        writeInt(chars, at, 0);
+        writeInt(chars, at + 4, SLAB_SIZE - staleOffset);
+        String big = new String(chars);
+        OffHeapRef current = (OffHeapRef) storage.store("k", big, 0);
+        assertEquals(0, (int) current.handle());
+
+        assertSame(ValueStorage.RECYCLED, storage.load(stale, () -> false));
+        assertEquals(big, storage.load(current, () -> true));
+    }
+
+    private static List<OffHeapRef> storeUntilFull(OffHeapValueStorage storage) {
+        List<OffHeapRef> refs = new ArrayList<>();
+        OffHeapRef ref;
+        while ((ref = (OffHeapRef) storage.store("k", "v", 0)) != null) {
+            refs.add(ref);
+        }
+        return refs;
+    }
+
+    // Big-endian, one ASCII character per byte as the value is encoded
+    private static void writeInt(char[] chars, int at, int value) {
+        for (int i = 0; i < 4; i++) {
+            chars[at + i] = (char) ((value >>> (24 - 8 * i)) & 0x7F);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+import com.distributed.distributed_cache_project.config.NodeConfigProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.distributed.distributed_cache_project.TestValues.text;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OverflowTierTest {
+    private static final int FILE_BYTES = 256 * 1024; // The smallest the tier allows: one write buffer
+    private static final String FILLER = "x".repeat(1000);
+
+    @TempDir
+    Path directory;
+
+    private final List<OverflowTier> tiers = new ArrayList<>();
+
+    @AfterEach
+    void closeTiers() {
+        tiers.forEach(OverflowTier::close);
+    }
+
+    @Test
+    void evictedEntriesSpillToDiskAndArePromotedOnRead() {
+        NodeConfigProperties props = new NodeConfigProperties();
+        NodeConfigProperties.CacheCapacityProperties capacity = new NodeConfigProperties.CacheCapacityProperties();
+        capacity.setMaxEntries(100);
+        props.setCapacity(capacity);
+        NodeConfigProperties.OverflowProperties overflow = new NodeConfigProperties.OverflowProperties();
+        overflow.setEnabled(true);
+        overflow.setPath(directory.toString());
+        overflow.setMaxBytes(16L * FILE_BYTES);
+        overflow.setFileSizeBytes(FILE_BYTES);
+        props.setOverflow(overflow);
+        LocalCache cache = new LocalCache(props);
+        try {
+            for (int i = 0; i < 1000; i++) {
+                cache.put("key-" + i, CacheValue.ofText("value-" + i), 0);
+            }
+            assertTrue(cache.getOverflowSpillCount() >= 900);
+            assertTrue(cache.getOverflowEntryCount() > 0);
+
+            for (int i = 0; i < 1000; i++) {
+                assertEquals("value-" + i, text(cache.get("key-" + i)), "key-" + i);
+            }
+            assertTrue(cache.getOverflowHitCount() > 0);
+            assertEquals(0, cache.getOverflowDroppedCount());
+        } finally {
+            cache.shutdown();
+        }
+    }
+
+    @Test
+    void promotedEntryLeavesTheTier() {
+        OverflowTier tier = open(16L * FILE_BYTES, FILE_BYTES);
+        tier.append("key", "value", 0);
+        assertEquals(1, tier.size());
+
+        OverflowTier.Hit hit = tier.read("key", System.currentTimeMillis());
+        assertEquals("value", hit.value());
+        assertTrue(tier.remove("key", hit.location()));
+        assertNull(tier.read("key", System.currentTimeMillis()));
+        assertEquals(0, tier.size());
+    }
+
+    @Test
+    void staleLocationLosesTheRemove() {
+        OverflowTier tier = open(16L * FILE_BYTES, FILE_BYTES);
+        tier.append("key", "first", 0);
+        OverflowTier.Hit first = tier.read("key", System.currentTimeMillis());
+        tier.append("key", "second", 0); // Evicted again, as if it had been promoted and written meanwhile
+
+        assertFalse(tier.remove("key", first.location()));
+        OverflowTier.Hit second = tier.read("key", System.currentTimeMillis());
+        assertEquals("second", second.value());
+        assertTrue(tier.remove("key", second.location()));
+        assertFalse(tier.remove("key", second.location())); // Only one caller gets to promote it
+    }
+
+    @Test
+    void appendForAKeyWrittenSinceItsEvictionIsDropped() {
+        OverflowTier tier = open(16L * FILE_BYTES, FILE_BYTES);
+        tier.append("key", "first", 0);
+        tier.append("key", "stale", 0, () -> false); // Written or deleted after the segment let go of it
+
+        assertEquals("first", tier.read("key", System.currentTimeMillis()).value());
+        assertEquals(1, tier.spillCount());
+
+        tier.invalidate("key");
+        tier.append("key", "stale", 0, () -> false);
+        assertNull(tier.read("key", System.currentTimeMillis()));
+        assertEquals(0, tier.size());
+    }
+
+    @Test
+    void expiredRecordsAreNotReturned() {
+        OverflowTier tier = open(16L * FILE_BYTES, FILE_BYTES);
+        long now = System.currentTimeMillis();
+        tier.append("key", "value", now + 1000);
+        assertNotNull(tier.read("key", now));
+        assertNull(tier.read("key", now + 1001));
+        assertEquals(0, tier.size());
+    }
+
+    @Test
+    void cleanerRelocatesLiveRecordsAndDeletesTheFile() throws InterruptedException {
+        // Cleaning starts past three quarters of maxBytes, which three full files and a bit of a fourth exceed
+        OverflowTier tier = open(4L * FILE_BYTES, FILE_BYTES);
+        int count = 0;
+        while (!Files.exists(fileNumber(1))) {
+            tier.append("key-" + count, FILLER + count, 0);
+            count++;
+        }
+        int inFirstFile = count - 1; // The last append opened the second file
+        for (int i = 0; i < inFirstFile; i++) {
+            if (i % 50 != 0) {
+                tier.invalidate("key-" + i); // Written or deleted in memory, leaving the first file mostly dead
+            }
+        }
+        assertTrue(Files.exists(fileNumber(0)));
+        while (tier.diskBytes() <= 3L * FILE_BYTES) {
+            tier.append("key-" + count, FILLER + count, 0);
+            count++;
+        }
+
+        await().atMost(Duration.ofSeconds(30)).until(() -> !Files.exists(fileNumber(0)));
+        assertEquals(0, tier.droppedCount());
+        for (int i = 0; i < count; i++) {
+            OverflowTier.Hit hit = tier.read("key-" + i, System.currentTimeMillis());
+            if (i < inFirstFile && i % 50 != 0) {
+                assertNull(hit, "key-" + i);
+            } else {
+                assertNotNull(hit, "key-" + i);
+                assertEquals(FILLER + i, hit.value());
+            }
+        }
+    }
+
+    @Test
+    void oldestFileIsDroppedBeyondMaxBytes() {
+        OverflowTier tier = open(2L * FILE_BYTES, FILE_BYTES);
+        int count = 1000; // About four files' worth
+        for (int i = 0; i < count; i++) {
+            tier.append("key-" + i, FILLER + i, 0);
+        }
+
+        assertTrue(tier.diskBytes() <= 2L * FILE_BYTES);
+        assertTrue(tier.droppedCount() > 0);
+        assertEquals(count, tier.size() + tier.droppedCount());
+        assertFalse(Files.exists(fileNumber(0)));
+        assertNull(tier.read("key-0", System.currentTimeMillis()));
+        assertEquals(FILLER + (count - 1), tier.read("key-" + (count - 1), System.currentTimeMillis()).value());
+    }
+
+    @Test
+    void readsComeFromTheWriteBufferUntilItIsFlushed() throws IOException {
+        OverflowTier tier = open(16L * FILE_BYTES, 4L * FILE_BYTES);
+        tier.append("buffered", "value", 0);
+        assertEquals(0, Files.size(fileNumber(0))); // Nothing written yet
+        assertEquals("value", tier.read("buffered", System.currentTimeMillis()).value());
+
+        int count = 0;
+        while (Files.size(fileNumber(0)) == 0) {
+            tier.append("filler-" + count++, FILLER, 0);
+        }
+        assertEquals("value", tier.read("buffered", System.currentTimeMillis()).value());
+
+        // Damage the record on disk: if the read now fails, it came from the file
+        flipByte(fileNumber(0), 24);
+        assertNull(tier.read("buffered", System.currentTimeMillis()));
+        assertNotNull(tier.read("filler-0", System.currentTimeMillis()));
+    }
+
+    @Test
+    void recordLargerThanTheWriteBufferIsWrittenDirectly() throws IOException {
+        OverflowTier tier = open(16L * FILE_BYTES, 4L * FILE_BYTES);
+        tier.append("small-before", "before", 0);
+        String large = "y".repeat(FILE_BYTES + 1000);
+        tier.append("large", large, 0);
+        assertTrue(Files.size(fileNumber(0)) > FILE_BYTES);
+        tier.append("small-after", "after", 0); // Buffered behind the large record
+
+        long now = System.currentTimeMillis();
+        assertEquals("before", tier.read("small-before", now).value());
+        assertEquals(large, tier.read("large", now).value());
+        assertEquals("after", tier.read("small-after", now).value());
+
+        int count = 0;
+        long written = Files.size(fileNumber(0));
+        while (Files.size(fileNumber(0)) == written) {
+            tier.append("filler-" + count++, FILLER, 0);
+        }
+        assertEquals("after", tier.read("small-after", System.currentTimeMillis()).value());
+        assertEquals(large, tier.read("large", System.currentTimeMillis()).value());
+    }
+
+    private OverflowTier open(long maxBytes, long fileBytes) {
+        OverflowTier tier = new OverflowTier(directory, maxBytes, fileBytes);
+        tiers.add(tier);
+        return tier;
+    }
+
+    private Path fileNumber(int id) {
+        return directory.resolve("overflow-" + id + ".log");
+    }
+
+    private static void flipByte(Path path, long position) throws IOException {
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            file.read(b, position);
+            file.write(ByteBuffer.wrap(new byte[]{(byte) (b.get(0) ^ 0x5A)}), position);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Plays a {@link CacheSegment}'s part for an {@link EvictionPolicy} under test: tracks which keys are resident and
+ * evicts as soon as there are more than {@code capacity}, so tests can assert on the policy's choices alone.
+ */
+final class PolicyDriver {
+    private final EvictionPolicy policy;
+    private final int capacity;
+    private final Set<String> resident = new LinkedHashSet<>();
+    private final List<String> evicted = new ArrayList<>();
+
+    PolicyDriver(EvictionPolicy policy, int capacity) {
+        this.policy = policy;
+        this.capacity = capacity;
+    }
+
+    void put(String key) {
+        if (resident.add(key)) {
+            policy.recordInsert(key);
+        } else {
+            policy.recordAccess(key);
+        }
+        while (resident.size() > capacity) {
+            String victim = policy.evict();
+            if (victim == null || !resident.remove(victim)) {
+                throw new AssertionError("Policy evicted '" + victim + "', which is not resident");
+            }
+            evicted.add(victim);
+        }
+    }
+
+    boolean get(String key) {
+        if (!resident.contains(key)) {
+            return false;
+        }
+        policy.recordAccess(key);
+        return true;
+    }
+
+    void remove(String key) {
+        if (resident.remove(key)) {
+            policy.recordRemoval(key);
+        }
+    }
+
+    boolean contains(String key) {
+        return resident.contains(key);
+    }
+
+    int size() {
+        return resident.size();
+    }
+
+    List<String> evicted() {
+        return evicted;
+    }
+}
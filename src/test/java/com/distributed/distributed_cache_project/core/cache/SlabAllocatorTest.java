@@ -0,0 +1,125 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlabAllocatorTest {
+    private static final int SLAB_SIZE = 1024;
+
+    @Test
+    void sizeClassesGrowByAQuarterFromSixtyFourBytesToTheSlabSize() {
+        SlabAllocator allocator = new SlabAllocator(SLAB_SIZE, 4L * SLAB_SIZE);
+        List<Integer> sizes = new ArrayList<>();
+        for (int i = 0; allocator.chunkSizeOfClass(i) > 0; i++) {
+            sizes.add(allocator.chunkSizeOfClass(i));
+        }
+        assertEquals(List.of(64, 80, 104, 128, 160, 200, 248, 312, 384, 480, 600, 752, 936, 1024), sizes);
+        assertEquals(-1, allocator.chunkSizeOfClass(-1));
+        assertEquals(-1, allocator.chunkSizeOfClass(sizes.size()));
+    }
+
+    @Test
+    void allocationsUseTheSmallestClassThatFits() {
+        SlabAllocator allocator = new SlabAllocator(SLAB_SIZE, 4L * SLAB_SIZE);
+        assertEquals(64, allocator.chunkSize(allocator.allocate(1)));
+        assertEquals(64, allocator.chunkSize(allocator.allocate(64)));
+        assertEquals(80, allocator.chunkSize(allocator.allocate(65)));
+        assertEquals(SLAB_SIZE, allocator.chunkSize(allocator.allocate(937)));
+        assertThrows(IllegalArgumentException.class, () -> allocator.allocate(SLAB_SIZE + 1));
+    }
+
+    @Test
+    void slabMovesBetweenThePartialListAndTheEmptyPool() {
+        SlabAllocator allocator = new SlabAllocator(SLAB_SIZE, SLAB_SIZE); // A single slab
+        int perSlab = SLAB_SIZE / 64;
+        List<Long> handles = new ArrayList<>();
+        for (int i = 0; i < perSlab; i++) {
+            handles.add(allocator.allocate(64));
+        }
+        assertEquals(perSlab, new HashSet<>(handles).size());
+        assertEquals(-1, allocator.allocate(64)); // Full, so off the partial list, and no slab left
+        assertEquals(SLAB_SIZE, allocator.usedBytes());
+
+        // One free chunk puts the slab back on the partial list; the next allocation reuses that chunk
+        long freed = handles.remove(3);
+        allocator.free(freed);
+        assertEquals(freed, allocator.allocate(64));
+        handles.add(freed);
+
+        // Another class cannot take the slab while any chunk is in use
+        assertEquals(-1, allocator.allocate(500));
+        for (long handle : handles) {
+            allocator.free(handle);
+        }
+        assertEquals(0, allocator.usedBytes());
+
+        // Once empty, the slab is back in the pool and gets re-carved for the class that asks next
+        long big = allocator.allocate(500);
+        assertTrue(big >= 0);
+        assertEquals(600, allocator.chunkSize(big));
+        assertEquals(600, allocator.usedBytes());
+    }
+
+    @Test
+    void allocateReturnsMinusOneWhenMemoryIsExhausted() {
+        SlabAllocator allocator = new SlabAllocator(SLAB_SIZE, 2L * SLAB_SIZE);
+        assertTrue(allocator.allocate(SLAB_SIZE) >= 0);
+        assertTrue(allocator.allocate(SLAB_SIZE) >= 0);
+        assertEquals(-1, allocator.allocate(SLAB_SIZE));
+        assertEquals(-1, allocator.allocate(64));
+        assertEquals(2L * SLAB_SIZE, allocator.reservedBytes());
+    }
+
+    @Test
+    void reclaimingASlabFreesMemoryForAnotherClass() {
+        SlabAllocator allocator = new SlabAllocator(SLAB_SIZE, 2L * SLAB_SIZE);
+        List<Long> small = new ArrayList<>();
+        for (int i = 0; i < SLAB_SIZE / 64; i++) {
+            small.add(allocator.allocate(64));
+        }
+        long large = allocator.allocate(SLAB_SIZE);
+        assertEquals(-1, allocator.allocate(200));
+
+        // The hand visits every in-use slab in turn
+        int first = allocator.nextSlabToReclaim();
+        int second = allocator.nextSlabToReclaim();
+        assertNotEquals(first, second);
+        assertEquals(Set.of(0, 1), Set.of(first, second));
+        assertEquals(first, allocator.nextSlabToReclaim());
+
+        // Drain the small-chunk slab the way storage does: every chunk position of it, as handles
+        int smallSlab = (int) (small.getFirst() >>> 32);
+        long[] positions = allocator.chunkHandles(smallSlab);
+        assertEquals(SLAB_SIZE / 64, positions.length);
+        assertEquals(new HashSet<>(small), toSet(positions));
+        for (long handle : positions) {
+            allocator.free(handle);
+        }
+
+        long medium = allocator.allocate(200);
+        assertTrue(medium >= 0);
+        assertEquals(smallSlab, (int) (medium >>> 32));
+        assertEquals(200, allocator.chunkSize(medium));
+
+        allocator.free(large);
+        allocator.free(medium);
+        assertEquals(-1, allocator.nextSlabToReclaim()); // Nothing in use
+    }
+
+    private static Set<Long> toSet(long[] values) {
+        Set<Long> set = new HashSet<>();
+        for (long value : values) {
+            set.add(value);
+        }
+        return set;
+    }
+}
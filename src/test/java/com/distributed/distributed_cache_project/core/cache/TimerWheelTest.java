@@ -0,0 +1,134 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimerWheelTest {
+    private static final long START = 1_700_000_123_456L; // Not aligned to any bucket
+    private static final long TICK = 1024; // Level 0 bucket span
+    private static final long SECOND = 1000;
+    private static final long DAY = 86_400 * SECOND;
+
+    @Test
+    void nodesOnEveryLevelExpireWithinATickOfTheirDeadline() {
+        TimerWheel wheel = new TimerWheel(START);
+        // One deadline per level, then two past the top level, which holds at most ~12.4 days
+        long[] offsets = {500, 10 * SECOND, 600 * SECOND, 10 * 3600 * SECOND, 5 * DAY, 20 * DAY, 30 * DAY};
+        List<TimerNode> nodes = new ArrayList<>();
+        for (long offset : offsets) {
+            TimerNode node = node("in-" + offset, START + offset);
+            wheel.schedule(node);
+            nodes.add(node);
+        }
+        assertEquals(offsets.length, wheel.scheduledCount());
+
+        long step = 997;
+        Set<TimerNode> polled = new HashSet<>();
+        for (long now = START; polled.size() < nodes.size(); now += step) {
+            assertTrue(now < START + 31 * DAY, "not every node expired");
+            wheel.advance(now);
+            TimerNode node;
+            while ((node = wheel.pollExpired()) != null) {
+                assertTrue(node.getDeadlineMillis() < now, node.getKey() + " expired early");
+                assertTrue(now - node.getDeadlineMillis() <= TICK + step, node.getKey() + " expired late");
+                assertTrue(polled.add(node));
+            }
+        }
+        assertEquals(0, wheel.scheduledCount());
+    }
+
+    @Test
+    void oneLargeAdvanceCascadesEverythingDue() {
+        TimerWheel wheel = new TimerWheel(START);
+        TimerNode soon = node("soon", START + 10 * SECOND);
+        TimerNode later = node("later", START + 10 * DAY);
+        TimerNode beyond = node("beyond", START + 40 * DAY);
+        wheel.schedule(soon);
+        wheel.schedule(later);
+        wheel.schedule(beyond);
+
+        wheel.advance(START + 11 * DAY);
+        Set<TimerNode> due = new HashSet<>();
+        TimerNode node;
+        while ((node = wheel.pollExpired()) != null) {
+            due.add(node);
+        }
+        assertEquals(Set.of(soon, later), due);
+        assertEquals(1, wheel.scheduledCount());
+
+        wheel.advance(START + 40 * DAY + 2 * TICK);
+        assertSame(beyond, wheel.pollExpired());
+        assertEquals(0, wheel.scheduledCount());
+    }
+
+    @Test
+    void descheduledNodesNeverExpire() {
+        TimerWheel wheel = new TimerWheel(START);
+        TimerNode kept = node("kept", START + 5 * SECOND);
+        TimerNode cancelled = node("cancelled", START + 5 * SECOND);
+        TimerNode far = node("far", START + 3 * DAY);
+        wheel.schedule(kept);
+        wheel.schedule(cancelled);
+        wheel.schedule(far);
+
+        wheel.deschedule(cancelled);
+        wheel.deschedule(cancelled); // Already out; must not count twice
+        wheel.deschedule(far);
+        wheel.deschedule(null);
+        assertEquals(1, wheel.scheduledCount());
+
+        wheel.advance(START + 4 * DAY);
+        assertSame(kept, wheel.pollExpired());
+        assertNull(wheel.pollExpired());
+        assertEquals(0, wheel.scheduledCount());
+    }
+
+    @Test
+    void reschedulingMovesTheNode() {
+        TimerWheel wheel = new TimerWheel(START);
+        TimerNode node = node("key", START + 2 * DAY);
+        wheel.schedule(node);
+        wheel.schedule(node); // Scheduling a linked node re-files it instead of adding it twice
+        assertEquals(1, wheel.scheduledCount());
+
+        wheel.advance(START + DAY);
+        assertNull(wheel.pollExpired());
+        wheel.advance(START + 2 * DAY + 2 * TICK);
+        assertSame(node, wheel.pollExpired());
+        assertNull(wheel.pollExpired());
+    }
+
+    @Test
+    void deadlineAlreadyPassedExpiresOnTheNextTick() {
+        TimerWheel wheel = new TimerWheel(START);
+        TimerNode node = node("late", START - 5 * SECOND);
+        wheel.schedule(node);
+        wheel.advance(START + TICK);
+        assertSame(node, wheel.pollExpired());
+    }
+
+    @Test
+    void timeGoingBackwardsIsIgnored() {
+        TimerWheel wheel = new TimerWheel(START);
+        TimerNode node = node("key", START + 3 * SECOND);
+        wheel.schedule(node);
+        wheel.advance(START - DAY);
+        wheel.advance(START + 2 * SECOND);
+        assertNull(wheel.pollExpired());
+        wheel.advance(START + 3 * SECOND + 2 * TICK);
+        assertSame(node, wheel.pollExpired());
+    }
+
+    private static TimerNode node(String key, long deadlineMillis) {
+        return new TimerNode(key, key, 0, 1, deadlineMillis, deadlineMillis - START);
+    }
+}
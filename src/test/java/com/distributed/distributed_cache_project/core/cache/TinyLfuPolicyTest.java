@@ -0,0 +1,70 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TinyLfuPolicyTest {
+    private static final int CAPACITY = 100;
+
+    @Test
+    void readKeysSurviveAScanOfOneOffKeys() {
+        PolicyDriver cache = new PolicyDriver(new TinyLfuPolicy(CAPACITY), CAPACITY);
+        for (int i = 0; i < 50; i++) {
+            cache.put("hot-" + i);
+        }
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 50; i++) {
+                assertTrue(cache.get("hot-" + i));
+            }
+        }
+
+        for (int i = 0; i < 10 * CAPACITY; i++) {
+            cache.put("scan-" + i);
+        }
+        for (int i = 0; i < 50; i++) {
+            assertTrue(cache.contains("hot-" + i), "hot-" + i);
+        }
+        assertEquals(CAPACITY, cache.size());
+    }
+
+    @Test
+    void keyThatKeepsComingBackIsAdmitted() {
+        PolicyDriver cache = new PolicyDriver(new TinyLfuPolicy(CAPACITY), CAPACITY);
+        for (int i = 0; i < CAPACITY; i++) {
+            cache.put("cold-" + i);
+        }
+
+        // Seen once, it loses to the incumbent like any one-off key
+        cache.put("returning");
+        cache.put("scan-0");
+        assertFalse(cache.contains("returning"));
+
+        // Seen again, it is now more popular than the main region's victim and takes its place
+        cache.put("returning");
+        cache.put("scan-1");
+        assertTrue(cache.contains("returning"));
+        assertTrue(cache.evicted().contains("cold-0"));
+
+        for (int i = 2; i < 2 * CAPACITY; i++) {
+            cache.put("scan-" + i);
+        }
+        assertTrue(cache.contains("returning"));
+    }
+
+    @Test
+    void removedKeysAreNotEvicted() {
+        TinyLfuPolicy policy = new TinyLfuPolicy(CAPACITY);
+        policy.recordInsert("a");
+        policy.recordInsert("b");
+        policy.recordAccess("b");
+        policy.recordRemoval("a");
+
+        assertEquals(1, policy.size());
+        assertEquals("b", policy.evict());
+        assertNull(policy.evict());
+    }
+}
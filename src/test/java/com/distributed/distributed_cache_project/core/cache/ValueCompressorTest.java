@@ -0,0 +1,113 @@
+package com.distributed.distributed_cache_project.core.cache;
+
+import com.distributed.distributed_cache_project.config.NodeConfigProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static com.distributed.distributed_cache_project.TestValues.text;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ValueCompressorTest {
+    private static final int THRESHOLD = 1024;
+    private static final String REPETITIVE = "{\"name\":\"value\",\"count\":42}".repeat(200);
+
+    @Test
+    void largeValuesRoundTripAndCountTowardsTheRatio() {
+        ValueCompressor compressor = newCompressor();
+        byte[] raw = REPETITIVE.getBytes(StandardCharsets.UTF_8);
+        byte[] deflated = compressor.compress(raw);
+
+        assertNotNull(deflated);
+        assertTrue(deflated.length < raw.length / 8, "deflated to " + deflated.length);
+        assertArrayEquals(raw, compressor.decompress(deflated, raw.length));
+        assertEquals(1, compressor.getCompressedCount());
+        assertEquals(raw.length - deflated.length, compressor.getBytesSaved());
+        assertEquals((double) raw.length / deflated.length, compressor.getCompressionRatio(), 1e-9);
+    }
+
+    @Test
+    void smallAndIncompressibleValuesAreLeftAlone() {
+        ValueCompressor compressor = newCompressor();
+        assertNull(compressor.compress(new byte[THRESHOLD - 1]));
+        assertFalse(compressor.mayCompress(CacheValue.ofText("small")));
+        assertEquals(0, compressor.getSkippedCount()); // Not even tried
+
+        byte[] random = new byte[4 * THRESHOLD];
+        new Random(1).nextBytes(random);
+        assertNull(compressor.compress(random));
+        assertEquals(1, compressor.getSkippedCount());
+        assertEquals(0, compressor.getCompressedCount());
+        assertEquals(1.0, compressor.getCompressionRatio()); // Nothing compressed yet
+    }
+
+    @Test
+    void disabledCompressorNeverCompresses() {
+        ValueCompressor compressor = new ValueCompressor(null);
+        assertFalse(compressor.isEnabled());
+        assertNull(compressor.compress(REPETITIVE.getBytes(StandardCharsets.UTF_8)));
+        assertFalse(compressor.mayCompress(CacheValue.ofText(REPETITIVE)));
+    }
+
+    @Test
+    void corruptInputIsRejected() {
+        ValueCompressor compressor = newCompressor();
+        byte[] raw = REPETITIVE.getBytes(StandardCharsets.UTF_8);
+        byte[] deflated = compressor.compress(raw);
+
+        assertThrows(IllegalStateException.class, () -> compressor.decompress(deflated, raw.length + 1));
+        assertThrows(IllegalStateException.class,
+                () -> compressor.decompress(Arrays.copyOf(deflated, deflated.length / 2), raw.length));
+        assertThrows(IllegalStateException.class, () -> compressor.decompress(new byte[]{1, 2, 3, 4}, raw.length));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"heap", "off-heap"})
+    void cacheStoresLargeValuesCompressedAndReturnsThemIntact(String mode) {
+        NodeConfigProperties props = new NodeConfigProperties();
+        NodeConfigProperties.CacheCapacityProperties capacity = new NodeConfigProperties.CacheCapacityProperties();
+        capacity.setMaxEntries(100);
+        capacity.setMaxBytes(1L << 20);
+        capacity.setSegments(1);
+        props.setCapacity(capacity);
+        NodeConfigProperties.StorageProperties storage = new NodeConfigProperties.StorageProperties();
+        storage.setMode(mode);
+        storage.setOffHeapMaxBytes(1L << 20);
+        storage.setSlabSizeBytes(64 * 1024);
+        props.setStorage(storage);
+        ValueCompressor compressor = newCompressor();
+        LocalCache cache = new LocalCache(props, compressor);
+        try {
+            CacheValue large = new CacheValue(REPETITIVE.getBytes(StandardCharsets.UTF_8), CacheValue.JSON);
+            cache.put("large", large, 0);
+            cache.put("small", CacheValue.ofText("small"), 0);
+
+            CacheValue read = (CacheValue) cache.get("large");
+            assertEquals(REPETITIVE, text(read));
+            assertEquals(CacheValue.JSON, read.contentType());
+            assertEquals("small", text(cache.get("small")));
+            assertEquals(1, compressor.getCompressedCount());
+            // The large value is charged at its compressed size
+            assertTrue(cache.getWeightedSizeBytes() < REPETITIVE.length() / 4, "weighs " + cache.getWeightedSizeBytes());
+        } finally {
+            cache.shutdown();
+        }
+    }
+
+    private static ValueCompressor newCompressor() {
+        NodeConfigProperties.CompressionProperties props = new NodeConfigProperties.CompressionProperties();
+        props.setEnabled(true);
+        props.setThresholdBytes(THRESHOLD);
+        return new ValueCompressor(props);
+    }
+}
@@ -0,0 +1,124 @@
+package com.distributed.distributed_cache_project.core.manager;
+
+import com.distributed.distributed_cache_project.config.NodeConfigProperties;
+import com.distributed.distributed_cache_project.core.cache.CacheValue;
+import com.distributed.distributed_cache_project.core.cache.LocalCache;
+import com.distributed.distributed_cache_project.core.cache.ValueCompressor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CacheManagerTest {
+    private NodeConfigProperties props;
+    private LocalCache defaultCache;
+    private final List<CacheManager> managers = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        props = new NodeConfigProperties();
+        NodeConfigProperties.CacheCapacityProperties capacity = new NodeConfigProperties.CacheCapacityProperties();
+        capacity.setMaxEntries(1000);
+        capacity.setSegments(1);
+        props.setCapacity(capacity);
+        NodeConfigProperties.ReplicationProperties replication = new NodeConfigProperties.ReplicationProperties();
+        replication.setFactor(3);
+        props.setReplication(replication);
+        defaultCache = new LocalCache(props);
+    }
+
+    @AfterEach
+    void tearDown() {
+        managers.forEach(CacheManager::shutdown);
+        defaultCache.shutdown();
+    }
+
+    @Test
+    void namedCachesTakeTheirOwnSettings() {
+        props.getCaches().put("sessions", namedCache(50, 30_000, 1));
+        props.getCaches().put("catalog", namedCache(100, 0, 0));
+        CacheManager manager = newManager();
+
+        CacheManager.NamedCache sessions = manager.getCache("sessions");
+        assertEquals(30_000, sessions.defaultTtlMillis());
+        assertEquals(1, sessions.replicationFactor());
+        assertEquals(30_000, sessions.ttlFor(0));
+        assertEquals(500, sessions.ttlFor(500)); // A requested TTL wins
+
+        CacheManager.NamedCache catalog = manager.getCache("catalog");
+        assertEquals(3, catalog.replicationFactor()); // The node's factor when the cache sets none
+        assertEquals(0, catalog.ttlFor(0));
+
+        assertSame(defaultCache, manager.getDefaultCache().cache());
+        assertTrue(manager.getDefaultCache().isDefault());
+        assertEquals(List.of(CacheManager.DEFAULT_CACHE, "sessions", "catalog"),
+                manager.getCaches().stream().map(CacheManager.NamedCache::name).toList());
+    }
+
+    @Test
+    void cachesDoNotEvictEachOthersEntries() {
+        props.getCaches().put("sessions", namedCache(50, 0, 0));
+        CacheManager manager = newManager();
+        LocalCache sessions = manager.getCache("sessions").cache();
+        assertNotSame(defaultCache, sessions);
+
+        defaultCache.put("key", CacheValue.ofText("default"), 0);
+        for (int i = 0; i < 500; i++) {
+            sessions.put("session-" + i, CacheValue.ofText("s"), 0);
+        }
+        assertEquals(50, sessions.size()); // Bounded by its own max-entries
+        assertEquals(1, defaultCache.size());
+        assertNotNull(defaultCache.get("key"));
+        assertNull(sessions.get("key"));
+    }
+
+    @Test
+    void invalidNamesAreRejected() {
+        for (String name : List.of(CacheManager.DEFAULT_CACHE, "has space", "slash/name", "", "x".repeat(65))) {
+            NodeConfigProperties.NamedCacheProperties cache = namedCache(10, 0, 0);
+            props.getCaches().clear();
+            props.getCaches().put("valid", namedCache(10, 0, 0));
+            props.getCaches().put(name, cache);
+            assertThrows(IllegalStateException.class, this::newManager, name);
+        }
+    }
+
+    @Test
+    void unknownCachesAreReported() {
+        CacheManager manager = newManager();
+        assertTrue(manager.contains(CacheManager.DEFAULT_CACHE));
+        assertFalse(manager.contains("missing"));
+        assertThrows(IllegalArgumentException.class, () -> manager.getCache("missing"));
+    }
+
+    @Test
+    void namedCacheKeysArePlacedApartFromTheDefaultCache() {
+        assertEquals("user:1", CacheManager.routingKey(CacheManager.DEFAULT_CACHE, "user:1"));
+        assertEquals("sessions:user:1", CacheManager.routingKey("sessions", "user:1"));
+    }
+
+    private CacheManager newManager() {
+        CacheManager manager = new CacheManager(props, defaultCache, new ValueCompressor(null));
+        managers.add(manager);
+        return manager;
+    }
+
+    private static NodeConfigProperties.NamedCacheProperties namedCache(int maxEntries, long defaultTtlMillis, int replicationFactor) {
+        NodeConfigProperties.NamedCacheProperties cache = new NodeConfigProperties.NamedCacheProperties();
+        cache.setMaxEntries(maxEntries);
+        cache.setDefaultTtlMillis(defaultTtlMillis);
+        cache.setReplicationFactor(replicationFactor);
+        return cache;
+    }
+}
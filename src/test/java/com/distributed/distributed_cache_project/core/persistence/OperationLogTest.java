@@ -0,0 +1,213 @@
+package com.distributed.distributed_cache_project.core.persistence;
+
+import com.distributed.distributed_cache_project.config.NodeConfigProperties;
+import com.distributed.distributed_cache_project.core.cache.CacheValue;
+import com.distributed.distributed_cache_project.core.cache.LocalCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.distributed.distributed_cache_project.TestValues.text;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OperationLogTest {
+    private static final int FILE_HEADER_BYTES = 8;
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    @TempDir
+    Path directory;
+
+    private final List<LocalCache> caches = new ArrayList<>();
+
+    @AfterEach
+    void shutdownCaches() {
+        caches.forEach(LocalCache::shutdown);
+    }
+
+    @Test
+    void putsAndDeletesSurviveARestart() {
+        LocalCache cache = newCache();
+        OperationLog oplog = newLog(cache, 100_000);
+        put(cache, oplog, "a", "1", 0);
+        put(cache, oplog, "b", "2", 60_000);
+        put(cache, oplog, "a", "3", 0);
+        delete(cache, oplog, "b");
+        put(cache, oplog, "c", "4", 0);
+        oplog.close();
+
+        LocalCache restarted = newCache();
+        newLog(restarted, 100_000).close();
+        assertEquals("3", text(restarted.get("a")));
+        assertNull(restarted.get("b"));
+        assertEquals("4", text(restarted.get("c")));
+        assertEquals(2, restarted.size());
+    }
+
+    @Test
+    void replayTruncatesATornTailRecord() throws IOException {
+        long validLength = writeLog("a", "b");
+        try (FileChannel file = FileChannel.open(logFile(), StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            // Header of a 100 byte record, then the crash: only a few bytes of its body made it to disk
+            file.write(ByteBuffer.allocate(12).putInt(100).putInt(0).put(new byte[]{1, 0, 0, 0}).flip());
+        }
+
+        LocalCache restarted = newCache();
+        newLog(restarted, 100_000).close();
+        assertEquals(validLength, Files.size(logFile()));
+        assertEquals("a", text(restarted.get("a")));
+        assertEquals("b", text(restarted.get("b")));
+    }
+
+    @Test
+    void replayTruncatesAtARecordWithABadChecksum() throws IOException {
+        long validLength = writeLog("a", "b");
+        LocalCache cache = newCache();
+        OperationLog oplog = newLog(cache, 100_000);
+        put(cache, oplog, "c", "c", 0);
+        put(cache, oplog, "d", "d", 0);
+        oplog.close();
+        cache.shutdown();
+        caches.remove(cache);
+        assertTrue(Files.size(logFile()) > validLength);
+
+        // Flip the last byte of the value in record "c"; it and everything after it must be dropped
+        try (FileChannel file = FileChannel.open(logFile(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            file.read(header, validLength);
+            long lastBodyByte = validLength + 8 + header.flip().getInt() - 1;
+            ByteBuffer b = ByteBuffer.allocate(1);
+            file.read(b, lastBodyByte);
+            file.write(ByteBuffer.wrap(new byte[]{(byte) (b.get(0) ^ 0x5A)}), lastBodyByte);
+        }
+
+        LocalCache restarted = newCache();
+        newLog(restarted, 100_000).close();
+        assertEquals(validLength, Files.size(logFile()));
+        assertEquals("a", text(restarted.get("a")));
+        assertEquals("b", text(restarted.get("b")));
+        assertNull(restarted.get("c"));
+        assertNull(restarted.get("d"));
+    }
+
+    @Test
+    void headerOnlyLogReplaysNothing() throws IOException {
+        newLog(newCache(), 100_000).close();
+        assertEquals(FILE_HEADER_BYTES, Files.size(logFile()));
+
+        LocalCache restarted = newCache();
+        OperationLog reopened = newLog(restarted, 100_000);
+        assertEquals(FILE_HEADER_BYTES, reopened.getLogBytes());
+        reopened.close();
+        assertEquals(0, restarted.size());
+        assertEquals(FILE_HEADER_BYTES, Files.size(logFile()));
+    }
+
+    @Test
+    void recordsAppendedDuringARewriteWinOverTheSnapshot() throws Exception {
+        LocalCache cache = newCache();
+        OperationLog oplog = newLog(cache, 1_000_000);
+        for (int i = 0; i < 100_000; i++) {
+            put(cache, oplog, "filler-" + i, "x".repeat(32), 0); // Keeps the snapshot busy for a while
+        }
+        put(cache, oplog, "k", "old", 0);
+
+        oplog.requestRewrite();
+        await().atMost(TIMEOUT).pollInterval(Duration.ofMillis(1)) // Catch the rewrite while it is running
+                .until(() -> Files.exists(directory.resolve(OperationLog.LOG_FILE + ".rewrite")) || oplog.getRewriteCount() == 1);
+        // The log sees "new" after the rewrite started, but the cache still holds "old" for the snapshot to copy
+        oplog.appendPut("k", CacheValue.ofText("new"), 0);
+        await().atMost(TIMEOUT).until(() -> oplog.getRewriteCount() == 1);
+        oplog.close();
+
+        LocalCache restarted = newCache();
+        newLog(restarted, 1_000_000).close();
+        assertEquals("new", text(restarted.get("k")));
+        assertEquals(100_001, restarted.size());
+    }
+
+    @Test
+    void recordsDroppedFromAFullQueueAreRecoveredByTheNextRewrite() throws Exception {
+        LocalCache cache = newCache();
+        OperationLog oplog = newLog(cache, 1);
+        int written = 0;
+        while (oplog.getDroppedCount() == 0 && written < 1_000_000) {
+            put(cache, oplog, "key-" + written, "value-" + written, 0);
+            written++;
+        }
+        assertTrue(oplog.getDroppedCount() > 0, "the queue never filled up");
+        await().atMost(TIMEOUT).until(() -> oplog.getRewriteCount() >= 1);
+        oplog.close();
+
+        LocalCache restarted = newCache();
+        newLog(restarted, 1_000_000).close();
+        assertEquals(written, restarted.size());
+        for (int i = 0; i < written; i++) {
+            assertEquals("value-" + i, text(restarted.get("key-" + i)));
+        }
+    }
+
+    // Writes one record per key, closes the log and returns its length
+    private long writeLog(String... keys) throws IOException {
+        LocalCache cache = newCache();
+        OperationLog oplog = newLog(cache, 100_000);
+        for (String key : keys) {
+            put(cache, oplog, key, key, 0);
+        }
+        oplog.close();
+        cache.shutdown();
+        caches.remove(cache);
+        return Files.size(logFile());
+    }
+
+    // Applies the write the way CacheService does: to the cache and the log under the key's lock
+    private static void put(LocalCache cache, OperationLog oplog, String key, String value, long ttlMillis) {
+        synchronized (oplog.lockFor(key)) {
+            CacheValue v = CacheValue.ofText(value);
+            cache.put(key, v, ttlMillis);
+            oplog.appendPut(key, v, ttlMillis);
+        }
+    }
+
+    private static void delete(LocalCache cache, OperationLog oplog, String key) {
+        synchronized (oplog.lockFor(key)) {
+            cache.delete(key);
+            oplog.appendDelete(key);
+        }
+    }
+
+    private Path logFile() {
+        return directory.resolve(OperationLog.LOG_FILE);
+    }
+
+    private LocalCache newCache() {
+        NodeConfigProperties props = new NodeConfigProperties();
+        NodeConfigProperties.CacheCapacityProperties capacity = new NodeConfigProperties.CacheCapacityProperties();
+        capacity.setMaxEntries(2_000_000);
+        props.setCapacity(capacity);
+        LocalCache cache = new LocalCache(props);
+        caches.add(cache);
+        return cache;
+    }
+
+    private OperationLog newLog(LocalCache cache, int maxPendingRecords) {
+        NodeConfigProperties.OperationLogProperties props = new NodeConfigProperties.OperationLogProperties();
+        props.setEnabled(true);
+        props.setPath(directory.toString());
+        props.setFsync("never");
+        props.setMaxPendingRecords(maxPendingRecords);
+        return new OperationLog(props, cache);
+    }
+}
@@ -0,0 +1,202 @@
+package com.distributed.distributed_cache_project.core.persistence;
+
+import com.distributed.distributed_cache_project.config.NodeConfigProperties;
+import com.distributed.distributed_cache_project.core.cache.CacheValue;
+import com.distributed.distributed_cache_project.core.cache.LocalCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.distributed.distributed_cache_project.TestValues.text;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnapshotManagerTest {
+    private static final int ENTRIES = 2000; // About 1 MB, so several blocks
+    private static final String PADDING = "x".repeat(500);
+    private static final int FILE_HEADER_BYTES = 8;
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    @TempDir
+    Path directory;
+
+    private final List<LocalCache> caches = new ArrayList<>();
+    private final List<SnapshotManager> managers = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        managers.forEach(SnapshotManager::close);
+        caches.forEach(LocalCache::shutdown);
+    }
+
+    @Test
+    void snapshotWarmsAFreshCacheOnStartup() throws IOException {
+        LocalCache cache = newCache();
+        fill(cache);
+        byte[] binary = {0, 1, (byte) 0xFE, (byte) 0xFF};
+        cache.put("binary", new CacheValue(binary, "image/png"), 0);
+        cache.put("expiring", CacheValue.ofText("soon"), 600_000);
+        SnapshotManager manager = newManager(cache, false);
+        snapshot(manager);
+        assertEquals(ENTRIES + 2, manager.getEntriesWritten());
+        assertTrue(manager.getSnapshotMillis() > 0);
+        assertEquals(Files.size(manager.getPath()), manager.getBytesWritten());
+
+        LocalCache restarted = newCache();
+        newManager(restarted, true);
+        assertEquals(ENTRIES + 2, restarted.size());
+        for (int i = 0; i < ENTRIES; i++) {
+            assertEquals(value(i), text(restarted.get("key-" + i)), "key-" + i);
+        }
+        CacheValue loaded = (CacheValue) restarted.get("binary");
+        assertArrayEquals(binary, loaded.bytes());
+        assertEquals("image/png", loaded.contentType());
+        LocalCache.Lookup expiring = restarted.lookup("expiring");
+        assertTrue(expiring.expiresAtMillis() > 0 && expiring.expiresAtMillis() <= System.currentTimeMillis() + 600_000);
+    }
+
+    @Test
+    void entriesThatExpiredWhileTheNodeWasDownAreNotLoaded() throws InterruptedException {
+        LocalCache cache = newCache();
+        cache.put("kept", CacheValue.ofText("v"), 0);
+        cache.put("expiring", CacheValue.ofText("v"), 200);
+        snapshot(newManager(cache, false));
+        Thread.sleep(300);
+
+        LocalCache restarted = newCache();
+        newManager(restarted, true);
+        assertEquals("v", text(restarted.get("kept")));
+        assertNull(restarted.get("expiring"));
+    }
+
+    @Test
+    void blockWithABadChecksumIsSkippedAndTheRestLoaded() throws IOException {
+        LocalCache cache = newCache();
+        fill(cache);
+        SnapshotManager manager = newManager(cache, false);
+        snapshot(manager);
+        try (FileChannel file = FileChannel.open(manager.getPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            long at = FILE_HEADER_BYTES + 8 + 100; // Inside the first block's records
+            file.read(b, at);
+            file.write(ByteBuffer.wrap(new byte[]{(byte) (b.get(0) ^ 0x55)}), at);
+        }
+
+        LocalCache restarted = newCache();
+        newManager(restarted, true);
+        assertTrue(restarted.size() > 0 && restarted.size() < ENTRIES, "loaded " + restarted.size());
+        assertLoadedIntact(restarted);
+    }
+
+    @Test
+    void truncatedFileLoadsTheBlocksBeforeTheCut() throws IOException {
+        LocalCache cache = newCache();
+        fill(cache);
+        SnapshotManager manager = newManager(cache, false);
+        snapshot(manager);
+        try (FileChannel file = FileChannel.open(manager.getPath(), StandardOpenOption.WRITE)) {
+            file.truncate(file.size() / 2);
+        }
+
+        LocalCache restarted = newCache();
+        newManager(restarted, true);
+        assertTrue(restarted.size() > 0 && restarted.size() < ENTRIES, "loaded " + restarted.size());
+        assertLoadedIntact(restarted);
+    }
+
+    @Test
+    void snapshotIsNotLoadedOverEntriesAlreadyInTheCache() {
+        LocalCache cache = newCache();
+        fill(cache);
+        snapshot(newManager(cache, false));
+
+        LocalCache restarted = newCache();
+        restarted.put("recovered", CacheValue.ofText("v"), 0); // As if from persistent storage
+        newManager(restarted, true);
+        assertEquals(1, restarted.size());
+    }
+
+    @Test
+    void snapshotShowsTheCacheAsItWasWhenItStarted() {
+        LocalCache cache = newCache();
+        fill(cache);
+        Map<String, String> seen = new HashMap<>();
+        cache.snapshot((key, value, expiresAtMillis) -> {
+            if (seen.isEmpty()) {
+                // Writes landing mid-snapshot, to keys visited or not yet visited
+                for (int i = 0; i < ENTRIES; i += 2) {
+                    cache.put("key-" + i, CacheValue.ofText("changed"), 0);
+                }
+                for (int i = 1; i < ENTRIES; i += 4) {
+                    cache.delete("key-" + i);
+                }
+                cache.put("added", CacheValue.ofText("new"), 0);
+            }
+            assertNull(seen.put(key, text(value)), key);
+        });
+
+        assertEquals(ENTRIES, seen.size());
+        for (int i = 0; i < ENTRIES; i++) {
+            assertEquals(value(i), seen.get("key-" + i), "key-" + i);
+        }
+        assertEquals("changed", text(cache.get("key-0")));
+    }
+
+    private void snapshot(SnapshotManager manager) {
+        assertTrue(manager.requestSnapshot());
+        await().atMost(TIMEOUT).until(() -> manager.getState() != SnapshotManager.State.RUNNING);
+        assertEquals(SnapshotManager.State.COMPLETED, manager.getState(), manager.getError());
+    }
+
+    private static void fill(LocalCache cache) {
+        for (int i = 0; i < ENTRIES; i++) {
+            cache.put("key-" + i, new CacheValue(value(i).getBytes(StandardCharsets.UTF_8), CacheValue.TEXT), 0);
+        }
+    }
+
+    // Whatever was loaded is exactly what was written
+    private static void assertLoadedIntact(LocalCache cache) {
+        cache.forEach((key, value, expiresAtMillis) ->
+                assertEquals(value(Integer.parseInt(key.substring("key-".length()))), text(value), key));
+    }
+
+    private static String value(int i) {
+        return i + PADDING;
+    }
+
+    private LocalCache newCache() {
+        NodeConfigProperties props = new NodeConfigProperties();
+        NodeConfigProperties.CacheCapacityProperties capacity = new NodeConfigProperties.CacheCapacityProperties();
+        capacity.setMaxEntries(10_000);
+        props.setCapacity(capacity);
+        LocalCache cache = new LocalCache(props);
+        caches.add(cache);
+        return cache;
+    }
+
+    private SnapshotManager newManager(LocalCache cache, boolean loadOnStartup) {
+        NodeConfigProperties.SnapshotProperties props = new NodeConfigProperties.SnapshotProperties();
+        props.setPath(directory.toString());
+        props.setLoadOnStartup(loadOnStartup);
+        props.setLoadThreads(4);
+        SnapshotManager manager = new SnapshotManager(props, cache, new OperationLog(null, cache));
+        managers.add(manager);
+        return manager;
+    }
+}
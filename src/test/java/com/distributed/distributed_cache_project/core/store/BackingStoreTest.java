@@ -0,0 +1,121 @@
+package com.distributed.distributed_cache_project.core.store;
+
+import com.distributed.distributed_cache_project.config.NodeConfigProperties;
+import com.distributed.distributed_cache_project.core.cache.CacheValue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BackingStoreTest {
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void fullQueueRejectsNewKeysWithoutBlocking() throws Exception {
+        BackingStore store = new BackingStore(props(2));
+        try {
+            store.writeBehind("default", "a", text("1"));
+            store.writeBehind("default", "b", text("2"));
+
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                assertThrows(BackingStore.QueueFullException.class, () -> store.writeBehind("default", "c", text("3")));
+                assertThrows(BackingStore.QueueFullException.class, () -> store.deleteBehind("default", "c"));
+            });
+            assertEquals(2, store.getRejectedCount());
+
+            // A key already waiting takes no more room, so its later changes are still accepted
+            store.writeBehind("default", "a", text("4"));
+            store.deleteBehind("default", "b");
+            assertEquals(2, store.getPendingWrites());
+            assertEquals("4", new String(store.load("default", "a").bytes(), StandardCharsets.UTF_8));
+            assertNull(store.load("default", "c"));
+        } finally {
+            store.shutdown();
+        }
+
+        BackingStore reopened = new BackingStore(props(2));
+        try {
+            assertEquals("4", new String(reopened.load("default", "a").bytes(), StandardCharsets.UTF_8));
+            assertNull(reopened.load("default", "b"));
+            assertNull(reopened.load("default", "c"));
+        } finally {
+            reopened.shutdown();
+        }
+    }
+
+    @Test
+    void writesGoOutInBatchesOfBatchSize() {
+        RecordingStore.reset();
+        BackingStore store = new BackingStore(RecordingStore.properties(3, 60_000));
+        try {
+            for (int i = 0; i < 7; i++) {
+                store.writeBehind("default", "key-" + i, text("value-" + i));
+            }
+            // Full batches go out without waiting for the interval
+            await().atMost(TIMEOUT).until(() -> RecordingStore.batches().size() == 2);
+            assertEquals(1, store.getPendingWrites());
+        } finally {
+            store.shutdown();
+        }
+        List<List<String>> keys = RecordingStore.batches().stream()
+                .map(batch -> batch.stream().map(CacheWriter.Write::key).toList())
+                .toList();
+        assertEquals(List.of(List.of("key-0", "key-1", "key-2"), List.of("key-3", "key-4", "key-5"), List.of("key-6")), keys);
+        assertEquals(7, store.getWrittenCount());
+        RecordingStore.reset();
+    }
+
+    @Test
+    void repeatedChangesToAKeyCoalesceIntoItsLatest() throws Exception {
+        RecordingStore.reset();
+        BackingStore store = new BackingStore(RecordingStore.properties(100, 60_000));
+        try {
+            store.writeBehind("default", "a", text("1"));
+            store.writeBehind("default", "b", text("1"));
+            store.writeBehind("default", "a", text("2"));
+            store.deleteBehind("default", "b");
+            store.writeBehind("default", "a", text("3"));
+
+            assertEquals(2, store.getPendingWrites());
+            assertEquals("3", new String(store.load("default", "a").bytes(), StandardCharsets.UTF_8));
+            assertNull(store.load("default", "b")); // The queued delete answers, not the store
+            assertEquals(0, RecordingStore.loadCount());
+        } finally {
+            store.shutdown();
+        }
+        assertEquals(1, RecordingStore.batches().size());
+        List<CacheWriter.Write> batch = RecordingStore.batches().getFirst();
+        assertEquals(List.of("b", "a"), batch.stream().map(CacheWriter.Write::key).toList()); // In order of last change
+        assertTrue(batch.get(0).isDelete());
+        assertEquals("3", new String(batch.get(1).value().bytes(), StandardCharsets.UTF_8));
+        assertEquals(2, store.getWrittenCount());
+        RecordingStore.reset();
+    }
+
+    private NodeConfigProperties.StoreProperties props(int maxPendingWrites) {
+        NodeConfigProperties.StoreProperties props = new NodeConfigProperties.StoreProperties();
+        props.setEnabled(true);
+        props.setType("file");
+        props.setPath(directory.toString());
+        props.setFlushIntervalMillis(60_000); // Nothing is flushed before shutdown
+        props.setMaxPendingWrites(maxPendingWrites);
+        return props;
+    }
+
+    private static CacheValue text(String value) {
+        return CacheValue.ofText(value);
+    }
+}
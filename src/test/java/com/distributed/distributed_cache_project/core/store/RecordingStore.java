@@ -0,0 +1,87 @@
+package com.distributed.distributed_cache_project.core.store;
+
+import com.distributed.distributed_cache_project.config.NodeConfigProperties;
+import com.distributed.distributed_cache_project.core.cache.CacheValue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory store for tests that records what the cache loads and writes. {@link BackingStore} creates it by class
+ * name, as it would a real store, so its state is static; {@link #reset} it before each test.
+ */
+public class RecordingStore implements CacheLoader, CacheWriter {
+    private static final Map<String, CacheValue> values = new ConcurrentHashMap<>();
+    private static final List<List<Write>> batches = new CopyOnWriteArrayList<>();
+    private static final AtomicInteger loadCount = new AtomicInteger();
+    private static volatile CountDownLatch loadGate = new CountDownLatch(0);
+
+    public static void reset() {
+        values.clear();
+        batches.clear();
+        loadCount.set(0);
+        loadGate.countDown();
+        loadGate = new CountDownLatch(0);
+    }
+
+    public static NodeConfigProperties.StoreProperties properties(int batchSize, long flushIntervalMillis) {
+        NodeConfigProperties.StoreProperties props = new NodeConfigProperties.StoreProperties();
+        props.setEnabled(true);
+        props.setType(RecordingStore.class.getName());
+        props.setBatchSize(batchSize);
+        props.setFlushIntervalMillis(flushIntervalMillis);
+        return props;
+    }
+
+    public static void seed(String cache, String key, CacheValue value) {
+        values.put(cache + "/" + key, value);
+    }
+
+    public static CacheValue stored(String cache, String key) {
+        return values.get(cache + "/" + key);
+    }
+
+    public static List<List<Write>> batches() {
+        return batches;
+    }
+
+    public static int loadCount() {
+        return loadCount.get();
+    }
+
+    /**
+     * Makes loads wait, after they are counted, until the returned latch is released.
+     */
+    public static CountDownLatch holdLoads() {
+        CountDownLatch gate = new CountDownLatch(1);
+        loadGate = gate;
+        return gate;
+    }
+
+    @Override
+    public CacheValue load(String cache, String key) throws InterruptedException {
+        loadCount.incrementAndGet();
+        if (!loadGate.await(30, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Load of '" + key + "' was held for too long.");
+        }
+        return values.get(cache + "/" + key);
+    }
+
+    @Override
+    public void writeAll(List<Write> batch) {
+        batches.add(new ArrayList<>(batch));
+        for (Write write : batch) {
+            if (write.isDelete()) {
+                values.remove(write.cache() + "/" + write.key());
+            } else {
+                values.put(write.cache() + "/" + write.key(), write.value());
+            }
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.distributed.distributed_cache_project.network.server;
+
+import com.distributed.distributed_cache_project.core.cache.CacheValue;
+import com.distributed.distributed_cache_project.core.manager.CacheManager;
+import com.distributed.distributed_cache_project.service.CacheService;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class PipelineHandlerTest {
+    private static final int MAX_IN_FLIGHT = 4;
+
+    private CacheService cacheService;
+    private EmbeddedChannel channel;
+
+    private record Reply(int id, byte status, long version, String contentType, byte[] value) {
+        String text() {
+            return new String(value, StandardCharsets.UTF_8);
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        cacheService = mock(CacheService.class);
+        channel = newChannel(Schedulers.immediate()); // Operations run as they are read, so replies can be read at once
+    }
+
+    @AfterEach
+    void tearDown() {
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void pingIsAnsweredWithItsId() {
+        channel.writeInbound(frame(Unpooled.buffer().writeInt(42).writeByte(PipelineHandler.OP_PING)));
+
+        Reply reply = readReply();
+        assertEquals(42, reply.id());
+        assertEquals(PipelineHandler.STATUS_OK, reply.status());
+        assertEquals(0, reply.version());
+        assertEquals("", reply.contentType());
+        assertEquals(0, reply.value().length);
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    void repliesGoOutAsOperationsCompleteAndAreMatchedById() {
+        Sinks.One<CacheValue> slow = Sinks.one();
+        Sinks.One<CacheValue> fast = Sinks.one();
+        when(cacheService.get(anyString(), eq("slow"))).thenReturn(slow.asMono());
+        when(cacheService.get(anyString(), eq("fast"))).thenReturn(fast.asMono());
+        channel.writeInbound(request(1, PipelineHandler.OP_GET, "slow", "", ""));
+        channel.writeInbound(request(2, PipelineHandler.OP_GET, "fast", "", ""));
+        assertNull(channel.readOutbound()); // Both still running
+
+        fast.tryEmitValue(CacheValue.ofText("second"));
+        Reply first = readReply();
+        assertEquals(2, first.id());
+        assertEquals(PipelineHandler.STATUS_OK, first.status());
+        assertEquals(CacheValue.TEXT, first.contentType());
+        assertEquals("second", first.text());
+
+        slow.tryEmitEmpty();
+        Reply second = readReply();
+        assertEquals(1, second.id());
+        assertEquals(PipelineHandler.STATUS_MISS, second.status());
+        assertEquals("", second.contentType());
+    }
+
+    @Test
+    void frameTooShortForAnIdAndOpcodeClosesTheConnection() {
+        channel.writeInbound(frame(Unpooled.buffer().writeByte(1).writeByte(2).writeByte(3)));
+
+        assertFalse(channel.isOpen());
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    void truncatedRequestGetsAnErrorReply() {
+        ByteBuf body = Unpooled.buffer().writeInt(5).writeByte(PipelineHandler.OP_GET);
+        body.writeShort(100).writeBytes(new byte[10]); // Cache name claims more bytes than the frame holds
+        channel.writeInbound(frame(body));
+
+        Reply reply = readReply();
+        assertEquals(5, reply.id());
+        assertEquals(PipelineHandler.STATUS_ERROR, reply.status());
+        assertEquals("Malformed request frame.", reply.text());
+        assertTrue(channel.isOpen()); // The frame boundary is intact, so the next request can still be read
+
+        channel.writeInbound(frame(Unpooled.buffer().writeInt(6).writeByte(PipelineHandler.OP_PING)));
+        assertEquals(6, readReply().id());
+    }
+
+    @Test
+    void unknownOpcodeGetsAnErrorReply() {
+        channel.writeInbound(request(3, (byte) 99, "key", "", ""));
+
+        Reply reply = readReply();
+        assertEquals(PipelineHandler.STATUS_ERROR, reply.status());
+        assertEquals("Unknown opcode 99.", reply.text());
+    }
+
+    @Test
+    void readingStopsAtMaxInFlightAndResumesAtHalf() {
+        Sinks.One<CacheValue>[] pending = newSinks(MAX_IN_FLIGHT);
+        for (int i = 0; i < MAX_IN_FLIGHT; i++) {
+            when(cacheService.get(anyString(), eq("key-" + i))).thenReturn(pending[i].asMono());
+        }
+        for (int i = 0; i < MAX_IN_FLIGHT - 1; i++) {
+            channel.writeInbound(request(i, PipelineHandler.OP_GET, "key-" + i, "", ""));
+            assertTrue(channel.config().isAutoRead());
+        }
+        channel.writeInbound(request(MAX_IN_FLIGHT - 1, PipelineHandler.OP_GET, "key-" + (MAX_IN_FLIGHT - 1), "", ""));
+        assertFalse(channel.config().isAutoRead());
+
+        pending[0].tryEmitEmpty();
+        assertFalse(channel.config().isAutoRead()); // Three outstanding, above half the limit
+        pending[1].tryEmitEmpty();
+        assertTrue(channel.config().isAutoRead()); // Two outstanding
+        pending[2].tryEmitEmpty();
+        pending[3].tryEmitEmpty();
+        assertTrue(channel.config().isAutoRead());
+        for (int i = 0; i < MAX_IN_FLIGHT; i++) {
+            assertEquals(i, readReply().id());
+        }
+    }
+
+    @Test
+    void readingResumesWhenRepliesWereWrittenBeforeItStopped() {
+        // Answered synchronously, so every reply is written before the limit is checked again
+        for (int i = 0; i < 2 * MAX_IN_FLIGHT; i++) {
+            channel.writeInbound(frame(Unpooled.buffer().writeInt(i).writeByte(PipelineHandler.OP_PING)));
+            assertTrue(channel.config().isAutoRead());
+        }
+    }
+
+    @Test
+    void operationsStartOffTheEventLoopInArrivalOrder() {
+        List<Runnable> tasks = new ArrayList<>();
+        channel.finishAndReleaseAll();
+        channel = newChannel(Schedulers.fromExecutor(tasks::add, true)); // Serial, like a boundedElastic worker
+        when(cacheService.put(anyString(), anyString(), any(), anyLong())).thenReturn(Mono.empty());
+        when(cacheService.get(anyString(), anyString())).thenReturn(Mono.just(CacheValue.ofText("value")));
+        channel.writeInbound(request(1, PipelineHandler.OP_PUT, "key", "", "value"));
+        channel.writeInbound(request(2, PipelineHandler.OP_GET, "key", "", ""));
+        channel.writeInbound(frame(Unpooled.buffer().writeInt(3).writeByte(PipelineHandler.OP_PING)));
+
+        assertEquals(3, readReply().id()); // PING needs no worker
+        verifyNoInteractions(cacheService);
+        assertNull(channel.readOutbound());
+
+        assertEquals(1, tasks.size());
+        tasks.removeFirst().run();
+        InOrder order = inOrder(cacheService);
+        order.verify(cacheService).put(anyString(), eq("key"), any(), anyLong());
+        order.verify(cacheService).get(anyString(), eq("key"));
+        assertEquals(1, readReply().id());
+        assertEquals(2, readReply().id());
+    }
+
+    @Test
+    void atomicOperationCompletingEmptyIsStillAnswered() {
+        when(cacheService.atomic(anyString(), anyString(), any(), anyLong(), any(), anyLong())).thenReturn(Mono.empty());
+        for (int i = 0; i < 2 * MAX_IN_FLIGHT; i++) {
+            channel.writeInbound(request(i, PipelineHandler.OP_INCR, "counter", "", ""));
+            Reply reply = readReply();
+            assertEquals(i, reply.id());
+            assertEquals(PipelineHandler.STATUS_MISS, reply.status());
+        }
+        assertTrue(channel.config().isAutoRead()); // Nothing left in flight
+    }
+
+    @Test
+    void invalidContentTypeGetsAnErrorReply() {
+        channel.writeInbound(request(1, PipelineHandler.OP_PUT, "key", "not a media type", "value"));
+
+        Reply reply = readReply();
+        assertEquals(1, reply.id());
+        assertEquals(PipelineHandler.STATUS_ERROR, reply.status());
+        assertTrue(reply.text().contains("not a media type"), reply.text());
+        verify(cacheService, never()).put(anyString(), anyString(), any(), anyLong());
+        assertTrue(channel.isOpen());
+    }
+
+    @Test
+    void validContentTypeIsStoredWithTheValue() {
+        when(cacheService.put(anyString(), anyString(), any(), anyLong())).thenReturn(Mono.empty());
+        channel.writeInbound(request(2, PipelineHandler.OP_PUT, "key", "application/json", "{}"));
+
+        assertEquals(PipelineHandler.STATUS_OK, readReply().status());
+        ArgumentCaptor<CacheValue> value = ArgumentCaptor.forClass(CacheValue.class);
+        verify(cacheService).put(eq(CacheManager.DEFAULT_CACHE), eq("key"), value.capture(), eq(0L));
+        assertEquals(CacheValue.JSON, value.getValue().contentType());
+        assertEquals("{}", new String(value.getValue().bytes(), StandardCharsets.UTF_8));
+    }
+
+    private EmbeddedChannel newChannel(Scheduler scheduler) {
+        return new EmbeddedChannel(
+                new LengthFieldBasedFrameDecoder(1024 * 1024, 0, 4, 0, 4),
+                new PipelineHandler(cacheService, MAX_IN_FLIGHT, new AtomicInteger(), new AtomicLong(), scheduler));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Sinks.One<CacheValue>[] newSinks(int count) {
+        Sinks.One<CacheValue>[] sinks = new Sinks.One[count];
+        for (int i = 0; i < count; i++) {
+            sinks[i] = Sinks.one();
+        }
+        return sinks;
+    }
+
+    // A frame as a client writes it: length prefix, then the request
+    private static ByteBuf request(int id, byte op, String key, String contentType, String value) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] typeBytes = contentType.getBytes(StandardCharsets.UTF_8);
+        byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+        ByteBuf body = Unpooled.buffer();
+        body.writeInt(id).writeByte(op);
+        body.writeShort(0); // Default cache
+        body.writeShort(keyBytes.length).writeBytes(keyBytes);
+        body.writeLong(0).writeLong(0); // ttlMillis, operand
+        body.writeShort(typeBytes.length).writeBytes(typeBytes);
+        body.writeBytes(valueBytes);
+        return frame(body);
+    }
+
+    private static ByteBuf frame(ByteBuf body) {
+        ByteBuf frame = Unpooled.buffer().writeInt(body.readableBytes()).writeBytes(body);
+        body.release();
+        return frame;
+    }
+
+    private Reply readReply() {
+        ByteBuf out = channel.readOutbound();
+        try {
+            assertEquals(out.readableBytes() - 4, out.readInt());
+            int id = out.readInt();
+            byte status = out.readByte();
+            long version = out.readLong();
+            String contentType = out.readCharSequence(out.readUnsignedShort(), StandardCharsets.UTF_8).toString();
+            byte[] value = new byte[out.readableBytes()];
+            out.readBytes(value);
+            return new Reply(id, status, version, contentType, value);
+        } finally {
+            out.release();
+        }
+    }
+}
@@ -0,0 +1,624 @@
+package com.distributed.distributed_cache_project.service;
+
+import com.distributed.distributed_cache_project.api.model.BatchEntry;
+import com.distributed.distributed_cache_project.api.model.BatchResult;
+import com.distributed.distributed_cache_project.config.NodeConfigProperties;
+import com.distributed.distributed_cache_project.core.cache.AtomicOp;
+import com.distributed.distributed_cache_project.core.cache.CacheClock;
+import com.distributed.distributed_cache_project.core.cache.CacheValue;
+import com.distributed.distributed_cache_project.core.cache.LocalCache;
+import com.distributed.distributed_cache_project.core.cache.NearCache;
+import com.distributed.distributed_cache_project.core.cache.ValueCompressor;
+import com.distributed.distributed_cache_project.core.consistenthashing.HashRing;
+import com.distributed.distributed_cache_project.core.consistenthashing.Node;
+import com.distributed.distributed_cache_project.core.manager.CacheManager;
+import com.distributed.distributed_cache_project.core.persistence.OperationLog;
+import com.distributed.distributed_cache_project.core.store.BackingStore;
+import com.distributed.distributed_cache_project.core.store.RecordingStore;
+import com.distributed.distributed_cache_project.network.client.NodeApiClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.distributed.distributed_cache_project.TestValues.text;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CacheServiceTest {
+    private static final String SELF = "localhost:18001";
+    private static final String REPLICA = "localhost:18002";
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @TempDir
+    Path directory;
+
+    private NodeConfigProperties props;
+    private LocalCache localCache;
+    private HashRing hashRing;
+    private NodeApiClient nodeApiClient;
+    private CacheManager cacheManager;
+    private CacheService cacheService;
+    private String ownedKey; // A key this node is the primary owner of
+
+    // What the replica was sent, in order, and the replies it has not given yet
+    private final List<String> replicated = new CopyOnWriteArrayList<>();
+    private final List<Sinks.Empty<Void>> unanswered = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        props = new NodeConfigProperties();
+        NodeConfigProperties.NodeProperties node = new NodeConfigProperties.NodeProperties();
+        node.setHost("localhost");
+        node.setPort(18001);
+        props.setNode(node);
+        props.setPeers(List.of(SELF, REPLICA));
+        NodeConfigProperties.ReplicationProperties replication = new NodeConfigProperties.ReplicationProperties();
+        replication.setFactor(2);
+        props.setReplication(replication);
+        NodeConfigProperties.CacheCapacityProperties capacity = new NodeConfigProperties.CacheCapacityProperties();
+        capacity.setMaxEntries(10_000);
+        props.setCapacity(capacity);
+        NodeConfigProperties.StoreProperties store = new NodeConfigProperties.StoreProperties();
+        store.setEnabled(true); // Only for the stale grace period; the service gets no store unless a test asks
+        store.setStaleWhileRevalidateMillis(60_000);
+        props.setStore(store);
+
+        localCache = new LocalCache(props);
+        hashRing = new HashRing(props);
+        hashRing.init();
+        nodeApiClient = mock(NodeApiClient.class);
+        when(nodeApiClient.forwardPut(any(Node.class), anyString(), anyString(), any(CacheValue.class), anyLong()))
+                .thenAnswer(invocation -> send("PUT " + text(invocation.getArgument(3))));
+        when(nodeApiClient.forwardDelete(any(Node.class), anyString(), anyString()))
+                .thenAnswer(invocation -> send("DELETE"));
+        cacheService = newService(new BackingStore(null));
+
+        ownedKey = ownedKey("key-");
+    }
+
+    @AfterEach
+    void tearDown() {
+        unanswered.forEach(Sinks.Empty::tryEmitEmpty);
+        cacheManager.shutdown();
+        localCache.shutdown();
+    }
+
+    @Test
+    void replicaGetsCountersInOrderWithWaitingChangesCoalesced() throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            incr(ownedKey, 1);
+        }
+        await().atMost(TIMEOUT).until(() -> replicated.size() == 1);
+        assertEquals(List.of("PUT 1"), replicated); // The rest wait for the replica to answer
+
+        answerNext();
+        await().atMost(TIMEOUT).until(() -> replicated.size() == 2);
+        assertEquals("PUT 100", replicated.get(1)); // Only the latest of those that waited
+        assertEquals(98, cacheService.getCoalescedReplicationCount());
+
+        answerNext();
+        incr(ownedKey, 1);
+        await().atMost(TIMEOUT).until(() -> replicated.size() == 3);
+        assertEquals("PUT 101", replicated.get(2)); // Nothing in flight, so sent at once
+    }
+
+    @Test
+    void deleteWaitsBehindAnEarlierPut() throws InterruptedException {
+        cacheService.put(CacheManager.DEFAULT_CACHE, ownedKey, CacheValue.ofText("value"), 0).block();
+        cacheService.delete(CacheManager.DEFAULT_CACHE, ownedKey).block();
+        await().atMost(TIMEOUT).until(() -> replicated.size() == 1);
+        assertEquals(List.of("PUT value"), replicated);
+
+        answerNext();
+        await().atMost(TIMEOUT).until(() -> replicated.size() == 2);
+        assertEquals("DELETE", replicated.get(1));
+    }
+
+    @Test
+    void failedReplicationDoesNotHoldUpLaterChanges() throws InterruptedException {
+        incr(ownedKey, 1);
+        await().atMost(TIMEOUT).until(() -> replicated.size() == 1);
+        incr(ownedKey, 1);
+        unanswered.removeFirst().tryEmitError(new IllegalStateException("replica down"));
+        await().atMost(TIMEOUT).until(() -> replicated.size() == 2);
+        assertEquals("PUT 2", replicated.get(1));
+    }
+
+    @Test
+    void incrStartsAMissingKeyAtZero() {
+        AtomicOp.Result result = incr("counter", 5);
+        assertTrue(result.applied());
+        assertEquals("5", text(result.value()));
+        assertNotEquals(0, result.version());
+        assertEquals("-2", text(incr("counter", -7).value()));
+    }
+
+    @Test
+    void incrRejectsANonNumericValue() {
+        put("counter", "abc", 0);
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> incr("counter", 1));
+        assertTrue(e.getMessage().contains("not a 64-bit integer"), e.getMessage());
+        assertEquals("abc", text(gets("counter").value()));
+    }
+
+    @Test
+    void incrRejectsOverflowAndLeavesTheCounter() {
+        put("counter", Long.toString(Long.MAX_VALUE - 1), 0);
+        assertEquals(Long.toString(Long.MAX_VALUE), text(incr("counter", 1).value()));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> incr("counter", 1));
+        assertTrue(e.getMessage().contains("overflows"), e.getMessage());
+        assertEquals(Long.toString(Long.MAX_VALUE), text(gets("counter").value()));
+    }
+
+    @Test
+    void incrKeepsTheRemainingTtl() throws InterruptedException {
+        incr("window", 1, 60_000);
+        long deadline = localCache.lookup("window").expiresAtMillis();
+        assertTrue(deadline > 0);
+        Thread.sleep(20);
+        incr("window", 1, 60_000); // The TTL only applies to the write that creates the counter
+        LocalCache.Lookup after = localCache.lookup("window");
+        assertEquals("2", text(after.value()));
+        assertTrue(Math.abs(after.expiresAtMillis() - deadline) <= 1, "deadline moved from " + deadline + " to " + after.expiresAtMillis());
+    }
+
+    @Test
+    void casAppliesOnlyOnAMatchingVersion() {
+        AtomicOp.Result created = cas("key", 0, "first"); // 0 stands for an absent key
+        assertTrue(created.applied());
+        assertFalse(cas("key", 0, "again").applied()); // No longer absent
+
+        long version = gets("key").version();
+        assertEquals(created.version(), version);
+        AtomicOp.Result replaced = cas("key", version, "second");
+        assertTrue(replaced.applied());
+        assertNotEquals(version, replaced.version());
+
+        AtomicOp.Result stale = cas("key", version, "third");
+        assertFalse(stale.applied());
+        assertEquals(replaced.version(), stale.version()); // The version it would have needed
+        assertEquals("second", text(stale.value()));
+        assertEquals("second", text(gets("key").value()));
+    }
+
+    @Test
+    void putIfAbsentTreatsAStaleEntryAsAbsent() throws InterruptedException {
+        put("key", "expired", 20);
+        Thread.sleep(50);
+        assertTrue(localCache.lookup("key").stale()); // Still served while it is reloaded, but past its TTL
+
+        AtomicOp.Result result = atomic("key", AtomicOp.PUT_IF_ABSENT, 0, "fresh");
+        assertTrue(result.applied());
+        assertEquals("fresh", text(gets("key").value()));
+
+        AtomicOp.Result second = atomic("key", AtomicOp.PUT_IF_ABSENT, 0, "other");
+        assertFalse(second.applied());
+        assertEquals("fresh", text(second.value()));
+    }
+
+    @Test
+    void getAndSetReturnsThePreviousValue() {
+        AtomicOp.Result first = atomic("key", AtomicOp.GET_AND_SET, 0, "one");
+        assertTrue(first.applied());
+        assertNull(first.value());
+
+        AtomicOp.Result second = atomic("key", AtomicOp.GET_AND_SET, 0, "two");
+        assertEquals("one", text(second.value()));
+        assertEquals("two", text(gets("key").value()));
+    }
+
+    @Test
+    void atomicWriteIsRejectedWhenTheWriteBehindQueueIsFull() {
+        NodeConfigProperties.StoreProperties store = new NodeConfigProperties.StoreProperties();
+        store.setEnabled(true);
+        store.setPath(directory.toString());
+        store.setFlushIntervalMillis(60_000);
+        store.setMaxPendingWrites(1);
+        BackingStore backingStore = new BackingStore(store);
+        try {
+            cacheService = newService(backingStore); // Also a loader, so atomic operations read through on this node
+            String first = ownedKey("first-");
+            put(first, "1", 0); // Fills the queue
+
+            assertThrows(BackingStore.QueueFullException.class, () -> incr(ownedKey, 1));
+            assertNull(localCache.get(ownedKey)); // Nothing applied
+            assertEquals("2", text(incr(first, 1).value())); // Its key is already waiting, so it takes no room
+        } finally {
+            backingStore.shutdown();
+        }
+    }
+
+    @Test
+    void loadFinishingAfterAWriteDoesNotReplaceIt() throws Exception {
+        RecordingStore.reset();
+        RecordingStore.seed(CacheManager.DEFAULT_CACHE, ownedKey, CacheValue.ofText("old"));
+        BackingStore backingStore = new BackingStore(RecordingStore.properties(100, 60_000));
+        try {
+            cacheService = newService(backingStore);
+            CountDownLatch release = RecordingStore.holdLoads();
+            CompletableFuture<CacheValue> read = cacheService.get(CacheManager.DEFAULT_CACHE, ownedKey).toFuture();
+            await().atMost(TIMEOUT).until(() -> RecordingStore.loadCount() == 1);
+
+            put(ownedKey, "new", 0); // Lands while the load is reading the store
+            release.countDown();
+            assertEquals("old", text(read.get(10, TimeUnit.SECONDS))); // The read started before the write
+            assertEquals("new", text(localCache.get(ownedKey)));
+            await().atMost(TIMEOUT).until(() -> replicated.size() == 1);
+            assertEquals(List.of("PUT new"), replicated);
+            answerNext();
+            await().during(Duration.ofMillis(200)).atMost(TIMEOUT).until(() -> replicated.size() == 1); // Nothing after it
+        } finally {
+            backingStore.shutdown();
+            RecordingStore.reset();
+        }
+    }
+
+    @Test
+    void readPastTheRefreshFractionServesTheValueAndReloadsItOnce() throws Exception {
+        RecordingStore.reset();
+        RecordingStore.seed(CacheManager.DEFAULT_CACHE, ownedKey, CacheValue.ofText("new"));
+        props.getStore().setRefreshAheadFraction(0.5);
+        BackingStore backingStore = new BackingStore(RecordingStore.properties(100, 60_000));
+        try {
+            cacheService = newService(backingStore);
+            localCache.put(ownedKey, CacheValue.ofText("old"), 2_000); // Not queued for the store, which holds "new"
+            assertEquals("old", text(cacheService.get(CacheManager.DEFAULT_CACHE, ownedKey).block()));
+            assertEquals(0, cacheService.getRefreshCount()); // Not yet halfway through its TTL
+
+            long halfway = localCache.lookup(ownedKey).expiresAtMillis() - 1_000;
+            await().atMost(TIMEOUT).until(() -> CacheClock.millis() >= halfway);
+            CountDownLatch release = RecordingStore.holdLoads();
+            for (int i = 0; i < 5; i++) {
+                assertEquals("old", text(cacheService.get(CacheManager.DEFAULT_CACHE, ownedKey).block()));
+            }
+            await().atMost(TIMEOUT).until(() -> RecordingStore.loadCount() == 1);
+            assertEquals(1, cacheService.getRefreshCount()); // Reads while it runs do not start another
+
+            release.countDown();
+            await().atMost(TIMEOUT).until(() -> "new".equals(text(localCache.get(ownedKey))));
+            assertEquals(1, RecordingStore.loadCount());
+            assertEquals(0, cacheService.getStaleServedCount());
+        } finally {
+            backingStore.shutdown();
+            RecordingStore.reset();
+        }
+    }
+
+    @Test
+    void expiredValueIsServedWithinItsGracePeriodWhileItReloads() throws Exception {
+        RecordingStore.reset();
+        RecordingStore.seed(CacheManager.DEFAULT_CACHE, ownedKey, CacheValue.ofText("new"));
+        BackingStore backingStore = new BackingStore(RecordingStore.properties(100, 60_000));
+        try {
+            cacheService = newService(backingStore);
+            localCache.put(ownedKey, CacheValue.ofText("old"), 100);
+            await().atMost(TIMEOUT).until(() -> localCache.lookup(ownedKey).stale());
+
+            CountDownLatch release = RecordingStore.holdLoads();
+            assertEquals("old", text(cacheService.get(CacheManager.DEFAULT_CACHE, ownedKey).block()));
+            assertEquals(1, cacheService.getStaleServedCount());
+            await().atMost(TIMEOUT).until(() -> RecordingStore.loadCount() == 1);
+
+            release.countDown();
+            await().atMost(TIMEOUT).until(() -> "new".equals(text(localCache.get(ownedKey))));
+            assertFalse(localCache.lookup(ownedKey).stale());
+            assertEquals("new", text(cacheService.get(CacheManager.DEFAULT_CACHE, ownedKey).block()));
+            assertEquals(1, cacheService.getStaleServedCount());
+        } finally {
+            backingStore.shutdown();
+            RecordingStore.reset();
+        }
+    }
+
+    @Test
+    void readThroughLoadsOnlyOnThePrimaryWhichPopulatesItsReplica() throws Exception {
+        RecordingStore.reset();
+        String replicaKey = replicaKey("key-");
+        RecordingStore.seed(CacheManager.DEFAULT_CACHE, ownedKey, CacheValue.ofText("stored"));
+        RecordingStore.seed(CacheManager.DEFAULT_CACHE, replicaKey, CacheValue.ofText("stored"));
+        when(nodeApiClient.forwardGet(any(Node.class), anyString(), anyString()))
+                .thenReturn(Mono.just(CacheValue.ofText("from owner")));
+        BackingStore backingStore = new BackingStore(RecordingStore.properties(100, 60_000));
+        try {
+            cacheService = newService(backingStore);
+            assertEquals("stored", text(cacheService.get(CacheManager.DEFAULT_CACHE, ownedKey).block()));
+            assertEquals(1, RecordingStore.loadCount());
+            assertEquals("stored", text(localCache.get(ownedKey)));
+            await().atMost(TIMEOUT).until(() -> replicated.size() == 1);
+            assertEquals(List.of("PUT stored"), replicated); // The replica gets the loaded value from its primary
+
+            // A key owned by the other node is read from it, and only it loads from the store
+            assertEquals("from owner", text(cacheService.get(CacheManager.DEFAULT_CACHE, replicaKey).block()));
+            assertEquals(1, RecordingStore.loadCount());
+            assertNull(localCache.get(replicaKey));
+        } finally {
+            backingStore.shutdown();
+            RecordingStore.reset();
+        }
+    }
+
+    @Test
+    void concurrentGetsForAnotherNodesKeyShareOneForward() throws Exception {
+        List<Sinks.One<CacheValue>> owner = holdForwardedGets();
+        String replicaKey = replicaKey("key-");
+        List<CompletableFuture<CacheValue>> reads = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            reads.add(cacheService.get(CacheManager.DEFAULT_CACHE, replicaKey).toFuture());
+        }
+        assertEquals(1, cacheService.getForwardedGetCount());
+        assertEquals(4, cacheService.getCoalescedGetCount());
+
+        owner.getFirst().tryEmitValue(CacheValue.ofText("owned"));
+        for (CompletableFuture<CacheValue> read : reads) {
+            assertEquals("owned", text(read.get(10, TimeUnit.SECONDS)));
+        }
+        cacheService.get(CacheManager.DEFAULT_CACHE, replicaKey).toFuture();
+        assertEquals(2, cacheService.getForwardedGetCount()); // The answered call is gone, so the next read asks again
+    }
+
+    @Test
+    void coalescedGetsShareAMissOrAnError() throws Exception {
+        List<Sinks.One<CacheValue>> owner = holdForwardedGets();
+        String replicaKey = replicaKey("key-");
+        CompletableFuture<CacheValue> first = cacheService.get(CacheManager.DEFAULT_CACHE, replicaKey).toFuture();
+        CompletableFuture<CacheValue> second = cacheService.get(CacheManager.DEFAULT_CACHE, replicaKey).toFuture();
+        owner.getFirst().tryEmitEmpty();
+        assertNull(first.get(10, TimeUnit.SECONDS));
+        assertNull(second.get(10, TimeUnit.SECONDS));
+
+        first = cacheService.get(CacheManager.DEFAULT_CACHE, replicaKey).toFuture();
+        second = cacheService.get(CacheManager.DEFAULT_CACHE, replicaKey).toFuture();
+        owner.get(1).tryEmitError(new IllegalStateException("owner down"));
+        assertThrows(ExecutionException.class, first::get);
+        assertThrows(ExecutionException.class, second::get);
+        assertEquals(2, cacheService.getForwardedGetCount());
+        assertEquals(2, cacheService.getCoalescedGetCount());
+    }
+
+    @Test
+    void concurrentMissesOnTheOwnerShareOneLoad() throws Exception {
+        RecordingStore.reset();
+        String missingKey = ownedKey("missing-");
+        RecordingStore.seed(CacheManager.DEFAULT_CACHE, ownedKey, CacheValue.ofText("stored"));
+        BackingStore backingStore = new BackingStore(RecordingStore.properties(100, 60_000));
+        try {
+            cacheService = newService(backingStore);
+            CountDownLatch release = RecordingStore.holdLoads();
+            List<CompletableFuture<CacheValue>> reads = new ArrayList<>();
+            List<CompletableFuture<CacheValue>> misses = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                reads.add(cacheService.get(CacheManager.DEFAULT_CACHE, ownedKey).toFuture());
+                misses.add(cacheService.get(CacheManager.DEFAULT_CACHE, missingKey).toFuture());
+            }
+            await().atMost(TIMEOUT).until(() -> RecordingStore.loadCount() == 2);
+            release.countDown();
+            for (int i = 0; i < 5; i++) {
+                assertEquals("stored", text(reads.get(i).get(10, TimeUnit.SECONDS)));
+                assertNull(misses.get(i).get(10, TimeUnit.SECONDS)); // The store's miss is shared too
+            }
+            assertEquals(2, RecordingStore.loadCount());
+            assertEquals(8, cacheService.getCoalescedLoadCount());
+        } finally {
+            backingStore.shutdown();
+            RecordingStore.reset();
+        }
+    }
+
+    @Test
+    void getsAfterAWriteDoNotJoinAnEarlierForward() throws Exception {
+        List<Sinks.One<CacheValue>> owner = holdForwardedGets();
+        String replicaKey = replicaKey("key-");
+        CompletableFuture<CacheValue> before = cacheService.get(CacheManager.DEFAULT_CACHE, replicaKey).toFuture();
+        cacheService.put(CacheManager.DEFAULT_CACHE, replicaKey, CacheValue.ofText("new"), 0).toFuture();
+        CompletableFuture<CacheValue> after = cacheService.get(CacheManager.DEFAULT_CACHE, replicaKey).toFuture();
+        assertEquals(2, cacheService.getForwardedGetCount());
+        assertEquals(0, cacheService.getCoalescedGetCount());
+
+        owner.get(0).tryEmitValue(CacheValue.ofText("old"));
+        owner.get(1).tryEmitValue(CacheValue.ofText("new"));
+        assertEquals("old", text(before.get(10, TimeUnit.SECONDS)));
+        assertEquals("new", text(after.get(10, TimeUnit.SECONDS)));
+    }
+
+    @Test
+    void namedCacheWritesUseThatCachesTtlAndReplication() {
+        NodeConfigProperties.NamedCacheProperties sessions = new NodeConfigProperties.NamedCacheProperties();
+        sessions.setMaxEntries(100);
+        sessions.setDefaultTtlMillis(60_000);
+        sessions.setReplicationFactor(1);
+        props.getCaches().put("sessions", sessions);
+        cacheService = newService(new BackingStore(null));
+        String sessionKey = ownedKey("sessions", "key-");
+
+        cacheService.put("sessions", sessionKey, CacheValue.ofText("session"), 0).block();
+        LocalCache.Lookup stored = cacheManager.getCache("sessions").cache().lookup(sessionKey);
+        assertEquals("session", text(stored.value()));
+        assertTrue(stored.expiresAtMillis() > 0); // The cache's default TTL applies when the write gives none
+        assertNull(localCache.get(sessionKey));
+        assertNull(localCache.get(CacheManager.routingKey("sessions", sessionKey)));
+
+        // The default cache still replicates; the named one, with a factor of 1, sent nothing ahead of it
+        cacheService.put(CacheManager.DEFAULT_CACHE, ownedKey, CacheValue.ofText("default"), 0).block();
+        await().atMost(TIMEOUT).until(() -> replicated.size() == 1);
+        assertEquals(List.of("PUT default"), replicated);
+        assertEquals(0, localCache.lookup(ownedKey).expiresAtMillis());
+    }
+
+    @Test
+    void getAllSendsEachOwnerOneBatchAndKeepsRequestOrder() {
+        String owned = ownedKey("owned-");
+        String ownedMissing = ownedKey("missing-");
+        String remote = replicaKey("remote-");
+        String remoteMissing = replicaKey("gone-");
+        put(owned, "local", 0);
+        List<List<String>> batches = new CopyOnWriteArrayList<>();
+        when(nodeApiClient.batchGet(any(Node.class), anyString(), anyList())).thenAnswer(invocation -> {
+            List<String> keys = invocation.getArgument(2);
+            batches.add(keys);
+            return Mono.just(keys.stream()
+                    .map(key -> key.equals(remote)
+                            ? new BatchResult(key, BatchResult.FOUND, CacheValue.ofText("remote").bytes(), CacheValue.ofText("remote").contentType(), null)
+                            : BatchResult.of(key, BatchResult.MISSING))
+                    .toList());
+        });
+
+        List<BatchResult> results = cacheService.getAll(CacheManager.DEFAULT_CACHE,
+                List.of(remote, owned, remoteMissing, ownedMissing, remote)).block();
+        assertEquals(List.of(List.of(remote, remoteMissing)), batches); // One request to the other node, no duplicates
+        assertEquals(List.of(remote, owned, remoteMissing, ownedMissing), results.stream().map(BatchResult::getKey).toList());
+        assertEquals(List.of(BatchResult.FOUND, BatchResult.FOUND, BatchResult.MISSING, BatchResult.MISSING),
+                results.stream().map(BatchResult::getStatus).toList());
+        assertEquals("remote", results.get(0).getValue());
+        assertEquals("local", results.get(1).getValue());
+    }
+
+    @Test
+    void unreachableOwnerFailsOnlyItsKeys() {
+        String owned = ownedKey("owned-");
+        String remote = replicaKey("remote-");
+        put(owned, "local", 0);
+        when(nodeApiClient.batchGet(any(Node.class), anyString(), anyList()))
+                .thenReturn(Mono.error(new IllegalStateException("owner down")));
+        when(nodeApiClient.batchDelete(any(Node.class), anyString(), anyList()))
+                .thenReturn(Mono.error(new IllegalStateException("owner down")));
+
+        List<BatchResult> read = cacheService.getAll(CacheManager.DEFAULT_CACHE, List.of(owned, remote)).block();
+        assertEquals(BatchResult.FOUND, read.get(0).getStatus());
+        assertEquals(BatchResult.ERROR, read.get(1).getStatus());
+        assertEquals("owner down", read.get(1).getError());
+
+        List<BatchResult> deleted = cacheService.deleteAll(CacheManager.DEFAULT_CACHE, List.of(owned, remote)).block();
+        assertEquals(List.of(BatchResult.DELETED, BatchResult.ERROR), deleted.stream().map(BatchResult::getStatus).toList());
+        assertNull(localCache.get(owned));
+    }
+
+    @Test
+    void putAllStoresOwnedEntriesAndSendsTheRestToTheirOwner() {
+        String owned = ownedKey("owned-");
+        String remote = replicaKey("remote-");
+        List<List<BatchEntry>> batches = new CopyOnWriteArrayList<>();
+        when(nodeApiClient.batchPut(any(Node.class), anyString(), anyList())).thenAnswer(invocation -> {
+            List<BatchEntry> entries = invocation.getArgument(2);
+            batches.add(entries);
+            return Mono.just(entries.stream().map(entry -> BatchResult.of(entry.getKey(), BatchResult.STORED)).toList());
+        });
+
+        List<BatchResult> results = cacheService.putAll(CacheManager.DEFAULT_CACHE, List.of(
+                entry(owned, "first", 0), entry(remote, "remote", 5_000), entry(owned, "last", 0))).block();
+        assertEquals(List.of(owned, remote), results.stream().map(BatchResult::getKey).toList());
+        assertEquals(List.of(BatchResult.STORED, BatchResult.STORED), results.stream().map(BatchResult::getStatus).toList());
+        assertEquals("last", text(localCache.get(owned))); // A repeated key is stored with its last entry
+        assertNull(localCache.get(remote));
+        assertEquals(1, batches.size());
+        assertEquals(List.of(remote), batches.getFirst().stream().map(BatchEntry::getKey).toList());
+        assertEquals(5_000, batches.getFirst().getFirst().getTtlMillis());
+        await().atMost(TIMEOUT).until(() -> replicated.size() == 1);
+        assertEquals(List.of("PUT last"), replicated); // Owned entries replicate as a single PUT would
+    }
+
+    private static BatchEntry entry(String key, String value, long ttlMillis) {
+        CacheValue cacheValue = CacheValue.ofText(value);
+        return new BatchEntry(key, cacheValue.bytes(), cacheValue.contentType(), ttlMillis);
+    }
+
+    private String replicaKey(String prefix) {
+        for (int i = 0; ; i++) {
+            if (!cacheService.isPrimary(CacheManager.DEFAULT_CACHE, prefix + i)) {
+                return prefix + i;
+            }
+        }
+    }
+
+    private String ownedKey(String prefix) {
+        return ownedKey(CacheManager.DEFAULT_CACHE, prefix);
+    }
+
+    private String ownedKey(String cache, String prefix) {
+        for (int i = 0; ; i++) {
+            if (cacheService.isPrimary(cache, prefix + i)) {
+                return prefix + i;
+            }
+        }
+    }
+
+    private CacheService newService(BackingStore backingStore) {
+        if (cacheManager != null) {
+            cacheManager.shutdown();
+        }
+        cacheManager = new CacheManager(props, localCache, new ValueCompressor(null));
+        return new CacheService(cacheManager, hashRing, nodeApiClient,
+                new OperationLog(null, localCache), new NearCache(null), backingStore, props);
+    }
+
+    // Keys in these tests may belong to either node; atomic operations on the replica's keys would be forwarded
+    private void put(String key, String value, long ttlMillis) {
+        cacheService.processPrimaryWrite(CacheManager.DEFAULT_CACHE, key, CacheValue.ofText(value), ttlMillis).block();
+    }
+
+    private AtomicOp.Result incr(String key, long delta) {
+        return incr(key, delta, 0);
+    }
+
+    private AtomicOp.Result incr(String key, long delta, long ttlMillis) {
+        return cacheService.processPrimaryAtomic(CacheManager.DEFAULT_CACHE, key, AtomicOp.INCR, delta, null, ttlMillis).block();
+    }
+
+    private AtomicOp.Result gets(String key) {
+        return atomic(key, AtomicOp.GETS, 0, null);
+    }
+
+    private AtomicOp.Result cas(String key, long version, String value) {
+        return atomic(key, AtomicOp.CAS, version, value);
+    }
+
+    private AtomicOp.Result atomic(String key, AtomicOp op, long operand, String value) {
+        return cacheService.processPrimaryAtomic(CacheManager.DEFAULT_CACHE, key, op, operand,
+                value != null ? CacheValue.ofText(value) : null, 0).block();
+    }
+
+    // GETs forwarded to the other node, in order, each answered when the test emits on its sink
+    private List<Sinks.One<CacheValue>> holdForwardedGets() {
+        List<Sinks.One<CacheValue>> calls = new CopyOnWriteArrayList<>();
+        when(nodeApiClient.forwardGet(any(Node.class), anyString(), anyString())).thenAnswer(invocation -> {
+            Sinks.One<CacheValue> reply = Sinks.one();
+            calls.add(reply);
+            return reply.asMono();
+        });
+        return calls;
+    }
+
+    private Mono<Void> send(String message) {
+        Sinks.Empty<Void> reply = Sinks.empty();
+        unanswered.add(reply);
+        replicated.add(message);
+        return reply.asMono();
+    }
+
+    private void answerNext() {
+        unanswered.removeFirst().tryEmitEmpty();
+    }
+}